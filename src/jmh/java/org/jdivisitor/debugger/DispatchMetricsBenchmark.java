@@ -0,0 +1,91 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jdivisitor.debugger.event.transform.EventTransformerBenchmark;
+import com.sun.jdi.event.BreakpointEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventSet;
+
+/**
+ * Measures the cost of recording the {@link DispatchMetrics} of an event set
+ * of two events, as the event thread and the handler do: the queue wait, the
+ * event counts, and the tracking of the set until it has been visited and
+ * resumed. Run with the GC profiler to see the bytes allocated per set:
+ *
+ * <pre>
+ * java -cp ... org.openjdk.jmh.Main DispatchMetricsBenchmark -prof gc
+ * </pre>
+ *
+ * <p>
+ * The only allocation should be the event set's iterator. Most of the time
+ * is spent reading {@code System.nanoTime()}.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchMetricsBenchmark {
+
+    private final DispatchMetrics metrics = new DispatchMetrics();
+
+    private EventSet eventSet;
+
+    @Setup
+    public void setup() {
+        List<Event> events = new ArrayList<Event>();
+        events.add(EventTransformerBenchmark.newEvent(BreakpointEvent.class));
+        events.add(EventTransformerBenchmark.newEvent(BreakpointEvent.class));
+
+        eventSet = new FilteredEventSet(null, events);
+    }
+
+    @Benchmark
+    public void record() {
+        long removedAt = System.nanoTime();
+
+        metrics.waited(100);
+        metrics.removed(eventSet);
+        metrics.handedOver(eventSet, removedAt, null);
+        metrics.visiting(eventSet);
+        metrics.visited(eventSet);
+        metrics.resumed(eventSet);
+    }
+}
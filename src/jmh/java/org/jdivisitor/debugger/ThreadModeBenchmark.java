@@ -0,0 +1,248 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jdivisitor.debugger.event.transform.EventTransformerBenchmark;
+import com.sun.jdi.VMDisconnectedException;
+import com.sun.jdi.VirtualMachine;
+import com.sun.jdi.event.BreakpointEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventQueue;
+import com.sun.jdi.event.EventSet;
+import com.sun.jdi.event.VMDisconnectEvent;
+
+/**
+ * Measures how the event loops of many debuggers scale with the kind of
+ * thread they run on. Each operation starts a debugger for every one of a
+ * number of stand-in virtual machines, feeds their event queues a few event
+ * sets in turn so that every loop blocks on its queue between sets, then
+ * disconnects them all and waits for the loops to finish.
+ *
+ * <p>
+ * The {@code VIRTUAL} runs need JDK 21 or later and fail on older JDKs; skip
+ * them with {@code -p mode=PLATFORM}. Compare the footprint of the two modes
+ * with a larger fan-out, for example:
+ * </p>
+ *
+ * <pre>
+ * java -cp ... org.openjdk.jmh.Main ThreadModeBenchmark -p vms=10000 -prof gc
+ * </pre>
+ *
+ * @author Adrian Herrera
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadModeBenchmark {
+
+    /**
+     * Number of event sets fed to each virtual machine.
+     */
+    private static final int EVENT_SETS = 16;
+
+    @Param({ "PLATFORM", "VIRTUAL" })
+    public ThreadMode mode;
+
+    @Param({ "100", "1000" })
+    public int vms;
+
+    @Setup
+    public void setup() {
+        Validate.validState(mode.isSupported(), "%s threads need JDK 21", mode);
+    }
+
+    @Benchmark
+    public void fanOut() throws InterruptedException {
+        List<StandInQueue> queues = new ArrayList<StandInQueue>(vms);
+        List<Thread> threads = new ArrayList<Thread>(vms);
+
+        for (int i = 0; i < vms; i++) {
+            StandInQueue queue = new StandInQueue();
+            Debugger debugger = new Debugger(standInVM(queue), mode);
+            EventLoop loop = debugger.newEventLoop(new VisitorEventSetHandler(
+                    null));
+
+            Thread thread = mode.newThread("jdi-event-thread-" + i, loop);
+            thread.start();
+
+            queues.add(queue);
+            threads.add(thread);
+        }
+
+        for (int i = 0; i < EVENT_SETS; i++) {
+            for (StandInQueue queue : queues) {
+                queue.add(queue.eventSet);
+            }
+        }
+
+        for (StandInQueue queue : queues) {
+            queue.disconnect();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Create a stand-in virtual machine with the given event queue.
+     *
+     * @param queue Event queue
+     * @return The stand-in virtual machine
+     */
+    private static VirtualMachine standInVM(final EventQueue queue) {
+        return stub(VirtualMachine.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("eventQueue")) {
+                    return queue;
+                }
+
+                return defaultValue(proxy, method, args);
+            }
+        });
+    }
+
+    /**
+     * Create a stand-in event set of the given events.
+     *
+     * @param events Events
+     * @return The stand-in event set
+     */
+    private static EventSet standInEventSet(List<Event> events) {
+        EventSet eventSet = stub(EventSet.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return defaultValue(proxy, method, args);
+            }
+        });
+
+        return new FilteredEventSet(eventSet, events);
+    }
+
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(),
+                new Class<?>[] { type }, handler));
+    }
+
+    /**
+     * Answer a stand-in method call with identity equality, or {@code 0} or
+     * {@code null}.
+     *
+     * @param proxy Stand-in object
+     * @param method Method called
+     * @param args Arguments
+     * @return The answer
+     */
+    private static Object defaultValue(Object proxy, Method method,
+            Object[] args) {
+        if (method.getName().equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        } else if (method.getName().equals("equals")) {
+            return proxy == args[0];
+        } else if (method.getReturnType() == int.class) {
+            return 0;
+        }
+
+        return null;
+    }
+
+    /**
+     * An event queue fed by the benchmark thread. Once disconnected, the
+     * queue reports the disconnection and then delivers a
+     * {@code VMDisconnectEvent}, as JDI does.
+     */
+    private static final class StandInQueue implements EventQueue {
+
+        /**
+         * Marks the disconnection in the queue.
+         */
+        private static final Object DISCONNECTED = new Object();
+
+        private final BlockingQueue<Object> eventSets =
+                new LinkedBlockingQueue<Object>();
+
+        /**
+         * The event set fed to the queue.
+         */
+        final EventSet eventSet = standInEventSet(Collections
+                .singletonList(EventTransformerBenchmark
+                        .newEvent(BreakpointEvent.class)));
+
+        void add(EventSet eventSet) {
+            eventSets.add(eventSet);
+        }
+
+        void disconnect() {
+            eventSets.add(DISCONNECTED);
+            eventSets.add(standInEventSet(Collections
+                    .singletonList(EventTransformerBenchmark
+                            .newEvent(VMDisconnectEvent.class))));
+        }
+
+        @Override
+        public EventSet remove() throws InterruptedException {
+            return next(eventSets.take());
+        }
+
+        @Override
+        public EventSet remove(long timeout) throws InterruptedException {
+            return next(eventSets.poll(timeout, TimeUnit.MILLISECONDS));
+        }
+
+        private static EventSet next(Object next) {
+            if (next == DISCONNECTED) {
+                throw new VMDisconnectedException();
+            }
+
+            return (EventSet) next;
+        }
+
+        @Override
+        public VirtualMachine virtualMachine() {
+            return null;
+        }
+    }
+}
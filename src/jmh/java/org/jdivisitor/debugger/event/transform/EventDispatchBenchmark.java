@@ -0,0 +1,136 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.event.transform;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jdivisitor.debugger.event.visitor.EmptyEventVisitor;
+import org.jdivisitor.debugger.event.visitor.EventVisitor;
+import com.sun.jdi.event.BreakpointEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.MethodEntryEvent;
+import com.sun.jdi.event.MethodExitEvent;
+
+/**
+ * Compares the allocation rate of visiting events through {@code Visitable}
+ * wrappers with direct dispatch through {@link EventType#dispatch}. Run with
+ * the GC profiler to see the bytes allocated per event:
+ *
+ * <pre>
+ * java -cp ... org.openjdk.jmh.Main EventDispatchBenchmark -prof gc
+ * </pre>
+ *
+ * <p>
+ * {@code gc.alloc.rate.norm} should be (close to) zero for {@code direct}.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDispatchBenchmark {
+
+    /**
+     * Counts the method entry, method exit and breakpoint events it visits.
+     */
+    private static final class CountingVisitor extends EmptyEventVisitor {
+
+        long count;
+
+        @Override
+        public void visit(BreakpointEvent event) {
+            count++;
+        }
+
+        @Override
+        public void visit(MethodEntryEvent event) {
+            count++;
+        }
+
+        @Override
+        public void visit(MethodExitEvent event) {
+            count++;
+        }
+    }
+
+    /**
+     * A method tracing mix of stand-in events.
+     */
+    private Event[] events;
+
+    /**
+     * Index of the next event to visit.
+     */
+    private int index;
+
+    private CountingVisitor visitor;
+
+    @Setup
+    public void setup() {
+        events = new Event[] {
+                EventTransformerBenchmark.newEvent(MethodEntryEvent.class),
+                EventTransformerBenchmark.newEvent(BreakpointEvent.class),
+                EventTransformerBenchmark.newEvent(MethodExitEvent.class) };
+        visitor = new CountingVisitor();
+    }
+
+    @Benchmark
+    public long wrapped() {
+        EventTransformer.transform(nextEvent()).accept(visitor);
+        return visitor.count;
+    }
+
+    @Benchmark
+    public long direct() {
+        Event event = nextEvent();
+        EventVisitor eventVisitor = visitor;
+
+        EventType.of(event).dispatch(event, eventVisitor);
+        return visitor.count;
+    }
+
+    /**
+     * Get the next event in the mix.
+     *
+     * @return A stand-in event
+     */
+    private Event nextEvent() {
+        Event event = events[index];
+
+        index = (index + 1) % events.length;
+
+        return event;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.event.transform;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jdivisitor.debugger.event.visitor.Visitable;
+import com.sun.jdi.event.Event;
+
+/**
+ * Compares the cached {@code EventType} lookup used by
+ * {@link EventTransformer} against the original reflective transformation
+ * (interface lookup, {@code HashMap} lookup and constructor invocation per
+ * event).
+ *
+ * <p>
+ * Both benchmarks transform the same mix of events, cycling through every
+ * {@code EventType} so that the call sites stay megamorphic as they would be
+ * on the event thread.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventTransformerBenchmark {
+
+    /**
+     * The original mapping of JDI events to visitable events.
+     */
+    private static final Map<Class<? extends Event>, Class<? extends Visitable>> reflectiveMap;
+
+    // Initialise the mapping the same way the original transformer did
+    static {
+        reflectiveMap = new HashMap<Class<? extends Event>, Class<? extends Visitable>>();
+
+        for (EventType eventType : EventType.values()) {
+            Class<? extends Event> eventClass = eventType.eventClass();
+            String visitableName = "org.jdivisitor.debugger.event.Visitable"
+                    + eventClass.getSimpleName();
+
+            try {
+                reflectiveMap.put(eventClass,
+                        Class.forName(visitableName).asSubclass(Visitable.class));
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * One stand-in event per event type.
+     */
+    private Event[] events;
+
+    /**
+     * Index of the next event to transform.
+     */
+    private int index;
+
+    @Setup
+    public void setup() {
+        EventType[] eventTypes = EventType.values();
+        events = new Event[eventTypes.length];
+
+        for (int i = 0; i < eventTypes.length; i++) {
+            events[i] = newEvent(eventTypes[i].eventClass());
+        }
+    }
+
+    @Benchmark
+    public Visitable cached() {
+        return EventTransformer.transform(nextEvent());
+    }
+
+    @Benchmark
+    public Visitable reflective() {
+        return reflectiveTransform(nextEvent());
+    }
+
+    /**
+     * Get the next event in the mix.
+     *
+     * @return A stand-in event
+     */
+    private Event nextEvent() {
+        Event event = events[index];
+
+        index = (index + 1) % events.length;
+
+        return event;
+    }
+
+    /**
+     * The original reflective transformation.
+     *
+     * @param event JDI event
+     * @return The corresponding visitable event
+     */
+    private static Visitable reflectiveTransform(Event event) {
+        Class<?> eventClass = event.getClass().getInterfaces()[0];
+        Class<? extends Visitable> visitableEventClass = reflectiveMap
+                .get(eventClass);
+
+        try {
+            Constructor<? extends Visitable> constructor = visitableEventClass
+                    .getConstructor(eventClass);
+            return constructor.newInstance(event);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Create a stand-in JDI event. The transformation never calls into the
+     * event, so every method simply returns {@code null}.
+     *
+     * @param eventClass JDI event interface to implement
+     * @return The stand-in event
+     */
+    public static Event newEvent(Class<? extends Event> eventClass) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                } else if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                }
+
+                return null;
+            }
+        };
+
+        return (Event) Proxy.newProxyInstance(eventClass.getClassLoader(),
+                new Class<?>[] { eventClass }, handler);
+    }
+}
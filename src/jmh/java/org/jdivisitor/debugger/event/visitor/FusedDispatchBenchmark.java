@@ -0,0 +1,237 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.event.visitor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.jdivisitor.debugger.event.transform.EventTransformerBenchmark;
+import org.jdivisitor.debugger.event.transform.EventType;
+import com.sun.jdi.event.BreakpointEvent;
+import com.sun.jdi.event.ClassPrepareEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.ExceptionEvent;
+import com.sun.jdi.event.MethodEntryEvent;
+import com.sun.jdi.event.MethodExitEvent;
+import com.sun.jdi.event.StepEvent;
+import com.sun.jdi.event.ThreadStartEvent;
+
+/**
+ * Compares a {@link FusedEventVisitor} against a plain composite that passes
+ * every event to every visitor.
+ *
+ * <p>
+ * Four analyses are combined, each handling one or two event types, and the
+ * same mix of events is dispatched to both: mostly method entries and exits,
+ * which only the profiler handles, plus breakpoints, steps and class
+ * prepares, which few or none of the analyses handle.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FusedDispatchBenchmark {
+
+    private static final Class<?>[] EVENT_MIX = { MethodEntryEvent.class,
+            MethodExitEvent.class, BreakpointEvent.class,
+            MethodEntryEvent.class, MethodExitEvent.class, StepEvent.class,
+            ClassPrepareEvent.class, BreakpointEvent.class };
+
+    private Event[] events;
+
+    private int index;
+
+    private EventVisitor naive;
+
+    private FusedEventVisitor fused;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        events = new Event[EVENT_MIX.length];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = EventTransformerBenchmark.newEvent(EVENT_MIX[i]
+                    .asSubclass(Event.class));
+        }
+
+        List<EventVisitor> visitors = Arrays.<EventVisitor> asList(
+                new Coverage(blackhole), new Profiler(blackhole),
+                new ExceptionLogger(blackhole), new ThreadLogger(blackhole));
+
+        naive = new NaiveCompositeVisitor(visitors);
+        fused = new FusedEventVisitor(visitors);
+    }
+
+    @Benchmark
+    public void naive() {
+        Event event = nextEvent();
+
+        EventType.of(event).dispatch(event, naive);
+    }
+
+    @Benchmark
+    public void fused() {
+        fused.dispatch(nextEvent());
+    }
+
+    /**
+     * Get the next event in the mix.
+     *
+     * @return A stand-in event
+     */
+    private Event nextEvent() {
+        Event event = events[index];
+
+        index = (index + 1) % events.length;
+
+        return event;
+    }
+
+    /**
+     * Passes every event to every visitor.
+     */
+    private static final class NaiveCompositeVisitor extends EmptyEventVisitor {
+
+        private final EventVisitor[] visitors;
+
+        NaiveCompositeVisitor(List<EventVisitor> visitors) {
+            this.visitors = visitors.toArray(new EventVisitor[visitors
+                    .size()]);
+        }
+
+        @Override
+        public void visit(BreakpointEvent event) {
+            for (EventVisitor visitor : visitors) {
+                visitor.visit(event);
+            }
+        }
+
+        @Override
+        public void visit(ClassPrepareEvent event) {
+            for (EventVisitor visitor : visitors) {
+                visitor.visit(event);
+            }
+        }
+
+        @Override
+        public void visit(MethodEntryEvent event) {
+            for (EventVisitor visitor : visitors) {
+                visitor.visit(event);
+            }
+        }
+
+        @Override
+        public void visit(MethodExitEvent event) {
+            for (EventVisitor visitor : visitors) {
+                visitor.visit(event);
+            }
+        }
+
+        @Override
+        public void visit(StepEvent event) {
+            for (EventVisitor visitor : visitors) {
+                visitor.visit(event);
+            }
+        }
+    }
+
+    private static final class Coverage extends EmptyEventVisitor {
+
+        private final Blackhole blackhole;
+
+        Coverage(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void visit(BreakpointEvent event) {
+            blackhole.consume(event);
+        }
+    }
+
+    private static final class Profiler extends EmptyEventVisitor {
+
+        private final Blackhole blackhole;
+
+        Profiler(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void visit(MethodEntryEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void visit(MethodExitEvent event) {
+            blackhole.consume(event);
+        }
+    }
+
+    private static final class ExceptionLogger extends EmptyEventVisitor {
+
+        private final Blackhole blackhole;
+
+        ExceptionLogger(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void visit(ExceptionEvent event) {
+            blackhole.consume(event);
+        }
+    }
+
+    private static final class ThreadLogger extends EmptyEventVisitor {
+
+        private final Blackhole blackhole;
+
+        ThreadLogger(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void visit(BreakpointEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void visit(ThreadStartEvent event) {
+            blackhole.consume(event);
+        }
+    }
+}
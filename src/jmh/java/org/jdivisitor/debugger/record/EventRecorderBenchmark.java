@@ -0,0 +1,101 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.jdi.event.BreakpointEvent;
+
+/**
+ * Measures the throughput of {@link EventRecorder} on a stream of breakpoint
+ * events spread over 1024 methods (in 64 classes) and 16 threads, once the
+ * dictionaries are warm.
+ *
+ * <p>
+ * The events and mirrors are {@code java.lang.reflect.Proxy} stand-ins, so
+ * the figures include a few proxy invocations per event; the cost of fetching
+ * mirror attributes from a real target VM is not measured.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventRecorderBenchmark {
+
+    private static final int METHODS = 1024;
+    private static final int CLASSES = 64;
+    private static final int THREADS = 16;
+
+    /**
+     * Stand-in events, one per method and thread combination in turn.
+     */
+    private BreakpointEvent[] events;
+
+    /**
+     * Index of the next event to record.
+     */
+    private int index;
+
+    private File file;
+    private EventRecorder recorder;
+
+    @Setup
+    public void setup() throws IOException {
+        events = Stubs.breakpoints(METHODS * 4, METHODS, CLASSES, THREADS);
+
+        file = File.createTempFile("jdivisitor", ".trace");
+        recorder = new EventRecorder(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        recorder.close();
+        System.out.printf("%n%d events, %.2f bytes/event%n",
+                recorder.recordedEvents(), (double) file.length()
+                        / recorder.recordedEvents());
+        file.delete();
+        TraceFormat.indexFile(file).delete();
+    }
+
+    @Benchmark
+    public void record() {
+        recorder.visit(events[index]);
+        index = (index + 1) % events.length;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sun.jdi.Location;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.event.BreakpointEvent;
+
+/**
+ * Stand-in JDI objects for the recording benchmarks.
+ *
+ * @author Adrian Herrera
+ */
+final class Stubs {
+
+    private Stubs() {
+    }
+
+    /**
+     * Create stand-in breakpoint events spread over a number of methods,
+     * classes and threads.
+     *
+     * @param count Number of events
+     * @param methods Number of methods
+     * @param classes Number of classes
+     * @param threads Number of threads
+     * @return The events, cycling through the methods and threads
+     */
+    static BreakpointEvent[] breakpoints(int count, int methods, int classes,
+            int threads) {
+        ReferenceType[] types = new ReferenceType[classes];
+        for (int i = 0; i < classes; i++) {
+            types[i] = stub(ReferenceType.class, "name", "bench.Class" + i,
+                    "signature", "Lbench/Class" + i + ";");
+        }
+
+        com.sun.jdi.Method[] mirrors = new com.sun.jdi.Method[methods];
+        for (int i = 0; i < methods; i++) {
+            mirrors[i] = stub(com.sun.jdi.Method.class, "declaringType",
+                    types[i % classes], "name", "method" + i, "signature",
+                    "()V");
+        }
+
+        ThreadReference[] threadMirrors = new ThreadReference[threads];
+        for (int i = 0; i < threads; i++) {
+            threadMirrors[i] = stub(ThreadReference.class, "uniqueID",
+                    100L + i, "name", "worker-" + i);
+        }
+
+        BreakpointEvent[] events = new BreakpointEvent[count];
+        for (int i = 0; i < count; i++) {
+            Location location = stub(Location.class, "method",
+                    mirrors[i % methods], "codeIndex", (long) (i % 97),
+                    "lineNumber", 10 + i % 41);
+
+            events[i] = stub(BreakpointEvent.class, "location", location,
+                    "thread", threadMirrors[i % threads]);
+        }
+
+        return events;
+    }
+
+    /**
+     * Create a stand-in JDI object that answers the given methods with fixed
+     * values.
+     *
+     * @param type JDI interface
+     * @param answers Method names and values, alternately
+     * @return The stand-in object
+     */
+    static <T> T stub(Class<T> type, Object... answers) {
+        final Map<String, Object> values = new HashMap<String, Object>();
+        for (int i = 0; i < answers.length; i += 2) {
+            values.put((String) answers[i], answers[i + 1]);
+        }
+
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                } else if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                }
+
+                return values.get(method.getName());
+            }
+        };
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(),
+                new Class<?>[] { type }, handler));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jdivisitor.debugger.event.visitor.EmptyEventVisitor;
+import com.sun.jdi.event.BreakpointEvent;
+
+/**
+ * Compares finding the events of one thread in a trace of a million
+ * breakpoint events by replaying the whole trace and filtering in the visitor,
+ * against querying the trace's {@link TraceIndex}. The threads run one after
+ * another, as they would in a trace of short-lived tasks, so the index can
+ * skip the blocks of the other threads.
+ *
+ * @author Adrian Herrera
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceQueryBenchmark {
+
+    private static final int EVENTS = 1000000;
+
+    private static final int THREADS = 16;
+
+    /**
+     * Unique ID of the thread to find (see {@link Stubs}).
+     */
+    private static final long THREAD_ID = 105;
+
+    private File file;
+
+    private TraceIndex index;
+
+    private TraceQuery query;
+
+    private long found;
+
+    private final EmptyEventVisitor filter = new EmptyEventVisitor() {
+        @Override
+        public void visit(BreakpointEvent event) {
+            if (event.thread().uniqueID() == THREAD_ID) {
+                found += event.location().lineNumber();
+            }
+        }
+    };
+
+    private final EmptyEventVisitor visitor = new EmptyEventVisitor() {
+        @Override
+        public void visit(BreakpointEvent event) {
+            found += event.location().lineNumber();
+        }
+    };
+
+    @Setup
+    public void setup() throws IOException {
+        BreakpointEvent[] events = Stubs.breakpoints(4096, 1024, 64, THREADS);
+
+        file = File.createTempFile("jdivisitor", ".trace");
+        try (EventRecorder recorder = new EventRecorder(file)) {
+            int perThread = EVENTS / THREADS;
+
+            for (int thread = 0; thread < THREADS; thread++) {
+                for (int i = 0; i < perThread; i++) {
+                    recorder.visit(events[(thread + i * THREADS)
+                            % events.length]);
+                }
+            }
+        }
+
+        index = new TraceIndex(file);
+        query = new TraceQuery();
+        query.addThreadFilter(THREAD_ID);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        TraceFormat.indexFile(file).delete();
+    }
+
+    @Benchmark
+    public long replayAndFilter() throws IOException {
+        new TraceReplayer(file).replay(filter);
+        return found;
+    }
+
+    @Benchmark
+    public long query() throws IOException {
+        index.query(query, visitor);
+        return found;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.jdivisitor.debugger.event.visitor.EmptyEventVisitor;
+import com.sun.jdi.event.BreakpointEvent;
+
+/**
+ * Measures how long {@link TraceReplayer} takes to replay a trace of a million
+ * breakpoint events (over 1024 methods and 16 threads) through a visitor that
+ * reads each event's location, on one or more replay threads.
+ *
+ * @author Adrian Herrera
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceReplayBenchmark {
+
+    private static final int EVENTS = 1000000;
+
+    @Param({ "1", "4" })
+    public int parallelism;
+
+    private File file;
+
+    private final AtomicLong lines = new AtomicLong();
+
+    private final EmptyEventVisitor visitor = new EmptyEventVisitor() {
+        @Override
+        public void visit(BreakpointEvent event) {
+            lines.addAndGet(event.location().lineNumber());
+        }
+    };
+
+    @Setup
+    public void setup() throws IOException {
+        BreakpointEvent[] events = Stubs.breakpoints(4096, 1024, 64, 16);
+
+        file = File.createTempFile("jdivisitor", ".trace");
+        try (EventRecorder recorder = new EventRecorder(file)) {
+            for (int i = 0; i < EVENTS; i++) {
+                recorder.visit(events[i % events.length]);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        TraceFormat.indexFile(file).delete();
+    }
+
+    @Benchmark
+    public long replay() throws IOException, InterruptedException {
+        return new TraceReplayer(file).replay(visitor, parallelism);
+    }
+}
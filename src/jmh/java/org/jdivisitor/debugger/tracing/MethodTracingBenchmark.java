@@ -0,0 +1,181 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.tracing;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdivisitor.debugger.Debugger;
+import org.jdivisitor.debugger.event.visitor.EmptyEventVisitor;
+import org.jdivisitor.debugger.launcher.LocalVMLauncher;
+import org.jdivisitor.debugger.request.EventRequestor;
+import com.sun.jdi.Method;
+import com.sun.jdi.VirtualMachine;
+import com.sun.jdi.event.BreakpointEvent;
+import com.sun.jdi.event.MethodEntryEvent;
+import com.sun.jdi.event.MethodExitEvent;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+import com.sun.jdi.request.MethodEntryRequest;
+import com.sun.jdi.request.MethodExitRequest;
+
+/**
+ * Compares tracing the {@link TracingDebuggee} with plain
+ * {@code MethodEntryRequest}/{@code MethodExitRequest}s against tracing it
+ * with a {@link MethodTracer}. This is an end-to-end benchmark: each run
+ * launches a new debuggee and measures the time until it terminates.
+ *
+ * <pre>
+ * java -cp ... org.jdivisitor.debugger.tracing.MethodTracingBenchmark [calls] [runs]
+ * </pre>
+ *
+ * @author Adrian Herrera
+ */
+public final class MethodTracingBenchmark {
+
+    private static final String DEBUGGEE = TracingDebuggee.class.getName();
+
+    private MethodTracingBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0])
+                : TracingDebuggee.DEFAULT_CALLS;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        for (int run = 0; run < runs; run++) {
+            report("untraced", calls, untraced(calls));
+            report("method entry/exit requests", calls, requests(calls));
+            report("method tracer", calls, tracer(calls));
+        }
+    }
+
+    private static void report(String name, int calls, long[] result) {
+        System.out.printf("%-28s %6d ms, %d events for %d calls%n", name,
+                TimeUnit.NANOSECONDS.toMillis(result[0]), result[1], calls);
+    }
+
+    /**
+     * Run the debuggee without tracing.
+     *
+     * @param calls Number of calls to the traced method
+     * @return The elapsed time in nanoseconds, and the number of events
+     */
+    private static long[] untraced(int calls) throws Exception {
+        return run(launch(calls), new EmptyEventVisitor() {
+        }, new AtomicLong());
+    }
+
+    /**
+     * Trace the debuggee with method entry and exit requests.
+     *
+     * @param calls Number of calls to the traced method
+     * @return The elapsed time in nanoseconds, and the number of events
+     */
+    private static long[] requests(int calls) throws Exception {
+        Debugger debugger = launch(calls);
+        final AtomicLong events = new AtomicLong();
+
+        debugger.requestEvents(new EventRequestor() {
+            @Override
+            public void requestEvents(EventRequestManager erm) {
+                MethodEntryRequest entry = erm.createMethodEntryRequest();
+                entry.addClassFilter(DEBUGGEE);
+                entry.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
+                entry.enable();
+
+                MethodExitRequest exit = erm.createMethodExitRequest();
+                exit.addClassFilter(DEBUGGEE);
+                exit.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
+                exit.enable();
+            }
+        });
+
+        return run(debugger, new EmptyEventVisitor() {
+            @Override
+            public void visit(MethodEntryEvent event) {
+                events.incrementAndGet();
+            }
+
+            @Override
+            public void visit(MethodExitEvent event) {
+                events.incrementAndGet();
+            }
+        }, events);
+    }
+
+    /**
+     * Trace the debuggee with a method tracer.
+     *
+     * @param calls Number of calls to the traced method
+     * @return The elapsed time in nanoseconds, and the number of events
+     */
+    private static long[] tracer(int calls) throws Exception {
+        Debugger debugger = launch(calls);
+        final AtomicLong events = new AtomicLong();
+
+        MethodTracer tracer = new MethodTracer(new MethodTraceVisitor() {
+            @Override
+            public void methodEntered(Method method, BreakpointEvent event) {
+                events.incrementAndGet();
+            }
+
+            @Override
+            public void methodExited(Method method, BreakpointEvent event) {
+                events.incrementAndGet();
+            }
+        });
+        tracer.addClassFilter(DEBUGGEE);
+        debugger.requestEvents(tracer);
+
+        return run(debugger, new EmptyEventVisitor() {
+        }, events);
+    }
+
+    private static Debugger launch(int calls) throws Exception {
+        String options = "-cp " + System.getProperty("java.class.path");
+        VirtualMachine vm = new LocalVMLauncher(DEBUGGEE + " " + calls,
+                options, System.out, NullOutputStream.INSTANCE).connect();
+
+        return new Debugger(vm);
+    }
+
+    private static long[] run(Debugger debugger, EmptyEventVisitor visitor,
+            AtomicLong events) {
+        long start = System.nanoTime();
+
+        debugger.run(visitor);
+
+        return new long[] { System.nanoTime() - start, events.get() };
+    }
+
+    /**
+     * Discards the debuggee's {@code stderr}.
+     */
+    private static final class NullOutputStream extends OutputStream {
+
+        static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) {
+        }
+    }
+}
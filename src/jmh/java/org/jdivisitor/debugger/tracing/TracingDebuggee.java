@@ -0,0 +1,87 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.tracing;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Debuggee for {@link MethodTracingBenchmark}. Calls a small traced method in
+ * a loop, with most of the work done in untraced (mostly JDK) code, as is
+ * typical when tracing a few application methods.
+ *
+ * @author Adrian Herrera
+ */
+public class TracingDebuggee {
+
+    /**
+     * Default number of calls to the traced method.
+     */
+    static final int DEFAULT_CALLS = 20000;
+
+    public static void main(String[] args) {
+        int calls = args.length > 0 ? Integer.parseInt(args[0])
+                : DEFAULT_CALLS;
+        long start = System.nanoTime();
+        long sum = 0;
+
+        for (int i = 0; i < calls; i++) {
+            sum += traced(i);
+        }
+
+        System.out.printf("%d calls in %d ms (%d)%n", calls,
+                (System.nanoTime() - start) / 1000000, sum);
+    }
+
+    /**
+     * The traced method.
+     *
+     * @param i Loop counter
+     * @return Some result
+     */
+    static int traced(int i) {
+        if (i % 2 == 0) {
+            return Workload.run(i);
+        }
+        return Workload.run(i + 1) - 1;
+    }
+
+    /**
+     * Untraced work.
+     */
+    static final class Workload {
+
+        private Workload() {
+        }
+
+        static int run(int seed) {
+            Map<String, Integer> map = new HashMap<String, Integer>();
+            StringBuilder sb = new StringBuilder();
+
+            for (int i = 0; i < 16; i++) {
+                sb.setLength(0);
+                sb.append("key").append(seed + i);
+                map.put(sb.toString(), i);
+            }
+
+            return map.size() + sb.length();
+        }
+    }
+}
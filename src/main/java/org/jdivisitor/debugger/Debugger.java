@@ -19,11 +19,25 @@
 
 package org.jdivisitor.debugger;
 
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.commons.lang3.Validate;
 
+import org.jdivisitor.debugger.cache.MirrorCache;
+import org.jdivisitor.debugger.cache.ThreadRegistry;
 import org.jdivisitor.debugger.request.EventRequestor;
+import org.jdivisitor.debugger.event.EventInterceptor;
+import org.jdivisitor.debugger.event.ResumeListener;
+import org.jdivisitor.debugger.event.snapshot.SnapshotAttribute;
+import org.jdivisitor.debugger.event.snapshot.SnapshotVisitor;
 import org.jdivisitor.debugger.event.visitor.EventVisitor;
+import org.jdivisitor.debugger.stack.StackCapture;
 import com.sun.jdi.VirtualMachine;
+import com.sun.jdi.event.Event;
 
 /**
  * The front end debugger that interacts with the back end over JDI. A typical
@@ -34,7 +48,15 @@ import com.sun.jdi.VirtualMachine;
  * <li>Call {@code requestEvents} to request specific events that should be sent
  * to the debugger
  * <li>Call {@code run} to start the debugger. An optional {@code EventVisitor}
- * object can be used to interact with the debugger
+ * object can be used to interact with the debugger, and an optional
+ * {@code PipelineConfig} can be used to run the visitor on separate consumer
+ * threads, or several visitors can be run side by side with a
+ * {@code FanOutConfig}. Alternatively, a {@code SnapshotVisitor} can be used
+ * to handle snapshots of the events after their event sets have been resumed
+ * <li>Alternatively, call {@code start} to process the events in the
+ * background, and use the returned {@code DebuggerSession} to wait for,
+ * cancel or time out the run, or call {@code publisher} to subscribe to the
+ * events as a reactive stream
  * <ul>
  *
  * @author Jason Fager
@@ -48,12 +70,65 @@ public final class Debugger {
     private final VirtualMachine vm;
 
     /**
-     * Create a new debugger for the given virtual machine.
+     * The kind of thread the event loop runs on.
+     */
+    private final ThreadMode threadMode;
+
+    /**
+     * Event interceptors, in the order they are called.
+     */
+    private final List<EventInterceptor> interceptors =
+            new CopyOnWriteArrayList<EventInterceptor>();
+
+    /**
+     * Listeners notified before an event set is resumed.
+     */
+    private final List<ResumeListener> resumeListeners =
+            new CopyOnWriteArrayList<ResumeListener>();
+
+    /**
+     * Dispatch metrics, accumulated over every run.
+     */
+    private final DispatchMetrics metrics = new DispatchMetrics();
+
+    /**
+     * Mirror metadata cache, created on first use.
+     */
+    private MirrorCache mirrorCache;
+
+    /**
+     * Live thread registry, created on first use.
+     */
+    private ThreadRegistry threadRegistry;
+
+    /**
+     * Stack capture service, created on first use.
+     */
+    private StackCapture stackCapture;
+
+    /**
+     * Create a new debugger for the given virtual machine. The event loop
+     * runs on a platform thread.
      *
      * @param vm Virtual machine
      */
     public Debugger(VirtualMachine vm) {
+        this(vm, ThreadMode.PLATFORM);
+    }
+
+    /**
+     * Create a new debugger for the given virtual machine, whose event loop
+     * runs on the given kind of thread.
+     *
+     * @param vm Virtual machine
+     * @param threadMode The kind of thread the event loop runs on (must be
+     *        supported by the running JDK)
+     */
+    public Debugger(VirtualMachine vm, ThreadMode threadMode) {
         this.vm = Validate.notNull(vm);
+        this.threadMode = Validate.notNull(threadMode);
+        Validate.isTrue(threadMode.isSupported(),
+                "Thread mode %s is not supported by this JDK", threadMode);
     }
 
     /**
@@ -66,12 +141,133 @@ public final class Debugger {
     }
 
     /**
-     * Request JDI events to be sent to the debugger.
+     * Get the kind of thread the debugger's event loop runs on.
+     *
+     * @return The thread mode
+     */
+    public ThreadMode threadMode() {
+        return threadMode;
+    }
+
+    /**
+     * Get the debugger's dispatch metrics: event counts, and the latencies of
+     * the event thread and event set handling, accumulated over every run.
+     *
+     * @return The dispatch metrics
+     */
+    public DispatchMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the debugger's mirror metadata cache. The cache is created the first
+     * time it is asked for, at which point its class unload request is
+     * created and it is added as an interceptor, so that it is invalidated as
+     * classes are unloaded.
+     *
+     * @return The mirror metadata cache
+     */
+    public synchronized MirrorCache mirrorCache() {
+        if (mirrorCache == null) {
+            mirrorCache = new MirrorCache();
+            requestEvents(mirrorCache);
+        }
+
+        return mirrorCache;
+    }
+
+    /**
+     * Get the debugger's live thread registry. The registry is created the
+     * first time it is asked for, at which point its thread start and death
+     * requests are created, it is seeded with the running threads, and it is
+     * added as an interceptor so that it is kept current.
+     *
+     * @return The live thread registry
+     */
+    public synchronized ThreadRegistry threadRegistry() {
+        if (threadRegistry == null) {
+            threadRegistry = new ThreadRegistry();
+            requestEvents(threadRegistry);
+        }
+
+        return threadRegistry;
+    }
+
+    /**
+     * Get the debugger's stack capture service. The service is created the
+     * first time it is asked for, using the debugger's mirror metadata cache,
+     * and is added as a resume listener so that captured stacks are dropped
+     * when their threads are resumed.
+     *
+     * @return The stack capture service
+     */
+    public synchronized StackCapture stackCapture() {
+        if (stackCapture == null) {
+            stackCapture = new StackCapture(mirrorCache());
+            addResumeListener(stackCapture);
+        }
+
+        return stackCapture;
+    }
+
+    /**
+     * Request JDI events to be sent to the debugger. If the event requestor is
+     * also an {@code EventInterceptor}, it is added as an interceptor.
      *
      * @param eventRequestor Requests JDI events
      */
     public void requestEvents(EventRequestor eventRequestor) {
         eventRequestor.requestEvents(vm.eventRequestManager());
+
+        if (eventRequestor instanceof EventInterceptor) {
+            addInterceptor((EventInterceptor) eventRequestor);
+        }
+    }
+
+    /**
+     * Add an event interceptor. Interceptors are called in the order they
+     * were added, and may be added while the debugger is running.
+     *
+     * @param interceptor Event interceptor (cannot be {@code null})
+     */
+    public void addInterceptor(EventInterceptor interceptor) {
+        Validate.notNull(interceptor);
+
+        if (!interceptors.contains(interceptor)) {
+            interceptors.add(interceptor);
+        }
+    }
+
+    /**
+     * Remove an event interceptor.
+     *
+     * @param interceptor Event interceptor
+     */
+    public void removeInterceptor(EventInterceptor interceptor) {
+        interceptors.remove(interceptor);
+    }
+
+    /**
+     * Add a resume listener. Listeners are called in the order they were
+     * added, and may be added while the debugger is running.
+     *
+     * @param listener Resume listener (cannot be {@code null})
+     */
+    public void addResumeListener(ResumeListener listener) {
+        Validate.notNull(listener);
+
+        if (!resumeListeners.contains(listener)) {
+            resumeListeners.add(listener);
+        }
+    }
+
+    /**
+     * Remove a resume listener.
+     *
+     * @param listener Resume listener
+     */
+    public void removeResumeListener(ResumeListener listener) {
+        resumeListeners.remove(listener);
     }
 
     /**
@@ -109,13 +305,294 @@ public final class Debugger {
      * @param milliseconds Timeout in milliseconds
      */
     public void run(EventVisitor visitor, long milliseconds) {
-        EventThread eventThread = new EventThread(vm, visitor);
+        runSession(new VisitorEventSetHandler(visitor), milliseconds);
+    }
+
+    /**
+     * Run the underlying virtual machine with the given event visitor and
+     * event pipeline, and no timeout.
+     *
+     * @param visitor Event visitor to handle events
+     * @param pipeline Event pipeline configuration
+     * @see PipelineConfig
+     */
+    public void run(EventVisitor visitor, PipelineConfig pipeline) {
+        run(visitor, pipeline, 0);
+    }
+
+    /**
+     * Run the underlying virtual machine with the given event visitor and
+     * event pipeline, and a given timeout (in milliseconds).
+     *
+     * <p>
+     * The event thread only drains the event queue; the visitor runs on the
+     * pipeline's consumer threads.
+     * </p>
+     *
+     * @param visitor Event visitor to handle events
+     * @param pipeline Event pipeline configuration
+     * @param milliseconds Timeout in milliseconds
+     * @see PipelineConfig
+     */
+    public void run(EventVisitor visitor, PipelineConfig pipeline,
+            long milliseconds) {
+        EventSetHandler handler = new PipelinedEventSetHandler(
+                new VisitorEventSetHandler(visitor), pipeline);
+
+        runSession(handler, milliseconds);
+    }
+
+    /**
+     * Run the underlying virtual machine with several event visitors, each
+     * on its own consumer thread, and no timeout.
+     *
+     * @param visitors Event visitors to handle events (cannot be empty)
+     * @param fanOut Fan-out configuration
+     * @see FanOutConfig
+     */
+    public void run(List<EventVisitor> visitors, FanOutConfig fanOut) {
+        run(visitors, fanOut, 0);
+    }
+
+    /**
+     * Run the underlying virtual machine with several event visitors, each
+     * on its own consumer thread, and a given timeout (in milliseconds).
+     *
+     * <p>
+     * The event thread hands every event set to each visitor through the
+     * visitor's own ring buffer, so a slow visitor does not hold up the
+     * others unless the {@link OverflowPolicy} says so.
+     * </p>
+     *
+     * @param visitors Event visitors to handle events (cannot be empty)
+     * @param fanOut Fan-out configuration
+     * @param milliseconds Timeout in milliseconds
+     * @see FanOutConfig
+     */
+    public void run(List<EventVisitor> visitors, FanOutConfig fanOut,
+            long milliseconds) {
+        runSession(fanOutHandler(visitors, fanOut), milliseconds);
+    }
+
+    /**
+     * Run the underlying virtual machine in early-resume mode with the given
+     * snapshot visitor and no timeout.
+     *
+     * @param visitor Snapshot visitor to handle event snapshots
+     * @param attributes Event attributes to capture in each snapshot
+     * @see #run(SnapshotVisitor, Set, long)
+     */
+    public void run(SnapshotVisitor visitor, Set<SnapshotAttribute> attributes) {
+        run(visitor, attributes, 0);
+    }
+
+    /**
+     * Run the underlying virtual machine in early-resume mode with the given
+     * snapshot visitor and a given timeout (in milliseconds).
+     *
+     * <p>
+     * The declared attributes of every event in an event set are captured in
+     * immutable snapshots, the event set is resumed straight away, and only
+     * then are the snapshots visited. This keeps the debuggee running while
+     * the visitor works, at the cost of the visitor no longer being able to
+     * inspect the suspended state.
+     * </p>
+     *
+     * @param visitor Snapshot visitor to handle event snapshots
+     * @param attributes Event attributes to capture in each snapshot
+     * @param milliseconds Timeout in milliseconds
+     */
+    public void run(SnapshotVisitor visitor,
+            Set<SnapshotAttribute> attributes, long milliseconds) {
+        EventSetHandler handler = new SnapshotEventSetHandler(visitor,
+                attributes);
+
+        runSession(handler, milliseconds);
+    }
+
+    /**
+     * Start processing the underlying virtual machine's events with the given
+     * event visitor, with no deadline. The call returns straight away.
+     *
+     * @param visitor Event visitor to handle events
+     * @return The session
+     */
+    public DebuggerSession start(EventVisitor visitor) {
+        return start(visitor, 0);
+    }
+
+    /**
+     * Start processing the underlying virtual machine's events with the given
+     * event visitor, disposing of the virtual machine if the session is still
+     * running after a given time (in milliseconds). The call returns straight
+     * away.
+     *
+     * @param visitor Event visitor to handle events
+     * @param milliseconds Deadline in milliseconds, or 0 for no deadline
+     * @return The session
+     */
+    public DebuggerSession start(EventVisitor visitor, long milliseconds) {
+        return startSession(new VisitorEventSetHandler(visitor), milliseconds);
+    }
+
+    /**
+     * Start processing the underlying virtual machine's events with the given
+     * event visitor and event pipeline, and a deadline (in milliseconds). The
+     * call returns straight away.
+     *
+     * @param visitor Event visitor to handle events
+     * @param pipeline Event pipeline configuration
+     * @param milliseconds Deadline in milliseconds, or 0 for no deadline
+     * @return The session
+     * @see #run(EventVisitor, PipelineConfig, long)
+     */
+    public DebuggerSession start(EventVisitor visitor, PipelineConfig pipeline,
+            long milliseconds) {
+        EventSetHandler handler = new PipelinedEventSetHandler(
+                new VisitorEventSetHandler(visitor), pipeline);
+
+        return startSession(handler, milliseconds);
+    }
+
+    /**
+     * Start processing the underlying virtual machine's events with several
+     * event visitors, each on its own consumer thread, and a deadline (in
+     * milliseconds). The call returns straight away.
+     *
+     * @param visitors Event visitors to handle events (cannot be empty)
+     * @param fanOut Fan-out configuration
+     * @param milliseconds Deadline in milliseconds, or 0 for no deadline
+     * @return The session
+     * @see #run(List, FanOutConfig, long)
+     */
+    public DebuggerSession start(List<EventVisitor> visitors,
+            FanOutConfig fanOut, long milliseconds) {
+        return startSession(fanOutHandler(visitors, fanOut), milliseconds);
+    }
+
+    /**
+     * Start processing the underlying virtual machine's events in
+     * early-resume mode with the given snapshot visitor, and a deadline (in
+     * milliseconds). The call returns straight away.
+     *
+     * @param visitor Snapshot visitor to handle event snapshots
+     * @param attributes Event attributes to capture in each snapshot
+     * @param milliseconds Deadline in milliseconds, or 0 for no deadline
+     * @return The session
+     * @see #run(SnapshotVisitor, Set, long)
+     */
+    public DebuggerSession start(SnapshotVisitor visitor,
+            Set<SnapshotAttribute> attributes, long milliseconds) {
+        EventSetHandler handler = new SnapshotEventSetHandler(visitor,
+                attributes);
+
+        return startSession(handler, milliseconds);
+    }
+
+    /**
+     * Get a publisher of the underlying virtual machine's events, for use in
+     * place of an event visitor. The debugger starts processing events when
+     * a subscriber subscribes, and only one subscriber may subscribe.
+     *
+     * <p>
+     * Events are delivered on the event thread while their event set is
+     * suspended, and the set is resumed once all of its events have been
+     * delivered. The event thread waits for the subscriber to request each
+     * event and only then removes the next event set from the event queue,
+     * so a slow subscriber holds the debuggee back rather than events being
+     * buffered. Cancelling the subscription disposes of the virtual machine.
+     * The subscriber is completed once the virtual machine disconnects.
+     * </p>
+     *
+     * @return The event publisher
+     */
+    public Flow.Publisher<Event> publisher() {
+        return new EventPublisher(this);
+    }
+
+    /**
+     * Create a handler that fans event sets out to several visitors.
+     *
+     * @param visitors Event visitors
+     * @param fanOut Fan-out configuration
+     * @return The handler
+     */
+    private static EventSetHandler fanOutHandler(List<EventVisitor> visitors,
+            FanOutConfig fanOut) {
+        EventSetHandler[] delegates = new EventSetHandler[visitors.size()];
+
+        for (int i = 0; i < delegates.length; i++) {
+            delegates[i] = new VisitorEventSetHandler(Validate
+                    .notNull(visitors.get(i)));
+        }
+
+        return new FanOutEventSetHandler(delegates, fanOut);
+    }
+
+    /**
+     * Start a session with the given handler and wait for it to finish, or
+     * for the timeout to elapse. Unlike a session's deadline, the timeout
+     * leaves the session running. An exception thrown by the visitor is
+     * rethrown.
+     *
+     * @param handler Event set handler
+     * @param milliseconds Timeout in milliseconds
+     */
+    private void runSession(EventSetHandler handler, long milliseconds) {
+        DebuggerSession session = startSession(handler, 0);
 
-        eventThread.start();
         try {
-            eventThread.join(milliseconds);
+            if (milliseconds > 0) {
+                session.await(milliseconds, TimeUnit.MILLISECONDS);
+            } else {
+                session.await();
+            }
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
+
+        Throwable failure = session.failure();
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+
+    /**
+     * Start a session with the given handler on a new event thread.
+     *
+     * @param handler Event set handler
+     * @param milliseconds Deadline in milliseconds, or 0 for no deadline
+     * @return The session
+     */
+    DebuggerSession startSession(EventSetHandler handler,
+            long milliseconds) {
+        final DebuggerSession session = new DebuggerSession(this,
+                newEventLoop(handler), milliseconds);
+
+        Thread eventThread = threadMode.newThread("jdi-event-thread",
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        session.run();
+                    }
+                });
+        eventThread.start();
+
+        return session;
+    }
+
+    /**
+     * Create an event loop that dispatches the debugger's events to a handler
+     * through the debugger's interceptors, resume listeners and metrics.
+     *
+     * @param handler Event set handler
+     * @return The event loop, not yet started
+     */
+    EventLoop newEventLoop(EventSetHandler handler) {
+        handler.setResumeListeners(resumeListeners);
+
+        return new EventLoop(vm, handler, interceptors, metrics);
     }
 }
@@ -0,0 +1,256 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.visitor.EventVisitor;
+
+/**
+ * Processes the events of many debuggers on a shared, bounded pool of worker
+ * threads, instead of one event thread (and one blocked caller) per virtual
+ * machine.
+ *
+ * <p>
+ * Sessions are scheduled round-robin: a worker takes the session at the head
+ * of the ready queue, handles up to a quantum of its event sets and puts it
+ * back at the tail, so a busy virtual machine cannot starve the others. A
+ * session is only ever processed by one worker at a time, so the events of a
+ * virtual machine are visited in order and its visitor is never called
+ * concurrently. Sessions are isolated: an exception thrown by one session's
+ * visitor ends that session (see {@link DebuggerSession}) and nothing else.
+ * </p>
+ *
+ * <p>
+ * JDI event queues cannot be polled without blocking, so a worker waits up to
+ * the poll time for an idle session's next event set before moving on. With
+ * many idle sessions per worker, an event may therefore wait up to the
+ * number of sessions per worker times the poll time before it is handled.
+ * </p>
+ *
+ * <pre>
+ * DebuggerHost host = new DebuggerHost(4);
+ * DebuggerSession session = host.submit(debugger, visitor);
+ * ...
+ * session.await();
+ * host.close();
+ * </pre>
+ *
+ * @author Adrian Herrera
+ */
+public final class DebuggerHost implements Closeable {
+
+    /**
+     * Default maximum number of event sets handled per session turn.
+     */
+    public static final int DEFAULT_QUANTUM = 16;
+
+    /**
+     * Default time to wait for an idle session's next event set.
+     */
+    public static final long DEFAULT_POLL_MILLIS = 1;
+
+    /**
+     * How long (in milliseconds) an idle worker waits for a session before
+     * checking whether the host has been closed.
+     */
+    private static final long IDLE_MILLIS = 10;
+
+    private final int quantum;
+
+    private final long pollMillis;
+
+    /**
+     * Sessions waiting for a worker, in turn order.
+     */
+    private final BlockingQueue<DebuggerSession> ready =
+            new LinkedBlockingQueue<DebuggerSession>();
+
+    /**
+     * Sessions that have not ended.
+     */
+    private final Set<DebuggerSession> sessions = Collections
+            .newSetFromMap(new ConcurrentHashMap<DebuggerSession, Boolean>());
+
+    private final Thread[] workers;
+
+    private volatile boolean closed;
+
+    /**
+     * Create a new host with the default quantum and poll time.
+     *
+     * @param workers Number of worker threads (must be positive)
+     */
+    public DebuggerHost(int workers) {
+        this(workers, DEFAULT_QUANTUM, DEFAULT_POLL_MILLIS);
+    }
+
+    /**
+     * Create a new host and start its worker threads.
+     *
+     * @param workers Number of worker threads (must be positive)
+     * @param quantum Maximum number of event sets handled per session turn
+     *        (must be positive)
+     * @param pollMillis Time to wait for an idle session's next event set, in
+     *        milliseconds (must be positive)
+     */
+    public DebuggerHost(int workers, int quantum, long pollMillis) {
+        Validate.isTrue(workers > 0, "Number of workers must be positive");
+        Validate.isTrue(quantum > 0, "Quantum must be positive");
+        Validate.isTrue(pollMillis > 0, "Poll time must be positive");
+
+        this.quantum = quantum;
+        this.pollMillis = pollMillis;
+
+        this.workers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            this.workers[i] = new Thread(new Worker(), "jdi-host-worker-" + i);
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    /**
+     * Process a debugger's events, ignoring them.
+     *
+     * @param debugger Debugger whose events have been requested
+     * @return The session
+     */
+    public DebuggerSession submit(Debugger debugger) {
+        return submit(debugger, null);
+    }
+
+    /**
+     * Process a debugger's events with a visitor. The call returns straight
+     * away. The debugger must not also be run on its own.
+     *
+     * @param debugger Debugger whose events have been requested
+     * @param visitor Event visitor (may be {@code null})
+     * @return The session
+     */
+    public DebuggerSession submit(Debugger debugger, EventVisitor visitor) {
+        return submit(debugger, visitor, 0);
+    }
+
+    /**
+     * Process a debugger's events with a visitor, cancelling the session if
+     * it is still running after a given time. The deadline is checked at the
+     * start of each of the session's turns. The call returns straight away.
+     * The debugger must not also be run on its own.
+     *
+     * @param debugger Debugger whose events have been requested
+     * @param visitor Event visitor (may be {@code null})
+     * @param milliseconds Deadline in milliseconds, or 0 for no deadline
+     * @return The session
+     */
+    public DebuggerSession submit(Debugger debugger, EventVisitor visitor,
+            long milliseconds) {
+        Validate.notNull(debugger);
+        Validate.validState(!closed, "Host is closed");
+
+        DebuggerSession session = new DebuggerSession(debugger,
+                debugger.newEventLoop(new VisitorEventSetHandler(visitor)),
+                milliseconds);
+
+        sessions.add(session);
+        ready.add(session);
+
+        return session;
+    }
+
+    /**
+     * Get the sessions that have not ended.
+     *
+     * @return The live sessions
+     */
+    public List<DebuggerSession> sessions() {
+        return new ArrayList<DebuggerSession>(sessions);
+    }
+
+    /**
+     * Stop the worker threads and cancel the sessions that have not ended,
+     * disposing of their virtual machines. Closing a host more than once has
+     * no further effect.
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        for (DebuggerSession session : sessions) {
+            session.abandon();
+        }
+        sessions.clear();
+        ready.clear();
+    }
+
+    /**
+     * Takes turns at the sessions until the host is closed.
+     */
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    DebuggerSession session = ready.poll(IDLE_MILLIS,
+                            TimeUnit.MILLISECONDS);
+                    if (session == null) {
+                        continue;
+                    }
+
+                    boolean running = true;
+                    try {
+                        running = session.runSlice(quantum, pollMillis);
+                    } finally {
+                        if (running) {
+                            ready.add(session);
+                        } else {
+                            sessions.remove(session);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Closed
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import org.apache.commons.lang3.Validate;
+
+import com.sun.jdi.VMDisconnectedException;
+import com.sun.jdi.VirtualMachine;
+
+/**
+ * Handle to a debugger whose events are processed asynchronously, either on
+ * an event thread of its own (see {@link Debugger#start(EventVisitor, long)})
+ * or by a {@link DebuggerHost}.
+ *
+ * <p>
+ * The session ends when the virtual machine disconnects, when it is
+ * cancelled, when its deadline passes, or when its visitor throws an
+ * exception. In all but the first case the virtual machine is disposed of so
+ * that it is not left suspended. Once the session has ended it no longer
+ * holds on to its event loop, so the thread and any buffers used to process
+ * its events are released.
+ * </p>
+ *
+ * <p>
+ * The outcome is also available as a {@link CompletableFuture}, which
+ * completes normally once the virtual machine has disconnected, is cancelled
+ * if the session was cancelled, completes with a {@link TimeoutException} if
+ * the deadline passed, and otherwise completes with the visitor's exception.
+ * Cancelling the future cancels the session.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public final class DebuggerSession {
+
+    private final Debugger debugger;
+
+    private final VirtualMachine vm;
+
+    /**
+     * The session's event loop, or {@code null} once the session has ended.
+     */
+    private volatile EventLoop loop;
+
+    /**
+     * When the session expires, as a {@code System.nanoTime()} value.
+     */
+    private final long deadline;
+
+    private final boolean hasDeadline;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private final CompletableFuture<Void> completion =
+            new CompletableFuture<Void>();
+
+    /**
+     * The exception thrown while processing the session's events, if any.
+     */
+    private volatile Throwable failure;
+
+    private volatile boolean cancelled;
+
+    private volatile boolean expired;
+
+    /**
+     * Create a new session and start its event loop.
+     *
+     * @param debugger Debugger
+     * @param loop The debugger's event loop
+     * @param milliseconds How long the session may run before it is
+     *        cancelled, in milliseconds, or 0 for no deadline
+     */
+    DebuggerSession(Debugger debugger, EventLoop loop, long milliseconds) {
+        Validate.isTrue(milliseconds >= 0, "Deadline cannot be negative");
+
+        this.debugger = debugger;
+        this.vm = loop.vm();
+        this.loop = loop;
+        this.deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(milliseconds);
+        this.hasDeadline = milliseconds > 0;
+
+        completion.whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void result, Throwable t) {
+                if (t instanceof CancellationException) {
+                    cancel();
+                }
+            }
+        });
+
+        loop.start();
+    }
+
+    /**
+     * Get the session's debugger.
+     *
+     * @return The debugger
+     */
+    public Debugger debugger() {
+        return debugger;
+    }
+
+    /**
+     * Get the session's virtual machine.
+     *
+     * @return The virtual machine
+     */
+    public VirtualMachine vm() {
+        return vm;
+    }
+
+    /**
+     * Get the outcome of the session as a future.
+     *
+     * @return A future completed when the session ends
+     */
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    /**
+     * Determine whether the session has ended.
+     *
+     * @return {@code true} once the session's events have all been handled
+     */
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * Determine whether the session was cancelled.
+     *
+     * @return {@code true} if {@link #cancel()} was called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Determine whether the session's deadline passed before the virtual
+     * machine disconnected.
+     *
+     * @return {@code true} if the session was ended by its deadline
+     */
+    public boolean isExpired() {
+        return expired;
+    }
+
+    /**
+     * Get the exception that ended the session.
+     *
+     * @return The exception thrown while processing the session's events, or
+     *         {@code null} if there was none
+     */
+    public Throwable failure() {
+        return failure;
+    }
+
+    /**
+     * End the session by disposing of its virtual machine. The session is
+     * done once the events still queued have been handled. Cancelling a
+     * session that has ended has no effect.
+     */
+    public void cancel() {
+        if (isDone()) {
+            return;
+        }
+
+        cancelled = true;
+        dispose();
+    }
+
+    /**
+     * Wait for the session to end.
+     *
+     * @throws InterruptedException Interrupted while waiting
+     */
+    public void await() throws InterruptedException {
+        done.await();
+    }
+
+    /**
+     * Wait for the session to end, for at most the given time.
+     *
+     * @param timeout Maximum time to wait
+     * @param unit Unit of the timeout
+     * @return {@code true} if the session ended, {@code false} if the time
+     *         elapsed first
+     * @throws InterruptedException Interrupted while waiting
+     */
+    public boolean await(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /**
+     * Process the session's events on the calling thread until it ends. If
+     * the thread is interrupted, the session is cancelled.
+     */
+    void run() {
+        EventLoop loop = this.loop;
+
+        try {
+            while (loop.isConnected()) {
+                loop.poll(pollMillis());
+            }
+        } catch (InterruptedException e) {
+            cancel();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            dispose();
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Process up to a number of event sets on the calling thread. A poll that
+     * finds no event set ends the slice early.
+     *
+     * @param quantum Maximum number of event sets to process
+     * @param pollMillis How long to wait for each event set, in milliseconds
+     * @return {@code true} if the session is still running
+     * @throws InterruptedException Interrupted while waiting
+     */
+    boolean runSlice(int quantum, long pollMillis)
+            throws InterruptedException {
+        EventLoop loop = this.loop;
+
+        try {
+            checkDeadline();
+            for (int i = 0; i < quantum && loop.poll(pollMillis); i++) {
+                // Keep going while event sets are ready
+            }
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            dispose();
+            finish();
+            return false;
+        }
+
+        if (!loop.isConnected()) {
+            finish();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * End the session without processing its remaining events.
+     */
+    void abandon() {
+        cancel();
+        finish();
+    }
+
+    /**
+     * Get how long to wait for the next event set, expiring the session if
+     * its deadline has passed.
+     *
+     * @return Time to wait in milliseconds, or 0 to wait until an event set
+     *         arrives
+     */
+    private long pollMillis() {
+        if (!hasDeadline || expired) {
+            return 0;
+        }
+
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0) {
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining));
+        }
+
+        checkDeadline();
+        return 0;
+    }
+
+    /**
+     * Dispose of the virtual machine if the deadline has passed.
+     */
+    private void checkDeadline() {
+        if (hasDeadline && !expired && System.nanoTime() - deadline >= 0) {
+            expired = true;
+            dispose();
+        }
+    }
+
+    /**
+     * Release the event loop and report the outcome.
+     */
+    private void finish() {
+        EventLoop loop = this.loop;
+
+        this.loop = null;
+        loop.close();
+        done.countDown();
+
+        if (failure != null) {
+            completion.completeExceptionally(failure);
+        } else if (cancelled) {
+            completion.cancel(false);
+        } else if (expired) {
+            completion.completeExceptionally(new TimeoutException(
+                    "Session deadline passed"));
+        } else {
+            completion.complete(null);
+        }
+    }
+
+    private void dispose() {
+        try {
+            vm.dispose();
+        } catch (VMDisconnectedException e) {
+            // Already gone
+        }
+    }
+}
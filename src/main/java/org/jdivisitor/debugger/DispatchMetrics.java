@@ -0,0 +1,460 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import com.sun.jdi.event.EventIterator;
+import com.sun.jdi.event.EventSet;
+
+/**
+ * Measures how the debugger itself performs: the number of events of each
+ * type, the number of events per event set, how long the event thread waits
+ * for each event set, and how long each set takes to be visited and to be
+ * resumed once it has been removed from the event queue. The metrics can be
+ * read with {@link #snapshot()} or through JMX (see
+ * {@link #registerMBean(String)}).
+ *
+ * <p>
+ * Recording is always on. It uses atomic counters and preallocated
+ * histograms, and does not allocate per event or per event set. Event sets
+ * are tracked from removal to visit and resumption in a fixed-size table; if
+ * too many sets are in flight at once (with a large pipeline), the latencies
+ * of the excess sets are not measured, and are counted as untracked.
+ * </p>
+ *
+ * <p>
+ * While the {@code org.jdivisitor.EventSet} flight recorder event is enabled,
+ * each tracked event set is also recorded as an {@link EventSetEvent} once it
+ * has been both visited and resumed.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public final class DispatchMetrics {
+
+    /**
+     * JMX domain of the registered MBeans.
+     */
+    public static final String JMX_DOMAIN = "org.jdivisitor.debugger";
+
+    /**
+     * Number of event sets that can be tracked at once.
+     */
+    private static final int TRACKED_SETS = 8192;
+
+    /**
+     * Number of table slots tried for an event set.
+     */
+    private static final int PROBES = 16;
+
+    private static final int VISITED = 1;
+    private static final int RESUMED = 2;
+
+    private static final EventType[] EVENT_TYPES = EventType.values();
+
+    private final AtomicLongArray eventCounts = new AtomicLongArray(
+            EVENT_TYPES.length);
+    private final AtomicLong eventSets = new AtomicLong();
+    private final AtomicLong untrackedEventSets = new AtomicLong();
+    private final AtomicLong overflowedDeliveries = new AtomicLong();
+
+    private final Histogram eventsPerSet = new Histogram();
+    private final Histogram queueWait = new Histogram();
+    private final Histogram dispatchLatency = new Histogram();
+    private final Histogram suspendTime = new Histogram();
+
+    /**
+     * Event sets in flight, with the time each was removed from the event
+     * queue and whether it has been visited and resumed yet.
+     */
+    private final AtomicReferenceArray<EventSet> trackedSets =
+            new AtomicReferenceArray<EventSet>(TRACKED_SETS);
+    private final AtomicLongArray removedNanos = new AtomicLongArray(
+            TRACKED_SETS);
+    private final AtomicIntegerArray progress = new AtomicIntegerArray(
+            TRACKED_SETS);
+
+    /**
+     * Flight recorder events of the tracked event sets, if enabled.
+     */
+    private final AtomicReferenceArray<EventSetEvent> recordings =
+            new AtomicReferenceArray<EventSetEvent>(TRACKED_SETS);
+    private final AtomicInteger recordingsInFlight = new AtomicInteger();
+
+    /**
+     * Create new, empty metrics.
+     */
+    DispatchMetrics() {
+    }
+
+    /**
+     * Take a snapshot of the metrics. The counters are read one at a time, so
+     * event sets being dispatched may be partly reflected in the snapshot.
+     *
+     * @return The snapshot
+     */
+    public MetricsSnapshot snapshot() {
+        long[] counts = new long[EVENT_TYPES.length];
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = eventCounts.get(i);
+        }
+
+        return new MetricsSnapshot(counts, eventSets.get(),
+                untrackedEventSets.get(), overflowedDeliveries.get(),
+                eventsPerSet.snapshot(),
+                queueWait.snapshot(), dispatchLatency.snapshot(),
+                suspendTime.snapshot());
+    }
+
+    /**
+     * Clear all of the counters and histograms. Event sets in flight are
+     * still measured when they complete.
+     */
+    public void reset() {
+        for (int i = 0; i < EVENT_TYPES.length; i++) {
+            eventCounts.set(i, 0);
+        }
+        eventSets.set(0);
+        untrackedEventSets.set(0);
+        overflowedDeliveries.set(0);
+        eventsPerSet.reset();
+        queueWait.reset();
+        dispatchLatency.reset();
+        suspendTime.reset();
+    }
+
+    /**
+     * Register a {@link DispatchMetricsMXBean} for these metrics with the
+     * platform MBean server, as
+     * {@code org.jdivisitor.debugger:type=DispatchMetrics,name=<name>}.
+     *
+     * @param name Name distinguishing the debugger
+     * @return The MBean's object name
+     * @throws JMException The MBean could not be registered (for example if
+     *         the name is already in use)
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = objectName(name);
+
+        ManagementFactory.getPlatformMBeanServer().registerMBean(
+                new StandardMBean(new MXBean(), DispatchMetricsMXBean.class,
+                        true), objectName);
+
+        return objectName;
+    }
+
+    /**
+     * Unregister an MBean registered with {@link #registerMBean(String)}.
+     *
+     * @param name Name distinguishing the debugger
+     * @throws JMException The MBean could not be unregistered
+     */
+    public void unregisterMBean(String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                objectName(name));
+    }
+
+    /**
+     * Record the time the event thread waited for an event set.
+     *
+     * @param nanos Wait time
+     */
+    void waited(long nanos) {
+        queueWait.record(nanos);
+    }
+
+    /**
+     * Count an event set removed from the event queue and its events.
+     *
+     * @param eventSet Event set
+     */
+    void removed(EventSet eventSet) {
+        int events = 0;
+
+        EventIterator eventIterator = eventSet.eventIterator();
+        while (eventIterator.hasNext()) {
+            eventCounts.incrementAndGet(EventType.of(
+                    eventIterator.nextEvent()).ordinal());
+            events++;
+        }
+
+        eventSets.incrementAndGet();
+        eventsPerSet.record(events);
+    }
+
+    /**
+     * Start tracking an event set handed to an event set handler.
+     *
+     * @param eventSet Event set, as handed to the handler
+     * @param removedAt {@code System.nanoTime()} at which the set was removed
+     *        from the event queue
+     * @param recording The set's flight recorder event, or {@code null}
+     */
+    void handedOver(EventSet eventSet, long removedAt,
+            EventSetEvent recording) {
+        int start = System.identityHashCode(eventSet);
+
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & (TRACKED_SETS - 1);
+
+            if (trackedSets.compareAndSet(slot, null, eventSet)) {
+                removedNanos.set(slot, removedAt);
+                if (recording != null) {
+                    recordingsInFlight.incrementAndGet();
+                    recordings.set(slot, recording);
+                }
+                return;
+            }
+        }
+
+        untrackedEventSets.incrementAndGet();
+        if (recording != null) {
+            recording.commit();
+        }
+    }
+
+    /**
+     * Record an event set whose events were all dropped by interceptors, and
+     * which has been resumed without being handed over.
+     *
+     * @param removedAt {@code System.nanoTime()} at which the set was removed
+     *        from the event queue
+     * @param recording The set's flight recorder event, or {@code null}
+     */
+    void dropped(long removedAt, EventSetEvent recording) {
+        long nanos = System.nanoTime() - removedAt;
+
+        dispatchLatency.record(nanos);
+        suspendTime.record(nanos);
+
+        if (recording != null) {
+            recording.dropped = true;
+            recording.resumeLatency = nanos;
+            recording.commit();
+        }
+    }
+
+    /**
+     * Record an event set that was not delivered to one of the visitors of a
+     * fan-out, because the visitor's ring buffer was full.
+     */
+    void overflowed() {
+        overflowedDeliveries.incrementAndGet();
+    }
+
+    /**
+     * Record the start of the visit of a tracked event set. Only the flight
+     * recorder event needs it, so nothing is done unless one is in flight.
+     *
+     * @param eventSet Event set, as handed to the handler
+     */
+    void visiting(EventSet eventSet) {
+        if (recordingsInFlight.get() == 0) {
+            return;
+        }
+
+        int slot = slot(eventSet);
+        if (slot >= 0) {
+            EventSetEvent recording = recordings.get(slot);
+
+            if (recording != null) {
+                recording.visitStart = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Record the completion of the visit of a tracked event set.
+     *
+     * @param eventSet Event set, as handed to the handler
+     */
+    void visited(EventSet eventSet) {
+        complete(eventSet, VISITED, dispatchLatency);
+    }
+
+    /**
+     * Record the resumption of a tracked event set.
+     *
+     * @param eventSet Event set, as handed to the handler
+     */
+    void resumed(EventSet eventSet) {
+        complete(eventSet, RESUMED, suspendTime);
+    }
+
+    /**
+     * Record the time from removal to a step in the dispatch of a tracked
+     * event set, and stop tracking the set once it has been both visited and
+     * resumed.
+     *
+     * @param eventSet Event set
+     * @param step {@code VISITED} or {@code RESUMED}
+     * @param histogram Histogram of the step's latency
+     */
+    private void complete(EventSet eventSet, int step, Histogram histogram) {
+        int slot = slot(eventSet);
+        if (slot < 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        histogram.record(now - removedNanos.get(slot));
+
+        EventSetEvent recording = recordings.get(slot);
+        if (recording != null) {
+            if (step == RESUMED) {
+                recording.resumeLatency = now - removedNanos.get(slot);
+            } else if (recording.visitStart != 0) {
+                recording.visitorDuration = now - recording.visitStart;
+            }
+        }
+
+        // The step that completes the set publishes the other step's writes
+        if (progress.addAndGet(slot, step) == (VISITED | RESUMED)) {
+            if (recording != null) {
+                recordings.set(slot, null);
+                recordingsInFlight.decrementAndGet();
+                recording.commit();
+            }
+            progress.set(slot, 0);
+            trackedSets.set(slot, null);
+        }
+    }
+
+    /**
+     * Find the table slot of a tracked event set.
+     *
+     * @param eventSet Event set
+     * @return The slot, or -1 if the set is not tracked
+     */
+    private int slot(EventSet eventSet) {
+        int start = System.identityHashCode(eventSet);
+
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & (TRACKED_SETS - 1);
+
+            if (trackedSets.get(slot) == eventSet) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        Validate.notNull(name);
+
+        return new ObjectName(JMX_DOMAIN + ":type=DispatchMetrics,name="
+                + ObjectName.quote(name));
+    }
+
+    private static Map<String, Long> summary(HistogramSnapshot histogram) {
+        Map<String, Long> summary = new LinkedHashMap<String, Long>();
+
+        summary.put("count", histogram.count());
+        summary.put("mean", Math.round(histogram.mean()));
+        summary.put("p50", histogram.percentile(50));
+        summary.put("p90", histogram.percentile(90));
+        summary.put("p99", histogram.percentile(99));
+        summary.put("p999", histogram.percentile(99.9));
+        summary.put("max", histogram.max());
+
+        return summary;
+    }
+
+    /**
+     * The MXBean, kept apart so that its getters are not part of the API of
+     * the metrics.
+     */
+    private class MXBean implements DispatchMetricsMXBean {
+
+        @Override
+        public long getEvents() {
+            return snapshot().events();
+        }
+
+        @Override
+        public long getEventSets() {
+            return eventSets.get();
+        }
+
+        @Override
+        public long getUntrackedEventSets() {
+            return untrackedEventSets.get();
+        }
+
+        @Override
+        public long getOverflowedDeliveries() {
+            return overflowedDeliveries.get();
+        }
+
+        @Override
+        public Map<String, Long> getEventCounts() {
+            MetricsSnapshot snapshot = snapshot();
+            Map<String, Long> counts = new LinkedHashMap<String, Long>();
+
+            for (EventType type : EVENT_TYPES) {
+                counts.put(type.name(), snapshot.events(type));
+            }
+
+            return counts;
+        }
+
+        @Override
+        public Map<String, Long> getEventsPerSet() {
+            return summary(eventsPerSet.snapshot());
+        }
+
+        @Override
+        public Map<String, Long> getQueueWaitNanos() {
+            return summary(queueWait.snapshot());
+        }
+
+        @Override
+        public Map<String, Long> getDispatchLatencyNanos() {
+            return summary(dispatchLatency.snapshot());
+        }
+
+        @Override
+        public Map<String, Long> getSuspendTimeNanos() {
+            return summary(suspendTime.snapshot());
+        }
+
+        @Override
+        public void reset() {
+            DispatchMetrics.this.reset();
+        }
+    }
+}
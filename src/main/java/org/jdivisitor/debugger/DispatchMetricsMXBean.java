@@ -0,0 +1,62 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.util.Map;
+
+/**
+ * JMX view of a debugger's {@link DispatchMetrics}. Each histogram is
+ * summarized as a map of its {@code count}, {@code mean}, {@code p50},
+ * {@code p90}, {@code p99}, {@code p999} and {@code max}. Latencies are in
+ * nanoseconds.
+ *
+ * @author Adrian Herrera
+ * @see DispatchMetrics#registerMBean(String)
+ */
+public interface DispatchMetricsMXBean {
+
+    long getEvents();
+
+    long getEventSets();
+
+    long getUntrackedEventSets();
+
+    long getOverflowedDeliveries();
+
+    /**
+     * Get the number of events of each type.
+     *
+     * @return Event counts, by event type name
+     */
+    Map<String, Long> getEventCounts();
+
+    Map<String, Long> getEventsPerSet();
+
+    Map<String, Long> getQueueWaitNanos();
+
+    Map<String, Long> getDispatchLatencyNanos();
+
+    Map<String, Long> getSuspendTimeNanos();
+
+    /**
+     * Clear all of the counters and histograms.
+     */
+    void reset();
+}
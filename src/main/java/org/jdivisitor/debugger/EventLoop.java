@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2001, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.EventInterceptor;
+import com.sun.jdi.VMDisconnectedException;
+import com.sun.jdi.VirtualMachine;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventIterator;
+import com.sun.jdi.event.EventQueue;
+import com.sun.jdi.event.EventSet;
+import com.sun.jdi.event.VMDeathEvent;
+import com.sun.jdi.event.VMDisconnectEvent;
+
+/**
+ * Processes the JDI events of a virtual machine. As each event set is removed
+ * from the event queue, its events are passed through any
+ * {@code EventInterceptor}s and the remaining events are passed to an
+ * {@code EventSetHandler}. The dispatch of every event set is measured by
+ * {@link DispatchMetrics}, and recorded as an {@link EventSetEvent} while
+ * flight recording of that event is enabled.
+ *
+ * <p>
+ * The loop either runs to completion on one thread ({@link #run()}), or is
+ * driven one event set at a time with {@link #poll(long)} (as a
+ * {@link DebuggerSession} does, on an event thread or in a
+ * {@link DebuggerHost}), in which case it must be started and closed by the
+ * caller. Either way, only one thread may drive the loop at a time.
+ * </p>
+ *
+ * @author Robert Field
+ * @author Adrian Herrera
+ */
+class EventLoop implements Runnable {
+
+    /**
+     * The running virtual machine.
+     */
+    private final VirtualMachine vm;
+
+    /**
+     * Event set handler.
+     */
+    private final EventSetHandler handler;
+
+    /**
+     * Event interceptors.
+     */
+    private final List<EventInterceptor> interceptors;
+
+    /**
+     * Dispatch metrics.
+     */
+    private final DispatchMetrics metrics;
+
+    /**
+     * Connected to the virtual machine.
+     */
+    private volatile boolean connected = true;
+
+    /**
+     * Create a new event loop.
+     * 
+     * @param vm The virtual machine generating the JDI events
+     * @param handler Event set handler
+     * @param interceptors Event interceptors. The list may be modified while
+     *        the loop runs if it is safe for concurrent use
+     * @param metrics Dispatch metrics, also used by the handler
+     */
+    EventLoop(VirtualMachine vm, EventSetHandler handler,
+            List<EventInterceptor> interceptors, DispatchMetrics metrics) {
+        this.vm = Validate.notNull(vm);
+        this.handler = Validate.notNull(handler);
+        this.interceptors = Validate.notNull(interceptors);
+        this.metrics = Validate.notNull(metrics);
+
+        handler.setMetrics(metrics);
+    }
+
+    /**
+     * Get the virtual machine.
+     *
+     * @return The virtual machine generating the JDI events
+     */
+    VirtualMachine vm() {
+        return vm;
+    }
+
+    /**
+     * Determine whether the loop is still connected to the virtual machine.
+     *
+     * @return {@code false} once the virtual machine has disconnected
+     */
+    boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Run the event loop.
+     * 
+     * As long as the loop remains connected to the VM, events are removed
+     * from the queue and dispatched. If the thread is interrupted, the VM is
+     * disposed of.
+     */
+    @Override
+    public void run() {
+        start();
+        try {
+            while (connected) {
+                try {
+                    poll(0);
+                } catch (InterruptedException ie) {
+                    vm.dispose();
+                    break;
+                }
+            }
+        } finally {
+            closeHandler();
+        }
+    }
+
+    /**
+     * Prepare the handler before the first call to {@link #poll(long)}.
+     */
+    void start() {
+        handler.start();
+    }
+
+    /**
+     * Remove an event set from the event queue, if one arrives in time, and
+     * dispatch it.
+     *
+     * @param timeout How long to wait for an event set, in milliseconds, or 0
+     *        to wait until one arrives
+     * @return {@code true} if an event set was dispatched, {@code false} if
+     *         none arrived in time or the virtual machine has disconnected
+     *         (see {@link #isConnected()})
+     * @throws InterruptedException Interrupted while waiting
+     */
+    boolean poll(long timeout) throws InterruptedException {
+        EventQueue queue = vm.eventQueue();
+
+        try {
+            long waitStart = System.nanoTime();
+            EventSet removed = timeout > 0 ? queue.remove(timeout) : queue
+                    .remove();
+            if (removed == null) {
+                return false;
+            }
+
+            long removedAt = System.nanoTime();
+            EventSetEvent recording = EventSetEvent.start(removed, removedAt
+                    - waitStart);
+
+            metrics.waited(removedAt - waitStart);
+            metrics.removed(removed);
+
+            EventSet eventSet = intercept(removed);
+            if (eventSet != null) {
+                metrics.handedOver(eventSet, removedAt, recording);
+                handler.handle(eventSet);
+            } else {
+                metrics.dropped(removedAt, recording);
+            }
+            return true;
+        } catch (VMDisconnectedException vmde) {
+            handleDisconnectedException();
+            connected = false;
+            return false;
+        }
+    }
+
+    /**
+     * Wait for the event sets still in flight to be handled, once the loop
+     * has finished.
+     */
+    void close() {
+        closeHandler();
+    }
+
+    /**
+     * A {@link VMDisconnectedException} has happened while dealing with another
+     * event. We need to flush the event queue, dealing only with exit events (
+     * {@link VMDeatEvent} and {@link VMDisconnectEvent}) so that we terminate
+     * correctly. Event sets still in flight are handled before the exit
+     * events are.
+     */
+    private void handleDisconnectedException() {
+        EventQueue queue = vm.eventQueue();
+
+        closeHandler();
+        while (connected) {
+            try {
+                EventSet eventSet = queue.remove();
+
+                EventIterator eventIterator = eventSet.eventIterator();
+                while (eventIterator.hasNext()) {
+                    Event event = eventIterator.nextEvent();
+
+                    if (event instanceof VMDeathEvent) {
+                        if (intercept(event)) {
+                            handler.visit(event);
+                        }
+                    } else if (event instanceof VMDisconnectEvent) {
+                        if (intercept(event)) {
+                            handler.visit(event);
+                        }
+                        connected = false;
+                    }
+                }
+                eventSet.resume();
+            } catch (InterruptedException ie) {
+                vm.dispose();
+                break;
+            } catch (VMDisconnectedException vmde) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Pass the events of an event set through the event interceptors.
+     *
+     * @param eventSet Event set
+     * @return The event set, a view of the events that were not dropped, or
+     *         {@code null} if all of the events were dropped (in which case
+     *         the event set has been resumed)
+     */
+    private EventSet intercept(EventSet eventSet) {
+        if (interceptors.isEmpty()) {
+            return eventSet;
+        }
+
+        // Only allocate a list once an event is dropped
+        List<Event> kept = null;
+        int index = 0;
+
+        EventIterator eventIterator = eventSet.eventIterator();
+        while (eventIterator.hasNext()) {
+            Event event = eventIterator.nextEvent();
+
+            if (intercept(event)) {
+                if (kept != null) {
+                    kept.add(event);
+                }
+            } else if (kept == null) {
+                kept = new ArrayList<Event>(eventSet.size());
+
+                EventIterator keptIterator = eventSet.eventIterator();
+                for (int i = 0; i < index; i++) {
+                    kept.add(keptIterator.nextEvent());
+                }
+            }
+            index++;
+        }
+
+        if (kept == null) {
+            return eventSet;
+        } else if (kept.isEmpty()) {
+            handler.resume(eventSet);
+            return null;
+        } else {
+            return new FilteredEventSet(eventSet, kept);
+        }
+    }
+
+    /**
+     * Pass an event through the event interceptors.
+     *
+     * @param event Event
+     * @return {@code true} if the event should be visited
+     */
+    private boolean intercept(Event event) {
+        for (EventInterceptor interceptor : interceptors) {
+            if (!interceptor.intercept(event)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Wait for the event sets still in flight to be handled.
+     */
+    private void closeHandler() {
+        try {
+            handler.close();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
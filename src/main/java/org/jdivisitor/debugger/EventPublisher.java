@@ -0,0 +1,76 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.Validate;
+
+import com.sun.jdi.event.Event;
+
+/**
+ * Publishes the events of a debugger to a single subscriber. The debugger's
+ * event loop is started when the subscriber subscribes.
+ *
+ * @author Adrian Herrera
+ * @see Debugger#publisher()
+ */
+final class EventPublisher implements Flow.Publisher<Event> {
+
+    private final Debugger debugger;
+
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Create a new publisher.
+     *
+     * @param debugger Debugger whose events are published
+     */
+    EventPublisher(Debugger debugger) {
+        this.debugger = debugger;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Event> subscriber) {
+        Validate.notNull(subscriber);
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException(
+                    "Events can only be published to one subscriber"));
+            return;
+        }
+
+        PublishingEventSetHandler handler = new PublishingEventSetHandler(
+                subscriber);
+
+        subscriber.onSubscribe(handler);
+        handler.attach(debugger.startSession(handler, 0));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import com.sun.jdi.event.EventIterator;
+import com.sun.jdi.event.EventSet;
+import com.sun.jdi.request.EventRequest;
+
+/**
+ * Flight recorder event for an event set handled by an event loop. The
+ * event's duration is the time from the removal of the set from the event
+ * queue until it has been both visited and resumed. Event sets are only
+ * recorded while the event is enabled in a recording, so the cost is a single
+ * check per set otherwise, without any allocation.
+ *
+ * @author Adrian Herrera
+ * @see DispatchMetrics
+ */
+@Name("org.jdivisitor.EventSet")
+@Label("Event Set")
+@Category("JDIVisitor")
+@Description("JDI event set handled by the debugger")
+@StackTrace(false)
+final class EventSetEvent extends Event {
+
+    /**
+     * The event's type, checked before an event is allocated.
+     */
+    private static final jdk.jfr.EventType TYPE = jdk.jfr.EventType
+            .getEventType(EventSetEvent.class);
+
+    @Label("Event Types")
+    @Description("Types of the events in the set")
+    String eventTypes;
+
+    @Label("Events")
+    int events;
+
+    @Label("Suspend Policy")
+    String suspendPolicy;
+
+    @Label("Queue Wait")
+    @Description("Time the event thread waited for the set")
+    @Timespan
+    long queueWait;
+
+    @Label("Visitor Duration")
+    @Description("Time spent visiting the events of the set")
+    @Timespan
+    long visitorDuration;
+
+    @Label("Resume Latency")
+    @Description("Time from the removal of the set to its resumption")
+    @Timespan
+    long resumeLatency;
+
+    @Label("Dropped")
+    @Description("Whether every event was dropped by an interceptor")
+    boolean dropped;
+
+    /**
+     * {@code System.nanoTime()} at which the visit started (not recorded).
+     */
+    transient long visitStart;
+
+    /**
+     * Start recording an event set that has just been removed from the event
+     * queue.
+     *
+     * @param eventSet Event set
+     * @param queueWait Time the event thread waited for the set
+     * @return The event, or {@code null} if the event is not enabled
+     */
+    static EventSetEvent start(EventSet eventSet, long queueWait) {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+
+        EventSetEvent event = new EventSetEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+
+        event.begin();
+        event.queueWait = queueWait;
+        event.suspendPolicy = suspendPolicy(eventSet.suspendPolicy());
+
+        StringBuilder types = new StringBuilder();
+        EventIterator eventIterator = eventSet.eventIterator();
+        while (eventIterator.hasNext()) {
+            if (types.length() > 0) {
+                types.append(',');
+            }
+            types.append(EventType.of(eventIterator.nextEvent()).name());
+            event.events++;
+        }
+        event.eventTypes = types.toString();
+
+        return event;
+    }
+
+    private static String suspendPolicy(int suspendPolicy) {
+        switch (suspendPolicy) {
+        case EventRequest.SUSPEND_ALL:
+            return "ALL";
+        case EventRequest.SUSPEND_EVENT_THREAD:
+            return "EVENT_THREAD";
+        default:
+            return "NONE";
+        }
+    }
+}
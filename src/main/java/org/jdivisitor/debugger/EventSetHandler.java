@@ -0,0 +1,170 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.ResumeListener;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventIterator;
+import com.sun.jdi.event.EventSet;
+
+/**
+ * Handles the event sets removed from the event queue by an event thread. A
+ * handler is responsible for visiting the events in each set and for resuming
+ * the set once it is safe to do so.
+ *
+ * @author Adrian Herrera
+ */
+abstract class EventSetHandler {
+
+    /**
+     * Listeners to notify before an event set is resumed.
+     */
+    private List<ResumeListener> resumeListeners = Collections.emptyList();
+
+    /**
+     * Dispatch metrics, or {@code null} if the handler is not measured.
+     */
+    private DispatchMetrics metrics;
+
+    /**
+     * Set the listeners to notify before an event set is resumed.
+     *
+     * @param resumeListeners Resume listeners. The list may be modified while
+     *        the handler runs if it is safe for concurrent use
+     */
+    void setResumeListeners(List<ResumeListener> resumeListeners) {
+        this.resumeListeners = Validate.notNull(resumeListeners);
+    }
+
+    /**
+     * Set the metrics that measure the visit and resumption of event sets.
+     *
+     * @param metrics Dispatch metrics
+     */
+    void setMetrics(DispatchMetrics metrics) {
+        this.metrics = Validate.notNull(metrics);
+    }
+
+    /**
+     * Prepare the handler before the first event set is handed to it.
+     */
+    void start() {
+    }
+
+    /**
+     * Handle an event set. By default the events are visited on the calling
+     * thread and the set is resumed afterwards.
+     *
+     * @param eventSet Event set to handle
+     * @throws InterruptedException Interrupted while waiting to hand the set
+     *         on
+     */
+    void handle(EventSet eventSet) throws InterruptedException {
+        visiting(eventSet);
+        visit(eventSet);
+        visited(eventSet);
+        resume(eventSet);
+    }
+
+    /**
+     * Record that the events of an event set are about to be visited.
+     * Handlers call this before {@link #visited(EventSet)}.
+     *
+     * @param eventSet Event set about to be visited
+     */
+    final void visiting(EventSet eventSet) {
+        if (metrics != null) {
+            metrics.visiting(eventSet);
+        }
+    }
+
+    /**
+     * Record that the events of an event set have been visited. Handlers call
+     * this once for every event set handed to them.
+     *
+     * @param eventSet Event set that was visited
+     */
+    final void visited(EventSet eventSet) {
+        if (metrics != null) {
+            metrics.visited(eventSet);
+        }
+    }
+
+    /**
+     * Record that an event set was not delivered to a visitor because the
+     * visitor had fallen behind.
+     */
+    final void overflowed() {
+        if (metrics != null) {
+            metrics.overflowed();
+        }
+    }
+
+    /**
+     * Notify the resume listeners and resume an event set. Handlers resume
+     * every event set through this method.
+     *
+     * @param eventSet Event set to resume
+     */
+    final void resume(EventSet eventSet) {
+        for (ResumeListener listener : resumeListeners) {
+            listener.resuming(eventSet);
+        }
+        eventSet.resume();
+        if (metrics != null) {
+            metrics.resumed(eventSet);
+        }
+    }
+
+    /**
+     * Visit every event in an event set on the calling thread. The set is not
+     * resumed.
+     *
+     * @param eventSet Event set to visit
+     */
+    void visit(EventSet eventSet) {
+        EventIterator eventIterator = eventSet.eventIterator();
+        while (eventIterator.hasNext()) {
+            visit(eventIterator.nextEvent());
+        }
+    }
+
+    /**
+     * Visit a single event on the calling thread.
+     *
+     * @param event Event to visit
+     */
+    abstract void visit(Event event);
+
+    /**
+     * Wait for any event sets still in flight to be handled and release the
+     * handler's resources. No further sets will be handed to the handler.
+     * Closing a handler more than once has no further effect.
+     *
+     * @throws InterruptedException Interrupted while waiting
+     */
+    void close() throws InterruptedException {
+    }
+}
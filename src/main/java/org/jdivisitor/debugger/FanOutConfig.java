@@ -0,0 +1,146 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import org.apache.commons.lang3.Validate;
+
+import com.sun.jdi.request.EventRequest;
+
+/**
+ * Configures the fan-out of a {@link Debugger}'s events to several visitors.
+ *
+ * <p>
+ * The event thread is the single reader of the virtual machine's event queue.
+ * It hands every event set to each visitor through the visitor's own bounded
+ * ring buffer, and each visitor runs on its own consumer thread, so the
+ * visitors work independently of each other. What happens when a visitor
+ * falls behind and its ring buffer fills up is decided by the
+ * {@link OverflowPolicy}.
+ * </p>
+ *
+ * <p>
+ * Each event set is resumed exactly once. With {@link ResumeMode#AFTER_VISIT}
+ * the set is resumed by whichever visitor finishes with it last; with
+ * {@link ResumeMode#IMMEDIATE} it is resumed by the event thread before it is
+ * handed over. Event sets with a {@code SUSPEND_NONE} policy suspend nothing
+ * and are always resumed immediately. Note that with
+ * {@code AFTER_VISIT} the debuggee stays suspended until the slowest visitor
+ * is done, so it is {@code IMMEDIATE} that lets the faster visitors (and the
+ * debuggee) run ahead of a slow one.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public final class FanOutConfig {
+
+    /**
+     * Maximum number of event sets waiting to be visited by each visitor.
+     */
+    private final int capacity;
+
+    /**
+     * What to do when a visitor's ring buffer is full.
+     */
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * Resume mode for {@code SUSPEND_ALL} event sets.
+     */
+    private final ResumeMode suspendAllMode;
+
+    /**
+     * Resume mode for {@code SUSPEND_EVENT_THREAD} event sets.
+     */
+    private final ResumeMode suspendEventThreadMode;
+
+    /**
+     * Constructor. <br>
+     * <br>
+     * Event sets are resumed after every visitor has visited them, whatever
+     * their suspend policy.
+     *
+     * @param capacity Maximum number of event sets waiting to be visited by
+     *        each visitor (must be positive)
+     * @param overflowPolicy What to do when a visitor's ring buffer is full
+     *        (cannot be {@code null})
+     */
+    public FanOutConfig(int capacity, OverflowPolicy overflowPolicy) {
+        this(capacity, overflowPolicy, ResumeMode.AFTER_VISIT,
+                ResumeMode.AFTER_VISIT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Maximum number of event sets waiting to be visited by
+     *        each visitor (must be positive)
+     * @param overflowPolicy What to do when a visitor's ring buffer is full
+     *        (cannot be {@code null})
+     * @param suspendAllMode When to resume {@code SUSPEND_ALL} event sets
+     *        (cannot be {@code null})
+     * @param suspendEventThreadMode When to resume
+     *        {@code SUSPEND_EVENT_THREAD} event sets (cannot be {@code null})
+     */
+    public FanOutConfig(int capacity, OverflowPolicy overflowPolicy,
+            ResumeMode suspendAllMode, ResumeMode suspendEventThreadMode) {
+        Validate.isTrue(capacity > 0, "Capacity must be positive");
+
+        this.capacity = capacity;
+        this.overflowPolicy = Validate.notNull(overflowPolicy);
+        this.suspendAllMode = Validate.notNull(suspendAllMode);
+        this.suspendEventThreadMode = Validate.notNull(suspendEventThreadMode);
+    }
+
+    /**
+     * Get the maximum number of event sets waiting to be visited by each
+     * visitor.
+     *
+     * @return The ring buffer capacity
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Get what to do when a visitor's ring buffer is full.
+     *
+     * @return The overflow policy
+     */
+    public OverflowPolicy overflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Get the resume mode for event sets with the given suspend policy.
+     *
+     * @param suspendPolicy One of the {@code EventRequest.SUSPEND_*} constants
+     * @return The resume mode
+     */
+    public ResumeMode resumeMode(int suspendPolicy) {
+        switch (suspendPolicy) {
+        case EventRequest.SUSPEND_ALL:
+            return suspendAllMode;
+        case EventRequest.SUSPEND_EVENT_THREAD:
+            return suspendEventThreadMode;
+        default:
+            return ResumeMode.IMMEDIATE;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import com.sun.jdi.VMDisconnectedException;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventIterator;
+import com.sun.jdi.event.EventSet;
+
+/**
+ * Hands every event set to several delegate handlers, each with its own
+ * bounded {@link RingBuffer} and consumer thread, as configured by a
+ * {@link FanOutConfig}. The event thread is the only producer. A set that is
+ * resumed after it has been visited is resumed by the last consumer to
+ * finish with it.
+ *
+ * <p>
+ * If a visitor throws an exception on a consumer thread, the exception is
+ * rethrown on the event thread the next time it hands over an event set. The
+ * consumers keep releasing the event sets left in their ring buffers without
+ * visiting them, so that every set is still resumed.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+class FanOutEventSetHandler extends EventSetHandler {
+
+    /**
+     * How long (in milliseconds) an idle consumer waits for an event set
+     * before checking whether the fan-out has been closed.
+     */
+    private static final long POLL_MILLIS = 10;
+
+    /**
+     * Visit the events, one per consumer.
+     */
+    private final EventSetHandler[] delegates;
+
+    private final FanOutConfig config;
+
+    /**
+     * Event sets waiting to be visited, one ring buffer per consumer.
+     */
+    private final RingBuffer<Delivery>[] ringBuffers;
+
+    private final Thread[] consumers;
+
+    /**
+     * No further event sets will be handed over.
+     */
+    private volatile boolean closed;
+
+    /**
+     * The first exception thrown on a consumer thread.
+     */
+    private volatile Throwable failure;
+
+    /**
+     * Create a new fan-out handler.
+     *
+     * @param delegates Visit the events, each on its own consumer thread
+     * @param config Fan-out configuration
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    FanOutEventSetHandler(EventSetHandler[] delegates, FanOutConfig config) {
+        Validate.isTrue(delegates.length > 0, "No visitors to fan out to");
+        Validate.noNullElements(delegates);
+
+        this.delegates = delegates.clone();
+        this.config = Validate.notNull(config);
+
+        this.ringBuffers = new RingBuffer[delegates.length];
+        this.consumers = new Thread[delegates.length];
+        for (int i = 0; i < delegates.length; i++) {
+            ringBuffers[i] = new RingBuffer<Delivery>(config.capacity());
+            consumers[i] = new Thread(new Consumer(this.delegates[i],
+                    ringBuffers[i]), "jdi-fan-out-consumer-" + i);
+        }
+    }
+
+    @Override
+    void start() {
+        for (EventSetHandler delegate : delegates) {
+            delegate.start();
+        }
+        for (Thread consumer : consumers) {
+            consumer.start();
+        }
+    }
+
+    @Override
+    void handle(EventSet eventSet) throws InterruptedException {
+        checkFailure();
+
+        boolean resumeAfterVisit = config.resumeMode(eventSet
+                .suspendPolicy()) == ResumeMode.AFTER_VISIT;
+        if (!resumeAfterVisit) {
+            resume(eventSet);
+        }
+
+        // The event thread holds a reference until every consumer has been
+        // offered the set, so that it cannot be completed early
+        Delivery delivery = new Delivery(eventSet, resumeAfterVisit,
+                ringBuffers.length + 1);
+        boolean lossless = config.overflowPolicy() == OverflowPolicy.BLOCK
+                || isLifecycle(eventSet);
+
+        visiting(eventSet);
+        int offered = 0;
+        try {
+            for (; offered < ringBuffers.length; offered++) {
+                RingBuffer<Delivery> ringBuffer = ringBuffers[offered];
+                if (ringBuffer.offer(delivery)) {
+                    continue;
+                }
+
+                if (lossless) {
+                    for (int tries = 0; !ringBuffer.offer(delivery);
+                            tries++) {
+                        checkFailure();
+                        RingBuffer.idle(tries);
+                    }
+                } else {
+                    overflowed();
+                    delivery.release();
+                }
+            }
+        } finally {
+            // If handing over failed, the consumers that were not offered
+            // the set will never release their references
+            for (int i = offered; i < ringBuffers.length; i++) {
+                delivery.release();
+            }
+            delivery.release();
+        }
+    }
+
+    @Override
+    void visit(EventSet eventSet) {
+        for (EventSetHandler delegate : delegates) {
+            delegate.visit(eventSet);
+        }
+    }
+
+    @Override
+    void visit(Event event) {
+        for (EventSetHandler delegate : delegates) {
+            delegate.visit(event);
+        }
+    }
+
+    @Override
+    void close() throws InterruptedException {
+        closed = true;
+
+        for (Thread consumer : consumers) {
+            consumer.join();
+        }
+        for (EventSetHandler delegate : delegates) {
+            delegate.close();
+        }
+    }
+
+    /**
+     * Determine whether an event set holds a virtual machine lifecycle event,
+     * which every visitor must see.
+     *
+     * @param eventSet Event set
+     * @return {@code true} if the set holds a lifecycle event
+     */
+    private static boolean isLifecycle(EventSet eventSet) {
+        EventIterator eventIterator = eventSet.eventIterator();
+        while (eventIterator.hasNext()) {
+            switch (EventType.of(eventIterator.nextEvent())) {
+            case VM_START:
+            case VM_DEATH:
+            case VM_DISCONNECT:
+                return true;
+            default:
+                break;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Rethrow the first exception thrown on a consumer thread, if any.
+     */
+    private void checkFailure() {
+        Throwable t = failure;
+
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+    }
+
+    /**
+     * An event set handed to the consumers, with the number of references
+     * still held to it.
+     */
+    private final class Delivery {
+
+        final EventSet eventSet;
+
+        private final boolean resumeAfterVisit;
+
+        private final AtomicInteger references;
+
+        Delivery(EventSet eventSet, boolean resumeAfterVisit, int references) {
+            this.eventSet = eventSet;
+            this.resumeAfterVisit = resumeAfterVisit;
+            this.references = new AtomicInteger(references);
+        }
+
+        /**
+         * Release a reference to the event set, completing it once the last
+         * reference has been released.
+         */
+        void release() {
+            if (references.decrementAndGet() > 0) {
+                return;
+            }
+
+            visited(eventSet);
+            if (resumeAfterVisit) {
+                try {
+                    resume(eventSet);
+                } catch (VMDisconnectedException e) {
+                    // Nothing left to resume
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits event sets taken from its ring buffer with its delegate until
+     * the fan-out is closed and the ring buffer is empty.
+     */
+    private class Consumer implements Runnable {
+
+        private final EventSetHandler delegate;
+
+        private final RingBuffer<Delivery> ringBuffer;
+
+        Consumer(EventSetHandler delegate, RingBuffer<Delivery> ringBuffer) {
+            this.delegate = delegate;
+            this.ringBuffer = ringBuffer;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (;;) {
+                    Delivery delivery = ringBuffer.poll(POLL_MILLIS,
+                            TimeUnit.MILLISECONDS);
+
+                    if (delivery != null) {
+                        consume(delivery);
+                    } else if (closed && ringBuffer.isEmpty()) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Visit an event set, unless a visitor has already failed, and
+         * release the consumer's reference to it.
+         *
+         * @param delivery Event set to visit
+         */
+        private void consume(Delivery delivery) {
+            try {
+                if (failure == null) {
+                    delegate.visit(delivery.eventSet);
+                }
+            } catch (VMDisconnectedException e) {
+                // The event thread deals with the disconnection
+            } catch (RuntimeException | Error e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            } finally {
+                delivery.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+
+import com.sun.jdi.VirtualMachine;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventIterator;
+import com.sun.jdi.event.EventSet;
+
+/**
+ * A read-only view of the events of an event set that were not dropped by an
+ * {@code EventInterceptor}. Resuming the view resumes the underlying event
+ * set.
+ *
+ * @author Adrian Herrera
+ */
+final class FilteredEventSet extends AbstractSet<Event> implements EventSet {
+
+    /**
+     * The underlying event set.
+     */
+    private final EventSet eventSet;
+
+    /**
+     * The events that were not dropped.
+     */
+    private final List<Event> events;
+
+    /**
+     * Create a new view of an event set.
+     *
+     * @param eventSet The underlying event set
+     * @param events The events that were not dropped
+     */
+    FilteredEventSet(EventSet eventSet, List<Event> events) {
+        this.eventSet = eventSet;
+        this.events = events;
+    }
+
+    @Override
+    public VirtualMachine virtualMachine() {
+        return eventSet.virtualMachine();
+    }
+
+    @Override
+    public int suspendPolicy() {
+        return eventSet.suspendPolicy();
+    }
+
+    @Override
+    public EventIterator eventIterator() {
+        final Iterator<Event> iterator = events.iterator();
+
+        return new EventIterator() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Event next() {
+                return iterator.next();
+            }
+
+            @Override
+            public Event nextEvent() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void resume() {
+        eventSet.resume();
+    }
+
+    @Override
+    public Iterator<Event> iterator() {
+        return eventIterator();
+    }
+
+    @Override
+    public int size() {
+        return events.size();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values, such as latencies in
+ * nanoseconds. Values are counted in buckets that split every power of two
+ * into four, so a bucket is within 25% of the values it holds, and recording
+ * a value is a handful of atomic increments with no allocation.
+ *
+ * @author Adrian Herrera
+ */
+final class Histogram {
+
+    /**
+     * Number of buckets: values 0 to 3, then four per power of two up to
+     * 2^63.
+     */
+    static final int BUCKETS = 248;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value.
+     *
+     * @param value Value to record. Negative values are recorded as 0
+     */
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        buckets.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long m;
+        while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+            // Retry
+        }
+    }
+
+    /**
+     * Take a snapshot of the histogram. Concurrent recording may be partly
+     * reflected in the snapshot.
+     *
+     * @return The snapshot
+     */
+    HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+
+        return new HistogramSnapshot(counts, count.get(), sum.get(),
+                max.get());
+    }
+
+    /**
+     * Clear the histogram.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Get the bucket of a value.
+     *
+     * @param value Non-negative value
+     * @return The bucket index
+     */
+    static int bucket(long value) {
+        if (value < 4) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int fraction = (int) (value >>> (exponent - 2)) & 3;
+
+        return ((exponent - 1) << 2) + fraction;
+    }
+
+    /**
+     * Get the largest value counted in a bucket.
+     *
+     * @param bucket Bucket index
+     * @return The bucket's upper bound
+     */
+    static long upperBound(int bucket) {
+        if (bucket < 3) {
+            return bucket;
+        } else if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+
+        int next = bucket + 1;
+        int exponent = (next >>> 2) + 1;
+        long lower = (long) (4 + (next & 3)) << (exponent - 2);
+
+        return lower - 1;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * An immutable snapshot of a histogram of non-negative values, such as
+ * latencies in nanoseconds. Percentiles are accurate to within 25% (the
+ * width of the histogram's buckets), and never exceed the largest value
+ * recorded.
+ *
+ * @author Adrian Herrera
+ */
+public final class HistogramSnapshot {
+
+    private final long[] buckets;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    HistogramSnapshot(long[] buckets, long count, long sum, long max) {
+        this.buckets = buckets;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * Get the number of values recorded.
+     *
+     * @return The number of values
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Get the sum of the values recorded.
+     *
+     * @return The sum
+     */
+    public long sum() {
+        return sum;
+    }
+
+    /**
+     * Get the largest value recorded.
+     *
+     * @return The largest value, or 0 if there are none
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * Get the mean of the values recorded.
+     *
+     * @return The mean, or 0 if there are none
+     */
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Get a percentile of the values recorded.
+     *
+     * @param percentile Percentile, from 0 to 100
+     * @return The value below or at which the given percentage of the values
+     *         lie, or 0 if there are none
+     */
+    public long percentile(double percentile) {
+        Validate.isTrue(percentile >= 0 && percentile <= 100,
+                "Percentile must be between 0 and 100");
+
+        long total = 0;
+        for (long bucket : buckets) {
+            total += bucket;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(Histogram.upperBound(i), max);
+            }
+        }
+
+        return max;
+    }
+}
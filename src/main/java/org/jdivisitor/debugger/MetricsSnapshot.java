@@ -0,0 +1,151 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+
+/**
+ * An immutable snapshot of a debugger's {@link DispatchMetrics}. Latencies
+ * are in nanoseconds.
+ *
+ * @author Adrian Herrera
+ */
+public final class MetricsSnapshot {
+
+    private final long[] eventCounts;
+    private final long eventSets;
+    private final long untrackedEventSets;
+    private final long overflowedDeliveries;
+    private final HistogramSnapshot eventsPerSet;
+    private final HistogramSnapshot queueWait;
+    private final HistogramSnapshot dispatchLatency;
+    private final HistogramSnapshot suspendTime;
+
+    MetricsSnapshot(long[] eventCounts, long eventSets,
+            long untrackedEventSets, long overflowedDeliveries,
+            HistogramSnapshot eventsPerSet, HistogramSnapshot queueWait,
+            HistogramSnapshot dispatchLatency, HistogramSnapshot suspendTime) {
+        this.eventCounts = eventCounts;
+        this.eventSets = eventSets;
+        this.untrackedEventSets = untrackedEventSets;
+        this.overflowedDeliveries = overflowedDeliveries;
+        this.eventsPerSet = eventsPerSet;
+        this.queueWait = queueWait;
+        this.dispatchLatency = dispatchLatency;
+        this.suspendTime = suspendTime;
+    }
+
+    /**
+     * Get the number of events removed from the event queue.
+     *
+     * @return The number of events
+     */
+    public long events() {
+        long events = 0;
+
+        for (long count : eventCounts) {
+            events += count;
+        }
+
+        return events;
+    }
+
+    /**
+     * Get the number of events of a type removed from the event queue.
+     *
+     * @param type Event type
+     * @return The number of events
+     */
+    public long events(EventType type) {
+        return eventCounts[Validate.notNull(type).ordinal()];
+    }
+
+    /**
+     * Get the number of event sets removed from the event queue.
+     *
+     * @return The number of event sets
+     */
+    public long eventSets() {
+        return eventSets;
+    }
+
+    /**
+     * Get the number of event sets whose dispatch latency and suspend time
+     * could not be measured, because too many sets were in flight at once.
+     *
+     * @return The number of untracked event sets
+     */
+    public long untrackedEventSets() {
+        return untrackedEventSets;
+    }
+
+    /**
+     * Get the number of times an event set was not delivered to one of the
+     * visitors of a fan-out, because the visitor had fallen behind.
+     *
+     * @return The number of overflowed deliveries
+     * @see FanOutConfig
+     */
+    public long overflowedDeliveries() {
+        return overflowedDeliveries;
+    }
+
+    /**
+     * Get the histogram of the number of events per event set.
+     *
+     * @return The events per set
+     */
+    public HistogramSnapshot eventsPerSet() {
+        return eventsPerSet;
+    }
+
+    /**
+     * Get the histogram of the time the event thread waited in
+     * {@code EventQueue.remove()} for each event set.
+     *
+     * @return The queue wait times
+     */
+    public HistogramSnapshot queueWait() {
+        return queueWait;
+    }
+
+    /**
+     * Get the histogram of the time from the removal of each event set from
+     * the event queue to the completion of its visit.
+     *
+     * @return The dispatch latencies
+     */
+    public HistogramSnapshot dispatchLatency() {
+        return dispatchLatency;
+    }
+
+    /**
+     * Get the histogram of the time from the removal of each event set from
+     * the event queue to its resumption, during which the debuggee (or the
+     * event's thread) is suspended, depending on the set's suspend policy.
+     *
+     * @return The suspend times
+     */
+    public HistogramSnapshot suspendTime() {
+        return suspendTime;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+/**
+ * What the event thread does when one of the visitors of a fan-out has
+ * fallen behind and its ring buffer is full.
+ *
+ * @author Adrian Herrera
+ * @see FanOutConfig
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Wait for the visitor to make room. No event set is lost, but the
+     * slowest visitor holds up the event thread, and so every other visitor.
+     */
+    BLOCK,
+
+    /**
+     * Do not deliver the event set to that visitor, and count it as an
+     * overflowed delivery in the {@link DispatchMetrics}. The other visitors
+     * are not held up. Event sets with virtual machine lifecycle events
+     * ({@code VMStartEvent}, {@code VMDeathEvent} and
+     * {@code VMDisconnectEvent}) are never dropped: the event thread waits
+     * for room for them.
+     */
+    DROP
+}
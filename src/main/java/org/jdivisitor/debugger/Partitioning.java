@@ -0,0 +1,50 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+/**
+ * How an event pipeline distributes event sets over its consumer threads.
+ *
+ * @author Adrian Herrera
+ * @see PipelineConfig
+ */
+public enum Partitioning {
+
+    /**
+     * All consumers take event sets from one shared ring buffer. Events may
+     * be visited in any order.
+     */
+    SHARED,
+
+    /**
+     * Each consumer is a lane with its own ring buffer, and event sets are
+     * assigned to a lane by hashing the debuggee thread they occurred in.
+     * Events from one debuggee thread are visited in order, while events from
+     * different threads may be visited concurrently.
+     *
+     * <p>
+     * Event sets that are not associated with a single thread, and the
+     * virtual machine lifecycle events ({@code VMStartEvent},
+     * {@code VMDeathEvent} and {@code VMDisconnectEvent}), act as barriers:
+     * they are visited on the event thread once every lane has drained.
+     * </p>
+     */
+    THREAD
+}
@@ -0,0 +1,181 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import org.apache.commons.lang3.Validate;
+
+import com.sun.jdi.request.EventRequest;
+
+/**
+ * Configures the optional event pipeline of a {@link Debugger}.
+ *
+ * <p>
+ * When a pipeline is used, the event thread only drains the virtual machine's
+ * event queue into a bounded ring buffer. One or more consumer threads take
+ * event sets from the ring buffer and run the event visitor. When the ring
+ * buffer is full the event thread stops draining the queue until the
+ * consumers catch up.
+ * </p>
+ *
+ * <p>
+ * Each suspend policy has its own {@link ResumeMode}. Event sets with a
+ * {@code SUSPEND_NONE} policy suspend nothing and are always resumed
+ * immediately.
+ * </p>
+ *
+ * <p>
+ * With {@link Partitioning#SHARED} partitioning and more than one consumer,
+ * events may be visited out of order. {@link Partitioning#THREAD}
+ * partitioning gives each consumer its own lane and preserves the order of
+ * the events within each debuggee thread.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public final class PipelineConfig {
+
+    /**
+     * Maximum number of event sets waiting to be visited.
+     */
+    private final int capacity;
+
+    /**
+     * Number of consumer threads.
+     */
+    private final int consumers;
+
+    /**
+     * Resume mode for {@code SUSPEND_ALL} event sets.
+     */
+    private final ResumeMode suspendAllMode;
+
+    /**
+     * Resume mode for {@code SUSPEND_EVENT_THREAD} event sets.
+     */
+    private final ResumeMode suspendEventThreadMode;
+
+    /**
+     * How event sets are distributed over the consumers.
+     */
+    private final Partitioning partitioning;
+
+    /**
+     * Constructor. <br>
+     * <br>
+     * Event sets are resumed after they have been visited, whatever their
+     * suspend policy, and all consumers share one ring buffer.
+     *
+     * @param capacity Maximum number of event sets waiting to be visited (must
+     *        be positive)
+     * @param consumers Number of consumer threads (must be positive)
+     */
+    public PipelineConfig(int capacity, int consumers) {
+        this(capacity, consumers, ResumeMode.AFTER_VISIT,
+                ResumeMode.AFTER_VISIT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Maximum number of event sets waiting to be visited (must
+     *        be positive)
+     * @param consumers Number of consumer threads (must be positive)
+     * @param suspendAllMode When to resume {@code SUSPEND_ALL} event sets
+     *        (cannot be {@code null})
+     * @param suspendEventThreadMode When to resume
+     *        {@code SUSPEND_EVENT_THREAD} event sets (cannot be {@code null})
+     */
+    public PipelineConfig(int capacity, int consumers,
+            ResumeMode suspendAllMode, ResumeMode suspendEventThreadMode) {
+        this(capacity, consumers, suspendAllMode, suspendEventThreadMode,
+                Partitioning.SHARED);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Maximum number of event sets waiting to be visited by
+     *        each ring buffer (must be positive)
+     * @param consumers Number of consumer threads (must be positive)
+     * @param suspendAllMode When to resume {@code SUSPEND_ALL} event sets
+     *        (cannot be {@code null})
+     * @param suspendEventThreadMode When to resume
+     *        {@code SUSPEND_EVENT_THREAD} event sets (cannot be {@code null})
+     * @param partitioning How event sets are distributed over the consumers
+     *        (cannot be {@code null})
+     */
+    public PipelineConfig(int capacity, int consumers,
+            ResumeMode suspendAllMode, ResumeMode suspendEventThreadMode,
+            Partitioning partitioning) {
+        Validate.isTrue(capacity > 0, "Capacity must be positive");
+        Validate.isTrue(consumers > 0, "Number of consumers must be positive");
+
+        this.capacity = capacity;
+        this.consumers = consumers;
+        this.suspendAllMode = Validate.notNull(suspendAllMode);
+        this.suspendEventThreadMode = Validate.notNull(suspendEventThreadMode);
+        this.partitioning = Validate.notNull(partitioning);
+    }
+
+    /**
+     * Get the maximum number of event sets waiting to be visited by each ring
+     * buffer.
+     *
+     * @return The ring buffer capacity
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of consumer threads.
+     *
+     * @return The number of consumer threads
+     */
+    public int consumers() {
+        return consumers;
+    }
+
+    /**
+     * Get how event sets are distributed over the consumers.
+     *
+     * @return The partitioning
+     */
+    public Partitioning partitioning() {
+        return partitioning;
+    }
+
+    /**
+     * Get the resume mode for event sets with the given suspend policy.
+     *
+     * @param suspendPolicy One of the {@code EventRequest.SUSPEND_*} constants
+     * @return The resume mode
+     */
+    public ResumeMode resumeMode(int suspendPolicy) {
+        switch (suspendPolicy) {
+        case EventRequest.SUSPEND_ALL:
+            return suspendAllMode;
+        case EventRequest.SUSPEND_EVENT_THREAD:
+            return suspendEventThreadMode;
+        default:
+            return ResumeMode.IMMEDIATE;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.VMDisconnectedException;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventIterator;
+import com.sun.jdi.event.EventSet;
+
+/**
+ * Hands event sets over to a pool of consumer threads through bounded
+ * {@link RingBuffer}s, so that the event thread can return to the event queue
+ * straight away. The consumers visit the events with a delegate handler and
+ * resume each set as configured by a {@link PipelineConfig}.
+ *
+ * <p>
+ * With {@link Partitioning#SHARED} partitioning all consumers take from one
+ * ring buffer. With {@link Partitioning#THREAD} partitioning each consumer
+ * is a lane with its own ring buffer, event sets are assigned to lanes by
+ * debuggee thread, and barrier event sets are visited on the event thread
+ * once all lanes have drained.
+ * </p>
+ *
+ * <p>
+ * If the event visitor throws an exception on a consumer thread, the
+ * exception is rethrown on the event thread the next time it hands over an
+ * event set. The consumers keep draining their ring buffers without visiting
+ * what is left, so that every event set handed over is still resumed.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+class PipelinedEventSetHandler extends EventSetHandler {
+
+    /**
+     * How long (in milliseconds) an idle consumer waits for an event set
+     * before checking whether the pipeline has been closed.
+     */
+    private static final long POLL_MILLIS = 10;
+
+    /**
+     * Visits the events on the consumer threads.
+     */
+    private final EventSetHandler delegate;
+
+    private final PipelineConfig config;
+
+    /**
+     * Event sets waiting to be visited. There is either one shared ring
+     * buffer or one per lane.
+     */
+    private final RingBuffer<EventSet>[] ringBuffers;
+
+    private final Thread[] consumers;
+
+    /**
+     * Number of event sets handed over but not yet visited.
+     */
+    private final AtomicLong inFlight = new AtomicLong();
+
+    /**
+     * No further event sets will be handed over.
+     */
+    private volatile boolean closed;
+
+    /**
+     * The first exception thrown on a consumer thread.
+     */
+    private volatile Throwable failure;
+
+    /**
+     * Create a new pipelined handler.
+     *
+     * @param delegate Visits the events on the consumer threads
+     * @param config Pipeline configuration
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    PipelinedEventSetHandler(EventSetHandler delegate, PipelineConfig config) {
+        this.delegate = Validate.notNull(delegate);
+        this.config = Validate.notNull(config);
+
+        int numRingBuffers = 1;
+        if (config.partitioning() == Partitioning.THREAD) {
+            numRingBuffers = config.consumers();
+        }
+        this.ringBuffers = new RingBuffer[numRingBuffers];
+        for (int i = 0; i < numRingBuffers; i++) {
+            ringBuffers[i] = new RingBuffer<EventSet>(config.capacity());
+        }
+
+        this.consumers = new Thread[config.consumers()];
+        for (int i = 0; i < consumers.length; i++) {
+            RingBuffer<EventSet> ringBuffer = ringBuffers[i % numRingBuffers];
+
+            consumers[i] = new Thread(new Consumer(ringBuffer),
+                    "jdi-event-consumer-" + i);
+        }
+    }
+
+    @Override
+    void start() {
+        delegate.start();
+        for (Thread consumer : consumers) {
+            consumer.start();
+        }
+    }
+
+    @Override
+    void handle(EventSet eventSet) throws InterruptedException {
+        checkFailure();
+
+        int lane = lane(eventSet);
+        if (lane < 0) {
+            handleBarrier(eventSet);
+            return;
+        }
+
+        if (resumeMode(eventSet) == ResumeMode.IMMEDIATE) {
+            resume(eventSet);
+        }
+
+        // A set that is not handed over is no longer in flight, and is not
+        // left suspended for a consumer to resume
+        inFlight.incrementAndGet();
+        boolean offered = false;
+        try {
+            for (int tries = 0; !ringBuffers[lane].offer(eventSet); tries++) {
+                checkFailure();
+                RingBuffer.idle(tries);
+            }
+            offered = true;
+        } finally {
+            if (!offered) {
+                inFlight.decrementAndGet();
+                if (resumeMode(eventSet) == ResumeMode.AFTER_VISIT) {
+                    resumeQuietly(eventSet);
+                }
+            }
+        }
+    }
+
+    @Override
+    void visit(EventSet eventSet) {
+        delegate.visit(eventSet);
+    }
+
+    @Override
+    void visit(Event event) {
+        delegate.visit(event);
+    }
+
+    @Override
+    void close() throws InterruptedException {
+        closed = true;
+
+        for (Thread consumer : consumers) {
+            consumer.join();
+        }
+        delegate.close();
+    }
+
+    /**
+     * Choose the ring buffer an event set is handed over to.
+     *
+     * @param eventSet Event set
+     * @return Index of the ring buffer, or {@code -1} if the event set is a
+     *         barrier
+     */
+    private int lane(EventSet eventSet) {
+        if (ringBuffers.length == 1) {
+            return 0;
+        }
+
+        ThreadReference thread = null;
+        EventIterator eventIterator = eventSet.eventIterator();
+        while (eventIterator.hasNext()) {
+            Event event = eventIterator.nextEvent();
+            EventType eventType = EventType.of(event);
+
+            switch (eventType) {
+            case VM_START:
+            case VM_DEATH:
+            case VM_DISCONNECT:
+                return -1;
+            default:
+                ThreadReference eventThread = eventType.thread(event);
+                if (eventThread == null
+                        || (thread != null && !thread.equals(eventThread))) {
+                    return -1;
+                }
+                thread = eventThread;
+            }
+        }
+
+        if (thread == null) {
+            return -1;
+        }
+
+        long id = thread.uniqueID();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+
+        return (hash >>> 1) % ringBuffers.length;
+    }
+
+    /**
+     * Wait for every lane to drain, then visit a barrier event set on the
+     * calling thread.
+     *
+     * @param eventSet Barrier event set
+     * @throws InterruptedException Interrupted while waiting
+     */
+    private void handleBarrier(EventSet eventSet) throws InterruptedException {
+        for (int tries = 0; inFlight.get() > 0; tries++) {
+            checkFailure();
+            RingBuffer.idle(tries);
+        }
+        checkFailure();
+
+        visiting(eventSet);
+        delegate.visit(eventSet);
+        visited(eventSet);
+        resume(eventSet);
+    }
+
+    /**
+     * Get the resume mode of an event set.
+     *
+     * @param eventSet Event set
+     * @return The resume mode for the set's suspend policy
+     */
+    private ResumeMode resumeMode(EventSet eventSet) {
+        return config.resumeMode(eventSet.suspendPolicy());
+    }
+
+    /**
+     * Resume an event set, ignoring a disconnected virtual machine.
+     *
+     * @param eventSet Event set to resume
+     */
+    private void resumeQuietly(EventSet eventSet) {
+        try {
+            resume(eventSet);
+        } catch (VMDisconnectedException e) {
+            // Nothing left to resume
+        }
+    }
+
+    /**
+     * Rethrow the first exception thrown on a consumer thread, if any.
+     */
+    private void checkFailure() {
+        Throwable t = failure;
+
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+    }
+
+    /**
+     * Visits event sets taken from a ring buffer until the pipeline is
+     * closed and the ring buffer is empty.
+     */
+    private class Consumer implements Runnable {
+
+        private final RingBuffer<EventSet> ringBuffer;
+
+        Consumer(RingBuffer<EventSet> ringBuffer) {
+            this.ringBuffer = ringBuffer;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (;;) {
+                    EventSet eventSet = ringBuffer.poll(POLL_MILLIS,
+                            TimeUnit.MILLISECONDS);
+
+                    if (eventSet != null) {
+                        consume(eventSet);
+                    } else if (closed && ringBuffer.isEmpty()) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Visit an event set, unless the visitor has already failed, and
+         * resume it if it was not resumed when it was handed over.
+         *
+         * @param eventSet Event set to visit
+         */
+        private void consume(EventSet eventSet) {
+            try {
+                if (failure == null) {
+                    visit(eventSet);
+                }
+            } finally {
+                if (resumeMode(eventSet) == ResumeMode.AFTER_VISIT) {
+                    resumeQuietly(eventSet);
+                }
+                inFlight.decrementAndGet();
+            }
+        }
+
+        /**
+         * Visit an event set, recording the first exception thrown by the
+         * visitor.
+         *
+         * @param eventSet Event set to visit
+         */
+        private void visit(EventSet eventSet) {
+            try {
+                visiting(eventSet);
+                delegate.visit(eventSet);
+            } catch (VMDisconnectedException e) {
+                // The event thread deals with the disconnection
+            } catch (RuntimeException | Error e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            } finally {
+                visited(eventSet);
+            }
+        }
+    }
+}
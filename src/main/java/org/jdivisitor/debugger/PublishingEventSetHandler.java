@@ -0,0 +1,217 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventIterator;
+import com.sun.jdi.event.EventSet;
+
+/**
+ * Publishes the events of each event set to a {@link Flow.Subscriber}, and
+ * is the subscriber's {@link Flow.Subscription}. The event thread waits for
+ * demand before each event, and only resumes an event set, and goes back to
+ * the event queue, once all of its events have been delivered, so the
+ * subscriber's demand throttles the debuggee instead of a buffer growing.
+ *
+ * <p>
+ * Cancelling the subscription cancels the session, disposing of the virtual
+ * machine. The subscriber is completed once the virtual machine disconnects,
+ * or signalled an error if the session fails.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+class PublishingEventSetHandler extends EventSetHandler implements
+        Flow.Subscription {
+
+    private final Flow.Subscriber<? super Event> subscriber;
+
+    /**
+     * Guards the demand.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when the demand is raised or the subscription is cancelled.
+     */
+    private final Condition demanded = lock.newCondition();
+
+    /**
+     * Number of events requested but not yet delivered. Unbounded once it
+     * reaches {@code Long.MAX_VALUE}.
+     */
+    private long demand;
+
+    private volatile boolean cancelled;
+
+    /**
+     * The error to signal instead of completion, if the subscriber broke the
+     * subscription's rules.
+     */
+    private volatile Throwable error;
+
+    /**
+     * The session the events come from, or {@code null} until it has been
+     * started.
+     */
+    private volatile DebuggerSession session;
+
+    /**
+     * Create a new publishing handler.
+     *
+     * @param subscriber Subscriber to publish events to
+     */
+    PublishingEventSetHandler(Flow.Subscriber<? super Event> subscriber) {
+        this.subscriber = subscriber;
+    }
+
+    /**
+     * Attach the session the events come from, and signal the subscriber
+     * once it ends.
+     *
+     * @param session The started session
+     */
+    void attach(DebuggerSession session) {
+        this.session = session;
+
+        session.completion().whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(Void result, Throwable t) {
+                if (error != null) {
+                    subscriber.onError(error);
+                } else if (t == null) {
+                    subscriber.onComplete();
+                } else if (!(t instanceof CancellationException)) {
+                    subscriber.onError(t);
+                }
+            }
+        });
+
+        if (cancelled) {
+            session.cancel();
+        }
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            error = new IllegalArgumentException(
+                    "Number of events requested must be positive");
+            cancel();
+            return;
+        }
+
+        lock.lock();
+        try {
+            demand += n;
+            if (demand < 0) {
+                demand = Long.MAX_VALUE;
+            }
+            demanded.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+
+        lock.lock();
+        try {
+            demanded.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        DebuggerSession session = this.session;
+        if (session != null) {
+            session.cancel();
+        }
+    }
+
+    /**
+     * Deliver the events of an event set as they are requested, then resume
+     * the set.
+     *
+     * @param eventSet Event set to handle
+     * @throws InterruptedException Interrupted while waiting for demand
+     */
+    @Override
+    void handle(EventSet eventSet) throws InterruptedException {
+        visiting(eventSet);
+
+        EventIterator eventIterator = eventSet.eventIterator();
+        while (eventIterator.hasNext() && awaitDemand()) {
+            subscriber.onNext(eventIterator.nextEvent());
+        }
+
+        visited(eventSet);
+        resume(eventSet);
+    }
+
+    /**
+     * Deliver a single event once it is requested.
+     *
+     * @param event Event to deliver
+     */
+    @Override
+    void visit(Event event) {
+        try {
+            if (awaitDemand()) {
+                subscriber.onNext(event);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait until an event has been requested, and take it off the demand.
+     *
+     * @return {@code true} if an event may be delivered, {@code false} if
+     *         the subscription has been cancelled
+     * @throws InterruptedException Interrupted while waiting
+     */
+    private boolean awaitDemand() throws InterruptedException {
+        lock.lock();
+        try {
+            while (demand == 0 && !cancelled) {
+                demanded.await();
+            }
+            if (cancelled) {
+                return false;
+            }
+
+            if (demand != Long.MAX_VALUE) {
+                demand--;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
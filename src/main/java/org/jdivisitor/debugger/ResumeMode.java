@@ -0,0 +1,44 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+/**
+ * When an event set that suspended the target virtual machine (or one of its
+ * threads) is resumed.
+ *
+ * @author Adrian Herrera
+ * @see PipelineConfig
+ */
+public enum ResumeMode {
+
+    /**
+     * Resume the event set as soon as it has been removed from the event
+     * queue, before it is visited. The debuggee only stays suspended for the
+     * JDWP round trip, but the visitor can no longer rely on the suspended
+     * state (e.g. to inspect stack frames).
+     */
+    IMMEDIATE,
+
+    /**
+     * Resume the event set once all of its events have been visited. This is
+     * the behaviour of the inline (non-pipelined) event thread.
+     */
+    AFTER_VISIT
+}
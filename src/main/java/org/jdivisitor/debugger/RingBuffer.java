@@ -0,0 +1,255 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A bounded, lock-free ring buffer that supports multiple producers and
+ * multiple consumers.
+ *
+ * <p>
+ * Each slot carries a sequence number that tells producers and consumers
+ * whether the slot is free to be written or ready to be read (D. Vyukov's
+ * bounded MPMC queue). The non-blocking {@code offer} and {@code poll}
+ * methods never take a lock; the blocking {@code put} and {@code take}
+ * variants spin, yield and then park for increasingly long periods while
+ * they wait.
+ * </p>
+ *
+ * @author Adrian Herrera
+ * @param <E> Element type
+ */
+final class RingBuffer<E> {
+
+    /**
+     * Longest time (in nanoseconds) a blocked producer or consumer parks for
+     * before checking the ring buffer again.
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS
+            .toNanos(1);
+
+    /**
+     * Number of idle iterations spent spinning before yielding.
+     */
+    private static final int SPIN_TRIES = 64;
+
+    /**
+     * Number of idle iterations spent yielding before parking.
+     */
+    private static final int YIELD_TRIES = 128;
+
+    private final AtomicReferenceArray<E> elements;
+
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    /**
+     * Sequence of the next slot to write.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Sequence of the next slot to read.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Create a new ring buffer. The capacity is rounded up to the next power
+     * of two, and to at least two: with a single slot, the sequence of a
+     * written slot is also that of a free slot for the next lap.
+     *
+     * @param capacity Minimum capacity (must be positive)
+     */
+    RingBuffer(int capacity) {
+        Validate.isTrue(capacity > 0, "Capacity must be positive");
+        Validate.isTrue(capacity <= 1 << 30, "Capacity is too large");
+
+        int size = Math.max(2, Integer.highestOneBit(capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        elements = new AtomicReferenceArray<E>(size);
+        sequences = new AtomicLongArray(size);
+        mask = size - 1;
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Get the capacity of the ring buffer.
+     *
+     * @return The capacity
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Get the (approximate) number of elements in the ring buffer.
+     *
+     * @return The number of elements
+     */
+    int size() {
+        long size = tail.get() - head.get();
+
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * Check if the ring buffer is (approximately) empty.
+     *
+     * @return {@code true} if the ring buffer is empty
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Add an element if there is space for it.
+     *
+     * @param element Element to add (cannot be {@code null})
+     * @return {@code true} if the element was added, {@code false} if the ring
+     *         buffer is full
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        int index;
+
+        for (;;) {
+            index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+
+        elements.lazySet(index, element);
+        sequences.set(index, position + 1);
+
+        return true;
+    }
+
+    /**
+     * Remove the oldest element, if there is one.
+     *
+     * @return The oldest element, or {@code null} if the ring buffer is empty
+     */
+    E poll() {
+        long position = head.get();
+        int index;
+
+        for (;;) {
+            index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+
+        E element = elements.get(index);
+        elements.lazySet(index, null);
+        sequences.set(index, position + mask + 1);
+
+        return element;
+    }
+
+    /**
+     * Add an element, waiting for space to become available if necessary.
+     *
+     * @param element Element to add (cannot be {@code null})
+     * @throws InterruptedException Interrupted while waiting
+     */
+    void put(E element) throws InterruptedException {
+        for (int tries = 0; !offer(element); tries++) {
+            idle(tries);
+        }
+    }
+
+    /**
+     * Remove the oldest element, waiting up to the given time for one to
+     * become available.
+     *
+     * @param timeout How long to wait
+     * @param unit Unit of {@code timeout}
+     * @return The oldest element, or {@code null} if the time elapsed
+     * @throws InterruptedException Interrupted while waiting
+     */
+    E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E element;
+
+        for (int tries = 0; (element = poll()) == null; tries++) {
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            idle(tries);
+        }
+
+        return element;
+    }
+
+    /**
+     * Wait a little before trying again.
+     *
+     * @param tries Number of failed attempts so far
+     * @throws InterruptedException Interrupted while waiting
+     */
+    static void idle(int tries) throws InterruptedException {
+        if (tries < SPIN_TRIES) {
+            return;
+        } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            int shift = Math.min(tries - SPIN_TRIES - YIELD_TRIES, 10);
+            LockSupport.parkNanos(Math.min(1000L << shift, MAX_PARK_NANOS));
+        }
+
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.snapshot.EventSnapshot;
+import org.jdivisitor.debugger.event.snapshot.SnapshotAttribute;
+import org.jdivisitor.debugger.event.snapshot.SnapshotVisitor;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventIterator;
+import com.sun.jdi.event.EventSet;
+
+/**
+ * Captures a snapshot of every event in an event set, resumes the set and
+ * only then passes the snapshots to a {@link SnapshotVisitor}. The debuggee
+ * is suspended for the time it takes to capture the declared attributes, not
+ * for the time it takes to visit them.
+ *
+ * @author Adrian Herrera
+ */
+class SnapshotEventSetHandler extends EventSetHandler {
+
+    private final SnapshotVisitor snapshotVisitor;
+
+    /**
+     * Attributes to capture.
+     */
+    private final Set<SnapshotAttribute> attributes;
+
+    /**
+     * Create a new snapshot handler.
+     *
+     * @param visitor Snapshot visitor (may be {@code null})
+     * @param attributes Attributes to capture
+     */
+    SnapshotEventSetHandler(SnapshotVisitor visitor,
+            Set<SnapshotAttribute> attributes) {
+        this.snapshotVisitor = visitor;
+        this.attributes = EnumSet.noneOf(SnapshotAttribute.class);
+        this.attributes.addAll(Validate.notNull(attributes));
+    }
+
+    @Override
+    void handle(EventSet eventSet) {
+        if (snapshotVisitor == null) {
+            visiting(eventSet);
+            visited(eventSet);
+            resume(eventSet);
+            return;
+        }
+
+        EventSnapshot[] snapshots = new EventSnapshot[eventSet.size()];
+        int numSnapshots = 0;
+
+        // The set is resumed even if an attribute cannot be captured
+        try {
+            EventIterator eventIterator = eventSet.eventIterator();
+            while (eventIterator.hasNext()) {
+                snapshots[numSnapshots++] = new EventSnapshot(
+                        eventIterator.nextEvent(), attributes);
+            }
+        } finally {
+            resume(eventSet);
+        }
+
+        visiting(eventSet);
+        for (int i = 0; i < numSnapshots; i++) {
+            snapshotVisitor.visit(snapshots[i]);
+        }
+        visited(eventSet);
+    }
+
+    @Override
+    void visit(Event event) {
+        if (snapshotVisitor != null) {
+            snapshotVisitor.visit(new EventSnapshot(event, attributes));
+        }
+    }
+}
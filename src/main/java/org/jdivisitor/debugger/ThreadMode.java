@@ -0,0 +1,143 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * The kind of thread that a debugger's event loop, or a launched virtual
+ * machine's output redirection, runs on.
+ *
+ * <p>
+ * These threads spend nearly all of their time blocked on the event queue or
+ * on the debuggee's output, so running them on virtual threads lets one
+ * debugger process supervise many more virtual machines than it could afford
+ * platform threads (and their stacks) for.
+ * </p>
+ *
+ * <p>
+ * Virtual threads need JDK 21 or later; they are looked up at run time so
+ * that the library still runs on older JDKs in {@link #PLATFORM} mode. JDI's
+ * event queue waits with {@code Object.wait}, which pins a virtual thread to
+ * its carrier before JDK 24, so event loops only release their carrier
+ * threads while waiting on JDK 24 and later.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public enum ThreadMode {
+
+    /**
+     * One platform thread per loop.
+     */
+    PLATFORM {
+        @Override
+        public boolean isSupported() {
+            return true;
+        }
+
+        @Override
+        public Thread newThread(String name, Runnable task) {
+            return new Thread(task, name);
+        }
+    },
+
+    /**
+     * One virtual thread per loop.
+     */
+    VIRTUAL {
+        @Override
+        public boolean isSupported() {
+            return VirtualThreads.OF_VIRTUAL != null;
+        }
+
+        @Override
+        public Thread newThread(String name, Runnable task) {
+            Validate.validState(isSupported(),
+                    "Virtual threads need JDK 21 or later");
+
+            try {
+                Object builder = VirtualThreads.OF_VIRTUAL.invoke(null);
+                VirtualThreads.NAME.invoke(builder, name);
+
+                return (Thread) VirtualThreads.UNSTARTED.invoke(builder, task);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    };
+
+    /**
+     * Determine whether this kind of thread is available on the running JDK.
+     *
+     * @return {@code true} if threads of this kind can be created
+     */
+    public abstract boolean isSupported();
+
+    /**
+     * Create a new thread of this kind. The thread is not started.
+     *
+     * @param name Thread name
+     * @param task Runs on the thread
+     * @return The new thread
+     * @throws IllegalStateException If this kind of thread is not supported
+     */
+    public abstract Thread newThread(String name, Runnable task);
+
+    /**
+     * The virtual thread builder methods, or {@code null}s before JDK 21.
+     */
+    private static final class VirtualThreads {
+
+        static final Method OF_VIRTUAL;
+
+        static final Method NAME;
+
+        static final Method UNSTARTED;
+
+        static {
+            Method ofVirtual = null;
+            Method name = null;
+            Method unstarted = null;
+
+            try {
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                name = builder.getMethod("name", String.class);
+                unstarted = builder.getMethod("unstarted", Runnable.class);
+            } catch (ClassNotFoundException | NoSuchMethodException e) {
+                ofVirtual = null;
+            }
+
+            OF_VIRTUAL = ofVirtual;
+            NAME = name;
+            UNSTARTED = unstarted;
+        }
+
+        private VirtualThreads() {
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import org.jdivisitor.debugger.event.visitor.EventSetVisitor;
+import org.jdivisitor.debugger.event.visitor.EventVisitor;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventSet;
+
+/**
+ * Handles event sets by passing each event to an {@code EventVisitor}. If the
+ * visitor is an {@code EventSetVisitor}, whole event sets are passed to it
+ * instead.
+ *
+ * @author Adrian Herrera
+ */
+class VisitorEventSetHandler extends EventSetHandler {
+
+    /**
+     * Event visitor. A {@code null} visitor ignores all events.
+     */
+    private final EventVisitor eventVisitor;
+
+    /**
+     * The event visitor if it visits whole event sets, otherwise {@code null}.
+     */
+    private final EventSetVisitor eventSetVisitor;
+
+    /**
+     * Create a new handler for the given event visitor.
+     *
+     * @param visitor Event visitor (may be {@code null})
+     */
+    VisitorEventSetHandler(EventVisitor visitor) {
+        this.eventVisitor = visitor;
+        this.eventSetVisitor = visitor instanceof EventSetVisitor
+                ? (EventSetVisitor) visitor : null;
+    }
+
+    @Override
+    void visit(EventSet eventSet) {
+        if (eventSetVisitor != null) {
+            eventSetVisitor.visitEventSet(eventSet);
+        } else {
+            super.visit(eventSet);
+        }
+    }
+
+    /**
+     * Visit the event by invoking the event visitor. The event is dispatched
+     * directly to the visitor's matching {@code visit} method, so no
+     * {@code Visitable} wrapper is allocated per event.
+     *
+     * @param event Event to visit
+     */
+    @Override
+    void visit(Event event) {
+        if (eventVisitor != null) {
+            EventType.of(event).dispatch(event, eventVisitor);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.cache;
+
+import com.sun.jdi.Field;
+
+/**
+ * Cached attributes of a {@code Field}.
+ *
+ * @author Adrian Herrera
+ */
+public final class FieldInfo {
+
+    private final TypeInfo declaringType;
+    private final String name;
+    private final String signature;
+    private final String typeName;
+    private final int modifiers;
+
+    /**
+     * Read the attributes of a field.
+     *
+     * @param declaringType Cached attributes of the field's declaring type
+     * @param field Field
+     */
+    FieldInfo(TypeInfo declaringType, Field field) {
+        this.declaringType = declaringType;
+        name = field.name();
+        signature = field.signature();
+        typeName = field.typeName();
+        modifiers = field.modifiers();
+    }
+
+    /**
+     * Get the attributes of the type that declares this field.
+     *
+     * @return The declaring type's attributes
+     */
+    public TypeInfo declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * Get the field name.
+     *
+     * @return The field name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Get the JNI-style signature of the field's type.
+     *
+     * @return The field's type signature
+     */
+    public String signature() {
+        return signature;
+    }
+
+    /**
+     * Get the name of the field's type.
+     *
+     * @return The field's type name
+     */
+    public String typeName() {
+        return typeName;
+    }
+
+    /**
+     * Get the field's Java language modifiers.
+     *
+     * @return The modifiers, as defined in {@code java.lang.reflect.Modifier}
+     */
+    public int modifiers() {
+        return modifiers;
+    }
+
+    @Override
+    public String toString() {
+        return declaringType + "." + name;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.cache;
+
+import com.sun.jdi.AbsentInformationException;
+import com.sun.jdi.Location;
+
+/**
+ * Cached attributes of a {@code Location}.
+ *
+ * @author Adrian Herrera
+ */
+public final class LocationInfo {
+
+    private final MethodInfo method;
+    private final long codeIndex;
+    private final int lineNumber;
+    private final String sourceName;
+
+    /**
+     * Read the attributes of a location.
+     *
+     * @param method Cached attributes of the location's method
+     * @param location Location
+     */
+    LocationInfo(MethodInfo method, Location location) {
+        this.method = method;
+        codeIndex = location.codeIndex();
+        lineNumber = location.lineNumber();
+        sourceName = sourceName(location);
+    }
+
+    /**
+     * Get the attributes of the method containing this location.
+     *
+     * @return The method's attributes
+     */
+    public MethodInfo method() {
+        return method;
+    }
+
+    /**
+     * Get the location's code index.
+     *
+     * @return The code index, or -1 for native methods
+     */
+    public long codeIndex() {
+        return codeIndex;
+    }
+
+    /**
+     * Get the location's line number.
+     *
+     * @return The line number, or -1 if it is not known
+     */
+    public int lineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Get the location's source file name.
+     *
+     * @return The source file name, or {@code null} if it is not known
+     */
+    public String sourceName() {
+        return sourceName;
+    }
+
+    @Override
+    public String toString() {
+        return method + ":" + lineNumber;
+    }
+
+    private static String sourceName(Location location) {
+        try {
+            return location.sourceName();
+        } catch (AbsentInformationException e) {
+            return null;
+        }
+    }
+}
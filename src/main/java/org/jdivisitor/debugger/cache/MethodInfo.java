@@ -0,0 +1,89 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.cache;
+
+import com.sun.jdi.Method;
+
+/**
+ * Cached attributes of a {@code Method}.
+ *
+ * @author Adrian Herrera
+ */
+public final class MethodInfo {
+
+    private final TypeInfo declaringType;
+    private final String name;
+    private final String signature;
+    private final int modifiers;
+
+    /**
+     * Read the attributes of a method.
+     *
+     * @param declaringType Cached attributes of the method's declaring type
+     * @param method Method
+     */
+    MethodInfo(TypeInfo declaringType, Method method) {
+        this.declaringType = declaringType;
+        name = method.name();
+        signature = method.signature();
+        modifiers = method.modifiers();
+    }
+
+    /**
+     * Get the attributes of the type that declares this method.
+     *
+     * @return The declaring type's attributes
+     */
+    public TypeInfo declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * Get the method name.
+     *
+     * @return The method name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Get the JNI-style method signature.
+     *
+     * @return The method signature
+     */
+    public String signature() {
+        return signature;
+    }
+
+    /**
+     * Get the method's Java language modifiers.
+     *
+     * @return The modifiers, as defined in {@code java.lang.reflect.Modifier}
+     */
+    public int modifiers() {
+        return modifiers;
+    }
+
+    @Override
+    public String toString() {
+        return declaringType + "." + name + signature;
+    }
+}
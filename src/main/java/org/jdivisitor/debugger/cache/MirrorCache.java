@@ -0,0 +1,299 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.EventInterceptor;
+import org.jdivisitor.debugger.request.EventRequestor;
+import com.sun.jdi.Field;
+import com.sun.jdi.Location;
+import com.sun.jdi.Method;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.event.ClassUnloadEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.VMDisconnectEvent;
+import com.sun.jdi.request.ClassUnloadRequest;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+
+/**
+ * A bounded cache of the attributes of JDI mirrors ({@code ReferenceType},
+ * {@code Method}, {@code Field} and {@code Location}), so that visitors that
+ * look up the same names, signatures and line numbers over and over again do
+ * not go back to the target VM each time.
+ *
+ * <p>
+ * Entries are keyed by the mirrors themselves, whose equality is based on
+ * their JDWP IDs, and the least recently used entries are evicted once the
+ * cache is full. When the cache's events are requested, it creates a
+ * {@code ClassUnloadRequest}; the entries of a class are removed when its
+ * {@code ClassUnloadEvent} is intercepted, and the whole cache is cleared when
+ * the VM disconnects. Class unloading is rare, so the cache is simply scanned
+ * for the unloaded class's entries.
+ * </p>
+ *
+ * <p>
+ * The cache is thread-safe. Attributes are read from the target VM outside of
+ * the cache's lock, so a slow lookup does not block other threads.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public class MirrorCache implements EventRequestor, EventInterceptor {
+
+    /**
+     * Default maximum number of entries.
+     */
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    /**
+     * Cached attributes, indexed by mirror, in access order.
+     */
+    private final Map<Object, Object> entries;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Create a new mirror cache with the default capacity.
+     */
+    public MirrorCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new mirror cache.
+     *
+     * @param capacity Maximum number of entries (must be positive)
+     */
+    public MirrorCache(final int capacity) {
+        Validate.isTrue(capacity > 0, "Capacity must be positive");
+
+        entries = new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Object, Object> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the attributes of a reference type.
+     *
+     * @param type Reference type (cannot be {@code null})
+     * @return The reference type's attributes
+     */
+    public TypeInfo type(ReferenceType type) {
+        Validate.notNull(type);
+
+        TypeInfo info = (TypeInfo) get(type);
+        if (info == null) {
+            info = (TypeInfo) put(type, new TypeInfo(type));
+        }
+
+        return info;
+    }
+
+    /**
+     * Get the attributes of a method.
+     *
+     * @param method Method (cannot be {@code null})
+     * @return The method's attributes
+     */
+    public MethodInfo method(Method method) {
+        Validate.notNull(method);
+
+        MethodInfo info = (MethodInfo) get(method);
+        if (info == null) {
+            info = (MethodInfo) put(method,
+                    new MethodInfo(type(method.declaringType()), method));
+        }
+
+        return info;
+    }
+
+    /**
+     * Get the attributes of a field.
+     *
+     * @param field Field (cannot be {@code null})
+     * @return The field's attributes
+     */
+    public FieldInfo field(Field field) {
+        Validate.notNull(field);
+
+        FieldInfo info = (FieldInfo) get(field);
+        if (info == null) {
+            info = (FieldInfo) put(field,
+                    new FieldInfo(type(field.declaringType()), field));
+        }
+
+        return info;
+    }
+
+    /**
+     * Get the attributes of a location.
+     *
+     * @param location Location (cannot be {@code null})
+     * @return The location's attributes
+     */
+    public LocationInfo location(Location location) {
+        Validate.notNull(location);
+
+        LocationInfo info = (LocationInfo) get(location);
+        if (info == null) {
+            info = (LocationInfo) put(location,
+                    new LocationInfo(method(location.method()), location));
+        }
+
+        return info;
+    }
+
+    /**
+     * Remove the entries of a class, and of its methods, fields and
+     * locations.
+     *
+     * @param signature JNI-style signature of the class
+     */
+    public synchronized void invalidate(String signature) {
+        Iterator<Object> it = entries.values().iterator();
+
+        while (it.hasNext()) {
+            if (typeOf(it.next()).signature().equals(signature)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return The number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of lookups that were answered from the cache.
+     *
+     * @return The number of cache hits
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups that had to go to the target VM.
+     *
+     * @return The number of cache misses
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Request class unload events, so that unloaded classes can be
+     * invalidated.
+     *
+     * @param erm Event request manager
+     */
+    @Override
+    public void requestEvents(EventRequestManager erm) {
+        ClassUnloadRequest request = erm.createClassUnloadRequest();
+
+        request.setSuspendPolicy(EventRequest.SUSPEND_NONE);
+        request.enable();
+    }
+
+    @Override
+    public boolean intercept(Event event) {
+        if (event instanceof ClassUnloadEvent) {
+            invalidate(((ClassUnloadEvent) event).classSignature());
+        } else if (event instanceof VMDisconnectEvent) {
+            clear();
+        }
+
+        return true;
+    }
+
+    private synchronized Object get(Object mirror) {
+        Object info = entries.get(mirror);
+
+        if (info != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+
+        return info;
+    }
+
+    /**
+     * Add an entry, unless another thread has added one for the same mirror
+     * in the meantime.
+     *
+     * @param mirror JDI mirror
+     * @param info The mirror's attributes
+     * @return The cached attributes
+     */
+    private synchronized Object put(Object mirror, Object info) {
+        Object existing = entries.get(mirror);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        entries.put(mirror, info);
+        return info;
+    }
+
+    /**
+     * Get the type an entry belongs to.
+     *
+     * @param info Cached attributes
+     * @return The attributes of the entry's (declaring) type
+     */
+    private static TypeInfo typeOf(Object info) {
+        if (info instanceof TypeInfo) {
+            return (TypeInfo) info;
+        } else if (info instanceof MethodInfo) {
+            return ((MethodInfo) info).declaringType();
+        } else if (info instanceof FieldInfo) {
+            return ((FieldInfo) info).declaringType();
+        } else {
+            return ((LocationInfo) info).method().declaringType();
+        }
+    }
+}
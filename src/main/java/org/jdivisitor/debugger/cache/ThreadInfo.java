@@ -0,0 +1,94 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.cache;
+
+import com.sun.jdi.ThreadGroupReference;
+import com.sun.jdi.ThreadReference;
+
+/**
+ * Cached attributes of a {@code ThreadReference}. The attributes are read
+ * when the thread is first seen by the {@link ThreadRegistry}; a thread that
+ * is renamed after that keeps its old name here.
+ *
+ * @author Adrian Herrera
+ */
+public final class ThreadInfo {
+
+    private final ThreadReference thread;
+    private final long uniqueID;
+    private final String name;
+    private final String threadGroupName;
+
+    /**
+     * Read the attributes of a thread.
+     *
+     * @param thread Thread
+     */
+    ThreadInfo(ThreadReference thread) {
+        this.thread = thread;
+        uniqueID = thread.uniqueID();
+        name = thread.name();
+
+        ThreadGroupReference group = thread.threadGroup();
+        threadGroupName = group != null ? group.name() : null;
+    }
+
+    /**
+     * Get the thread.
+     *
+     * @return The thread
+     */
+    public ThreadReference thread() {
+        return thread;
+    }
+
+    /**
+     * Get the thread's unique ID.
+     *
+     * @return The thread's unique ID
+     */
+    public long uniqueID() {
+        return uniqueID;
+    }
+
+    /**
+     * Get the thread's name.
+     *
+     * @return The thread name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Get the name of the thread's group.
+     *
+     * @return The thread group name, or {@code null} if the thread had
+     *         terminated
+     */
+    public String threadGroupName() {
+        return threadGroupName;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + uniqueID + ")";
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.EventInterceptor;
+import org.jdivisitor.debugger.request.EventRequestor;
+import com.sun.jdi.ObjectCollectedException;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.ThreadDeathEvent;
+import com.sun.jdi.event.ThreadStartEvent;
+import com.sun.jdi.event.VMDisconnectEvent;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+
+/**
+ * The live threads of the target VM, with their names and thread groups, so
+ * that visitors can correlate events by thread without polling the target
+ * VM.
+ *
+ * <p>
+ * When the registry's events are requested, it creates a
+ * {@code ThreadStartRequest} and a {@code ThreadDeathRequest}, and only then
+ * seeds itself from {@code allThreads()}, so no thread can be missed in
+ * between. From then on it is kept current as it intercepts its thread start
+ * and death events, which are not passed on to the event visitor. The
+ * registry is cleared when the VM disconnects.
+ * </p>
+ *
+ * <p>
+ * Lookups by unique ID are constant time and never go to the target VM. A
+ * thread's name and thread group are read once, when the registry first sees
+ * the thread, and are not refreshed: a thread renamed after that keeps its
+ * old name in the registry.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public class ThreadRegistry implements EventRequestor, EventInterceptor {
+
+    /**
+     * Key of the property that marks the registry's own event requests.
+     */
+    private final Object requestKey = new Object();
+
+    /**
+     * Live threads, indexed by unique ID.
+     */
+    private final ConcurrentMap<Long, ThreadInfo> threads =
+            new ConcurrentHashMap<Long, ThreadInfo>();
+
+    /**
+     * Threads that died while the registry was being seeded, or {@code null}
+     * if it is not being seeded.
+     */
+    private Set<Long> diedWhileSeeding;
+
+    /**
+     * Threads that have died, so that looking them up does not add them
+     * again. Held weakly: a thread whose mirror is no longer referenced
+     * cannot be looked up with it.
+     */
+    private final Map<ThreadReference, Boolean> dead =
+            new WeakHashMap<ThreadReference, Boolean>();
+
+    /**
+     * Get a thread by unique ID.
+     *
+     * @param uniqueID The thread's unique ID
+     * @return The thread's attributes, or {@code null} if there is no such
+     *         live thread
+     */
+    public ThreadInfo get(long uniqueID) {
+        return threads.get(uniqueID);
+    }
+
+    /**
+     * Get a thread. A thread that the registry has not seen yet is read from
+     * the target VM and, unless it has died, added.
+     *
+     * @param thread Thread (cannot be {@code null})
+     * @return The thread's attributes
+     */
+    public ThreadInfo get(ThreadReference thread) {
+        ThreadInfo info = threads.get(Validate.notNull(thread).uniqueID());
+        if (info != null) {
+            return info;
+        }
+
+        info = new ThreadInfo(thread);
+        if (thread.status() == ThreadReference.THREAD_STATUS_ZOMBIE) {
+            return info;
+        }
+
+        synchronized (this) {
+            if (dead.containsKey(thread)) {
+                return info;
+            }
+
+            ThreadInfo existing = threads.putIfAbsent(info.uniqueID(), info);
+            return existing != null ? existing : info;
+        }
+    }
+
+    /**
+     * Get the live threads.
+     *
+     * @return A snapshot of the live threads
+     */
+    public List<ThreadInfo> threads() {
+        return new ArrayList<ThreadInfo>(threads.values());
+    }
+
+    /**
+     * Get the number of live threads.
+     *
+     * @return The number of live threads
+     */
+    public int size() {
+        return threads.size();
+    }
+
+    /**
+     * Request thread start and death events, and seed the registry with the
+     * threads that are already running.
+     *
+     * @param erm Event request manager
+     */
+    @Override
+    public void requestEvents(EventRequestManager erm) {
+        configure(erm.createThreadStartRequest());
+        configure(erm.createThreadDeathRequest());
+
+        synchronized (this) {
+            diedWhileSeeding = new HashSet<Long>();
+        }
+
+        Collection<ThreadReference> running = erm.virtualMachine()
+                .allThreads();
+        List<ThreadInfo> seeds = new ArrayList<ThreadInfo>(running.size());
+        for (ThreadReference thread : running) {
+            try {
+                seeds.add(new ThreadInfo(thread));
+            } catch (ObjectCollectedException e) {
+                // The thread has gone already
+            }
+        }
+
+        synchronized (this) {
+            for (ThreadInfo seed : seeds) {
+                if (!diedWhileSeeding.contains(seed.uniqueID())) {
+                    threads.putIfAbsent(seed.uniqueID(), seed);
+                }
+            }
+            diedWhileSeeding = null;
+        }
+    }
+
+    @Override
+    public boolean intercept(Event event) {
+        if (event instanceof VMDisconnectEvent) {
+            threads.clear();
+            synchronized (this) {
+                dead.clear();
+            }
+            return true;
+        }
+
+        EventRequest request = event.request();
+        if (request == null || request.getProperty(requestKey) == null) {
+            return true;
+        }
+
+        if (event instanceof ThreadStartEvent) {
+            started(((ThreadStartEvent) event).thread());
+        } else if (event instanceof ThreadDeathEvent) {
+            died(((ThreadDeathEvent) event).thread());
+        }
+
+        return false;
+    }
+
+    private void configure(EventRequest request) {
+        request.putProperty(requestKey, Boolean.TRUE);
+        request.setSuspendPolicy(EventRequest.SUSPEND_NONE);
+        request.enable();
+    }
+
+    private void started(ThreadReference thread) {
+        try {
+            ThreadInfo info = new ThreadInfo(thread);
+            threads.put(info.uniqueID(), info);
+        } catch (ObjectCollectedException e) {
+            // The thread has gone already
+        }
+    }
+
+    private synchronized void died(ThreadReference thread) {
+        long uniqueID = thread.uniqueID();
+
+        threads.remove(uniqueID);
+        dead.put(thread, Boolean.TRUE);
+
+        if (diedWhileSeeding != null) {
+            diedWhileSeeding.add(uniqueID);
+        }
+    }
+}
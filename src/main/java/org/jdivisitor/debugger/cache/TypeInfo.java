@@ -0,0 +1,86 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.cache;
+
+import com.sun.jdi.AbsentInformationException;
+import com.sun.jdi.ReferenceType;
+
+/**
+ * Cached attributes of a {@code ReferenceType}.
+ *
+ * @author Adrian Herrera
+ */
+public final class TypeInfo {
+
+    private final String name;
+    private final String signature;
+    private final String sourceName;
+
+    /**
+     * Read the attributes of a reference type.
+     *
+     * @param type Reference type
+     */
+    TypeInfo(ReferenceType type) {
+        name = type.name();
+        signature = type.signature();
+        sourceName = sourceName(type);
+    }
+
+    /**
+     * Get the fully qualified type name.
+     *
+     * @return The type name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Get the JNI-style type signature.
+     *
+     * @return The type signature
+     */
+    public String signature() {
+        return signature;
+    }
+
+    /**
+     * Get the type's source file name.
+     *
+     * @return The source file name, or {@code null} if it is not known
+     */
+    public String sourceName() {
+        return sourceName;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static String sourceName(ReferenceType type) {
+        try {
+            return type.sourceName();
+        } catch (AbsentInformationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.event;
+
+import com.sun.jdi.event.Event;
+
+/**
+ * Interface for classes that see every JDI event before it is visited, and
+ * that may stop an event from reaching the event visitor.
+ *
+ * <p>
+ * Interceptors are called on the event thread, in the order in which the
+ * events were removed from the event queue, while the event's event set is
+ * still suspended. Dropping an event happens before any visitor work (or
+ * allocation) is done for it. An event set whose events are all dropped is
+ * resumed straight away.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public interface EventInterceptor {
+
+    /**
+     * Intercept an event before it is visited.
+     *
+     * @param event The event
+     * @return {@code true} to pass the event on to the visitor, {@code false}
+     *         to drop it
+     */
+    boolean intercept(Event event);
+}
@@ -0,0 +1,44 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.event;
+
+import com.sun.jdi.event.EventSet;
+
+/**
+ * Interface for classes that need to know when the debugger resumes an event
+ * set, typically to drop state that is only valid while the set's threads are
+ * suspended.
+ *
+ * <p>
+ * Listeners are called on the thread that resumes the set (the event thread
+ * or a pipeline consumer thread), just before the set is resumed.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public interface ResumeListener {
+
+    /**
+     * Called just before an event set is resumed.
+     *
+     * @param eventSet The event set about to be resumed
+     */
+    void resuming(EventSet eventSet);
+}
@@ -0,0 +1,311 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.event.snapshot;
+
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import com.sun.jdi.Field;
+import com.sun.jdi.Location;
+import com.sun.jdi.Method;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.Value;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.ExceptionEvent;
+import com.sun.jdi.event.LocatableEvent;
+import com.sun.jdi.event.MethodExitEvent;
+import com.sun.jdi.event.ModificationWatchpointEvent;
+import com.sun.jdi.event.WatchpointEvent;
+
+/**
+ * An immutable copy of selected attributes of a JDI event, captured while the
+ * event's event set was still suspended.
+ *
+ * <p>
+ * Attributes that were not declared when the snapshot was captured, or that
+ * do not apply to the event's type, are {@code null} ({@code -1} for numeric
+ * attributes). Values and object references remain mirrors of the target
+ * virtual machine; they can be inspected later, but an object may have been
+ * garbage collected by then.
+ * </p>
+ *
+ * @author Adrian Herrera
+ * @see SnapshotAttribute
+ */
+public final class EventSnapshot {
+
+    private final EventType type;
+
+    private final Event event;
+
+    private final long nanoTime;
+
+    private final long threadId;
+
+    private final String threadName;
+
+    private final String declaringType;
+
+    private final String methodName;
+
+    private final String methodSignature;
+
+    private final int lineNumber;
+
+    private final long codeIndex;
+
+    private final Value returnValue;
+
+    private final ObjectReference exception;
+
+    private final String exceptionType;
+
+    private final String fieldName;
+
+    private final Value valueToBe;
+
+    /**
+     * Capture a snapshot of the given event.
+     *
+     * @param event JDI event (cannot be {@code null})
+     * @param attributes Attributes to capture (cannot be {@code null})
+     */
+    public EventSnapshot(Event event, Set<SnapshotAttribute> attributes) {
+        this.event = Validate.notNull(event);
+        this.type = EventType.of(event);
+        this.nanoTime = System.nanoTime();
+
+        ThreadReference thread = null;
+        if (attributes.contains(SnapshotAttribute.THREAD)) {
+            thread = type.thread(event);
+        }
+        threadId = thread != null ? thread.uniqueID() : -1;
+        threadName = thread != null ? thread.name() : null;
+
+        Location location = null;
+        if (attributes.contains(SnapshotAttribute.LOCATION)
+                && event instanceof LocatableEvent) {
+            location = ((LocatableEvent) event).location();
+        }
+        if (location != null) {
+            Method method = location.method();
+
+            declaringType = location.declaringType().name();
+            methodName = method.name();
+            methodSignature = method.signature();
+            lineNumber = location.lineNumber();
+            codeIndex = location.codeIndex();
+        } else {
+            declaringType = null;
+            methodName = null;
+            methodSignature = null;
+            lineNumber = -1;
+            codeIndex = -1;
+        }
+
+        Value value = null;
+        if (attributes.contains(SnapshotAttribute.RETURN_VALUE)
+                && event instanceof MethodExitEvent) {
+            try {
+                value = ((MethodExitEvent) event).returnValue();
+            } catch (UnsupportedOperationException e) {
+                // The target virtual machine cannot provide return values
+            }
+        }
+        returnValue = value;
+
+        ObjectReference thrown = null;
+        if (attributes.contains(SnapshotAttribute.EXCEPTION)
+                && event instanceof ExceptionEvent) {
+            thrown = ((ExceptionEvent) event).exception();
+        }
+        exception = thrown;
+        exceptionType = thrown != null ? thrown.referenceType().name() : null;
+
+        Field field = null;
+        value = null;
+        if (attributes.contains(SnapshotAttribute.FIELD)
+                && event instanceof WatchpointEvent) {
+            field = ((WatchpointEvent) event).field();
+            if (event instanceof ModificationWatchpointEvent) {
+                value = ((ModificationWatchpointEvent) event).valueToBe();
+            }
+        }
+        fieldName = field != null ? field.name() : null;
+        valueToBe = value;
+    }
+
+    /**
+     * Get the type of the event.
+     *
+     * @return The event type
+     */
+    public EventType type() {
+        return type;
+    }
+
+    /**
+     * Get the event the snapshot was captured from. The event's event set has
+     * been resumed, so the event must not be used to inspect state that is
+     * only available while suspended (e.g. stack frames).
+     *
+     * @return The JDI event
+     */
+    public Event event() {
+        return event;
+    }
+
+    /**
+     * Get the value of {@code System.nanoTime()} when the snapshot was
+     * captured.
+     *
+     * @return The capture time in nanoseconds
+     */
+    public long nanoTime() {
+        return nanoTime;
+    }
+
+    /**
+     * Get the unique ID of the thread in which the event occurred.
+     *
+     * @return The thread's unique ID, or {@code -1}
+     */
+    public long threadId() {
+        return threadId;
+    }
+
+    /**
+     * Get the name of the thread in which the event occurred.
+     *
+     * @return The thread's name, or {@code null}
+     */
+    public String threadName() {
+        return threadName;
+    }
+
+    /**
+     * Get the name of the type declaring the event's location.
+     *
+     * @return The declaring type's name, or {@code null}
+     */
+    public String declaringType() {
+        return declaringType;
+    }
+
+    /**
+     * Get the name of the method containing the event's location.
+     *
+     * @return The method's name, or {@code null}
+     */
+    public String methodName() {
+        return methodName;
+    }
+
+    /**
+     * Get the JNI signature of the method containing the event's location.
+     *
+     * @return The method's signature, or {@code null}
+     */
+    public String methodSignature() {
+        return methodSignature;
+    }
+
+    /**
+     * Get the line number of the event's location.
+     *
+     * @return The line number, or {@code -1}
+     */
+    public int lineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Get the code index of the event's location.
+     *
+     * @return The code index, or {@code -1}
+     */
+    public long codeIndex() {
+        return codeIndex;
+    }
+
+    /**
+     * Get the value returned by the method of a {@code MethodExitEvent}.
+     *
+     * @return The return value, or {@code null}
+     */
+    public Value returnValue() {
+        return returnValue;
+    }
+
+    /**
+     * Get the exception thrown in an {@code ExceptionEvent}.
+     *
+     * @return The exception, or {@code null}
+     */
+    public ObjectReference exception() {
+        return exception;
+    }
+
+    /**
+     * Get the name of the type of the exception thrown in an
+     * {@code ExceptionEvent}.
+     *
+     * @return The exception's type name, or {@code null}
+     */
+    public String exceptionType() {
+        return exceptionType;
+    }
+
+    /**
+     * Get the name of the field of a {@code WatchpointEvent}.
+     *
+     * @return The field's name, or {@code null}
+     */
+    public String fieldName() {
+        return fieldName;
+    }
+
+    /**
+     * Get the value to be assigned in a {@code ModificationWatchpointEvent}.
+     *
+     * @return The value to be assigned, or {@code null}
+     */
+    public Value valueToBe() {
+        return valueToBe;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(type.toString());
+
+        if (threadName != null) {
+            sb.append(" thread=").append(threadName);
+        }
+        if (methodName != null) {
+            sb.append(" location=").append(declaringType).append('.')
+                    .append(methodName).append(':').append(lineNumber);
+        }
+
+        return sb.toString();
+    }
+}
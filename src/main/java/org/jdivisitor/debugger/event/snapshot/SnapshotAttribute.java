@@ -0,0 +1,62 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.event.snapshot;
+
+/**
+ * The event attributes that can be captured in an {@link EventSnapshot}.
+ *
+ * <p>
+ * Each attribute only applies to the event types that carry it; for other
+ * event types it is ignored. Capturing an attribute may require a round trip
+ * to the target virtual machine, so only declare the attributes a visitor
+ * actually needs.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public enum SnapshotAttribute {
+
+    /**
+     * The unique ID and name of the thread in which the event occurred.
+     */
+    THREAD,
+
+    /**
+     * The declaring type, method name, method signature, line number and code
+     * index of a locatable event's location.
+     */
+    LOCATION,
+
+    /**
+     * The value returned by the method of a {@code MethodExitEvent}.
+     */
+    RETURN_VALUE,
+
+    /**
+     * The thrown exception (and its type name) of an {@code ExceptionEvent}.
+     */
+    EXCEPTION,
+
+    /**
+     * The field (and, for a {@code ModificationWatchpointEvent}, the value to
+     * be assigned) of a {@code WatchpointEvent}.
+     */
+    FIELD
+}
@@ -0,0 +1,39 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.event.snapshot;
+
+/**
+ * Interface for classes that handle {@link EventSnapshot}s. Unlike an
+ * {@code EventVisitor}, a snapshot visitor runs after the event's event set
+ * has been resumed, so it must not rely on the target virtual machine being
+ * suspended.
+ *
+ * @author Adrian Herrera
+ * @see EventSnapshot
+ */
+public interface SnapshotVisitor {
+
+    /**
+     * Visit an event snapshot.
+     *
+     * @param snapshot Snapshot to visit
+     */
+    void visit(EventSnapshot snapshot);
+}
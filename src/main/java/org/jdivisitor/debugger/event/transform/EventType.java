@@ -0,0 +1,434 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.event.transform;
+
+import org.jdivisitor.debugger.event.VisitableAccessWatchpointEvent;
+import org.jdivisitor.debugger.event.VisitableBreakpointEvent;
+import org.jdivisitor.debugger.event.VisitableClassPrepareEvent;
+import org.jdivisitor.debugger.event.VisitableClassUnloadEvent;
+import org.jdivisitor.debugger.event.VisitableExceptionEvent;
+import org.jdivisitor.debugger.event.VisitableLocatableEvent;
+import org.jdivisitor.debugger.event.VisitableMethodEntryEvent;
+import org.jdivisitor.debugger.event.VisitableMethodExitEvent;
+import org.jdivisitor.debugger.event.VisitableModificationWatchpointEvent;
+import org.jdivisitor.debugger.event.VisitableMonitorContendedEnterEvent;
+import org.jdivisitor.debugger.event.VisitableMonitorContendedEnteredEvent;
+import org.jdivisitor.debugger.event.VisitableMonitorWaitEvent;
+import org.jdivisitor.debugger.event.VisitableMonitorWaitedEvent;
+import org.jdivisitor.debugger.event.VisitableStepEvent;
+import org.jdivisitor.debugger.event.VisitableThreadDeathEvent;
+import org.jdivisitor.debugger.event.VisitableThreadStartEvent;
+import org.jdivisitor.debugger.event.VisitableVMDeathEvent;
+import org.jdivisitor.debugger.event.VisitableVMDisconnectEvent;
+import org.jdivisitor.debugger.event.VisitableVMStartEvent;
+import org.jdivisitor.debugger.event.VisitableWatchpointEvent;
+import org.jdivisitor.debugger.event.visitor.EventVisitor;
+import org.jdivisitor.debugger.event.visitor.Visitable;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.event.AccessWatchpointEvent;
+import com.sun.jdi.event.BreakpointEvent;
+import com.sun.jdi.event.ClassPrepareEvent;
+import com.sun.jdi.event.ClassUnloadEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.ExceptionEvent;
+import com.sun.jdi.event.LocatableEvent;
+import com.sun.jdi.event.MethodEntryEvent;
+import com.sun.jdi.event.MethodExitEvent;
+import com.sun.jdi.event.ModificationWatchpointEvent;
+import com.sun.jdi.event.MonitorContendedEnterEvent;
+import com.sun.jdi.event.MonitorContendedEnteredEvent;
+import com.sun.jdi.event.MonitorWaitEvent;
+import com.sun.jdi.event.MonitorWaitedEvent;
+import com.sun.jdi.event.StepEvent;
+import com.sun.jdi.event.ThreadDeathEvent;
+import com.sun.jdi.event.ThreadStartEvent;
+import com.sun.jdi.event.VMDeathEvent;
+import com.sun.jdi.event.VMDisconnectEvent;
+import com.sun.jdi.event.VMStartEvent;
+import com.sun.jdi.event.WatchpointEvent;
+
+/**
+ * The JDI event types that can be handled by an {@code EventVisitor}.
+ *
+ * <p>
+ * Each constant knows how to wrap a JDI event of its type in the matching
+ * {@code Visitable} event, and how to pass the event straight to the matching
+ * {@code EventVisitor} overload without creating a wrapper. The constant for
+ * a concrete JDI event class is resolved once and then cached against that
+ * class, so looking up the type of an event is a single {@link ClassValue}
+ * read.
+ * </p>
+ *
+ * <p>
+ * Constants are declared from the most to the least specific event interface
+ * (e.g. {@code ACCESS_WATCHPOINT} before {@code WATCHPOINT} before
+ * {@code LOCATABLE}), which is the order used when resolving a class.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public enum EventType {
+
+    ACCESS_WATCHPOINT(AccessWatchpointEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableAccessWatchpointEvent(
+                    (AccessWatchpointEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((AccessWatchpointEvent) event);
+        }
+    },
+
+    MODIFICATION_WATCHPOINT(ModificationWatchpointEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableModificationWatchpointEvent(
+                    (ModificationWatchpointEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((ModificationWatchpointEvent) event);
+        }
+    },
+
+    BREAKPOINT(BreakpointEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableBreakpointEvent((BreakpointEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((BreakpointEvent) event);
+        }
+    },
+
+    CLASS_PREPARE(ClassPrepareEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableClassPrepareEvent((ClassPrepareEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((ClassPrepareEvent) event);
+        }
+    },
+
+    CLASS_UNLOAD(ClassUnloadEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableClassUnloadEvent((ClassUnloadEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((ClassUnloadEvent) event);
+        }
+    },
+
+    EXCEPTION(ExceptionEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableExceptionEvent((ExceptionEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((ExceptionEvent) event);
+        }
+    },
+
+    METHOD_ENTRY(MethodEntryEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableMethodEntryEvent((MethodEntryEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((MethodEntryEvent) event);
+        }
+    },
+
+    METHOD_EXIT(MethodExitEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableMethodExitEvent((MethodExitEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((MethodExitEvent) event);
+        }
+    },
+
+    MONITOR_CONTENDED_ENTERED(MonitorContendedEnteredEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableMonitorContendedEnteredEvent(
+                    (MonitorContendedEnteredEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((MonitorContendedEnteredEvent) event);
+        }
+    },
+
+    MONITOR_CONTENDED_ENTER(MonitorContendedEnterEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableMonitorContendedEnterEvent(
+                    (MonitorContendedEnterEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((MonitorContendedEnterEvent) event);
+        }
+    },
+
+    MONITOR_WAITED(MonitorWaitedEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableMonitorWaitedEvent((MonitorWaitedEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((MonitorWaitedEvent) event);
+        }
+    },
+
+    MONITOR_WAIT(MonitorWaitEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableMonitorWaitEvent((MonitorWaitEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((MonitorWaitEvent) event);
+        }
+    },
+
+    STEP(StepEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableStepEvent((StepEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((StepEvent) event);
+        }
+    },
+
+    THREAD_DEATH(ThreadDeathEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableThreadDeathEvent((ThreadDeathEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((ThreadDeathEvent) event);
+        }
+    },
+
+    THREAD_START(ThreadStartEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableThreadStartEvent((ThreadStartEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((ThreadStartEvent) event);
+        }
+    },
+
+    VM_DEATH(VMDeathEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableVMDeathEvent((VMDeathEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((VMDeathEvent) event);
+        }
+    },
+
+    VM_DISCONNECT(VMDisconnectEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableVMDisconnectEvent((VMDisconnectEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((VMDisconnectEvent) event);
+        }
+    },
+
+    VM_START(VMStartEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableVMStartEvent((VMStartEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((VMStartEvent) event);
+        }
+    },
+
+    WATCHPOINT(WatchpointEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableWatchpointEvent((WatchpointEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((WatchpointEvent) event);
+        }
+    },
+
+    LOCATABLE(LocatableEvent.class) {
+        @Override
+        Visitable toVisitable(Event event) {
+            return new VisitableLocatableEvent((LocatableEvent) event);
+        }
+
+        @Override
+        public void dispatch(Event event, EventVisitor visitor) {
+            visitor.visit((LocatableEvent) event);
+        }
+    };
+
+    /**
+     * Caches the event type resolved for each concrete JDI event class.
+     */
+    private static final ClassValue<EventType> TYPES = new ClassValue<EventType>() {
+        @Override
+        protected EventType computeValue(Class<?> type) {
+            for (EventType eventType : values()) {
+                if (eventType.eventClass.isAssignableFrom(type)) {
+                    return eventType;
+                }
+            }
+
+            return null;
+        }
+    };
+
+    /**
+     * The JDI event interface represented by this type.
+     */
+    private final Class<? extends Event> eventClass;
+
+    /**
+     * Constructor.
+     *
+     * @param eventClass The JDI event interface represented by this type
+     */
+    private EventType(Class<? extends Event> eventClass) {
+        this.eventClass = eventClass;
+    }
+
+    /**
+     * Get the JDI event interface represented by this type.
+     *
+     * @return The JDI event interface
+     */
+    public Class<? extends Event> eventClass() {
+        return eventClass;
+    }
+
+    /**
+     * Wrap a JDI event of this type in its visitable event.
+     *
+     * @param event JDI event (must be an instance of {@code eventClass()})
+     * @return The corresponding visitable event
+     */
+    abstract Visitable toVisitable(Event event);
+
+    /**
+     * Pass a JDI event of this type to the visitor's matching {@code visit}
+     * method. Unlike {@code EventTransformer.transform(event).accept(visitor)}
+     * this does not allocate.
+     *
+     * @param event JDI event (must be an instance of {@code eventClass()})
+     * @param visitor Event visitor
+     */
+    public abstract void dispatch(Event event, EventVisitor visitor);
+
+    /**
+     * Get the thread in which a JDI event of this type occurred.
+     *
+     * @param event JDI event (must be an instance of {@code eventClass()})
+     * @return The event's thread, or {@code null} if the event is not
+     *         associated with a thread
+     */
+    public ThreadReference thread(Event event) {
+        switch (this) {
+        case CLASS_PREPARE:
+            return ((ClassPrepareEvent) event).thread();
+        case THREAD_DEATH:
+            return ((ThreadDeathEvent) event).thread();
+        case THREAD_START:
+            return ((ThreadStartEvent) event).thread();
+        case VM_START:
+            return ((VMStartEvent) event).thread();
+        case CLASS_UNLOAD:
+        case VM_DEATH:
+        case VM_DISCONNECT:
+            return null;
+        default:
+            return ((LocatableEvent) event).thread();
+        }
+    }
+
+    /**
+     * Get the type of the given JDI event.
+     *
+     * @param event JDI event
+     * @return The event's type
+     * @throws IllegalArgumentException The event is not of a known type
+     */
+    public static EventType of(Event event) {
+        EventType eventType = TYPES.get(event.getClass());
+
+        if (eventType == null) {
+            String exceptionMsg = String.format("Unknown event type '%s'",
+                    event.getClass().getName());
+            throw new IllegalArgumentException(exceptionMsg);
+        }
+
+        return eventType;
+    }
+}
@@ -19,10 +19,14 @@
 
 package org.jdivisitor.debugger.event.visitor;
 
+import org.jdivisitor.debugger.event.transform.EventType;
 import com.sun.jdi.event.AccessWatchpointEvent;
 import com.sun.jdi.event.BreakpointEvent;
 import com.sun.jdi.event.ClassPrepareEvent;
 import com.sun.jdi.event.ClassUnloadEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventIterator;
+import com.sun.jdi.event.EventSet;
 import com.sun.jdi.event.ExceptionEvent;
 import com.sun.jdi.event.LocatableEvent;
 import com.sun.jdi.event.MethodEntryEvent;
@@ -42,10 +46,20 @@ import com.sun.jdi.event.WatchpointEvent;
 
 /**
  * Provides a visitor with empty method bodies to be overriden by subclasses.
+ * Event sets are visited one event at a time.
  * 
  * @author Adrian Herrera
  */
-public abstract class EmptyEventVisitor implements EventVisitor {
+public abstract class EmptyEventVisitor implements EventSetVisitor {
+
+    @Override
+    public void visitEventSet(EventSet eventSet) {
+        EventIterator eventIterator = eventSet.eventIterator();
+        while (eventIterator.hasNext()) {
+            Event event = eventIterator.nextEvent();
+            EventType.of(event).dispatch(event, this);
+        }
+    }
 
     @Override
     public void visit(AccessWatchpointEvent event) {
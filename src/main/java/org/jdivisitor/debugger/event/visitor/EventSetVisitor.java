@@ -0,0 +1,51 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.event.visitor;
+
+import com.sun.jdi.event.EventSet;
+
+/**
+ * An {@code EventVisitor} that is handed each event set as a whole.
+ *
+ * <p>
+ * All of the events in an event set occurred together and share one suspend
+ * (e.g. a breakpoint and a step at the same location). Visiting the set as a
+ * whole allows a visitor to do per-set work, such as walking the stack or
+ * looking up the thread, once for all of the events in the set.
+ * </p>
+ *
+ * <p>
+ * {@link EmptyEventVisitor} implements this interface by visiting each event
+ * in turn, so its subclasses only need to override
+ * {@link #visitEventSet(EventSet)} if they want to handle sets as a whole.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public interface EventSetVisitor extends EventVisitor {
+
+    /**
+     * Visit an {@code EventSet}. The event set is resumed by the debugger
+     * once this method returns, so the visitor must not resume it.
+     *
+     * @param eventSet Event set to visit
+     */
+    void visitEventSet(EventSet eventSet);
+}
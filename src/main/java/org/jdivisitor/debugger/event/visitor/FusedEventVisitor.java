@@ -0,0 +1,370 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.event.visitor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import com.sun.jdi.event.AccessWatchpointEvent;
+import com.sun.jdi.event.BreakpointEvent;
+import com.sun.jdi.event.ClassPrepareEvent;
+import com.sun.jdi.event.ClassUnloadEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventIterator;
+import com.sun.jdi.event.EventSet;
+import com.sun.jdi.event.ExceptionEvent;
+import com.sun.jdi.event.LocatableEvent;
+import com.sun.jdi.event.MethodEntryEvent;
+import com.sun.jdi.event.MethodExitEvent;
+import com.sun.jdi.event.ModificationWatchpointEvent;
+import com.sun.jdi.event.MonitorContendedEnterEvent;
+import com.sun.jdi.event.MonitorContendedEnteredEvent;
+import com.sun.jdi.event.MonitorWaitEvent;
+import com.sun.jdi.event.MonitorWaitedEvent;
+import com.sun.jdi.event.StepEvent;
+import com.sun.jdi.event.ThreadDeathEvent;
+import com.sun.jdi.event.ThreadStartEvent;
+import com.sun.jdi.event.VMDeathEvent;
+import com.sun.jdi.event.VMDisconnectEvent;
+import com.sun.jdi.event.VMStartEvent;
+import com.sun.jdi.event.WatchpointEvent;
+
+/**
+ * Combines several event visitors into one, calling each visitor only for the
+ * event types it handles.
+ *
+ * <p>
+ * When the visitor is created, each visitor that extends
+ * {@link EmptyEventVisitor} is inspected to find out which {@code visit}
+ * methods it overrides; the others are assumed to handle every event type.
+ * For each event type, the {@code visit} methods of the visitors that handle
+ * it are then fused into a single {@link MethodHandle}, which casts the event
+ * once and calls each of those visitors in turn. Dispatching an event is a
+ * type lookup and one call through that handle, and events of a type that no
+ * visitor handles are skipped without any call at all. Compare this with a
+ * plain composite, which makes a megamorphic call to every visitor for every
+ * event, most of them landing in empty methods.
+ * </p>
+ *
+ * <p>
+ * Visitors that override {@link EventSetVisitor#visitEventSet(EventSet)} are
+ * handed each event set as a whole, before the events of the set are
+ * dispatched to the other visitors. Events visited on their own, through
+ * {@link #dispatch(Event)} or a {@code visit} method, are dispatched to every
+ * visitor that handles their type, including those. Otherwise visitors are
+ * called in the order they were given.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public final class FusedEventVisitor implements EventSetVisitor {
+
+    private static final EventType[] EVENT_TYPES = EventType.values();
+
+    /**
+     * The fused visit methods, by event type ordinal, or {@code null} for
+     * the event types that no visitor handles.
+     */
+    private final MethodHandle[] handles = new MethodHandle[EVENT_TYPES.length];
+
+    /**
+     * The fused visit methods of the visitors that do not visit whole event
+     * sets, used for the events of an event set. The same array as
+     * {@link #handles} if there are no such visitors.
+     */
+    private final MethodHandle[] setHandles;
+
+    /**
+     * The visitors that handle each event type, by event type ordinal.
+     */
+    private final List<List<EventVisitor>> visitors =
+            new ArrayList<List<EventVisitor>>(EVENT_TYPES.length);
+
+    /**
+     * The visitors that visit whole event sets.
+     */
+    private final EventSetVisitor[] eventSetVisitors;
+
+    /**
+     * Create a new fused visitor.
+     *
+     * @param visitors Event visitors, in the order they are called (cannot be
+     *        {@code null} or contain {@code null}s)
+     */
+    public FusedEventVisitor(List<? extends EventVisitor> visitors) {
+        Validate.noNullElements(visitors);
+
+        List<EventSetVisitor> setVisitors = new ArrayList<EventSetVisitor>();
+        for (EventVisitor visitor : visitors) {
+            if (visitor instanceof EventSetVisitor
+                    && overrides(visitor, "visitEventSet", EventSet.class)) {
+                setVisitors.add((EventSetVisitor) visitor);
+            }
+        }
+        this.eventSetVisitors = setVisitors
+                .toArray(new EventSetVisitor[setVisitors.size()]);
+        this.setHandles = setVisitors.isEmpty() ? handles
+                : new MethodHandle[EVENT_TYPES.length];
+
+        for (EventType type : EVENT_TYPES) {
+            List<EventVisitor> handling = new ArrayList<EventVisitor>();
+            List<EventVisitor> handlingEvents = new ArrayList<EventVisitor>();
+            for (EventVisitor visitor : visitors) {
+                if (overrides(visitor, "visit", type.eventClass())) {
+                    handling.add(visitor);
+                    if (!setVisitors.contains(visitor)) {
+                        handlingEvents.add(visitor);
+                    }
+                }
+            }
+
+            this.visitors.add(Collections.unmodifiableList(handling));
+            this.handles[type.ordinal()] = fuse(type, handling);
+            if (setHandles != handles) {
+                this.setHandles[type.ordinal()] = fuse(type, handlingEvents);
+            }
+        }
+    }
+
+    /**
+     * Get the visitors that an event type is dispatched to.
+     *
+     * @param type Event type
+     * @return The visitors whose {@code visit} method for the type is called
+     *         when an event is visited on its own, in order
+     */
+    public List<EventVisitor> visitors(EventType type) {
+        return visitors.get(type.ordinal());
+    }
+
+    @Override
+    public void visitEventSet(EventSet eventSet) {
+        for (EventSetVisitor visitor : eventSetVisitors) {
+            visitor.visitEventSet(eventSet);
+        }
+
+        EventIterator eventIterator = eventSet.eventIterator();
+        while (eventIterator.hasNext()) {
+            Event event = eventIterator.nextEvent();
+            EventType type = EventType.of(event);
+            invoke(setHandles[type.ordinal()], event);
+        }
+    }
+
+    /**
+     * Dispatch an event to the visitors that handle its type.
+     *
+     * @param event JDI event
+     */
+    public void dispatch(Event event) {
+        dispatch(EventType.of(event), event);
+    }
+
+    @Override
+    public void visit(AccessWatchpointEvent event) {
+        dispatch(EventType.ACCESS_WATCHPOINT, event);
+    }
+
+    @Override
+    public void visit(BreakpointEvent event) {
+        dispatch(EventType.BREAKPOINT, event);
+    }
+
+    @Override
+    public void visit(ClassPrepareEvent event) {
+        dispatch(EventType.CLASS_PREPARE, event);
+    }
+
+    @Override
+    public void visit(ClassUnloadEvent event) {
+        dispatch(EventType.CLASS_UNLOAD, event);
+    }
+
+    @Override
+    public void visit(ExceptionEvent event) {
+        dispatch(EventType.EXCEPTION, event);
+    }
+
+    @Override
+    public void visit(LocatableEvent event) {
+        dispatch(EventType.LOCATABLE, event);
+    }
+
+    @Override
+    public void visit(MethodEntryEvent event) {
+        dispatch(EventType.METHOD_ENTRY, event);
+    }
+
+    @Override
+    public void visit(MethodExitEvent event) {
+        dispatch(EventType.METHOD_EXIT, event);
+    }
+
+    @Override
+    public void visit(ModificationWatchpointEvent event) {
+        dispatch(EventType.MODIFICATION_WATCHPOINT, event);
+    }
+
+    @Override
+    public void visit(MonitorContendedEnteredEvent event) {
+        dispatch(EventType.MONITOR_CONTENDED_ENTERED, event);
+    }
+
+    @Override
+    public void visit(MonitorContendedEnterEvent event) {
+        dispatch(EventType.MONITOR_CONTENDED_ENTER, event);
+    }
+
+    @Override
+    public void visit(MonitorWaitedEvent event) {
+        dispatch(EventType.MONITOR_WAITED, event);
+    }
+
+    @Override
+    public void visit(MonitorWaitEvent event) {
+        dispatch(EventType.MONITOR_WAIT, event);
+    }
+
+    @Override
+    public void visit(StepEvent event) {
+        dispatch(EventType.STEP, event);
+    }
+
+    @Override
+    public void visit(ThreadDeathEvent event) {
+        dispatch(EventType.THREAD_DEATH, event);
+    }
+
+    @Override
+    public void visit(ThreadStartEvent event) {
+        dispatch(EventType.THREAD_START, event);
+    }
+
+    @Override
+    public void visit(VMDeathEvent event) {
+        dispatch(EventType.VM_DEATH, event);
+    }
+
+    @Override
+    public void visit(VMDisconnectEvent event) {
+        dispatch(EventType.VM_DISCONNECT, event);
+    }
+
+    @Override
+    public void visit(VMStartEvent event) {
+        dispatch(EventType.VM_START, event);
+    }
+
+    @Override
+    public void visit(WatchpointEvent event) {
+        dispatch(EventType.WATCHPOINT, event);
+    }
+
+    /**
+     * Dispatch an event through the fused handle of its type.
+     *
+     * @param type Event type
+     * @param event JDI event (must be an instance of {@code type.eventClass()})
+     */
+    private void dispatch(EventType type, Event event) {
+        invoke(handles[type.ordinal()], event);
+    }
+
+    /**
+     * Call a fused visit method.
+     *
+     * @param handle Fused visit method, or {@code null} if no visitor
+     *        handles the event's type
+     * @param event JDI event
+     */
+    private static void invoke(MethodHandle handle, Event event) {
+        if (handle == null) {
+            return;
+        }
+
+        try {
+            handle.invokeExact(event);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+
+    /**
+     * Determine whether a visitor handles the events passed to one of its
+     * methods. Only the methods inherited from {@code EmptyEventVisitor} are
+     * known not to.
+     *
+     * @param visitor Event visitor
+     * @param name Method name
+     * @param parameterType Method parameter type
+     * @return {@code false} if the method is {@code EmptyEventVisitor}'s
+     *         empty default
+     */
+    private static boolean overrides(EventVisitor visitor, String name,
+            Class<?> parameterType) {
+        try {
+            return visitor.getClass().getMethod(name, parameterType)
+                    .getDeclaringClass() != EmptyEventVisitor.class;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Fuse the {@code visit} methods of several visitors for an event type
+     * into one handle taking an {@code Event}.
+     *
+     * @param type Event type
+     * @param visitors Visitors that handle the type, in order
+     * @return The fused handle, or {@code null} if there are no visitors
+     */
+    private static MethodHandle fuse(EventType type,
+            List<EventVisitor> visitors) {
+        MethodHandle visit;
+        try {
+            visit = MethodHandles.publicLookup().findVirtual(
+                    EventVisitor.class, "visit",
+                    MethodType.methodType(void.class, type.eventClass()));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+
+        MethodType erased = MethodType.methodType(void.class, Event.class);
+        MethodHandle fused = null;
+
+        for (int i = visitors.size() - 1; i >= 0; i--) {
+            MethodHandle call = visit.bindTo(visitors.get(i)).asType(erased);
+
+            fused = fused == null ? call : MethodHandles.foldArguments(fused,
+                    call);
+        }
+
+        return fused;
+    }
+}
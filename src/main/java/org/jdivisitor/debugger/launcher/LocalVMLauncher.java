@@ -27,13 +27,15 @@ import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 
+import org.jdivisitor.debugger.ThreadMode;
 import com.sun.jdi.Bootstrap;
 import com.sun.jdi.VirtualMachine;
 import com.sun.jdi.connect.Connector;
 import com.sun.jdi.connect.LaunchingConnector;
 
 /**
- * Create and start a local virtual machine in debug mode.
+ * Create and start a local virtual machine in debug mode. Each launch is
+ * recorded as a {@code org.jdivisitor.VMConnect} flight recorder event.
  *
  * @author Adrian Herrera
  */
@@ -59,6 +61,11 @@ public class LocalVMLauncher extends VMConnector {
      */
     private final OutputStream errStream;
 
+    /**
+     * The kind of thread the output is redirected on.
+     */
+    private final ThreadMode threadMode;
+
     /**
      * Constructor. <br>
      * <br>
@@ -120,24 +127,58 @@ public class LocalVMLauncher extends VMConnector {
      */
     public LocalVMLauncher(String mainClass, String options, OutputStream out,
             OutputStream err) {
+        this(mainClass, options, out, err, ThreadMode.PLATFORM);
+    }
+
+    /**
+     * Constructor. <br>
+     * <br>
+     * Specify a main class and options to launch it with. The debugee virtual
+     * machine's {@code stdout} and {@code stderr} can be redirected, on the
+     * given kind of thread.
+     *
+     * @param mainClass The main class to launch (cannot be {@code null})
+     * @param options The options to launch the virtual machine with (cannot be
+     *        {@code null})
+     * @param out Where to redirect the debugee's {@code stdout}. A {@code null}
+     *        value means the debugee's {@code stdout} will be ignored
+     * @param err Where to redirect the debugee's {@code stderr}. A {@code null}
+     *        value means the debugee's {@code stderr} will be ignored
+     * @param threadMode The kind of thread the output is redirected on (must
+     *        be supported by the running JDK)
+     */
+    public LocalVMLauncher(String mainClass, String options, OutputStream out,
+            OutputStream err, ThreadMode threadMode) {
         this.mainClass = Validate.notNull(mainClass);
         this.options = Validate.notNull(options);
+        this.threadMode = Validate.notNull(threadMode);
+        Validate.isTrue(threadMode.isSupported(),
+                "Thread mode %s is not supported by this JDK", threadMode);
         outStream = out;
         errStream = err;
     }
 
     @Override
     public VirtualMachine connect() throws Exception {
-        List<LaunchingConnector> connectors = Bootstrap.virtualMachineManager()
-                .launchingConnectors();
-        LaunchingConnector connector = findConnector(
-                "com.sun.jdi.CommandLineLaunch", connectors);
-        Map<String, Connector.Argument> arguments = connectorArguments(connector);
-
-        VirtualMachine vm = connector.launch(arguments);
-        redirectOutput(vm);
-
-        return vm;
+        VMConnectEvent event = new VMConnectEvent(
+                "com.sun.jdi.CommandLineLaunch", mainClass);
+
+        try {
+            List<LaunchingConnector> connectors = Bootstrap
+                    .virtualMachineManager().launchingConnectors();
+            LaunchingConnector connector = findConnector(
+                    "com.sun.jdi.CommandLineLaunch", connectors);
+            Map<String, Connector.Argument> arguments = connectorArguments(connector);
+
+            VirtualMachine vm = connector.launch(arguments);
+            redirectOutput(vm);
+
+            event.connected(vm);
+            return vm;
+        } catch (Exception e) {
+            event.failed(e);
+            throw e;
+        }
     }
 
     /**
@@ -181,11 +222,12 @@ public class LocalVMLauncher extends VMConnector {
      * @param in Input stream
      * @param out Output stream
      */
-    private static void redirectStream(String name, InputStream in,
-            OutputStream out) {
-        Thread thread = new StreamRedirectThread(name, in, out);
+    private void redirectStream(String name, InputStream in, OutputStream out) {
+        Thread thread = threadMode.newThread(name,
+                new StreamRedirector(in, out));
 
         thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY - 1);
         thread.start();
     }
 }
@@ -31,7 +31,9 @@ import com.sun.jdi.connect.AttachingConnector;
 import com.sun.jdi.connect.Connector;
 
 /**
- * Attach (via a socket) to a listening virtual machine in debug mode.
+ * Attach (via a socket) to a listening virtual machine in debug mode. Each
+ * attachment is recorded as a {@code org.jdivisitor.VMConnect} flight
+ * recorder event.
  *
  * @author Adrian Herrera
  *
@@ -64,17 +66,26 @@ public class RemoteVMConnector extends VMConnector {
 
     @Override
     public VirtualMachine connect() throws Exception {
-        List<AttachingConnector> connectors = Bootstrap.virtualMachineManager()
-                .attachingConnectors();
-        AttachingConnector connector = findConnector(
-                "com.sun.jdi.SocketAttach", connectors);
-        Map<String, Connector.Argument> arguments = connectorArguments(connector);
+        VMConnectEvent event = new VMConnectEvent("com.sun.jdi.SocketAttach",
+                socketAddress.getHostString() + ":" + socketAddress.getPort());
 
-        VirtualMachine vm = connector.attach(arguments);
+        try {
+            List<AttachingConnector> connectors = Bootstrap
+                    .virtualMachineManager().attachingConnectors();
+            AttachingConnector connector = findConnector(
+                    "com.sun.jdi.SocketAttach", connectors);
+            Map<String, Connector.Argument> arguments = connectorArguments(connector);
 
-        // TODO - redirect stdout and stderr?
+            VirtualMachine vm = connector.attach(arguments);
 
-        return vm;
+            // TODO - redirect stdout and stderr?
+
+            event.connected(vm);
+            return vm;
+        } catch (Exception e) {
+            event.failed(e);
+            throw e;
+        }
     }
 
     /**
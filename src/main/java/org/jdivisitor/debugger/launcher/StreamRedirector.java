@@ -34,12 +34,12 @@ import java.io.Reader;
 import java.io.Writer;
 
 /**
- * StreamRedirectThread is a thread which copies it's input to it's output and
- * terminates when it completes.
+ * StreamRedirector copies it's input to it's output and terminates when it
+ * completes. It is run on a thread of the launcher's {@code ThreadMode}.
  *
  * @author Robert Field
  */
-class StreamRedirectThread extends Thread {
+class StreamRedirector implements Runnable {
 
     private final Reader in;
     private final Writer out;
@@ -49,15 +49,12 @@ class StreamRedirectThread extends Thread {
     /**
      * Set up for copy.
      *
-     * @param name Name of the thread
      * @param in Stream to copy from
      * @param out Stream to copy to
      */
-    StreamRedirectThread(String name, InputStream in, OutputStream out) {
-        super(name);
+    StreamRedirector(InputStream in, OutputStream out) {
         this.in = new InputStreamReader(in);
         this.out = new OutputStreamWriter(out);
-        setPriority(Thread.MAX_PRIORITY - 1);
     }
 
     /**
@@ -0,0 +1,99 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.launcher;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import com.sun.jdi.VirtualMachine;
+
+/**
+ * Flight recorder event for launching or attaching to a target virtual
+ * machine. The event's duration is the time taken to connect.
+ *
+ * @author Adrian Herrera
+ */
+@Name("org.jdivisitor.VMConnect")
+@Label("VM Connect")
+@Category("JDIVisitor")
+@Description("Launch of, or attachment to, a target virtual machine")
+final class VMConnectEvent extends Event {
+
+    @Label("Connector")
+    @Description("Name of the JDI connector")
+    String connector;
+
+    @Label("Target")
+    @Description("Main class launched, or address attached to")
+    String target;
+
+    @Label("Success")
+    boolean success;
+
+    @Label("VM Name")
+    String vmName;
+
+    @Label("VM Version")
+    String vmVersion;
+
+    @Label("Failure")
+    String failure;
+
+    /**
+     * Create a new event and start timing it.
+     *
+     * @param connector Name of the JDI connector
+     * @param target Main class launched, or address attached to
+     */
+    VMConnectEvent(String connector, String target) {
+        this.connector = connector;
+        this.target = target;
+        begin();
+    }
+
+    /**
+     * Complete the event for a successful connection and commit it.
+     *
+     * @param vm The connected virtual machine
+     */
+    void connected(VirtualMachine vm) {
+        if (shouldCommit()) {
+            success = true;
+            vmName = vm.name();
+            vmVersion = vm.version();
+            commit();
+        }
+    }
+
+    /**
+     * Complete the event for a failed connection and commit it.
+     *
+     * @param t The reason for the failure
+     */
+    void failed(Throwable t) {
+        if (shouldCommit()) {
+            failure = t.toString();
+            commit();
+        }
+    }
+}
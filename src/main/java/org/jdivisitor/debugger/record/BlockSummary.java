@@ -0,0 +1,172 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.nio.ByteBuffer;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+
+/**
+ * Summary of the events in a trace block, used to skip blocks that cannot
+ * match a query: the block's time range and event types, and a bloom filter
+ * of the thread, class and method IDs of its events.
+ *
+ * @author Adrian Herrera
+ */
+final class BlockSummary {
+
+    static final int THREAD = 1;
+    static final int CLASS = 2;
+    static final int METHOD = 3;
+
+    /**
+     * Size of the bloom filter in 64-bit words.
+     */
+    static final int BLOOM_WORDS = 32;
+
+    private static final int BLOOM_MASK = BLOOM_WORDS * 64 - 1;
+
+    /**
+     * Number of bits set per key.
+     */
+    private static final int HASHES = 3;
+
+    long offset;
+    long firstNanos;
+    long lastNanos;
+    long events;
+    int types;
+    final long[] bloom = new long[BLOOM_WORDS];
+
+    /**
+     * Start summarizing a new block.
+     *
+     * @param offset File offset of the block
+     */
+    void reset(long offset) {
+        this.offset = offset;
+        firstNanos = 0;
+        lastNanos = 0;
+        events = 0;
+        types = 0;
+        for (int i = 0; i < BLOOM_WORDS; i++) {
+            bloom[i] = 0;
+        }
+    }
+
+    /**
+     * Add an event to the summary.
+     *
+     * @param type Event type
+     * @param nanos Event time
+     */
+    void add(EventType type, long nanos) {
+        if (events++ == 0) {
+            firstNanos = nanos;
+        }
+        lastNanos = nanos;
+        types |= 1 << TraceFormat.eventTag(type);
+    }
+
+    /**
+     * Add a dictionary ID to the bloom filter.
+     *
+     * @param kind {@code THREAD}, {@code CLASS} or {@code METHOD}
+     * @param id Dictionary ID
+     */
+    void addKey(int kind, int id) {
+        long h = hash(kind, id);
+
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (h >>> (i * 21)) & BLOOM_MASK;
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Determine whether the block may have an event with a dictionary ID.
+     *
+     * @param kind {@code THREAD}, {@code CLASS} or {@code METHOD}
+     * @param id Dictionary ID
+     * @return {@code false} if the block definitely has no such event
+     */
+    boolean mightContain(int kind, int id) {
+        long h = hash(kind, id);
+
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) (h >>> (i * 21)) & BLOOM_MASK;
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Encode the summary as an index record.
+     *
+     * @param out Encoder
+     */
+    void write(RecordEncoder out) {
+        out.reset();
+        out.writeByte(TraceFormat.INDEX_BLOCK);
+        out.writeVarint(offset);
+        out.writeLong(firstNanos);
+        out.writeLong(lastNanos);
+        out.writeVarint(events);
+        out.writeInt(types);
+        for (long word : bloom) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Decode a summary from an index record (after its tag).
+     *
+     * @param in Index data
+     * @return The block summary
+     */
+    static BlockSummary read(ByteBuffer in) {
+        BlockSummary summary = new BlockSummary();
+
+        summary.offset = RecordDecoder.readVarint(in);
+        summary.firstNanos = in.getLong();
+        summary.lastNanos = in.getLong();
+        summary.events = RecordDecoder.readVarint(in);
+        summary.types = in.getInt();
+        for (int i = 0; i < BLOOM_WORDS; i++) {
+            summary.bloom[i] = in.getLong();
+        }
+
+        return summary;
+    }
+
+    private static long hash(int kind, int id) {
+        long h = (((long) kind << 32) | (id & 0xFFFFFFFFL))
+                * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
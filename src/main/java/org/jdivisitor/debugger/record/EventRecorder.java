@@ -0,0 +1,797 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import org.jdivisitor.debugger.event.visitor.EmptyEventVisitor;
+import com.sun.jdi.BooleanValue;
+import com.sun.jdi.ByteValue;
+import com.sun.jdi.CharValue;
+import com.sun.jdi.DoubleValue;
+import com.sun.jdi.Field;
+import com.sun.jdi.FloatValue;
+import com.sun.jdi.IntegerValue;
+import com.sun.jdi.Location;
+import com.sun.jdi.LongValue;
+import com.sun.jdi.Method;
+import com.sun.jdi.ObjectCollectedException;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.ShortValue;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.TypeComponent;
+import com.sun.jdi.Value;
+import com.sun.jdi.event.AccessWatchpointEvent;
+import com.sun.jdi.event.BreakpointEvent;
+import com.sun.jdi.event.ClassPrepareEvent;
+import com.sun.jdi.event.ClassUnloadEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.ExceptionEvent;
+import com.sun.jdi.event.LocatableEvent;
+import com.sun.jdi.event.MethodEntryEvent;
+import com.sun.jdi.event.MethodExitEvent;
+import com.sun.jdi.event.ModificationWatchpointEvent;
+import com.sun.jdi.event.MonitorContendedEnterEvent;
+import com.sun.jdi.event.MonitorContendedEnteredEvent;
+import com.sun.jdi.event.MonitorWaitEvent;
+import com.sun.jdi.event.MonitorWaitedEvent;
+import com.sun.jdi.event.StepEvent;
+import com.sun.jdi.event.ThreadDeathEvent;
+import com.sun.jdi.event.ThreadStartEvent;
+import com.sun.jdi.event.VMDeathEvent;
+import com.sun.jdi.event.VMDisconnectEvent;
+import com.sun.jdi.event.VMStartEvent;
+import com.sun.jdi.event.WatchpointEvent;
+
+/**
+ * An event visitor that records every event it visits to a compact binary
+ * trace file.
+ *
+ * <p>
+ * Classes, methods, fields and threads are interned in dictionaries that are
+ * written inline the first time each entry is used, and times and locations
+ * are delta-encoded, so a typical event takes a handful of bytes. Records are
+ * encoded into a reusable buffer and copied into memory-mapped segments of
+ * the trace file, so there is no system call per event, and heap use is
+ * bounded by the size of the dictionaries (threads are dropped from them
+ * when they die, and classes, with their methods and fields, when they are
+ * unloaded). See {@link TraceFormat} for the format.
+ * </p>
+ *
+ * <p>
+ * An index is written alongside the trace, in a file named after it with an
+ * {@code .idx} suffix, so that the trace can be queried with a
+ * {@link TraceIndex}. It holds the dictionary definitions and a small summary
+ * of every block, and is complete once the recorder is closed.
+ * </p>
+ *
+ * <p>
+ * The recorder is thread-safe, so it can be used with an event pipeline. It
+ * must be closed once the debugger has finished running, to flush the trace
+ * file and trim it to its length; events visited after that are ignored.
+ * </p>
+ *
+ * <pre>
+ * EventRecorder recorder = new EventRecorder(new File("session.trace"));
+ * try {
+ *     debugger.run(recorder);
+ * } finally {
+ *     recorder.close();
+ * }
+ * </pre>
+ *
+ * @author Adrian Herrera
+ */
+public class EventRecorder extends EmptyEventVisitor implements Closeable {
+
+    /**
+     * Default size of the mapped segments of the trace file.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    private final File file;
+    private final TraceWriter writer;
+    private final TraceIndexWriter indexWriter;
+
+    /**
+     * Summary of the current block.
+     */
+    private final BlockSummary summary = new BlockSummary();
+
+    /**
+     * Encoded block summary record.
+     */
+    private final RecordEncoder summaryRecord = new RecordEncoder();
+
+    /**
+     * Encoded event record.
+     */
+    private final RecordEncoder record = new RecordEncoder();
+
+    /**
+     * Encoded dictionary definition record.
+     */
+    private final RecordEncoder definition = new RecordEncoder();
+
+    private final Map<ReferenceType, Integer> classes =
+            new HashMap<ReferenceType, Integer>();
+    private final Map<Field, Integer> fields = new HashMap<Field, Integer>();
+    private final Map<ThreadReference, Integer> threads =
+            new HashMap<ThreadReference, Integer>();
+
+    /**
+     * Method dictionary. The ID of a method is in the low 32 bits of its
+     * entry, and the ID of its declaring class in the high 32 bits.
+     */
+    private final Map<Method, Long> methods = new HashMap<Method, Long>();
+
+    /**
+     * Dictionary classes by signature, and their dictionary methods and
+     * fields, to drop them when they are unloaded.
+     */
+    private final Map<String, List<ReferenceType>> signatures =
+            new HashMap<String, List<ReferenceType>>();
+    private final Map<ReferenceType, List<TypeComponent>> members =
+            new HashMap<ReferenceType, List<TypeComponent>>();
+
+    /**
+     * Next dictionary IDs. IDs are never reused, even once their entry has
+     * been dropped.
+     */
+    private int nextClassId = 1;
+    private int nextMethodId = 1;
+    private int nextFieldId = 1;
+    private int nextThreadId = 1;
+
+    /**
+     * Time of the event being recorded.
+     */
+    private long nanos;
+
+    /**
+     * Delta encoding state, reset at the start of each block. Only updated
+     * once an event's record has been written, as encoding it may start a
+     * new block.
+     */
+    private long lastNanos;
+    private long lastMethod;
+    private long lastCodeIndex;
+    private long lastLine;
+
+    /**
+     * Dictionary IDs of the event being recorded, for the block summary, and
+     * its location, for the delta encoding state.
+     */
+    private int eventThread;
+    private int eventMethod;
+    private int eventMethodClass;
+    private int eventClass;
+    private long eventCodeIndex;
+    private long eventLine;
+
+    private long recordedEvents;
+    private boolean closed;
+
+    /**
+     * Create a new event recorder with the default segment size.
+     *
+     * @param file Trace file. Any existing file is overwritten
+     * @throws IOException The trace file could not be created
+     */
+    public EventRecorder(File file) throws IOException {
+        this(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Create a new event recorder.
+     *
+     * @param file Trace file. Any existing file is overwritten
+     * @param segmentSize Size of the mapped segments of the trace file (must
+     *        be a positive multiple of 1 MiB)
+     * @throws IOException The trace file could not be created
+     */
+    public EventRecorder(File file, int segmentSize) throws IOException {
+        this.file = Validate.notNull(file);
+
+        long startMillis = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+
+        this.writer = new TraceWriter(file, segmentSize, startMillis,
+                startNanos);
+        try {
+            this.indexWriter = new TraceIndexWriter(
+                    TraceFormat.indexFile(file), startMillis, startNanos);
+        } catch (IOException e) {
+            writer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the trace file.
+     *
+     * @return The trace file
+     */
+    public File file() {
+        return file;
+    }
+
+    /**
+     * Get the number of events recorded so far.
+     *
+     * @return The number of recorded events
+     */
+    public synchronized long recordedEvents() {
+        return recordedEvents;
+    }
+
+    /**
+     * Get the number of bytes written to the trace file so far.
+     *
+     * @return The trace length
+     */
+    public synchronized long recordedBytes() {
+        return writer.position();
+    }
+
+    /**
+     * Flush the trace file and trim it to its length, and complete the index.
+     * Closing a recorder more than once has no further effect.
+     *
+     * @throws IOException The trace file or its index could not be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                if (writer.blockCount() > 0) {
+                    writeSummary();
+                }
+                indexWriter.close();
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    @Override
+    public void visit(AccessWatchpointEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(BreakpointEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(ClassPrepareEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(ClassUnloadEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(ExceptionEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(LocatableEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(MethodEntryEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(MethodExitEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(ModificationWatchpointEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(MonitorContendedEnteredEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(MonitorContendedEnterEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(MonitorWaitedEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(MonitorWaitEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(StepEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(ThreadDeathEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(ThreadStartEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(VMDeathEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(VMDisconnectEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(VMStartEvent event) {
+        record(event);
+    }
+
+    @Override
+    public void visit(WatchpointEvent event) {
+        record(event);
+    }
+
+    /**
+     * Record an event.
+     *
+     * @param event Event to record
+     */
+    private synchronized void record(Event event) {
+        if (closed) {
+            return;
+        }
+
+        EventType type = EventType.of(event);
+        nanos = System.nanoTime();
+
+        try {
+            if (writer.blockCount() == 0) {
+                startBlock();
+            }
+
+            // Deltas are relative to the block, so an event is encoded again
+            // if a new block had to be started for it or its definitions.
+            // Encoding leaves the delta state alone, so that it is the one
+            // the new block starts with
+            boolean fresh = false;
+            while (true) {
+                long block = writer.blockCount();
+
+                encode(event, type);
+                if (writer.blockCount() != block) {
+                    continue;
+                } else if (writer.fits(record.length())) {
+                    break;
+                }
+
+                Validate.validState(!fresh, "Record too large: %d bytes",
+                        record.length());
+                startBlock();
+                fresh = true;
+            }
+
+            writer.write(record);
+            recordedEvents++;
+
+            lastNanos = nanos;
+            if (eventMethod != 0) {
+                lastMethod = eventMethod;
+                lastCodeIndex = eventCodeIndex;
+                lastLine = eventLine;
+            }
+
+            summary.add(type, nanos);
+            if (eventThread != 0) {
+                summary.addKey(BlockSummary.THREAD, eventThread);
+            }
+            if (eventMethod != 0) {
+                summary.addKey(BlockSummary.METHOD, eventMethod);
+                summary.addKey(BlockSummary.CLASS, eventMethodClass);
+            }
+            if (eventClass != 0) {
+                summary.addKey(BlockSummary.CLASS, eventClass);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (type == EventType.THREAD_DEATH) {
+            threads.remove(((ThreadDeathEvent) event).thread());
+        } else if (type == EventType.CLASS_UNLOAD) {
+            unload(((ClassUnloadEvent) event).classSignature());
+        }
+    }
+
+    /**
+     * Drop the classes with a signature from the dictionaries, with their
+     * methods and fields. Unload events only carry a signature, so a class
+     * with the same signature in another class loader is dropped too, and is
+     * defined again, with a new ID, if it is used again.
+     *
+     * @param signature Signature of the unloaded class
+     */
+    private void unload(String signature) {
+        List<ReferenceType> types = signatures.remove(signature);
+        if (types == null) {
+            return;
+        }
+
+        for (ReferenceType type : types) {
+            classes.remove(type);
+
+            List<TypeComponent> typeMembers = members.remove(type);
+            if (typeMembers != null) {
+                for (TypeComponent member : typeMembers) {
+                    if (member instanceof Method) {
+                        methods.remove(member);
+                    } else {
+                        fields.remove(member);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Start a new block and reset the delta encoding state. The summary of
+     * the previous block is written to the index.
+     *
+     * @throws IOException The next segment could not be mapped
+     */
+    private void startBlock() throws IOException {
+        if (writer.blockCount() > 0) {
+            writeSummary();
+        }
+        writer.startBlock(nanos);
+        summary.reset(writer.blockOffset());
+
+        lastNanos = nanos;
+        lastMethod = 0;
+        lastCodeIndex = 0;
+        lastLine = 0;
+    }
+
+    /**
+     * Encode an event record, writing any definitions it needs first.
+     *
+     * @param event Event to encode
+     * @param type The event's type
+     * @throws IOException A definition could not be written
+     */
+    private void encode(Event event, EventType type) throws IOException {
+        ThreadReference thread = type.thread(event);
+        int threadId = thread != null ? threadId(thread) : 0;
+
+        eventThread = threadId;
+        eventMethod = 0;
+        eventMethodClass = 0;
+        eventClass = 0;
+
+        record.reset();
+        record.writeByte(TraceFormat.eventTag(type));
+        record.writeZigzag(nanos - lastNanos);
+        record.writeVarint(threadId);
+
+        switch (type) {
+        case CLASS_PREPARE:
+            eventClass = classId(((ClassPrepareEvent) event).referenceType());
+            record.writeVarint(eventClass);
+            break;
+        case CLASS_UNLOAD:
+            record.writeString(((ClassUnloadEvent) event).classSignature());
+            break;
+        case BREAKPOINT:
+        case STEP:
+        case METHOD_ENTRY:
+        case LOCATABLE:
+            location((LocatableEvent) event);
+            break;
+        case METHOD_EXIT:
+            location((LocatableEvent) event);
+            value(returnValue((MethodExitEvent) event));
+            break;
+        case EXCEPTION:
+            ExceptionEvent exceptionEvent = (ExceptionEvent) event;
+            location(exceptionEvent);
+            value(exceptionEvent.exception());
+            catchLocation(exceptionEvent.catchLocation());
+            break;
+        case ACCESS_WATCHPOINT:
+        case WATCHPOINT:
+            watchpoint((WatchpointEvent) event);
+            break;
+        case MODIFICATION_WATCHPOINT:
+            watchpoint((WatchpointEvent) event);
+            value(((ModificationWatchpointEvent) event).valueToBe());
+            break;
+        case MONITOR_CONTENDED_ENTER:
+            location((LocatableEvent) event);
+            value(((MonitorContendedEnterEvent) event).monitor());
+            break;
+        case MONITOR_CONTENDED_ENTERED:
+            location((LocatableEvent) event);
+            value(((MonitorContendedEnteredEvent) event).monitor());
+            break;
+        case MONITOR_WAIT:
+            MonitorWaitEvent waitEvent = (MonitorWaitEvent) event;
+            location(waitEvent);
+            value(waitEvent.monitor());
+            record.writeZigzag(waitEvent.timeout());
+            break;
+        case MONITOR_WAITED:
+            MonitorWaitedEvent waitedEvent = (MonitorWaitedEvent) event;
+            location(waitedEvent);
+            value(waitedEvent.monitor());
+            record.writeByte(waitedEvent.timedout() ? 1 : 0);
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void location(LocatableEvent event) throws IOException {
+        Location location = event.location();
+        long entry = methodEntry(location.method());
+        long method = (int) entry;
+        long codeIndex = location.codeIndex();
+        long line = location.lineNumber();
+
+        record.writeZigzag(method - lastMethod);
+        record.writeZigzag(codeIndex - lastCodeIndex);
+        record.writeZigzag(line - lastLine);
+
+        eventMethod = (int) method;
+        eventMethodClass = (int) (entry >>> 32);
+        eventCodeIndex = codeIndex;
+        eventLine = line;
+    }
+
+    private void catchLocation(Location location) throws IOException {
+        if (location == null) {
+            record.writeVarint(0);
+        } else {
+            record.writeVarint((int) methodEntry(location.method()));
+            record.writeZigzag(location.codeIndex());
+            record.writeZigzag(location.lineNumber());
+        }
+    }
+
+    private void watchpoint(WatchpointEvent event) throws IOException {
+        location(event);
+        record.writeVarint(fieldId(event.field()));
+        value(event.object());
+    }
+
+    private void value(Value value) throws IOException {
+        if (value == null) {
+            record.writeByte(TraceFormat.VALUE_NULL);
+        } else if (value instanceof ObjectReference) {
+            ObjectReference object = (ObjectReference) value;
+
+            record.writeByte(TraceFormat.VALUE_OBJECT);
+            record.writeVarint(classId(object.referenceType()));
+            record.writeVarint(object.uniqueID());
+        } else if (value instanceof IntegerValue) {
+            record.writeByte(TraceFormat.VALUE_INT);
+            record.writeZigzag(((IntegerValue) value).value());
+        } else if (value instanceof LongValue) {
+            record.writeByte(TraceFormat.VALUE_LONG);
+            record.writeZigzag(((LongValue) value).value());
+        } else if (value instanceof BooleanValue) {
+            record.writeByte(TraceFormat.VALUE_BOOLEAN);
+            record.writeByte(((BooleanValue) value).value() ? 1 : 0);
+        } else if (value instanceof ByteValue) {
+            record.writeByte(TraceFormat.VALUE_BYTE);
+            record.writeByte(((ByteValue) value).value());
+        } else if (value instanceof CharValue) {
+            record.writeByte(TraceFormat.VALUE_CHAR);
+            record.writeVarint(((CharValue) value).value());
+        } else if (value instanceof ShortValue) {
+            record.writeByte(TraceFormat.VALUE_SHORT);
+            record.writeZigzag(((ShortValue) value).value());
+        } else if (value instanceof FloatValue) {
+            record.writeByte(TraceFormat.VALUE_FLOAT);
+            record.writeInt(Float.floatToRawIntBits(((FloatValue) value)
+                    .value()));
+        } else if (value instanceof DoubleValue) {
+            record.writeByte(TraceFormat.VALUE_DOUBLE);
+            record.writeLong(Double.doubleToRawLongBits(((DoubleValue) value)
+                    .value()));
+        } else {
+            record.writeByte(TraceFormat.VALUE_VOID);
+        }
+    }
+
+    private static Value returnValue(MethodExitEvent event) {
+        try {
+            return event.returnValue();
+        } catch (UnsupportedOperationException e) {
+            // Return values are not available from this VM
+            return event.virtualMachine().mirrorOfVoid();
+        }
+    }
+
+    private int classId(ReferenceType type) throws IOException {
+        Integer id = classes.get(type);
+
+        if (id == null) {
+            id = nextClassId++;
+            classes.put(type, id);
+
+            String signature = type.signature();
+            List<ReferenceType> types = signatures.get(signature);
+            if (types == null) {
+                types = new ArrayList<ReferenceType>(1);
+                signatures.put(signature, types);
+            }
+            types.add(type);
+
+            definition.reset();
+            definition.writeByte(TraceFormat.DEF_CLASS);
+            definition.writeVarint(id);
+            definition.writeString(type.name());
+            definition.writeString(signature);
+            writeDefinition();
+        }
+
+        return id;
+    }
+
+    /**
+     * Get the dictionary entry of a method, defining it if needed.
+     *
+     * @param method Method
+     * @return The method's ID (low 32 bits) and class ID (high 32 bits)
+     * @throws IOException The definition could not be written
+     */
+    private long methodEntry(Method method) throws IOException {
+        Long entry = methods.get(method);
+
+        if (entry == null) {
+            int classId = classId(method.declaringType());
+            int id = nextMethodId++;
+            entry = ((long) classId << 32) | id;
+            methods.put(method, entry);
+            addMember(method);
+
+            definition.reset();
+            definition.writeByte(TraceFormat.DEF_METHOD);
+            definition.writeVarint(id);
+            definition.writeVarint(classId);
+            definition.writeString(method.name());
+            definition.writeString(method.signature());
+            writeDefinition();
+        }
+
+        return entry;
+    }
+
+    private int fieldId(Field field) throws IOException {
+        Integer id = fields.get(field);
+
+        if (id == null) {
+            int classId = classId(field.declaringType());
+            id = nextFieldId++;
+            fields.put(field, id);
+            addMember(field);
+
+            definition.reset();
+            definition.writeByte(TraceFormat.DEF_FIELD);
+            definition.writeVarint(id);
+            definition.writeVarint(classId);
+            definition.writeString(field.name());
+            definition.writeString(field.signature());
+            writeDefinition();
+        }
+
+        return id;
+    }
+
+    private void addMember(TypeComponent member) {
+        List<TypeComponent> typeMembers = members.get(member.declaringType());
+        if (typeMembers == null) {
+            typeMembers = new ArrayList<TypeComponent>();
+            members.put(member.declaringType(), typeMembers);
+        }
+        typeMembers.add(member);
+    }
+
+    private int threadId(ThreadReference thread) throws IOException {
+        Integer id = threads.get(thread);
+
+        if (id == null) {
+            id = nextThreadId++;
+            threads.put(thread, id);
+
+            String name;
+            try {
+                name = thread.name();
+            } catch (ObjectCollectedException e) {
+                name = "";
+            }
+
+            definition.reset();
+            definition.writeByte(TraceFormat.DEF_THREAD);
+            definition.writeVarint(id);
+            definition.writeVarint(thread.uniqueID());
+            definition.writeString(name);
+            writeDefinition();
+        }
+
+        return id;
+    }
+
+    /**
+     * Write the encoded definition record, in a new block if needed.
+     *
+     * @throws IOException The next segment could not be mapped
+     */
+    private void writeDefinition() throws IOException {
+        if (!writer.fits(definition.length())) {
+            startBlock();
+        }
+        writer.write(definition);
+        indexWriter.write(definition);
+    }
+
+    /**
+     * Write the summary of the current block to the index.
+     *
+     * @throws IOException The index could not be written
+     */
+    private void writeSummary() throws IOException {
+        summary.write(summaryRecord);
+        indexWriter.write(summaryRecord);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer that records are encoded into before they are
+ * copied to the trace file.
+ *
+ * @author Adrian Herrera
+ */
+final class RecordEncoder {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private byte[] buffer = new byte[256];
+    private int length;
+
+    /**
+     * Discard the encoded bytes.
+     */
+    void reset() {
+        length = 0;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int length() {
+        return length;
+    }
+
+    void writeByte(int b) {
+        ensure(1);
+        buffer[length++] = (byte) b;
+    }
+
+    void writeInt(int v) {
+        ensure(4);
+        buffer[length++] = (byte) (v >>> 24);
+        buffer[length++] = (byte) (v >>> 16);
+        buffer[length++] = (byte) (v >>> 8);
+        buffer[length++] = (byte) v;
+    }
+
+    void writeLong(long v) {
+        writeInt((int) (v >>> 32));
+        writeInt((int) v);
+    }
+
+    /**
+     * Write an unsigned LEB128 integer.
+     *
+     * @param v Value, treated as unsigned
+     */
+    void writeVarint(long v) {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[length++] = (byte) v;
+    }
+
+    /**
+     * Write a zigzag-encoded signed integer.
+     *
+     * @param v Value
+     */
+    void writeZigzag(long v) {
+        writeVarint((v << 1) ^ (v >> 63));
+    }
+
+    void writeString(String s) {
+        byte[] bytes = s.getBytes(UTF_8);
+        int n = Math.min(bytes.length, TraceFormat.MAX_STRING_BYTES);
+
+        writeVarint(n);
+        ensure(n);
+        System.arraycopy(bytes, 0, buffer, length, n);
+        length += n;
+    }
+
+    /**
+     * Get the number of bytes needed to encode an unsigned LEB128 integer.
+     *
+     * @param v Value, treated as unsigned
+     * @return The encoded size
+     */
+    static int varintSize(long v) {
+        int size = 1;
+        while ((v & ~0x7FL) != 0) {
+            v >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private void ensure(int n) {
+        if (length + n > buffer.length) {
+            buffer = Arrays.copyOf(buffer,
+                    Math.max(buffer.length * 2, length + n));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import com.sun.jdi.event.Event;
+
+/**
+ * Implemented by the events handed to visitors by a {@link TraceReplayer}, in
+ * addition to their JDI event interface.
+ *
+ * <p>
+ * Replayed events and the mirrors they refer to only carry what was recorded
+ * (see {@link TraceFormat}): names, signatures, locations, unique IDs and
+ * primitive values. Anything else (e.g. {@code virtualMachine()}, or the
+ * fields of a replayed object) throws {@code UnsupportedOperationException},
+ * and source names throw {@code AbsentInformationException}. Events have no
+ * request. Replayed mirrors are interned, so they can be compared by
+ * identity, except for locations, objects and primitive values, which compare
+ * equal by method and code index, by unique ID and by value, respectively.
+ * Locations are ordered by method and then by code index, as in JDI.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public interface ReplayedEvent extends Event {
+
+    /**
+     * Get the time at which the event was recorded.
+     *
+     * @return The recorder's {@code System.nanoTime()} for the event
+     */
+    long nanoTime();
+}
@@ -0,0 +1,492 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import com.sun.jdi.Field;
+import com.sun.jdi.Location;
+import com.sun.jdi.Method;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.Value;
+import com.sun.jdi.event.AccessWatchpointEvent;
+import com.sun.jdi.event.BreakpointEvent;
+import com.sun.jdi.event.ClassPrepareEvent;
+import com.sun.jdi.event.ClassUnloadEvent;
+import com.sun.jdi.event.ExceptionEvent;
+import com.sun.jdi.event.LocatableEvent;
+import com.sun.jdi.event.MethodEntryEvent;
+import com.sun.jdi.event.MethodExitEvent;
+import com.sun.jdi.event.ModificationWatchpointEvent;
+import com.sun.jdi.event.MonitorContendedEnterEvent;
+import com.sun.jdi.event.MonitorContendedEnteredEvent;
+import com.sun.jdi.event.MonitorWaitEvent;
+import com.sun.jdi.event.MonitorWaitedEvent;
+import com.sun.jdi.event.StepEvent;
+import com.sun.jdi.event.ThreadDeathEvent;
+import com.sun.jdi.event.ThreadStartEvent;
+import com.sun.jdi.event.VMDeathEvent;
+import com.sun.jdi.event.VMDisconnectEvent;
+import com.sun.jdi.event.VMStartEvent;
+import com.sun.jdi.event.WatchpointEvent;
+import com.sun.jdi.request.EventRequest;
+
+/**
+ * The replayed events handed out by a {@link TraceReader}: one final class
+ * per JDI event interface, holding the recorded attributes of the event.
+ *
+ * @author Adrian Herrera
+ */
+final class ReplayedEvents {
+
+    private ReplayedEvents() {
+    }
+
+    /**
+     * Base class of the replayed events.
+     */
+    abstract static class Base extends ReplayedMirror implements ReplayedEvent {
+
+        private final EventType type;
+        private final long nanos;
+        final ThreadReference thread;
+        final Location location;
+
+        Base(EventType type, long nanos, ThreadReference thread,
+                Location location) {
+            this.type = type;
+            this.nanos = nanos;
+            this.thread = thread;
+            this.location = location;
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+
+        @Override
+        public EventRequest request() {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return type + (location != null ? " @ " + location : "")
+                    + (thread != null ? " in " + thread : "");
+        }
+    }
+
+    /**
+     * Base class of the replayed events that occur in a thread.
+     */
+    abstract static class OfThread extends Base {
+
+        OfThread(EventType type, long nanos, ThreadReference thread) {
+            super(type, nanos, thread, null);
+        }
+
+        OfThread(EventType type, long nanos, ThreadReference thread,
+                Location location) {
+            super(type, nanos, thread, location);
+        }
+
+        public ThreadReference thread() {
+            return thread;
+        }
+    }
+
+    /**
+     * Base class of the replayed events that occur at a location.
+     */
+    abstract static class Locatable extends OfThread {
+
+        Locatable(EventType type, long nanos, ThreadReference thread,
+                Location location) {
+            super(type, nanos, thread, location);
+        }
+
+        public Location location() {
+            return location;
+        }
+    }
+
+    /**
+     * Base class of the replayed watchpoint events.
+     */
+    abstract static class AbstractWatchpoint extends Locatable {
+
+        private final Field field;
+        private final ObjectReference object;
+
+        AbstractWatchpoint(EventType type, long nanos, ThreadReference thread,
+                Location location, Field field, ObjectReference object) {
+            super(type, nanos, thread, location);
+            this.field = field;
+            this.object = object;
+        }
+
+        public Field field() {
+            return field;
+        }
+
+        public ObjectReference object() {
+            return object;
+        }
+
+        public Value valueCurrent() {
+            throw unsupported("valueCurrent");
+        }
+    }
+
+    /**
+     * A replayed breakpoint event.
+     */
+    static final class Breakpoint extends Locatable implements BreakpointEvent {
+
+        Breakpoint(long nanos, ThreadReference thread, Location location) {
+            super(EventType.BREAKPOINT, nanos, thread, location);
+        }
+    }
+
+    /**
+     * A replayed step event.
+     */
+    static final class Step extends Locatable implements StepEvent {
+
+        Step(long nanos, ThreadReference thread, Location location) {
+            super(EventType.STEP, nanos, thread, location);
+        }
+    }
+
+    /**
+     * A replayed method entry event.
+     */
+    static final class MethodEntry extends Locatable
+            implements MethodEntryEvent {
+
+        MethodEntry(long nanos, ThreadReference thread, Location location) {
+            super(EventType.METHOD_ENTRY, nanos, thread, location);
+        }
+
+        @Override
+        public Method method() {
+            return location.method();
+        }
+    }
+
+    /**
+     * A replayed method exit event.
+     */
+    static final class MethodExit extends Locatable implements MethodExitEvent {
+
+        private final Value returnValue;
+
+        MethodExit(long nanos, ThreadReference thread, Location location,
+                Value returnValue) {
+            super(EventType.METHOD_EXIT, nanos, thread, location);
+            this.returnValue = returnValue;
+        }
+
+        @Override
+        public Method method() {
+            return location.method();
+        }
+
+        @Override
+        public Value returnValue() {
+            return returnValue;
+        }
+    }
+
+    /**
+     * A replayed exception event.
+     */
+    static final class ExceptionThrown extends Locatable
+            implements ExceptionEvent {
+
+        private final ObjectReference exception;
+        private final Location catchLocation;
+
+        ExceptionThrown(long nanos, ThreadReference thread, Location location,
+                ObjectReference exception, Location catchLocation) {
+            super(EventType.EXCEPTION, nanos, thread, location);
+            this.exception = exception;
+            this.catchLocation = catchLocation;
+        }
+
+        @Override
+        public ObjectReference exception() {
+            return exception;
+        }
+
+        @Override
+        public Location catchLocation() {
+            return catchLocation;
+        }
+    }
+
+    /**
+     * A replayed watchpoint event.
+     */
+    static final class Watchpoint extends AbstractWatchpoint
+            implements WatchpointEvent {
+
+        Watchpoint(long nanos, ThreadReference thread, Location location,
+                Field field, ObjectReference object) {
+            super(EventType.WATCHPOINT, nanos, thread, location, field, object);
+        }
+    }
+
+    /**
+     * A replayed access watchpoint event.
+     */
+    static final class AccessWatchpoint extends AbstractWatchpoint
+            implements AccessWatchpointEvent {
+
+        AccessWatchpoint(long nanos, ThreadReference thread, Location location,
+                Field field, ObjectReference object) {
+            super(EventType.ACCESS_WATCHPOINT, nanos, thread, location, field,
+                    object);
+        }
+    }
+
+    /**
+     * A replayed modification watchpoint event.
+     */
+    static final class ModificationWatchpoint extends AbstractWatchpoint
+            implements ModificationWatchpointEvent {
+
+        private final Value valueToBe;
+
+        ModificationWatchpoint(long nanos, ThreadReference thread,
+                Location location, Field field, ObjectReference object,
+                Value valueToBe) {
+            super(EventType.MODIFICATION_WATCHPOINT, nanos, thread, location,
+                    field, object);
+            this.valueToBe = valueToBe;
+        }
+
+        @Override
+        public Value valueToBe() {
+            return valueToBe;
+        }
+    }
+
+    /**
+     * A replayed contended monitor enter event.
+     */
+    static final class MonitorContendedEnter extends Locatable
+            implements MonitorContendedEnterEvent {
+
+        private final ObjectReference monitor;
+
+        MonitorContendedEnter(long nanos, ThreadReference thread,
+                Location location, ObjectReference monitor) {
+            super(EventType.MONITOR_CONTENDED_ENTER, nanos, thread, location);
+            this.monitor = monitor;
+        }
+
+        @Override
+        public ObjectReference monitor() {
+            return monitor;
+        }
+    }
+
+    /**
+     * A replayed contended monitor entered event.
+     */
+    static final class MonitorContendedEntered extends Locatable
+            implements MonitorContendedEnteredEvent {
+
+        private final ObjectReference monitor;
+
+        MonitorContendedEntered(long nanos, ThreadReference thread,
+                Location location, ObjectReference monitor) {
+            super(EventType.MONITOR_CONTENDED_ENTERED, nanos, thread, location);
+            this.monitor = monitor;
+        }
+
+        @Override
+        public ObjectReference monitor() {
+            return monitor;
+        }
+    }
+
+    /**
+     * A replayed monitor wait event.
+     */
+    static final class MonitorWait extends Locatable
+            implements MonitorWaitEvent {
+
+        private final ObjectReference monitor;
+        private final long timeout;
+
+        MonitorWait(long nanos, ThreadReference thread, Location location,
+                ObjectReference monitor, long timeout) {
+            super(EventType.MONITOR_WAIT, nanos, thread, location);
+            this.monitor = monitor;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public ObjectReference monitor() {
+            return monitor;
+        }
+
+        @Override
+        public long timeout() {
+            return timeout;
+        }
+    }
+
+    /**
+     * A replayed monitor waited event.
+     */
+    static final class MonitorWaited extends Locatable
+            implements MonitorWaitedEvent {
+
+        private final ObjectReference monitor;
+        private final boolean timedout;
+
+        MonitorWaited(long nanos, ThreadReference thread, Location location,
+                ObjectReference monitor, boolean timedout) {
+            super(EventType.MONITOR_WAITED, nanos, thread, location);
+            this.monitor = monitor;
+            this.timedout = timedout;
+        }
+
+        @Override
+        public ObjectReference monitor() {
+            return monitor;
+        }
+
+        @Override
+        public boolean timedout() {
+            return timedout;
+        }
+    }
+
+    /**
+     * A replayed locatable event.
+     */
+    static final class AtLocation extends Locatable implements LocatableEvent {
+
+        AtLocation(long nanos, ThreadReference thread, Location location) {
+            super(EventType.LOCATABLE, nanos, thread, location);
+        }
+    }
+
+    /**
+     * A replayed thread start event.
+     */
+    static final class ThreadStart extends OfThread
+            implements ThreadStartEvent {
+
+        ThreadStart(long nanos, ThreadReference thread) {
+            super(EventType.THREAD_START, nanos, thread);
+        }
+    }
+
+    /**
+     * A replayed thread death event.
+     */
+    static final class ThreadDeath extends OfThread
+            implements ThreadDeathEvent {
+
+        ThreadDeath(long nanos, ThreadReference thread) {
+            super(EventType.THREAD_DEATH, nanos, thread);
+        }
+    }
+
+    /**
+     * A replayed VM start event.
+     */
+    static final class VMStart extends OfThread implements VMStartEvent {
+
+        VMStart(long nanos, ThreadReference thread) {
+            super(EventType.VM_START, nanos, thread);
+        }
+    }
+
+    /**
+     * A replayed class prepare event.
+     */
+    static final class ClassPrepare extends OfThread
+            implements ClassPrepareEvent {
+
+        private final ReferenceType referenceType;
+
+        ClassPrepare(long nanos, ThreadReference thread,
+                ReferenceType referenceType) {
+            super(EventType.CLASS_PREPARE, nanos, thread);
+            this.referenceType = referenceType;
+        }
+
+        @Override
+        public ReferenceType referenceType() {
+            return referenceType;
+        }
+    }
+
+    /**
+     * A replayed class unload event.
+     */
+    static final class ClassUnload extends Base implements ClassUnloadEvent {
+
+        private final String classSignature;
+
+        ClassUnload(long nanos, String classSignature) {
+            super(EventType.CLASS_UNLOAD, nanos, null, null);
+            this.classSignature = classSignature;
+        }
+
+        @Override
+        public String classSignature() {
+            return classSignature;
+        }
+
+        @Override
+        public String className() {
+            return typeName(classSignature);
+        }
+    }
+
+    /**
+     * A replayed VM death event.
+     */
+    static final class VMDeath extends Base implements VMDeathEvent {
+
+        VMDeath(long nanos) {
+            super(EventType.VM_DEATH, nanos, null, null);
+        }
+    }
+
+    /**
+     * A replayed VM disconnect event.
+     */
+    static final class VMDisconnect extends Base implements VMDisconnectEvent {
+
+        VMDisconnect(long nanos) {
+            super(EventType.VM_DISCONNECT, nanos, null, null);
+        }
+    }
+}
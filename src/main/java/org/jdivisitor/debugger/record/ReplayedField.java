@@ -0,0 +1,75 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import com.sun.jdi.ClassNotLoadedException;
+import com.sun.jdi.Field;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.Type;
+
+/**
+ * A replayed {@code Field}.
+ *
+ * @author Adrian Herrera
+ */
+final class ReplayedField extends ReplayedMember implements Field {
+
+    /**
+     * Constructor.
+     *
+     * @param declaringType Declaring type
+     * @param name Field name
+     * @param signature Field signature
+     */
+    ReplayedField(ReferenceType declaringType, String name,
+            String signature) {
+        super(declaringType, name, signature);
+    }
+
+    @Override
+    public String typeName() {
+        return typeName(signature());
+    }
+
+    @Override
+    public int compareTo(Field other) {
+        return compareMember(other);
+    }
+
+    @Override
+    public Type type() throws ClassNotLoadedException {
+        throw unsupported("type");
+    }
+
+    @Override
+    public boolean isTransient() {
+        throw unsupported("isTransient");
+    }
+
+    @Override
+    public boolean isVolatile() {
+        throw unsupported("isVolatile");
+    }
+
+    @Override
+    public boolean isEnumConstant() {
+        throw unsupported("isEnumConstant");
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import com.sun.jdi.AbsentInformationException;
+import com.sun.jdi.Location;
+import com.sun.jdi.Method;
+import com.sun.jdi.ReferenceType;
+
+/**
+ * A replayed {@code Location}, of which the method, code index and line
+ * number are known. Replayed locations are equal if their methods and code
+ * indices are, and are ordered by method and then by code index.
+ *
+ * @author Adrian Herrera
+ */
+final class ReplayedLocation extends ReplayedMirror implements Location {
+
+    private final Method method;
+    private final long codeIndex;
+    private final int lineNumber;
+
+    /**
+     * Constructor.
+     *
+     * @param method The location's method
+     * @param codeIndex The location's code index
+     * @param lineNumber The location's line number
+     */
+    ReplayedLocation(Method method, long codeIndex, int lineNumber) {
+        this.method = method;
+        this.codeIndex = codeIndex;
+        this.lineNumber = lineNumber;
+    }
+
+    @Override
+    public ReferenceType declaringType() {
+        return method.declaringType();
+    }
+
+    @Override
+    public Method method() {
+        return method;
+    }
+
+    @Override
+    public long codeIndex() {
+        return codeIndex;
+    }
+
+    @Override
+    public String sourceName() throws AbsentInformationException {
+        throw new AbsentInformationException();
+    }
+
+    @Override
+    public String sourceName(String stratum)
+            throws AbsentInformationException {
+        throw new AbsentInformationException();
+    }
+
+    @Override
+    public String sourcePath() throws AbsentInformationException {
+        throw new AbsentInformationException();
+    }
+
+    @Override
+    public String sourcePath(String stratum)
+            throws AbsentInformationException {
+        throw new AbsentInformationException();
+    }
+
+    @Override
+    public int lineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public int lineNumber(String stratum) {
+        return lineNumber;
+    }
+
+    @Override
+    public int compareTo(Location other) {
+        int result = method.compareTo(other.method());
+        if (result == 0) {
+            result = Long.compare(codeIndex, other.codeIndex());
+        }
+
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(method) + Long.hashCode(codeIndex);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ReplayedLocation
+                && method == ((ReplayedLocation) obj).method
+                && codeIndex == ((ReplayedLocation) obj).codeIndex;
+    }
+
+    @Override
+    public String toString() {
+        return method + ":" + lineNumber;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.TypeComponent;
+
+/**
+ * A replayed method or field, of which only the declaring type, name and
+ * signature are known.
+ *
+ * @author Adrian Herrera
+ */
+abstract class ReplayedMember extends ReplayedMirror implements TypeComponent {
+
+    private final ReferenceType declaringType;
+    private final String name;
+    private final String signature;
+
+    /**
+     * Constructor.
+     *
+     * @param declaringType Declaring type
+     * @param name Member name
+     * @param signature Member signature
+     */
+    ReplayedMember(ReferenceType declaringType, String name,
+            String signature) {
+        this.declaringType = declaringType;
+        this.name = name;
+        this.signature = signature;
+    }
+
+    @Override
+    public ReferenceType declaringType() {
+        return declaringType;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String signature() {
+        return signature;
+    }
+
+    /**
+     * Order members by declaring type, name and signature.
+     *
+     * @param other Member to compare to
+     * @return The comparison, as for {@code compareTo}
+     */
+    int compareMember(TypeComponent other) {
+        int result = declaringType.compareTo(other.declaringType());
+        if (result == 0) {
+            result = name.compareTo(other.name());
+        }
+        if (result == 0) {
+            result = signature.compareTo(other.signature());
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return declaringType.name() + "." + name;
+    }
+
+    @Override
+    public String genericSignature() {
+        throw unsupported("genericSignature");
+    }
+
+    @Override
+    public boolean isStatic() {
+        throw unsupported("isStatic");
+    }
+
+    @Override
+    public boolean isFinal() {
+        throw unsupported("isFinal");
+    }
+
+    @Override
+    public boolean isSynthetic() {
+        throw unsupported("isSynthetic");
+    }
+
+    @Override
+    public int modifiers() {
+        throw unsupported("modifiers");
+    }
+
+    @Override
+    public boolean isPrivate() {
+        throw unsupported("isPrivate");
+    }
+
+    @Override
+    public boolean isPackagePrivate() {
+        throw unsupported("isPackagePrivate");
+    }
+
+    @Override
+    public boolean isProtected() {
+        throw unsupported("isProtected");
+    }
+
+    @Override
+    public boolean isPublic() {
+        throw unsupported("isPublic");
+    }
+}
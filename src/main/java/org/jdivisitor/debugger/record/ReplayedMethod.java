@@ -0,0 +1,169 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.util.List;
+
+import com.sun.jdi.AbsentInformationException;
+import com.sun.jdi.ClassNotLoadedException;
+import com.sun.jdi.LocalVariable;
+import com.sun.jdi.Location;
+import com.sun.jdi.Method;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.Type;
+
+/**
+ * A replayed {@code Method}.
+ *
+ * @author Adrian Herrera
+ */
+final class ReplayedMethod extends ReplayedMember implements Method {
+
+    /**
+     * Constructor.
+     *
+     * @param declaringType Declaring type
+     * @param name Method name
+     * @param signature Method signature
+     */
+    ReplayedMethod(ReferenceType declaringType, String name,
+            String signature) {
+        super(declaringType, name, signature);
+    }
+
+    @Override
+    public int compareTo(Method other) {
+        return compareMember(other);
+    }
+
+    @Override
+    public String returnTypeName() {
+        throw unsupported("returnTypeName");
+    }
+
+    @Override
+    public Type returnType() throws ClassNotLoadedException {
+        throw unsupported("returnType");
+    }
+
+    @Override
+    public List<String> argumentTypeNames() {
+        throw unsupported("argumentTypeNames");
+    }
+
+    @Override
+    public List<Type> argumentTypes() throws ClassNotLoadedException {
+        throw unsupported("argumentTypes");
+    }
+
+    @Override
+    public boolean isAbstract() {
+        throw unsupported("isAbstract");
+    }
+
+    @Override
+    public boolean isSynchronized() {
+        throw unsupported("isSynchronized");
+    }
+
+    @Override
+    public boolean isNative() {
+        throw unsupported("isNative");
+    }
+
+    @Override
+    public boolean isVarArgs() {
+        throw unsupported("isVarArgs");
+    }
+
+    @Override
+    public boolean isBridge() {
+        throw unsupported("isBridge");
+    }
+
+    @Override
+    public boolean isConstructor() {
+        throw unsupported("isConstructor");
+    }
+
+    @Override
+    public boolean isStaticInitializer() {
+        throw unsupported("isStaticInitializer");
+    }
+
+    @Override
+    public boolean isObsolete() {
+        throw unsupported("isObsolete");
+    }
+
+    @Override
+    public List<Location> allLineLocations() throws AbsentInformationException {
+        throw unsupported("allLineLocations");
+    }
+
+    @Override
+    public List<Location> allLineLocations(String stratum, String sourceName)
+            throws AbsentInformationException {
+        throw unsupported("allLineLocations");
+    }
+
+    @Override
+    public List<Location> locationsOfLine(int lineNumber)
+            throws AbsentInformationException {
+        throw unsupported("locationsOfLine");
+    }
+
+    @Override
+    public List<Location> locationsOfLine(String stratum, String sourceName,
+            int lineNumber) throws AbsentInformationException {
+        throw unsupported("locationsOfLine");
+    }
+
+    @Override
+    public Location locationOfCodeIndex(long codeIndex) {
+        throw unsupported("locationOfCodeIndex");
+    }
+
+    @Override
+    public List<LocalVariable> variables() throws AbsentInformationException {
+        throw unsupported("variables");
+    }
+
+    @Override
+    public List<LocalVariable> variablesByName(String name)
+            throws AbsentInformationException {
+        throw unsupported("variablesByName");
+    }
+
+    @Override
+    public List<LocalVariable> arguments() throws AbsentInformationException {
+        throw unsupported("arguments");
+    }
+
+    @Override
+    public byte[] bytecodes() {
+        throw unsupported("bytecodes");
+    }
+
+    @Override
+    public Location location() {
+        throw unsupported("location");
+    }
+}
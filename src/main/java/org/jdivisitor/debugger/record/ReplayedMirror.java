@@ -0,0 +1,106 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import com.sun.jdi.Mirror;
+import com.sun.jdi.VirtualMachine;
+
+/**
+ * Base class of the lightweight JDI events and mirrors handed out by a
+ * {@link TraceReader}. They only hold what was recorded; the rest of their
+ * JDI interface throws {@code UnsupportedOperationException} (see
+ * {@link ReplayedEvent}).
+ *
+ * @author Adrian Herrera
+ */
+abstract class ReplayedMirror implements Mirror {
+
+    @Override
+    public VirtualMachine virtualMachine() {
+        throw unsupported("virtualMachine");
+    }
+
+    /**
+     * Create the exception thrown by a method that a replayed mirror cannot
+     * answer.
+     *
+     * @param method Method name
+     * @return The exception
+     */
+    static UnsupportedOperationException unsupported(String method) {
+        return new UnsupportedOperationException(method
+                + " is not available from a replayed trace");
+    }
+
+    /**
+     * Convert a JNI-style type signature to a type name.
+     *
+     * @param signature Type signature
+     * @return The type name, as returned by {@code Type.name()}
+     */
+    static String typeName(String signature) {
+        int dimensions = 0;
+        while (signature.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+
+        String name;
+        switch (signature.charAt(dimensions)) {
+        case 'Z':
+            name = "boolean";
+            break;
+        case 'B':
+            name = "byte";
+            break;
+        case 'C':
+            name = "char";
+            break;
+        case 'S':
+            name = "short";
+            break;
+        case 'I':
+            name = "int";
+            break;
+        case 'J':
+            name = "long";
+            break;
+        case 'F':
+            name = "float";
+            break;
+        case 'D':
+            name = "double";
+            break;
+        case 'V':
+            name = "void";
+            break;
+        default:
+            name = signature.substring(dimensions + 1, signature.length() - 1)
+                    .replace('/', '.');
+            break;
+        }
+
+        StringBuilder sb = new StringBuilder(name);
+        for (int i = 0; i < dimensions; i++) {
+            sb.append("[]");
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.Type;
+
+/**
+ * A replayed {@code ObjectReference}, of which the type and unique ID are
+ * known. Replayed objects are equal if their unique IDs are.
+ *
+ * @author Adrian Herrera
+ */
+final class ReplayedObject extends ReplayedReference {
+
+    private final ReferenceType type;
+
+    /**
+     * Constructor.
+     *
+     * @param type The object's type
+     * @param uniqueID The object's unique ID
+     */
+    ReplayedObject(ReferenceType type, long uniqueID) {
+        super(uniqueID);
+        this.type = type;
+    }
+
+    @Override
+    public ReferenceType referenceType() {
+        return type;
+    }
+
+    @Override
+    public Type type() {
+        return type;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(uniqueID());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ReplayedObject
+                && uniqueID() == ((ReplayedObject) obj).uniqueID();
+    }
+
+    @Override
+    public String toString() {
+        return "instance of " + type.name() + "(id=" + uniqueID() + ")";
+    }
+}
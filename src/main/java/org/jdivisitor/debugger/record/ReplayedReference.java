@@ -0,0 +1,119 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.util.List;
+import java.util.Map;
+
+import com.sun.jdi.ClassNotLoadedException;
+import com.sun.jdi.Field;
+import com.sun.jdi.IncompatibleThreadStateException;
+import com.sun.jdi.InvalidTypeException;
+import com.sun.jdi.InvocationException;
+import com.sun.jdi.Method;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.Value;
+
+/**
+ * A replayed object or thread, of which the unique ID is known.
+ *
+ * @author Adrian Herrera
+ */
+abstract class ReplayedReference extends ReplayedMirror
+        implements ObjectReference {
+
+    private final long uniqueID;
+
+    /**
+     * Constructor.
+     *
+     * @param uniqueID The object's unique ID
+     */
+    ReplayedReference(long uniqueID) {
+        this.uniqueID = uniqueID;
+    }
+
+    @Override
+    public long uniqueID() {
+        return uniqueID;
+    }
+
+    @Override
+    public Value getValue(Field field) {
+        throw unsupported("getValue");
+    }
+
+    @Override
+    public Map<Field, Value> getValues(List<? extends Field> fields) {
+        throw unsupported("getValues");
+    }
+
+    @Override
+    public void setValue(Field field, Value value)
+            throws InvalidTypeException, ClassNotLoadedException {
+        throw unsupported("setValue");
+    }
+
+    @Override
+    public Value invokeMethod(ThreadReference thread, Method method,
+            List<? extends Value> arguments, int options)
+            throws InvalidTypeException, ClassNotLoadedException,
+                    IncompatibleThreadStateException, InvocationException {
+        throw unsupported("invokeMethod");
+    }
+
+    @Override
+    public void disableCollection() {
+        throw unsupported("disableCollection");
+    }
+
+    @Override
+    public void enableCollection() {
+        throw unsupported("enableCollection");
+    }
+
+    @Override
+    public boolean isCollected() {
+        throw unsupported("isCollected");
+    }
+
+    @Override
+    public List<ThreadReference> waitingThreads()
+            throws IncompatibleThreadStateException {
+        throw unsupported("waitingThreads");
+    }
+
+    @Override
+    public ThreadReference owningThread()
+            throws IncompatibleThreadStateException {
+        throw unsupported("owningThread");
+    }
+
+    @Override
+    public int entryCount() throws IncompatibleThreadStateException {
+        throw unsupported("entryCount");
+    }
+
+    @Override
+    public List<ObjectReference> referringObjects(long maxReferrers) {
+        throw unsupported("referringObjects");
+    }
+}
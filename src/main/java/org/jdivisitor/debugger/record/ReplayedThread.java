@@ -0,0 +1,174 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.util.List;
+
+import com.sun.jdi.ClassNotLoadedException;
+import com.sun.jdi.IncompatibleThreadStateException;
+import com.sun.jdi.InvalidTypeException;
+import com.sun.jdi.MonitorInfo;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.StackFrame;
+import com.sun.jdi.ThreadGroupReference;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.Type;
+import com.sun.jdi.Value;
+
+/**
+ * A replayed {@code ThreadReference}, of which the unique ID and name are
+ * known.
+ *
+ * @author Adrian Herrera
+ */
+final class ReplayedThread extends ReplayedReference
+        implements ThreadReference {
+
+    private final String name;
+
+    /**
+     * Constructor.
+     *
+     * @param uniqueID The thread's unique ID
+     * @param name The thread's name
+     */
+    ReplayedThread(long uniqueID, String name) {
+        super(uniqueID);
+        this.name = name;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + uniqueID() + ")";
+    }
+
+    @Override
+    public ReferenceType referenceType() {
+        throw unsupported("referenceType");
+    }
+
+    @Override
+    public Type type() {
+        throw unsupported("type");
+    }
+
+    @Override
+    public void suspend() {
+        throw unsupported("suspend");
+    }
+
+    @Override
+    public void resume() {
+        throw unsupported("resume");
+    }
+
+    @Override
+    public int suspendCount() {
+        throw unsupported("suspendCount");
+    }
+
+    @Override
+    public void stop(ObjectReference throwable) throws InvalidTypeException {
+        throw unsupported("stop");
+    }
+
+    @Override
+    public void interrupt() {
+        throw unsupported("interrupt");
+    }
+
+    @Override
+    public int status() {
+        throw unsupported("status");
+    }
+
+    @Override
+    public boolean isSuspended() {
+        throw unsupported("isSuspended");
+    }
+
+    @Override
+    public boolean isAtBreakpoint() {
+        throw unsupported("isAtBreakpoint");
+    }
+
+    @Override
+    public ThreadGroupReference threadGroup() {
+        throw unsupported("threadGroup");
+    }
+
+    @Override
+    public int frameCount() throws IncompatibleThreadStateException {
+        throw unsupported("frameCount");
+    }
+
+    @Override
+    public List<StackFrame> frames() throws IncompatibleThreadStateException {
+        throw unsupported("frames");
+    }
+
+    @Override
+    public StackFrame frame(int index) throws IncompatibleThreadStateException {
+        throw unsupported("frame");
+    }
+
+    @Override
+    public List<StackFrame> frames(int start, int length)
+            throws IncompatibleThreadStateException {
+        throw unsupported("frames");
+    }
+
+    @Override
+    public List<ObjectReference> ownedMonitors()
+            throws IncompatibleThreadStateException {
+        throw unsupported("ownedMonitors");
+    }
+
+    @Override
+    public List<MonitorInfo> ownedMonitorsAndFrames()
+            throws IncompatibleThreadStateException {
+        throw unsupported("ownedMonitorsAndFrames");
+    }
+
+    @Override
+    public ObjectReference currentContendedMonitor()
+            throws IncompatibleThreadStateException {
+        throw unsupported("currentContendedMonitor");
+    }
+
+    @Override
+    public void popFrames(StackFrame frame)
+            throws IncompatibleThreadStateException {
+        throw unsupported("popFrames");
+    }
+
+    @Override
+    public void forceEarlyReturn(Value value)
+            throws InvalidTypeException, ClassNotLoadedException,
+                    IncompatibleThreadStateException {
+        throw unsupported("forceEarlyReturn");
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.util.List;
+import java.util.Map;
+
+import com.sun.jdi.AbsentInformationException;
+import com.sun.jdi.ClassLoaderReference;
+import com.sun.jdi.ClassObjectReference;
+import com.sun.jdi.Field;
+import com.sun.jdi.Location;
+import com.sun.jdi.Method;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.Value;
+
+/**
+ * A replayed {@code ReferenceType}, of which only the name and signature are
+ * known.
+ *
+ * @author Adrian Herrera
+ */
+final class ReplayedType extends ReplayedMirror implements ReferenceType {
+
+    private final int id;
+    private final String name;
+    private final String signature;
+
+    /**
+     * Constructor.
+     *
+     * @param id Dictionary ID, which orders types with the same name
+     * @param name Type name
+     * @param signature Type signature
+     */
+    ReplayedType(int id, String name, String signature) {
+        this.id = id;
+        this.name = name;
+        this.signature = signature;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String signature() {
+        return signature;
+    }
+
+    @Override
+    public int compareTo(ReferenceType other) {
+        int result = name.compareTo(other.name());
+        if (result == 0 && other instanceof ReplayedType) {
+            result = Integer.compare(id, ((ReplayedType) other).id);
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    @Override
+    public String genericSignature() {
+        throw unsupported("genericSignature");
+    }
+
+    @Override
+    public ClassLoaderReference classLoader() {
+        throw unsupported("classLoader");
+    }
+
+    @Override
+    public String sourceName() throws AbsentInformationException {
+        throw unsupported("sourceName");
+    }
+
+    @Override
+    public List<String> sourceNames(String stratum)
+            throws AbsentInformationException {
+        throw unsupported("sourceNames");
+    }
+
+    @Override
+    public List<String> sourcePaths(String stratum)
+            throws AbsentInformationException {
+        throw unsupported("sourcePaths");
+    }
+
+    @Override
+    public String sourceDebugExtension() throws AbsentInformationException {
+        throw unsupported("sourceDebugExtension");
+    }
+
+    @Override
+    public boolean isStatic() {
+        throw unsupported("isStatic");
+    }
+
+    @Override
+    public boolean isAbstract() {
+        throw unsupported("isAbstract");
+    }
+
+    @Override
+    public boolean isFinal() {
+        throw unsupported("isFinal");
+    }
+
+    @Override
+    public boolean isPrepared() {
+        throw unsupported("isPrepared");
+    }
+
+    @Override
+    public boolean isVerified() {
+        throw unsupported("isVerified");
+    }
+
+    @Override
+    public boolean isInitialized() {
+        throw unsupported("isInitialized");
+    }
+
+    @Override
+    public boolean failedToInitialize() {
+        throw unsupported("failedToInitialize");
+    }
+
+    @Override
+    public List<Field> fields() {
+        throw unsupported("fields");
+    }
+
+    @Override
+    public List<Field> visibleFields() {
+        throw unsupported("visibleFields");
+    }
+
+    @Override
+    public List<Field> allFields() {
+        throw unsupported("allFields");
+    }
+
+    @Override
+    public Field fieldByName(String fieldName) {
+        throw unsupported("fieldByName");
+    }
+
+    @Override
+    public List<Method> methods() {
+        throw unsupported("methods");
+    }
+
+    @Override
+    public List<Method> visibleMethods() {
+        throw unsupported("visibleMethods");
+    }
+
+    @Override
+    public List<Method> allMethods() {
+        throw unsupported("allMethods");
+    }
+
+    @Override
+    public List<Method> methodsByName(String name) {
+        throw unsupported("methodsByName");
+    }
+
+    @Override
+    public List<Method> methodsByName(String name, String signature) {
+        throw unsupported("methodsByName");
+    }
+
+    @Override
+    public List<ReferenceType> nestedTypes() {
+        throw unsupported("nestedTypes");
+    }
+
+    @Override
+    public Value getValue(Field field) {
+        throw unsupported("getValue");
+    }
+
+    @Override
+    public Map<Field, Value> getValues(List<? extends Field> fields) {
+        throw unsupported("getValues");
+    }
+
+    @Override
+    public ClassObjectReference classObject() {
+        throw unsupported("classObject");
+    }
+
+    @Override
+    public List<Location> allLineLocations() throws AbsentInformationException {
+        throw unsupported("allLineLocations");
+    }
+
+    @Override
+    public List<Location> allLineLocations(String stratum, String sourceName)
+            throws AbsentInformationException {
+        throw unsupported("allLineLocations");
+    }
+
+    @Override
+    public List<Location> locationsOfLine(int lineNumber)
+            throws AbsentInformationException {
+        throw unsupported("locationsOfLine");
+    }
+
+    @Override
+    public List<Location> locationsOfLine(String stratum, String sourceName,
+            int lineNumber) throws AbsentInformationException {
+        throw unsupported("locationsOfLine");
+    }
+
+    @Override
+    public List<String> availableStrata() {
+        throw unsupported("availableStrata");
+    }
+
+    @Override
+    public String defaultStratum() {
+        throw unsupported("defaultStratum");
+    }
+
+    @Override
+    public List<ObjectReference> instances(long maxInstances) {
+        throw unsupported("instances");
+    }
+
+    @Override
+    public int majorVersion() {
+        throw unsupported("majorVersion");
+    }
+
+    @Override
+    public int minorVersion() {
+        throw unsupported("minorVersion");
+    }
+
+    @Override
+    public int constantPoolCount() {
+        throw unsupported("constantPoolCount");
+    }
+
+    @Override
+    public byte[] constantPool() {
+        throw unsupported("constantPool");
+    }
+
+    @Override
+    public int modifiers() {
+        throw unsupported("modifiers");
+    }
+
+    @Override
+    public boolean isPrivate() {
+        throw unsupported("isPrivate");
+    }
+
+    @Override
+    public boolean isPackagePrivate() {
+        throw unsupported("isPackagePrivate");
+    }
+
+    @Override
+    public boolean isProtected() {
+        throw unsupported("isProtected");
+    }
+
+    @Override
+    public boolean isPublic() {
+        throw unsupported("isPublic");
+    }
+}
@@ -0,0 +1,791 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import com.sun.jdi.BooleanValue;
+import com.sun.jdi.ByteValue;
+import com.sun.jdi.CharValue;
+import com.sun.jdi.DoubleValue;
+import com.sun.jdi.FloatValue;
+import com.sun.jdi.IntegerValue;
+import com.sun.jdi.LongValue;
+import com.sun.jdi.ShortValue;
+import com.sun.jdi.Type;
+import com.sun.jdi.VoidValue;
+
+/**
+ * Creates the replayed primitive and void values. Replayed values are equal
+ * if they have the same type and value.
+ *
+ * @author Adrian Herrera
+ */
+final class ReplayedValues {
+
+    private static final VoidValue VOID = new ReplayedVoid();
+
+    private ReplayedValues() {
+    }
+
+    /**
+     * Create a replayed {@code boolean}.
+     *
+     * @param value The value
+     * @return The replayed value
+     */
+    static BooleanValue of(boolean value) {
+        return new ReplayedBoolean(value);
+    }
+
+    /**
+     * Create a replayed {@code byte}.
+     *
+     * @param value The value
+     * @return The replayed value
+     */
+    static ByteValue of(byte value) {
+        return new ReplayedByte(value);
+    }
+
+    /**
+     * Create a replayed {@code char}.
+     *
+     * @param value The value
+     * @return The replayed value
+     */
+    static CharValue of(char value) {
+        return new ReplayedChar(value);
+    }
+
+    /**
+     * Create a replayed {@code short}.
+     *
+     * @param value The value
+     * @return The replayed value
+     */
+    static ShortValue of(short value) {
+        return new ReplayedShort(value);
+    }
+
+    /**
+     * Create a replayed {@code int}.
+     *
+     * @param value The value
+     * @return The replayed value
+     */
+    static IntegerValue of(int value) {
+        return new ReplayedInteger(value);
+    }
+
+    /**
+     * Create a replayed {@code long}.
+     *
+     * @param value The value
+     * @return The replayed value
+     */
+    static LongValue of(long value) {
+        return new ReplayedLong(value);
+    }
+
+    /**
+     * Create a replayed {@code float}.
+     *
+     * @param value The value
+     * @return The replayed value
+     */
+    static FloatValue of(float value) {
+        return new ReplayedFloat(value);
+    }
+
+    /**
+     * Create a replayed {@code double}.
+     *
+     * @param value The value
+     * @return The replayed value
+     */
+    static DoubleValue of(double value) {
+        return new ReplayedDouble(value);
+    }
+
+    /**
+     * Get the replayed {@code VoidValue}.
+     *
+     * @return The replayed value
+     */
+    static VoidValue ofVoid() {
+        return VOID;
+    }
+
+    private static final class ReplayedBoolean extends ReplayedMirror
+            implements BooleanValue {
+
+        private final boolean value;
+
+        ReplayedBoolean(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean value() {
+            return value;
+        }
+
+        @Override
+        public boolean booleanValue() {
+            return value;
+        }
+
+        @Override
+        public byte byteValue() {
+            return (byte) (value ? 1 : 0);
+        }
+
+        @Override
+        public char charValue() {
+            return (char) (value ? 1 : 0);
+        }
+
+        @Override
+        public short shortValue() {
+            return (short) (value ? 1 : 0);
+        }
+
+        @Override
+        public int intValue() {
+            return value ? 1 : 0;
+        }
+
+        @Override
+        public long longValue() {
+            return value ? 1 : 0;
+        }
+
+        @Override
+        public float floatValue() {
+            return value ? 1 : 0;
+        }
+
+        @Override
+        public double doubleValue() {
+            return value ? 1 : 0;
+        }
+
+        @Override
+        public Type type() {
+            throw unsupported("type");
+        }
+
+        @Override
+        public int hashCode() {
+            return Boolean.hashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ReplayedBoolean
+                    && value == ((ReplayedBoolean) obj).value;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    private static final class ReplayedByte extends ReplayedMirror
+            implements ByteValue {
+
+        private final byte value;
+
+        ReplayedByte(byte value) {
+            this.value = value;
+        }
+
+        @Override
+        public byte value() {
+            return value;
+        }
+
+        @Override
+        public boolean booleanValue() {
+            return value != 0;
+        }
+
+        @Override
+        public byte byteValue() {
+            return value;
+        }
+
+        @Override
+        public char charValue() {
+            return (char) value;
+        }
+
+        @Override
+        public short shortValue() {
+            return value;
+        }
+
+        @Override
+        public int intValue() {
+            return value;
+        }
+
+        @Override
+        public long longValue() {
+            return value;
+        }
+
+        @Override
+        public float floatValue() {
+            return value;
+        }
+
+        @Override
+        public double doubleValue() {
+            return value;
+        }
+
+        @Override
+        public int compareTo(ByteValue other) {
+            return Byte.compare(value, other.value());
+        }
+
+        @Override
+        public Type type() {
+            throw unsupported("type");
+        }
+
+        @Override
+        public int hashCode() {
+            return Byte.hashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ReplayedByte
+                    && value == ((ReplayedByte) obj).value;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    private static final class ReplayedChar extends ReplayedMirror
+            implements CharValue {
+
+        private final char value;
+
+        ReplayedChar(char value) {
+            this.value = value;
+        }
+
+        @Override
+        public char value() {
+            return value;
+        }
+
+        @Override
+        public boolean booleanValue() {
+            return value != 0;
+        }
+
+        @Override
+        public byte byteValue() {
+            return (byte) value;
+        }
+
+        @Override
+        public char charValue() {
+            return value;
+        }
+
+        @Override
+        public short shortValue() {
+            return (short) value;
+        }
+
+        @Override
+        public int intValue() {
+            return value;
+        }
+
+        @Override
+        public long longValue() {
+            return value;
+        }
+
+        @Override
+        public float floatValue() {
+            return value;
+        }
+
+        @Override
+        public double doubleValue() {
+            return value;
+        }
+
+        @Override
+        public int compareTo(CharValue other) {
+            return Character.compare(value, other.value());
+        }
+
+        @Override
+        public Type type() {
+            throw unsupported("type");
+        }
+
+        @Override
+        public int hashCode() {
+            return Character.hashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ReplayedChar
+                    && value == ((ReplayedChar) obj).value;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    private static final class ReplayedShort extends ReplayedMirror
+            implements ShortValue {
+
+        private final short value;
+
+        ReplayedShort(short value) {
+            this.value = value;
+        }
+
+        @Override
+        public short value() {
+            return value;
+        }
+
+        @Override
+        public boolean booleanValue() {
+            return value != 0;
+        }
+
+        @Override
+        public byte byteValue() {
+            return (byte) value;
+        }
+
+        @Override
+        public char charValue() {
+            return (char) value;
+        }
+
+        @Override
+        public short shortValue() {
+            return value;
+        }
+
+        @Override
+        public int intValue() {
+            return value;
+        }
+
+        @Override
+        public long longValue() {
+            return value;
+        }
+
+        @Override
+        public float floatValue() {
+            return value;
+        }
+
+        @Override
+        public double doubleValue() {
+            return value;
+        }
+
+        @Override
+        public int compareTo(ShortValue other) {
+            return Short.compare(value, other.value());
+        }
+
+        @Override
+        public Type type() {
+            throw unsupported("type");
+        }
+
+        @Override
+        public int hashCode() {
+            return Short.hashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ReplayedShort
+                    && value == ((ReplayedShort) obj).value;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    private static final class ReplayedInteger extends ReplayedMirror
+            implements IntegerValue {
+
+        private final int value;
+
+        ReplayedInteger(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int value() {
+            return value;
+        }
+
+        @Override
+        public boolean booleanValue() {
+            return value != 0;
+        }
+
+        @Override
+        public byte byteValue() {
+            return (byte) value;
+        }
+
+        @Override
+        public char charValue() {
+            return (char) value;
+        }
+
+        @Override
+        public short shortValue() {
+            return (short) value;
+        }
+
+        @Override
+        public int intValue() {
+            return value;
+        }
+
+        @Override
+        public long longValue() {
+            return value;
+        }
+
+        @Override
+        public float floatValue() {
+            return value;
+        }
+
+        @Override
+        public double doubleValue() {
+            return value;
+        }
+
+        @Override
+        public int compareTo(IntegerValue other) {
+            return Integer.compare(value, other.value());
+        }
+
+        @Override
+        public Type type() {
+            throw unsupported("type");
+        }
+
+        @Override
+        public int hashCode() {
+            return Integer.hashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ReplayedInteger
+                    && value == ((ReplayedInteger) obj).value;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    private static final class ReplayedLong extends ReplayedMirror
+            implements LongValue {
+
+        private final long value;
+
+        ReplayedLong(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public long value() {
+            return value;
+        }
+
+        @Override
+        public boolean booleanValue() {
+            return value != 0;
+        }
+
+        @Override
+        public byte byteValue() {
+            return (byte) value;
+        }
+
+        @Override
+        public char charValue() {
+            return (char) value;
+        }
+
+        @Override
+        public short shortValue() {
+            return (short) value;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) value;
+        }
+
+        @Override
+        public long longValue() {
+            return value;
+        }
+
+        @Override
+        public float floatValue() {
+            return value;
+        }
+
+        @Override
+        public double doubleValue() {
+            return value;
+        }
+
+        @Override
+        public int compareTo(LongValue other) {
+            return Long.compare(value, other.value());
+        }
+
+        @Override
+        public Type type() {
+            throw unsupported("type");
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ReplayedLong
+                    && value == ((ReplayedLong) obj).value;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    private static final class ReplayedFloat extends ReplayedMirror
+            implements FloatValue {
+
+        private final float value;
+
+        ReplayedFloat(float value) {
+            this.value = value;
+        }
+
+        @Override
+        public float value() {
+            return value;
+        }
+
+        @Override
+        public boolean booleanValue() {
+            return value != 0;
+        }
+
+        @Override
+        public byte byteValue() {
+            return (byte) value;
+        }
+
+        @Override
+        public char charValue() {
+            return (char) value;
+        }
+
+        @Override
+        public short shortValue() {
+            return (short) value;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) value;
+        }
+
+        @Override
+        public long longValue() {
+            return (long) value;
+        }
+
+        @Override
+        public float floatValue() {
+            return value;
+        }
+
+        @Override
+        public double doubleValue() {
+            return value;
+        }
+
+        @Override
+        public int compareTo(FloatValue other) {
+            return Float.compare(value, other.value());
+        }
+
+        @Override
+        public Type type() {
+            throw unsupported("type");
+        }
+
+        @Override
+        public int hashCode() {
+            return Float.hashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ReplayedFloat
+                    && Float.compare(value, ((ReplayedFloat) obj).value) == 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    private static final class ReplayedDouble extends ReplayedMirror
+            implements DoubleValue {
+
+        private final double value;
+
+        ReplayedDouble(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double value() {
+            return value;
+        }
+
+        @Override
+        public boolean booleanValue() {
+            return value != 0;
+        }
+
+        @Override
+        public byte byteValue() {
+            return (byte) value;
+        }
+
+        @Override
+        public char charValue() {
+            return (char) value;
+        }
+
+        @Override
+        public short shortValue() {
+            return (short) value;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) value;
+        }
+
+        @Override
+        public long longValue() {
+            return (long) value;
+        }
+
+        @Override
+        public float floatValue() {
+            return (float) value;
+        }
+
+        @Override
+        public double doubleValue() {
+            return value;
+        }
+
+        @Override
+        public int compareTo(DoubleValue other) {
+            return Double.compare(value, other.value());
+        }
+
+        @Override
+        public Type type() {
+            throw unsupported("type");
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ReplayedDouble
+                    && Double.compare(value, ((ReplayedDouble) obj).value) == 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    private static final class ReplayedVoid extends ReplayedMirror
+            implements VoidValue {
+
+        @Override
+        public Type type() {
+            throw unsupported("type");
+        }
+
+        @Override
+        public String toString() {
+            return "<void value>";
+        }
+    }
+}
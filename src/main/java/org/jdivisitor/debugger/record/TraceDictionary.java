@@ -0,0 +1,136 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.jdi.Field;
+import com.sun.jdi.Method;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.ThreadReference;
+
+/**
+ * The class, method, field and thread dictionaries of a trace, as replayed
+ * mirrors. Dictionary IDs are assigned from 1 in definition order.
+ *
+ * <p>
+ * A dictionary can be loaded from a trace's index up front, in which case
+ * the definitions met while reading the trace are already known and are
+ * skipped. Once loaded, a dictionary is only read, and can be shared.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+final class TraceDictionary {
+
+    private final List<ReferenceType> classes = new ArrayList<ReferenceType>();
+    private final List<Method> methods = new ArrayList<Method>();
+    private final List<Integer> methodClasses = new ArrayList<Integer>();
+    private final List<Field> fields = new ArrayList<Field>();
+    private final List<ThreadReference> threads =
+            new ArrayList<ThreadReference>();
+
+    /**
+     * Read a definition record (after its tag), unless it has already been
+     * read.
+     *
+     * @param tag Definition tag
+     * @param in Record data
+     */
+    void define(int tag, ByteBuffer in) {
+        int id = (int) RecordDecoder.readVarint(in);
+
+        switch (tag) {
+        case TraceFormat.DEF_CLASS:
+            if (id > classes.size()) {
+                String name = RecordDecoder.readString(in);
+                classes.add(new ReplayedType(id, name, RecordDecoder
+                        .readString(in)));
+            }
+            break;
+        case TraceFormat.DEF_METHOD:
+            if (id > methods.size()) {
+                int classId = (int) RecordDecoder.readVarint(in);
+                String name = RecordDecoder.readString(in);
+                methods.add(new ReplayedMethod(type(classId), name,
+                        RecordDecoder.readString(in)));
+                methodClasses.add(classId);
+            }
+            break;
+        case TraceFormat.DEF_FIELD:
+            if (id > fields.size()) {
+                int classId = (int) RecordDecoder.readVarint(in);
+                String name = RecordDecoder.readString(in);
+                fields.add(new ReplayedField(type(classId), name,
+                        RecordDecoder.readString(in)));
+            }
+            break;
+        case TraceFormat.DEF_THREAD:
+            if (id > threads.size()) {
+                long uniqueID = RecordDecoder.readVarint(in);
+                threads.add(new ReplayedThread(uniqueID, RecordDecoder
+                        .readString(in)));
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    int classCount() {
+        return classes.size();
+    }
+
+    int methodCount() {
+        return methods.size();
+    }
+
+    int threadCount() {
+        return threads.size();
+    }
+
+    ReferenceType type(int id) {
+        return classes.get(id - 1);
+    }
+
+    Method method(int id) {
+        return methods.get(id - 1);
+    }
+
+    /**
+     * Get the class of a method.
+     *
+     * @param id Method ID
+     * @return The ID of the method's declaring class
+     */
+    int methodClass(int id) {
+        return methodClasses.get(id - 1);
+    }
+
+    Field field(int id) {
+        return fields.get(id - 1);
+    }
+
+    ThreadReference thread(int id) {
+        return threads.get(id - 1);
+    }
+}
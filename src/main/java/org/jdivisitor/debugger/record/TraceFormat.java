@@ -0,0 +1,274 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.io.File;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+
+/**
+ * Constants of the binary trace format written by {@link EventRecorder}.
+ *
+ * <p>
+ * A trace file is a header followed by fixed-size blocks. Fixed-width fields
+ * are big-endian; {@code varint} is an unsigned LEB128 integer, {@code zigzag}
+ * a zigzag-encoded signed varint and {@code string} a varint byte count
+ * followed by UTF-8 bytes.
+ * </p>
+ *
+ * <pre>
+ * file     := header block*
+ * header   := magic:u32 version:u16 reserved:u16 blockSize:u32
+ *             startMillis:u64 startNanos:u64 reserved:u32
+ * block    := baseNanos:u64 record* zero-padding
+ * record   := length:varint tag:u8 body
+ * </pre>
+ *
+ * <p>
+ * The header takes the first {@value #HEADER_SIZE} bytes of the first block.
+ * A record's length counts its tag and body; a length of zero (the padding)
+ * ends a block, as does the end of the file. Records never span blocks.
+ * </p>
+ *
+ * <p>
+ * Classes, methods, fields and threads are interned in dictionaries. A
+ * dictionary entry is defined by a definition record the first time it is
+ * used, and is referred to by its ID (from 1; 0 means none) from then on.
+ * </p>
+ *
+ * <pre>
+ * DEF_CLASS  := id:varint name:string signature:string
+ * DEF_METHOD := id:varint class:varint name:string signature:string
+ * DEF_FIELD  := id:varint class:varint name:string signature:string
+ * DEF_THREAD := id:varint uniqueID:varint name:string
+ * </pre>
+ *
+ * <p>
+ * The tag of an event record is fixed for each event type (see
+ * {@link #eventTag}), independently of the order of the {@code EventType}
+ * constants; the same tags are the bits of a block summary's types. Times
+ * and locations are delta-encoded against the previous event record of the
+ * same block (or the block's base time and zero), so every block can be
+ * decoded on its own given the dictionaries.
+ * </p>
+ *
+ * <pre>
+ * event    := timeDelta:zigzag thread:varint fields
+ * location := methodDelta:zigzag codeIndexDelta:zigzag lineDelta:zigzag
+ * value    := 'N' | 'V' | 'Z' u8 | 'B' u8 | 'C' varint | 'S' zigzag
+ *           | 'I' zigzag | 'J' zigzag | 'F' u32 | 'D' u64
+ *           | 'L' class:varint uniqueID:varint
+ * </pre>
+ *
+ * <table>
+ * <tr><th>Event</th><th>Fields</th></tr>
+ * <tr><td>VM_START, VM_DEATH, VM_DISCONNECT, THREAD_START, THREAD_DEATH</td>
+ * <td>(none)</td></tr>
+ * <tr><td>CLASS_PREPARE</td><td>class:varint</td></tr>
+ * <tr><td>CLASS_UNLOAD</td><td>signature:string</td></tr>
+ * <tr><td>BREAKPOINT, STEP, METHOD_ENTRY, LOCATABLE</td>
+ * <td>location</td></tr>
+ * <tr><td>METHOD_EXIT</td><td>location returnValue:value</td></tr>
+ * <tr><td>EXCEPTION</td><td>location exception:value catch:varint
+ * [catchCodeIndex:zigzag catchLine:zigzag]</td></tr>
+ * <tr><td>WATCHPOINT, ACCESS_WATCHPOINT</td>
+ * <td>location field:varint object:value</td></tr>
+ * <tr><td>MODIFICATION_WATCHPOINT</td>
+ * <td>location field:varint object:value valueToBe:value</td></tr>
+ * <tr><td>MONITOR_CONTENDED_ENTER, MONITOR_CONTENDED_ENTERED</td>
+ * <td>location monitor:value</td></tr>
+ * <tr><td>MONITOR_WAIT</td><td>location monitor:value timeout:zigzag</td></tr>
+ * <tr><td>MONITOR_WAITED</td><td>location monitor:value timedOut:u8</td>
+ * </tr>
+ * </table>
+ *
+ * <p>
+ * An exception's catch location is its method ID (0 if the exception is not
+ * caught), followed by the code index and line number if it is.
+ * </p>
+ *
+ * <p>
+ * The index file written alongside a trace (see {@link #indexFile}) is a
+ * header followed by records in the same framing: a copy of every dictionary
+ * definition, written as it is made, and a summary of every block, written
+ * when the block is complete. The bloom filter holds the IDs of the threads,
+ * classes (of the event's method, or the prepared class) and methods of the
+ * block's events (see {@link BlockSummary}).
+ * </p>
+ *
+ * <pre>
+ * index       := magic:u32 version:u16 reserved:u16 startMillis:u64
+ *                startNanos:u64 record*
+ * INDEX_BLOCK := offset:varint firstNanos:u64 lastNanos:u64 events:varint
+ *                types:u32 bloom:u64[32]
+ * </pre>
+ *
+ * @author Adrian Herrera
+ */
+final class TraceFormat {
+
+    /**
+     * File magic number ({@code "JDVT"}).
+     */
+    static final int MAGIC = 0x4A445654;
+
+    /**
+     * Format version.
+     */
+    static final short VERSION = 1;
+
+    /**
+     * Index file magic number ({@code "JDVI"}).
+     */
+    static final int INDEX_MAGIC = 0x4A445649;
+
+    /**
+     * Size of the index file header.
+     */
+    static final int INDEX_HEADER_SIZE = 24;
+
+    /**
+     * Size of the file header.
+     */
+    static final int HEADER_SIZE = 32;
+
+    /**
+     * Size of a block header.
+     */
+    static final int BLOCK_HEADER_SIZE = 8;
+
+    /**
+     * Size of a block.
+     */
+    static final int BLOCK_SIZE = 1 << 20;
+
+    /**
+     * Maximum number of bytes written for a string. Longer strings are
+     * truncated.
+     */
+    static final int MAX_STRING_BYTES = 0xFFFF;
+
+    static final int DEF_CLASS = 0x40;
+    static final int DEF_METHOD = 0x41;
+    static final int DEF_FIELD = 0x42;
+    static final int DEF_THREAD = 0x43;
+    static final int INDEX_BLOCK = 0x50;
+
+    static final byte VALUE_NULL = 'N';
+    static final byte VALUE_VOID = 'V';
+    static final byte VALUE_BOOLEAN = 'Z';
+    static final byte VALUE_BYTE = 'B';
+    static final byte VALUE_CHAR = 'C';
+    static final byte VALUE_SHORT = 'S';
+    static final byte VALUE_INT = 'I';
+    static final byte VALUE_LONG = 'J';
+    static final byte VALUE_FLOAT = 'F';
+    static final byte VALUE_DOUBLE = 'D';
+    static final byte VALUE_OBJECT = 'L';
+
+    /**
+     * Event types, indexed by event record tag.
+     */
+    private static final EventType[] EVENT_TYPES = new EventType[32];
+
+    static {
+        for (EventType type : EventType.values()) {
+            EVENT_TYPES[eventTag(type)] = type;
+        }
+    }
+
+    private TraceFormat() {
+    }
+
+    /**
+     * Get the tag of an event type's records. Tags are part of the format, so
+     * they must never change, and new event types take new tags (below 32).
+     *
+     * @param type Event type
+     * @return The event record tag
+     */
+    static int eventTag(EventType type) {
+        switch (type) {
+        case ACCESS_WATCHPOINT:
+            return 0;
+        case MODIFICATION_WATCHPOINT:
+            return 1;
+        case BREAKPOINT:
+            return 2;
+        case CLASS_PREPARE:
+            return 3;
+        case CLASS_UNLOAD:
+            return 4;
+        case EXCEPTION:
+            return 5;
+        case METHOD_ENTRY:
+            return 6;
+        case METHOD_EXIT:
+            return 7;
+        case MONITOR_CONTENDED_ENTERED:
+            return 8;
+        case MONITOR_CONTENDED_ENTER:
+            return 9;
+        case MONITOR_WAITED:
+            return 10;
+        case MONITOR_WAIT:
+            return 11;
+        case STEP:
+            return 12;
+        case THREAD_DEATH:
+            return 13;
+        case THREAD_START:
+            return 14;
+        case VM_DEATH:
+            return 15;
+        case VM_DISCONNECT:
+            return 16;
+        case VM_START:
+            return 17;
+        case WATCHPOINT:
+            return 18;
+        case LOCATABLE:
+            return 19;
+        default:
+            throw new IllegalArgumentException("No record tag for " + type);
+        }
+    }
+
+    /**
+     * Get the event type of a record tag.
+     *
+     * @param tag Record tag
+     * @return The event type, or {@code null} if the tag is not an event
+     *         record tag
+     */
+    static EventType eventType(int tag) {
+        return tag < EVENT_TYPES.length ? EVENT_TYPES[tag] : null;
+    }
+
+    /**
+     * Get the index file of a trace file.
+     *
+     * @param traceFile Trace file
+     * @return The index file, next to the trace file
+     */
+    static File indexFile(File traceFile) {
+        return new File(traceFile.getPath() + ".idx");
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import org.jdivisitor.debugger.event.visitor.EventVisitor;
+import org.jdivisitor.debugger.request.DeferredRequest;
+import com.sun.jdi.Method;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.event.Event;
+
+/**
+ * Answers {@link TraceQuery}s over a trace file written by an
+ * {@link EventRecorder}, using the index written alongside it.
+ *
+ * <p>
+ * The index is read once, through a memory-mapped file: it holds the trace's
+ * dictionaries, so filters on threads, classes and methods are resolved to
+ * dictionary IDs up front, and a summary of every block, so blocks outside
+ * the time range, without the selected event types or without the selected
+ * IDs are skipped without being read. Within the remaining blocks, records
+ * are rejected on their type, time, thread and location IDs, and only the
+ * events that match are decoded and visited, as replayed events (see
+ * {@link ReplayedEvent}) in the order in which they were recorded.
+ * </p>
+ *
+ * <p>
+ * Once loaded, an index is only read, so queries can run concurrently.
+ * </p>
+ *
+ * <pre>
+ * TraceIndex index = new TraceIndex(new File("session.trace"));
+ * long events = index.query(query, visitor);
+ * </pre>
+ *
+ * @author Adrian Herrera
+ */
+public class TraceIndex {
+
+    private final File file;
+    private final long startMillis;
+    private final long startNanos;
+    private final TraceDictionary dictionary = new TraceDictionary();
+    private final List<BlockSummary> blocks = new ArrayList<BlockSummary>();
+
+    /**
+     * Load the index of a trace file.
+     *
+     * @param file Trace file. Its index is the file of the same name with an
+     *        {@code .idx} suffix
+     * @throws IOException The index could not be read, or is not an index
+     */
+    public TraceIndex(File file) throws IOException {
+        this.file = Validate.notNull(file);
+
+        File indexFile = TraceFormat.indexFile(file);
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(),
+                StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+
+        if (in.remaining() < TraceFormat.INDEX_HEADER_SIZE
+                || in.getInt() != TraceFormat.INDEX_MAGIC) {
+            throw new IOException("Not a trace index: " + indexFile);
+        }
+        short version = in.getShort();
+        if (version != TraceFormat.VERSION) {
+            throw new IOException("Unsupported trace index version: "
+                    + version);
+        }
+        in.getShort();
+        startMillis = in.getLong();
+        startNanos = in.getLong();
+
+        while (in.hasRemaining()) {
+            int end = (int) RecordDecoder.readVarint(in);
+            end += in.position();
+
+            int tag = in.get() & 0xFF;
+            if (tag == TraceFormat.INDEX_BLOCK) {
+                blocks.add(BlockSummary.read(in));
+            } else {
+                dictionary.define(tag, in);
+            }
+            in.position(end);
+        }
+    }
+
+    /**
+     * Get the trace file.
+     *
+     * @return The trace file
+     */
+    public File file() {
+        return file;
+    }
+
+    /**
+     * Get the wall clock time at which the trace started.
+     *
+     * @return The start time in milliseconds since the epoch
+     */
+    public long startMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Get the {@code System.nanoTime()} at which the trace started, to relate
+     * the times of replayed events to {@link #startMillis()}.
+     *
+     * @return The start time in nanoseconds
+     */
+    public long startNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Get the number of indexed blocks.
+     *
+     * @return The number of blocks
+     */
+    public int blockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * Get the number of indexed events.
+     *
+     * @return The number of events
+     */
+    public long eventCount() {
+        long events = 0;
+
+        for (BlockSummary block : blocks) {
+            events += block.events;
+        }
+
+        return events;
+    }
+
+    /**
+     * Visit the events selected by a query, on the calling thread.
+     *
+     * @param query Query (cannot be {@code null})
+     * @param visitor Event visitor (cannot be {@code null})
+     * @return The number of events visited
+     * @throws IOException The trace could not be read
+     */
+    public long query(TraceQuery query, EventVisitor visitor)
+            throws IOException {
+        Plan plan = new Plan(Validate.notNull(query));
+        Validate.notNull(visitor);
+
+        if (plan.isEmpty()) {
+            return 0;
+        }
+
+        long events = 0;
+        try (TraceReader reader = new TraceReader(file, dictionary)) {
+            for (BlockSummary block : blocks) {
+                if (block.firstNanos > query.toNanos()) {
+                    break;
+                } else if (!plan.matches(block)) {
+                    continue;
+                }
+
+                reader.seekBlock(block.offset);
+                while (reader.advance()) {
+                    long nanos = reader.nanoTime();
+
+                    if (nanos > query.toNanos()) {
+                        return events;
+                    } else if (nanos >= query.fromNanos()
+                            && plan.matches(reader)) {
+                        Event event = reader.event();
+                        EventType.of(event).dispatch(event, visitor);
+                        events++;
+                    }
+                }
+            }
+        }
+
+        return events;
+    }
+
+    /**
+     * A query resolved against the dictionaries of the trace.
+     */
+    private class Plan {
+
+        private final TraceQuery query;
+
+        /**
+         * Bitmask of the selected event types (by ordinal).
+         */
+        private int types;
+
+        /**
+         * The selected dictionary IDs, or {@code null} if a kind is not
+         * filtered.
+         */
+        private BitSet threads;
+        private BitSet classes;
+        private BitSet methods;
+
+        Plan(TraceQuery query) {
+            this.query = query;
+
+            if (query.types().isEmpty()) {
+                types = -1;
+            } else {
+                for (EventType type : query.types()) {
+                    types |= 1 << TraceFormat.eventTag(type);
+                }
+            }
+
+            if (!query.threadIDs().isEmpty()
+                    || !query.threadNames().isEmpty()) {
+                threads = new BitSet();
+                for (int id = 1; id <= dictionary.threadCount(); id++) {
+                    ThreadReference thread = dictionary.thread(id);
+
+                    if (query.threadIDs().contains(thread.uniqueID())
+                            || query.threadNames().contains(thread.name())) {
+                        threads.set(id);
+                    }
+                }
+            }
+
+            if (!query.classPatterns().isEmpty()) {
+                classes = new BitSet();
+                for (int id = 1; id <= dictionary.classCount(); id++) {
+                    String name = dictionary.type(id).name();
+
+                    for (String pattern : query.classPatterns()) {
+                        if (DeferredRequest.matches(pattern, name)) {
+                            classes.set(id);
+                            break;
+                        }
+                    }
+                }
+            }
+
+            if (!query.methodNames().isEmpty()) {
+                methods = new BitSet();
+                for (int id = 1; id <= dictionary.methodCount(); id++) {
+                    Method method = dictionary.method(id);
+
+                    if (query.methodNames().contains(method.name())) {
+                        methods.set(id);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Determine whether no event can match, because a filter matched no
+         * dictionary entry.
+         *
+         * @return {@code true} if the query selects nothing
+         */
+        boolean isEmpty() {
+            return (threads != null && threads.isEmpty())
+                    || (classes != null && classes.isEmpty())
+                    || (methods != null && methods.isEmpty());
+        }
+
+        /**
+         * Determine whether a block may hold a selected event.
+         *
+         * @param block Block summary
+         * @return {@code false} if the block can be skipped
+         */
+        boolean matches(BlockSummary block) {
+            return block.lastNanos >= query.fromNanos()
+                    && (block.types & types) != 0
+                    && mightContain(block, BlockSummary.THREAD, threads)
+                    && mightContain(block, BlockSummary.CLASS, classes)
+                    && mightContain(block, BlockSummary.METHOD, methods);
+        }
+
+        /**
+         * Determine whether the reader's current event is selected, from the
+         * fields decoded so far (other than its time).
+         *
+         * @param reader Trace reader
+         * @return {@code true} if the event is selected
+         */
+        boolean matches(TraceReader reader) {
+            int tag = TraceFormat.eventTag(reader.type());
+            if ((types & (1 << tag)) == 0) {
+                return false;
+            } else if (threads != null && !threads.get(reader.threadId())) {
+                return false;
+            }
+
+            int methodId = reader.methodId();
+            if (methods != null && !methods.get(methodId)) {
+                return false;
+            } else if (classes != null) {
+                int classId = methodId != 0 ? dictionary
+                        .methodClass(methodId) : reader.classId();
+                return classes.get(classId);
+            }
+
+            return true;
+        }
+
+        private boolean mightContain(BlockSummary block, int kind,
+                BitSet ids) {
+            if (ids == null) {
+                return true;
+            }
+
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids
+                    .nextSetBit(id + 1)) {
+                if (block.mightContain(kind, id)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
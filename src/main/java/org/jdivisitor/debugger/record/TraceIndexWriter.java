@@ -0,0 +1,81 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes the index file of a trace: copies of the dictionary definitions and
+ * the block summaries, through a buffer.
+ *
+ * @author Adrian Herrera
+ * @see TraceFormat
+ */
+final class TraceIndexWriter implements Closeable {
+
+    private final DataOutputStream out;
+
+    /**
+     * Create an index file (overwriting any existing file) and write its
+     * header.
+     *
+     * @param file Index file
+     * @param startMillis Wall clock time at which the trace starts
+     * @param startNanos {@code System.nanoTime()} at which the trace starts
+     * @throws IOException The file could not be created
+     */
+    TraceIndexWriter(File file, long startMillis, long startNanos)
+            throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file), 1 << 16));
+
+        out.writeInt(TraceFormat.INDEX_MAGIC);
+        out.writeShort(TraceFormat.VERSION);
+        out.writeShort(0);
+        out.writeLong(startMillis);
+        out.writeLong(startNanos);
+    }
+
+    /**
+     * Write a record.
+     *
+     * @param record Encoded record (tag and body)
+     * @throws IOException The record could not be written
+     */
+    void write(RecordEncoder record) throws IOException {
+        long v = record.length();
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+        out.write(record.buffer(), 0, record.length());
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+
+/**
+ * Selects the events of a recorded trace to visit with a {@link TraceIndex}.
+ *
+ * <p>
+ * A query with no filters selects every event. Filters of different kinds
+ * must all match, and filters of the same kind are alternatives: for example,
+ * a query with two type filters and a thread filter selects the events of
+ * either type on that thread. Class and method filters match the class and
+ * method of an event's location (or the class prepared by a class prepare
+ * event), so they never match events that have neither.
+ * </p>
+ *
+ * <pre>
+ * TraceQuery query = new TraceQuery();
+ * query.addTypeFilter(EventType.EXCEPTION);
+ * query.addClassFilter("com.example.*");
+ * query.addThreadFilter("worker-1");
+ * </pre>
+ *
+ * @author Adrian Herrera
+ */
+public class TraceQuery {
+
+    private final Set<EventType> types = EnumSet.noneOf(EventType.class);
+    private final Set<Long> threadIDs = new HashSet<Long>();
+    private final Set<String> threadNames = new HashSet<String>();
+    private final List<String> classPatterns = new ArrayList<String>();
+    private final Set<String> methodNames = new HashSet<String>();
+    private long fromNanos = Long.MIN_VALUE;
+    private long toNanos = Long.MAX_VALUE;
+
+    /**
+     * Select events of a type.
+     *
+     * @param type Event type
+     */
+    public void addTypeFilter(EventType type) {
+        types.add(Validate.notNull(type));
+    }
+
+    /**
+     * Select events on a thread.
+     *
+     * @param uniqueID The thread's unique ID in the target VM
+     */
+    public void addThreadFilter(long uniqueID) {
+        threadIDs.add(uniqueID);
+    }
+
+    /**
+     * Select events on the threads with a name.
+     *
+     * @param name The thread name, as recorded when the thread was first seen
+     */
+    public void addThreadFilter(String name) {
+        threadNames.add(Validate.notNull(name));
+    }
+
+    /**
+     * Select events in the classes that match a pattern.
+     *
+     * @param classPattern Either a fully-qualified class name, or a pattern
+     *        that begins or ends with '*'
+     */
+    public void addClassFilter(String classPattern) {
+        classPatterns.add(Validate.notNull(classPattern));
+    }
+
+    /**
+     * Select events in the methods with a name.
+     *
+     * @param methodName Method name
+     */
+    public void addMethodFilter(String methodName) {
+        methodNames.add(Validate.notNull(methodName));
+    }
+
+    /**
+     * Select events recorded in a time range.
+     *
+     * @param fromNanos Start of the range (inclusive), on the
+     *        {@code System.nanoTime()} scale of the trace (see
+     *        {@link ReplayedEvent#nanoTime()})
+     * @param toNanos End of the range (inclusive)
+     */
+    public void setTimeRange(long fromNanos, long toNanos) {
+        Validate.isTrue(fromNanos <= toNanos, "Empty time range");
+        this.fromNanos = fromNanos;
+        this.toNanos = toNanos;
+    }
+
+    Set<EventType> types() {
+        return Collections.unmodifiableSet(types);
+    }
+
+    Set<Long> threadIDs() {
+        return Collections.unmodifiableSet(threadIDs);
+    }
+
+    Set<String> threadNames() {
+        return Collections.unmodifiableSet(threadNames);
+    }
+
+    List<String> classPatterns() {
+        return Collections.unmodifiableList(classPatterns);
+    }
+
+    Set<String> methodNames() {
+        return Collections.unmodifiableSet(methodNames);
+    }
+
+    long fromNanos() {
+        return fromNanos;
+    }
+
+    long toNanos() {
+        return toNanos;
+    }
+}
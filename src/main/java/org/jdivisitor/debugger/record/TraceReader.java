@@ -0,0 +1,515 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import com.sun.jdi.Location;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.Value;
+import com.sun.jdi.event.Event;
+
+/**
+ * Reads the events of a trace file written by an {@link EventRecorder}, in
+ * the order they were recorded. The file is read through memory-mapped
+ * segments, and the events are returned as lightweight replayed events (see
+ * {@link ReplayedEvent}).
+ *
+ * <p>
+ * The reader is also a cursor over the event records: {@link #advance()}
+ * decodes only a record's type, time, thread and location IDs, so that a
+ * caller can decide whether to decode the rest of the event with
+ * {@link #event()} or to skip it.
+ * </p>
+ *
+ * @author Adrian Herrera
+ * @see TraceFormat
+ */
+final class TraceReader implements Closeable {
+
+    /**
+     * Size of the mapped segments. A whole number of blocks, so blocks never
+     * span segments.
+     */
+    private static final int SEGMENT_SIZE = 64 << 20;
+
+    private final FileChannel channel;
+    private final long length;
+    private final long startMillis;
+    private final long startNanos;
+
+    private MappedByteBuffer segment;
+    private long segmentOffset;
+
+    /**
+     * File offset at which the next block starts.
+     */
+    private long nextBlock = TraceFormat.HEADER_SIZE;
+
+    /**
+     * Segment position at which the current block ends, or -1 if there is no
+     * current block.
+     */
+    private int blockLimit = -1;
+
+    /**
+     * Number of blocks left to read, or -1 to read to the end of the trace.
+     */
+    private int blocksLeft = -1;
+
+    private final TraceDictionary dictionary;
+
+    /**
+     * Delta decoding state, reset at the start of each block.
+     */
+    private long lastNanos;
+    private long lastMethod;
+    private long lastCodeIndex;
+    private long lastLine;
+
+    /**
+     * The current event record, as decoded by {@link #advance()}.
+     */
+    private EventType type;
+    private int threadId;
+    private int methodId;
+    private int classId;
+
+    /**
+     * Segment position at which the current record ends, or -1 once the
+     * record has been decoded.
+     */
+    private int recordEnd = -1;
+
+    /**
+     * Open a trace file and read its header.
+     *
+     * @param file Trace file
+     * @throws IOException The file could not be read, or is not a trace file
+     */
+    TraceReader(File file) throws IOException {
+        this(file, new TraceDictionary());
+    }
+
+    /**
+     * Open a trace file and read its header.
+     *
+     * @param file Trace file
+     * @param dictionary Dictionary of the trace, which may already hold some
+     *        or all of its definitions
+     * @throws IOException The file could not be read, or is not a trace file
+     */
+    TraceReader(File file, TraceDictionary dictionary) throws IOException {
+        this.dictionary = dictionary;
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            length = channel.size();
+            if (length < TraceFormat.HEADER_SIZE) {
+                throw new IOException("Not a trace file: " + file);
+            }
+
+            map(0);
+            if (segment.getInt() != TraceFormat.MAGIC) {
+                throw new IOException("Not a trace file: " + file);
+            }
+            short version = segment.getShort();
+            if (version != TraceFormat.VERSION) {
+                throw new IOException("Unsupported trace version: "
+                        + version);
+            }
+            segment.getShort();
+            if (segment.getInt() != TraceFormat.BLOCK_SIZE) {
+                throw new IOException("Unsupported block size");
+            }
+            startMillis = segment.getLong();
+            startNanos = segment.getLong();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the wall clock time at which the trace started.
+     *
+     * @return The start time in milliseconds since the epoch
+     */
+    long startMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Get the {@code System.nanoTime()} at which the trace started.
+     *
+     * @return The start time in nanoseconds
+     */
+    long startNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Read a single block from now on. The dictionary must already hold the
+     * definitions made before the block.
+     *
+     * @param offset File offset of the block
+     */
+    void seekBlock(long offset) {
+        nextBlock = offset;
+        blockLimit = -1;
+        blocksLeft = 1;
+        recordEnd = -1;
+    }
+
+    /**
+     * Get the type of the current event.
+     *
+     * @return The event type
+     */
+    EventType type() {
+        return type;
+    }
+
+    /**
+     * Get the time of the current event.
+     *
+     * @return The {@code System.nanoTime()} at which the event was recorded
+     */
+    long nanoTime() {
+        return lastNanos;
+    }
+
+    /**
+     * Get the dictionary ID of the current event's thread. Thread IDs are
+     * assigned from 1 in the order in which the threads were first seen.
+     *
+     * @return The thread's ID, or 0 if the event has no thread
+     */
+    int threadId() {
+        return threadId;
+    }
+
+    /**
+     * Get the dictionary ID of the method of the current event's location.
+     *
+     * @return The method's ID, or 0 if the event has no location
+     */
+    int methodId() {
+        return methodId;
+    }
+
+    /**
+     * Get the dictionary ID of the class prepared by the current event.
+     *
+     * @return The class's ID, or 0 if the event is not a class prepare event
+     */
+    int classId() {
+        return classId;
+    }
+
+    /**
+     * Read the next event.
+     *
+     * @return The next event, or {@code null} at the end of the trace
+     * @throws IOException The trace could not be read
+     */
+    Event next() throws IOException {
+        return advance() ? event() : null;
+    }
+
+    /**
+     * Move to the next event record and decode its type, time, thread and
+     * location IDs. Definitions on the way are added to the dictionary.
+     *
+     * @return {@code false} at the end of the trace (or of the block sought)
+     * @throws IOException The trace could not be read
+     */
+    boolean advance() throws IOException {
+        if (recordEnd >= 0) {
+            segment.position(recordEnd);
+            recordEnd = -1;
+        }
+
+        while (true) {
+            if (blockLimit < 0) {
+                if (blocksLeft == 0 || !startBlock()) {
+                    return false;
+                }
+                if (blocksLeft > 0) {
+                    blocksLeft--;
+                }
+            }
+
+            int length = segment.position() < blockLimit ? (int) readVarint()
+                    : 0;
+            if (length == 0) {
+                blockLimit = -1;
+                continue;
+            }
+
+            int end = segment.position() + length;
+            int tag = segment.get() & 0xFF;
+            EventType eventType = TraceFormat.eventType(tag);
+            if (eventType != null) {
+                readHeader(eventType);
+                recordEnd = end;
+                return true;
+            }
+
+            dictionary.define(tag, segment);
+            segment.position(end);
+        }
+    }
+
+    /**
+     * Decode the rest of the current event record.
+     *
+     * @return The event
+     */
+    Event event() {
+        ThreadReference thread = threadId != 0 ? dictionary.thread(threadId)
+                : null;
+        Location location = methodId != 0 ? new ReplayedLocation(dictionary
+                .method(methodId), lastCodeIndex, (int) lastLine) : null;
+        Event event;
+
+        switch (type) {
+        case ACCESS_WATCHPOINT:
+            event = new ReplayedEvents.AccessWatchpoint(lastNanos, thread,
+                    location, dictionary.field((int) readVarint()),
+                    readObject());
+            break;
+        case MODIFICATION_WATCHPOINT:
+            event = new ReplayedEvents.ModificationWatchpoint(lastNanos,
+                    thread, location, dictionary.field((int) readVarint()),
+                    readObject(), readValue());
+            break;
+        case WATCHPOINT:
+            event = new ReplayedEvents.Watchpoint(lastNanos, thread, location,
+                    dictionary.field((int) readVarint()), readObject());
+            break;
+        case BREAKPOINT:
+            event = new ReplayedEvents.Breakpoint(lastNanos, thread, location);
+            break;
+        case CLASS_PREPARE:
+            event = new ReplayedEvents.ClassPrepare(lastNanos, thread,
+                    dictionary.type(classId));
+            break;
+        case CLASS_UNLOAD:
+            event = new ReplayedEvents.ClassUnload(lastNanos, readString());
+            break;
+        case EXCEPTION:
+            event = new ReplayedEvents.ExceptionThrown(lastNanos, thread,
+                    location, readObject(), readCatchLocation());
+            break;
+        case METHOD_ENTRY:
+            event = new ReplayedEvents.MethodEntry(lastNanos, thread, location);
+            break;
+        case METHOD_EXIT:
+            event = new ReplayedEvents.MethodExit(lastNanos, thread, location,
+                    readValue());
+            break;
+        case MONITOR_CONTENDED_ENTER:
+            event = new ReplayedEvents.MonitorContendedEnter(lastNanos, thread,
+                    location, readObject());
+            break;
+        case MONITOR_CONTENDED_ENTERED:
+            event = new ReplayedEvents.MonitorContendedEntered(lastNanos,
+                    thread, location, readObject());
+            break;
+        case MONITOR_WAIT:
+            event = new ReplayedEvents.MonitorWait(lastNanos, thread, location,
+                    readObject(), readZigzag());
+            break;
+        case MONITOR_WAITED:
+            event = new ReplayedEvents.MonitorWaited(lastNanos, thread,
+                    location, readObject(), segment.get() != 0);
+            break;
+        case STEP:
+            event = new ReplayedEvents.Step(lastNanos, thread, location);
+            break;
+        case THREAD_DEATH:
+            event = new ReplayedEvents.ThreadDeath(lastNanos, thread);
+            break;
+        case THREAD_START:
+            event = new ReplayedEvents.ThreadStart(lastNanos, thread);
+            break;
+        case VM_DEATH:
+            event = new ReplayedEvents.VMDeath(lastNanos);
+            break;
+        case VM_DISCONNECT:
+            event = new ReplayedEvents.VMDisconnect(lastNanos);
+            break;
+        case VM_START:
+            event = new ReplayedEvents.VMStart(lastNanos, thread);
+            break;
+        default:
+            event = new ReplayedEvents.AtLocation(lastNanos, thread, location);
+            break;
+        }
+
+        segment.position(recordEnd);
+        recordEnd = -1;
+
+        return event;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Move to the next block, if there is one, and reset the delta decoding
+     * state.
+     *
+     * @return {@code false} at the end of the trace
+     * @throws IOException The next segment could not be mapped
+     */
+    private boolean startBlock() throws IOException {
+        long block = nextBlock;
+        if (block + TraceFormat.BLOCK_HEADER_SIZE > length) {
+            return false;
+        }
+
+        if (block < segmentOffset
+                || block >= segmentOffset + segment.capacity()) {
+            map(block - block % TraceFormat.BLOCK_SIZE);
+        }
+        segment.position((int) (block - segmentOffset));
+
+        long blockEnd = block - block % TraceFormat.BLOCK_SIZE
+                + TraceFormat.BLOCK_SIZE;
+        nextBlock = blockEnd;
+        blockLimit = (int) (Math.min(blockEnd, length) - segmentOffset);
+
+        lastNanos = segment.getLong();
+        lastMethod = 0;
+        lastCodeIndex = 0;
+        lastLine = 0;
+
+        return true;
+    }
+
+    /**
+     * Decode the fields of an event record that come before its type-specific
+     * fields.
+     *
+     * @param type Event type
+     */
+    private void readHeader(EventType type) {
+        this.type = type;
+        lastNanos += readZigzag();
+        threadId = (int) readVarint();
+        methodId = 0;
+        classId = 0;
+
+        switch (type) {
+        case VM_START:
+        case VM_DEATH:
+        case VM_DISCONNECT:
+        case THREAD_START:
+        case THREAD_DEATH:
+        case CLASS_UNLOAD:
+            break;
+        case CLASS_PREPARE:
+            classId = (int) readVarint();
+            break;
+        default:
+            lastMethod += readZigzag();
+            lastCodeIndex += readZigzag();
+            lastLine += readZigzag();
+            methodId = (int) lastMethod;
+            break;
+        }
+    }
+
+    private Location readCatchLocation() {
+        int method = (int) readVarint();
+        if (method == 0) {
+            return null;
+        }
+
+        long codeIndex = readZigzag();
+        return new ReplayedLocation(dictionary.method(method), codeIndex,
+                (int) readZigzag());
+    }
+
+    private ObjectReference readObject() {
+        return (ObjectReference) readValue();
+    }
+
+    private Value readValue() {
+        byte tag = segment.get();
+
+        switch (tag) {
+        case TraceFormat.VALUE_NULL:
+            return null;
+        case TraceFormat.VALUE_OBJECT:
+            ReferenceType type = dictionary.type((int) readVarint());
+            return new ReplayedObject(type, readVarint());
+        case TraceFormat.VALUE_BOOLEAN:
+            return ReplayedValues.of(segment.get() != 0);
+        case TraceFormat.VALUE_BYTE:
+            return ReplayedValues.of(segment.get());
+        case TraceFormat.VALUE_CHAR:
+            return ReplayedValues.of((char) readVarint());
+        case TraceFormat.VALUE_SHORT:
+            return ReplayedValues.of((short) readZigzag());
+        case TraceFormat.VALUE_INT:
+            return ReplayedValues.of((int) readZigzag());
+        case TraceFormat.VALUE_LONG:
+            return ReplayedValues.of(readZigzag());
+        case TraceFormat.VALUE_FLOAT:
+            return ReplayedValues.of(Float.intBitsToFloat(segment.getInt()));
+        case TraceFormat.VALUE_DOUBLE:
+            return ReplayedValues.of(Double.longBitsToDouble(segment
+                    .getLong()));
+        default:
+            return ReplayedValues.ofVoid();
+        }
+    }
+
+    private long readVarint() {
+        return RecordDecoder.readVarint(segment);
+    }
+
+    private long readZigzag() {
+        return RecordDecoder.readZigzag(segment);
+    }
+
+    private String readString() {
+        return RecordDecoder.readString(segment);
+    }
+
+    private void map(long offset) throws IOException {
+        segmentOffset = offset;
+        segment = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                Math.min(SEGMENT_SIZE, length - offset));
+    }
+}
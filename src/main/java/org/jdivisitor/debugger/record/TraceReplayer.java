@@ -0,0 +1,318 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import org.jdivisitor.debugger.event.visitor.EventVisitor;
+import com.sun.jdi.event.Event;
+
+/**
+ * Replays a trace file written by an {@link EventRecorder} through an
+ * {@code EventVisitor}, without a target VM, as fast as the trace can be
+ * read.
+ *
+ * <p>
+ * Each recorded event is handed to the visitor as a lightweight event that
+ * implements its JDI event interface and {@link ReplayedEvent}, in the order
+ * in which the events were recorded. Replayed events only carry what was
+ * recorded, and there are no event sets to visit. Replay can optionally be
+ * partitioned by thread over several replay threads: the events of a thread
+ * are then visited in order on one replay thread, and events that have no
+ * thread (VM death and disconnection, and class unloading) are visited once
+ * every event before them has been.
+ * </p>
+ *
+ * <pre>
+ * long events = new TraceReplayer(new File("session.trace")).replay(visitor);
+ * </pre>
+ *
+ * @author Adrian Herrera
+ */
+public class TraceReplayer {
+
+    /**
+     * Number of events handed to a replay thread at a time.
+     */
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * Number of batches that may be waiting for each replay thread.
+     */
+    private static final int QUEUED_BATCHES = 16;
+
+    /**
+     * Trace file.
+     */
+    private final File file;
+
+    /**
+     * Create a new replayer for a trace file.
+     *
+     * @param file Trace file
+     */
+    public TraceReplayer(File file) {
+        this.file = Validate.notNull(file);
+    }
+
+    /**
+     * Replay the trace through a visitor on the calling thread.
+     *
+     * @param visitor Event visitor (cannot be {@code null})
+     * @return The number of events replayed
+     * @throws IOException The trace could not be read
+     */
+    public long replay(EventVisitor visitor) throws IOException {
+        Validate.notNull(visitor);
+
+        long events = 0;
+        try (TraceReader reader = new TraceReader(file)) {
+            Event event;
+            while ((event = reader.next()) != null) {
+                EventType.of(event).dispatch(event, visitor);
+                events++;
+            }
+        }
+
+        return events;
+    }
+
+    /**
+     * Replay the trace through a visitor, partitioned by thread over a number
+     * of replay threads. The visitor must be safe for concurrent use.
+     *
+     * @param visitor Event visitor (cannot be {@code null})
+     * @param parallelism Number of replay threads (must be positive)
+     * @return The number of events replayed
+     * @throws IOException The trace could not be read
+     * @throws InterruptedException Interrupted while waiting for the replay
+     *         threads
+     */
+    public long replay(EventVisitor visitor, int parallelism)
+            throws IOException, InterruptedException {
+        Validate.notNull(visitor);
+        Validate.isTrue(parallelism > 0, "Parallelism must be positive");
+
+        if (parallelism == 1) {
+            return replay(visitor);
+        }
+
+        Lanes lanes = new Lanes(visitor, parallelism);
+        long events = 0;
+        try (TraceReader reader = new TraceReader(file)) {
+            Event event;
+            while ((event = reader.next()) != null) {
+                int threadId = reader.threadId();
+
+                if (threadId == 0) {
+                    lanes.awaitIdle();
+                    EventType.of(event).dispatch(event, visitor);
+                } else {
+                    lanes.add(threadId % parallelism, event);
+                }
+                events++;
+            }
+        } finally {
+            lanes.close();
+        }
+
+        return events;
+    }
+
+    /**
+     * The replay threads, each fed batches of events through a queue.
+     */
+    private static final class Lanes {
+
+        /**
+         * Marks the end of a lane's batches.
+         */
+        private static final Event[] END = new Event[0];
+
+        private final EventVisitor visitor;
+        private final Thread[] threads;
+        private final BlockingQueue<Event[]>[] queues;
+        private final Event[][] batches;
+        private final int[] batchSizes;
+
+        /**
+         * Number of batches handed to replay threads and not yet visited.
+         */
+        private int pending;
+
+        /**
+         * The first failure on a replay thread.
+         */
+        private Throwable failure;
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Lanes(EventVisitor visitor, int count) {
+            this.visitor = visitor;
+            this.threads = new Thread[count];
+            this.queues = new BlockingQueue[count];
+            this.batches = new Event[count][BATCH_SIZE];
+            this.batchSizes = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                final BlockingQueue<Event[]> queue =
+                        new ArrayBlockingQueue<Event[]>(QUEUED_BATCHES);
+
+                queues[i] = queue;
+                threads[i] = new Thread("jdi-replay-" + i) {
+                    @Override
+                    public void run() {
+                        drain(queue);
+                    }
+                };
+                threads[i].setDaemon(true);
+                threads[i].start();
+            }
+        }
+
+        /**
+         * Add an event to a lane.
+         *
+         * @param lane Lane index
+         * @param event Event
+         * @throws InterruptedException Interrupted while waiting for queue
+         *         space
+         */
+        void add(int lane, Event event) throws InterruptedException {
+            batches[lane][batchSizes[lane]++] = event;
+
+            if (batchSizes[lane] == BATCH_SIZE) {
+                flush(lane);
+            }
+        }
+
+        /**
+         * Hand every partial batch on and wait until all of the events handed
+         * on have been visited.
+         *
+         * @throws InterruptedException Interrupted while waiting
+         */
+        void awaitIdle() throws InterruptedException {
+            for (int lane = 0; lane < threads.length; lane++) {
+                flush(lane);
+            }
+
+            synchronized (this) {
+                while (pending > 0) {
+                    wait();
+                }
+            }
+            checkFailure();
+        }
+
+        /**
+         * Hand the remaining events on, stop the replay threads and wait for
+         * them to finish.
+         *
+         * @throws InterruptedException Interrupted while waiting
+         */
+        void close() throws InterruptedException {
+            try {
+                for (int lane = 0; lane < threads.length; lane++) {
+                    flush(lane);
+                    queues[lane].put(END);
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } finally {
+                for (Thread thread : threads) {
+                    thread.interrupt();
+                }
+            }
+            checkFailure();
+        }
+
+        private void flush(int lane) throws InterruptedException {
+            int size = batchSizes[lane];
+            if (size == 0) {
+                return;
+            }
+
+            checkFailure();
+            synchronized (this) {
+                pending++;
+            }
+            queues[lane].put(Arrays.copyOf(batches[lane], size));
+            batchSizes[lane] = 0;
+        }
+
+        private void drain(BlockingQueue<Event[]> queue) {
+            try {
+                Event[] batch;
+                while ((batch = queue.take()) != END) {
+                    try {
+                        if (failed() == null) {
+                            for (Event event : batch) {
+                                EventType.of(event).dispatch(event, visitor);
+                            }
+                        }
+                    } catch (RuntimeException | Error e) {
+                        fail(e);
+                    } finally {
+                        done();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // The replay is over
+            }
+        }
+
+        private synchronized Throwable failed() {
+            return failure;
+        }
+
+        private synchronized void fail(Throwable t) {
+            if (failure == null) {
+                failure = t;
+            }
+        }
+
+        private synchronized void done() {
+            if (--pending == 0) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Rethrow the first failure on a replay thread, if any.
+         */
+        private void checkFailure() {
+            Throwable t = failed();
+
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            }
+        }
+    }
+}
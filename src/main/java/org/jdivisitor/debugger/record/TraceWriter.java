@@ -0,0 +1,205 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Writes records to a trace file through memory-mapped segments. The file is
+ * mapped one segment at a time, so writing a record is a copy into memory
+ * rather than a system call. Segments are a whole number of blocks, so blocks
+ * never span segments.
+ *
+ * @author Adrian Herrera
+ * @see TraceFormat
+ */
+final class TraceWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final int segmentSize;
+
+    /**
+     * The currently mapped segment.
+     */
+    private MappedByteBuffer segment;
+
+    /**
+     * File offset of the current segment.
+     */
+    private long segmentOffset;
+
+    /**
+     * File offset of the current block.
+     */
+    private long blockOffset;
+
+    /**
+     * Segment position at which the current block ends.
+     */
+    private int blockLimit;
+
+    /**
+     * Number of blocks started.
+     */
+    private long blockCount;
+
+    /**
+     * Create a trace file (overwriting any existing file) and write its
+     * header.
+     *
+     * @param file Trace file
+     * @param segmentSize Size of the mapped segments (must be a positive
+     *        multiple of the block size)
+     * @param startMillis Wall clock time at which the trace starts
+     * @param startNanos {@code System.nanoTime()} at which the trace starts
+     * @throws IOException The file could not be created
+     */
+    TraceWriter(File file, int segmentSize, long startMillis, long startNanos)
+            throws IOException {
+        Validate.isTrue(segmentSize > 0
+                && segmentSize % TraceFormat.BLOCK_SIZE == 0,
+                "Segment size must be a positive multiple of %d",
+                TraceFormat.BLOCK_SIZE);
+
+        this.segmentSize = segmentSize;
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.segment = map(0);
+
+        segment.putInt(TraceFormat.MAGIC);
+        segment.putShort(TraceFormat.VERSION);
+        segment.putShort((short) 0);
+        segment.putInt(TraceFormat.BLOCK_SIZE);
+        segment.putLong(startMillis);
+        segment.putLong(startNanos);
+        segment.putInt(0);
+    }
+
+    /**
+     * Get the number of blocks started.
+     *
+     * @return The number of blocks
+     */
+    long blockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Get the file offset of the current block.
+     *
+     * @return The current block's offset
+     */
+    long blockOffset() {
+        return blockOffset;
+    }
+
+    /**
+     * Get the number of bytes written.
+     *
+     * @return The file offset at which the next record would be written
+     */
+    long position() {
+        return segmentOffset + segment.position();
+    }
+
+    /**
+     * Determine whether a record fits in the rest of the current block.
+     *
+     * @param length Record length (tag and body)
+     * @return {@code true} if a block has been started and the record fits in
+     *         it
+     */
+    boolean fits(int length) {
+        return blockCount > 0 && segment.position()
+                + RecordEncoder.varintSize(length) + length <= blockLimit;
+    }
+
+    /**
+     * Start a new block, skipping the rest of the current one.
+     *
+     * @param baseNanos Base time of the block
+     * @throws IOException The next segment could not be mapped
+     */
+    void startBlock(long baseNanos) throws IOException {
+        if (blockCount > 0) {
+            if (blockLimit == segmentSize) {
+                segmentOffset += segmentSize;
+                segment = map(segmentOffset);
+            } else {
+                segment.position(blockLimit);
+            }
+        }
+
+        int start = segment.position();
+        blockOffset = segmentOffset + start;
+        blockLimit = start - start % TraceFormat.BLOCK_SIZE
+                + TraceFormat.BLOCK_SIZE;
+        blockCount++;
+
+        segment.putLong(baseNanos);
+    }
+
+    /**
+     * Write a record to the current block.
+     *
+     * @param record Encoded record (tag and body)
+     */
+    void write(RecordEncoder record) {
+        int length = record.length();
+        Validate.validState(fits(length), "Record does not fit the block");
+
+        long v = length;
+        while ((v & ~0x7FL) != 0) {
+            segment.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        segment.put((byte) v);
+        segment.put(record.buffer(), 0, length);
+    }
+
+    /**
+     * Flush the mapped segment and truncate the file to the bytes written.
+     *
+     * @throws IOException The file could not be flushed or truncated
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            segment.force();
+            channel.truncate(position());
+        } finally {
+            channel.close();
+        }
+    }
+
+    private MappedByteBuffer map(long offset) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, offset,
+                segmentSize);
+    }
+}
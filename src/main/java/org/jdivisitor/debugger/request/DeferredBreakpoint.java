@@ -0,0 +1,158 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+import com.sun.jdi.AbsentInformationException;
+import com.sun.jdi.Location;
+import com.sun.jdi.Method;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.request.BreakpointRequest;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+
+/**
+ * A breakpoint that is set on a source line, or on the first location of a
+ * method, once its class has been loaded.
+ *
+ * @author Adrian Herrera
+ * @see DeferredRequestRegistry
+ */
+public class DeferredBreakpoint extends DeferredRequest {
+
+    /**
+     * Line number, or {@code -1} for a method breakpoint.
+     */
+    private final int lineNumber;
+
+    /**
+     * Method name, or {@code null} for a line breakpoint.
+     */
+    private final String methodName;
+
+    /**
+     * Method signature, or {@code null} to match all overloads.
+     */
+    private final String methodSignature;
+
+    /**
+     * Constructor. <br>
+     * <br>
+     * Break at a source line. Created breakpoints suspend all threads.
+     *
+     * @param classPattern Class name or pattern (cannot be {@code null})
+     * @param lineNumber Line number (must be positive)
+     */
+    public DeferredBreakpoint(String classPattern, int lineNumber) {
+        this(classPattern, lineNumber, EventRequest.SUSPEND_ALL);
+    }
+
+    /**
+     * Constructor. <br>
+     * <br>
+     * Break at a source line.
+     *
+     * @param classPattern Class name or pattern (cannot be {@code null})
+     * @param lineNumber Line number (must be positive)
+     * @param suspendPolicy Suspend policy of the created breakpoints
+     */
+    public DeferredBreakpoint(String classPattern, int lineNumber,
+            int suspendPolicy) {
+        super(classPattern, suspendPolicy);
+        Validate.isTrue(lineNumber > 0, "Line number must be positive");
+
+        this.lineNumber = lineNumber;
+        this.methodName = null;
+        this.methodSignature = null;
+    }
+
+    /**
+     * Constructor. <br>
+     * <br>
+     * Break on entry to every method with the given name. Created
+     * breakpoints suspend all threads.
+     *
+     * @param classPattern Class name or pattern (cannot be {@code null})
+     * @param methodName Method name (cannot be {@code null})
+     */
+    public DeferredBreakpoint(String classPattern, String methodName) {
+        this(classPattern, methodName, null, EventRequest.SUSPEND_ALL);
+    }
+
+    /**
+     * Constructor. <br>
+     * <br>
+     * Break on entry to a method.
+     *
+     * @param classPattern Class name or pattern (cannot be {@code null})
+     * @param methodName Method name (cannot be {@code null})
+     * @param methodSignature JNI-style method signature, or {@code null} to
+     *        match all overloads
+     * @param suspendPolicy Suspend policy of the created breakpoints
+     */
+    public DeferredBreakpoint(String classPattern, String methodName,
+            String methodSignature, int suspendPolicy) {
+        super(classPattern, suspendPolicy);
+
+        this.lineNumber = -1;
+        this.methodName = Validate.notNull(methodName);
+        this.methodSignature = methodSignature;
+    }
+
+    @Override
+    protected List<EventRequest> install(ReferenceType type,
+            EventRequestManager erm) {
+        List<Location> locations = new ArrayList<Location>();
+
+        if (methodName == null) {
+            try {
+                locations.addAll(type.locationsOfLine(lineNumber));
+            } catch (AbsentInformationException e) {
+                return Collections.emptyList();
+            }
+        } else {
+            List<Method> methods = methodSignature == null ? type
+                    .methodsByName(methodName) : type.methodsByName(
+                    methodName, methodSignature);
+
+            for (Method method : methods) {
+                if (method.location() != null) {
+                    locations.add(method.location());
+                }
+            }
+        }
+
+        List<EventRequest> requests = new ArrayList<EventRequest>(
+                locations.size());
+        for (Location location : locations) {
+            BreakpointRequest request = erm.createBreakpointRequest(location);
+
+            configure(request);
+            requests.add(request);
+        }
+
+        return requests;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+
+/**
+ * An event request that cannot be created until a class has been loaded. A
+ * {@link DeferredRequestRegistry} creates the request when a class matching
+ * the request's class pattern is prepared.
+ *
+ * <p>
+ * Class patterns follow the rules of
+ * {@code ClassPrepareRequest.addClassFilter(String)}: either an exact class
+ * name, or a name that begins or ends with {@code *} (e.g.
+ * {@code com.acme.*} or {@code *.Foo}).
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public abstract class DeferredRequest {
+
+    /**
+     * Class name or pattern.
+     */
+    private final String classPattern;
+
+    private final int suspendPolicy;
+
+    /**
+     * Constructor.
+     *
+     * @param classPattern Class name or pattern (cannot be {@code null})
+     * @param suspendPolicy Suspend policy of the created requests (one of the
+     *        {@code EventRequest.SUSPEND_*} constants)
+     */
+    protected DeferredRequest(String classPattern, int suspendPolicy) {
+        this.classPattern = Validate.notNull(classPattern);
+        this.suspendPolicy = suspendPolicy;
+    }
+
+    /**
+     * Get the class name or pattern.
+     *
+     * @return The class pattern
+     */
+    public String classPattern() {
+        return classPattern;
+    }
+
+    /**
+     * Get the suspend policy of the created requests.
+     *
+     * @return One of the {@code EventRequest.SUSPEND_*} constants
+     */
+    public int suspendPolicy() {
+        return suspendPolicy;
+    }
+
+    /**
+     * Check whether the class pattern is an exact class name.
+     *
+     * @return {@code true} if the pattern contains no wildcard
+     */
+    boolean isExact() {
+        return !classPattern.startsWith("*") && !classPattern.endsWith("*");
+    }
+
+    /**
+     * Check whether a class name matches the class pattern.
+     *
+     * @param className Class name
+     * @return {@code true} if the name matches
+     */
+    boolean matches(String className) {
+        return matches(classPattern, className);
+    }
+
+    /**
+     * Create the event requests for a loaded class that matches the class
+     * pattern. Each created request is passed to
+     * {@link #configure(EventRequest)}.
+     *
+     * @param type Loaded class
+     * @param erm Event request manager
+     * @return The created requests (may be empty)
+     */
+    protected abstract List<EventRequest> install(ReferenceType type,
+            EventRequestManager erm);
+
+    /**
+     * Configure and enable a newly created event request. Subclasses can
+     * override this method to add filters or properties before calling
+     * {@code super.configure(request)}.
+     *
+     * @param request Event request
+     */
+    protected void configure(EventRequest request) {
+        request.setSuspendPolicy(suspendPolicy);
+        request.enable();
+    }
+
+    /**
+     * Check whether a class name matches a class pattern.
+     *
+     * @param classPattern Class name or pattern
+     * @param className Class name
+     * @return {@code true} if the name matches
+     */
+    public static boolean matches(String classPattern, String className) {
+        int length = classPattern.length() - 1;
+
+        if (classPattern.startsWith("*")) {
+            return className.regionMatches(className.length() - length,
+                    classPattern, 1, length);
+        } else if (classPattern.endsWith("*")) {
+            return className.regionMatches(0, classPattern, 0, length);
+        } else {
+            return className.equals(classPattern);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.EventInterceptor;
+import com.sun.jdi.ClassNotPreparedException;
+import com.sun.jdi.ObjectCollectedException;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.VirtualMachine;
+import com.sun.jdi.event.ClassPrepareEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.request.ClassPrepareRequest;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+
+/**
+ * Holds {@link DeferredRequest}s until their classes are loaded.
+ *
+ * <p>
+ * Pending requests are indexed by class pattern. When the registry's events
+ * are requested, it creates one {@code ClassPrepareRequest} per pattern,
+ * filtered on that pattern and tagged with it, and installs the pending
+ * requests on every matching class that is already loaded. When one of its
+ * {@code ClassPrepareEvent}s arrives, the tag leads straight to the pending
+ * requests to install, without scanning. The registry's own class prepare
+ * events are not passed on to the event visitor.
+ * </p>
+ *
+ * <p>
+ * A registry is added as an interceptor automatically when it is passed to
+ * {@code Debugger.requestEvents}. Requests may also be added after that, in
+ * which case they are installed on the matching loaded classes straight
+ * away.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public class DeferredRequestRegistry implements EventRequestor,
+        EventInterceptor {
+
+    /**
+     * Key of the class pattern property of the registry's class prepare
+     * requests.
+     */
+    private final Object patternKey = new Object();
+
+    /**
+     * Pending requests, indexed by class pattern.
+     */
+    private final Map<String, List<DeferredRequest>> pending =
+            new LinkedHashMap<String, List<DeferredRequest>>();
+
+    /**
+     * The classes each pending request has been installed on.
+     */
+    private final Map<DeferredRequest, Set<ReferenceType>> resolved =
+            new HashMap<DeferredRequest, Set<ReferenceType>>();
+
+    /**
+     * Event requests created for the pending requests.
+     */
+    private final List<EventRequest> installed =
+            new ArrayList<EventRequest>();
+
+    /**
+     * Event request manager, once the registry's events have been requested.
+     */
+    private EventRequestManager erm;
+
+    /**
+     * Add a deferred request.
+     *
+     * @param request Deferred request (cannot be {@code null})
+     */
+    public synchronized void add(DeferredRequest request) {
+        Validate.notNull(request);
+
+        String pattern = request.classPattern();
+        List<DeferredRequest> requests = pending.get(pattern);
+
+        if (requests == null) {
+            requests = new ArrayList<DeferredRequest>();
+            pending.put(pattern, requests);
+            if (erm != null) {
+                watch(pattern);
+            }
+        }
+        requests.add(request);
+        resolved.put(request, new HashSet<ReferenceType>());
+
+        if (erm != null) {
+            installLoaded(Collections.singletonList(request));
+        }
+    }
+
+    /**
+     * Get the event requests that have been created so far.
+     *
+     * @return The created event requests
+     */
+    public synchronized List<EventRequest> installedRequests() {
+        return new ArrayList<EventRequest>(installed);
+    }
+
+    /**
+     * Watch for the pending requests' classes to be prepared, and install the
+     * pending requests on the classes that are already loaded.
+     *
+     * @param erm Event request manager
+     */
+    @Override
+    public synchronized void requestEvents(EventRequestManager erm) {
+        this.erm = Validate.notNull(erm);
+
+        List<DeferredRequest> requests = new ArrayList<DeferredRequest>();
+        for (Map.Entry<String, List<DeferredRequest>> entry : pending
+                .entrySet()) {
+            watch(entry.getKey());
+            requests.addAll(entry.getValue());
+        }
+
+        installLoaded(requests);
+    }
+
+    @Override
+    public boolean intercept(Event event) {
+        if (!(event instanceof ClassPrepareEvent)) {
+            return true;
+        }
+
+        EventRequest request = event.request();
+        Object pattern = request != null ? request.getProperty(patternKey)
+                : null;
+        if (pattern == null) {
+            return true;
+        }
+
+        ReferenceType type = ((ClassPrepareEvent) event).referenceType();
+        synchronized (this) {
+            List<DeferredRequest> requests = pending.get(pattern);
+
+            if (requests != null) {
+                for (DeferredRequest deferredRequest : requests) {
+                    install(deferredRequest, type);
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Create a class prepare request for a class pattern.
+     *
+     * @param pattern Class name or pattern
+     */
+    private void watch(String pattern) {
+        ClassPrepareRequest request = erm.createClassPrepareRequest();
+
+        request.addClassFilter(pattern);
+        request.putProperty(patternKey, pattern);
+        request.setSuspendPolicy(EventRequest.SUSPEND_ALL);
+        request.enable();
+    }
+
+    /**
+     * Install pending requests on the matching classes that are already
+     * loaded. Exact class names are looked up directly; the loaded classes
+     * are only scanned if there are wildcard patterns.
+     *
+     * @param requests Pending requests to install
+     */
+    private void installLoaded(List<DeferredRequest> requests) {
+        VirtualMachine vm = erm.virtualMachine();
+        List<DeferredRequest> wildcards = new ArrayList<DeferredRequest>();
+
+        for (DeferredRequest request : requests) {
+            if (request.isExact()) {
+                for (ReferenceType type : vm.classesByName(request
+                        .classPattern())) {
+                    install(request, type);
+                }
+            } else {
+                wildcards.add(request);
+            }
+        }
+
+        if (wildcards.isEmpty()) {
+            return;
+        }
+
+        for (ReferenceType type : vm.allClasses()) {
+            String className = type.name();
+
+            for (DeferredRequest request : wildcards) {
+                if (request.matches(className)) {
+                    install(request, type);
+                }
+            }
+        }
+    }
+
+    /**
+     * Install a pending request on a class, unless it has already been
+     * installed on that class.
+     *
+     * @param request Pending request
+     * @param type Loaded class
+     */
+    private void install(DeferredRequest request, ReferenceType type) {
+        Set<ReferenceType> types = resolved.get(request);
+
+        if (!type.isPrepared() || !types.add(type)) {
+            return;
+        }
+
+        try {
+            installed.addAll(request.install(type, erm));
+        } catch (ClassNotPreparedException e) {
+            types.remove(type);
+        } catch (ObjectCollectedException e) {
+            // The class has been unloaded
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+import com.sun.jdi.Field;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.VirtualMachine;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+
+/**
+ * A watchpoint that is set on a field once its class has been loaded.
+ *
+ * @author Adrian Herrera
+ * @see DeferredRequestRegistry
+ */
+public class DeferredWatchpoint extends DeferredRequest {
+
+    private final String fieldName;
+
+    /**
+     * Watch accesses to the field.
+     */
+    private final boolean access;
+
+    /**
+     * Watch modifications of the field.
+     */
+    private final boolean modification;
+
+    /**
+     * Constructor. <br>
+     * <br>
+     * Created watchpoints suspend all threads.
+     *
+     * @param classPattern Class name or pattern (cannot be {@code null})
+     * @param fieldName Field name (cannot be {@code null})
+     * @param access Watch accesses to the field
+     * @param modification Watch modifications of the field
+     */
+    public DeferredWatchpoint(String classPattern, String fieldName,
+            boolean access, boolean modification) {
+        this(classPattern, fieldName, access, modification,
+                EventRequest.SUSPEND_ALL);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param classPattern Class name or pattern (cannot be {@code null})
+     * @param fieldName Field name (cannot be {@code null})
+     * @param access Watch accesses to the field
+     * @param modification Watch modifications of the field
+     * @param suspendPolicy Suspend policy of the created watchpoints
+     */
+    public DeferredWatchpoint(String classPattern, String fieldName,
+            boolean access, boolean modification, int suspendPolicy) {
+        super(classPattern, suspendPolicy);
+        Validate.isTrue(access || modification,
+                "Must watch accesses, modifications or both");
+
+        this.fieldName = Validate.notNull(fieldName);
+        this.access = access;
+        this.modification = modification;
+    }
+
+    @Override
+    protected List<EventRequest> install(ReferenceType type,
+            EventRequestManager erm) {
+        Field field = type.fieldByName(fieldName);
+        if (field == null) {
+            return Collections.emptyList();
+        }
+
+        VirtualMachine vm = erm.virtualMachine();
+        List<EventRequest> requests = new ArrayList<EventRequest>(2);
+
+        if (access && vm.canWatchFieldAccess()) {
+            EventRequest request = erm.createAccessWatchpointRequest(field);
+
+            configure(request);
+            requests.add(request);
+        }
+        if (modification && vm.canWatchFieldModification()) {
+            EventRequest request = erm
+                    .createModificationWatchpointRequest(field);
+
+            configure(request);
+            requests.add(request);
+        }
+
+        return requests;
+    }
+}
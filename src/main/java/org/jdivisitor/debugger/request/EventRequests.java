@@ -0,0 +1,76 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+
+/**
+ * Utility methods for event requests.
+ *
+ * @author Adrian Herrera
+ */
+final class EventRequests {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private EventRequests() {
+    }
+
+    /**
+     * Get every event request that currently exists in an event request
+     * manager, whether enabled or not.
+     *
+     * @param erm Event request manager
+     * @return The event requests
+     */
+    static Set<EventRequest> all(EventRequestManager erm) {
+        Set<EventRequest> requests = new HashSet<EventRequest>();
+
+        addAll(requests, erm.accessWatchpointRequests());
+        addAll(requests, erm.breakpointRequests());
+        addAll(requests, erm.classPrepareRequests());
+        addAll(requests, erm.classUnloadRequests());
+        addAll(requests, erm.exceptionRequests());
+        addAll(requests, erm.methodEntryRequests());
+        addAll(requests, erm.methodExitRequests());
+        addAll(requests, erm.modificationWatchpointRequests());
+        addAll(requests, erm.monitorContendedEnteredRequests());
+        addAll(requests, erm.monitorContendedEnterRequests());
+        addAll(requests, erm.monitorWaitedRequests());
+        addAll(requests, erm.monitorWaitRequests());
+        addAll(requests, erm.stepRequests());
+        addAll(requests, erm.threadDeathRequests());
+        addAll(requests, erm.threadStartRequests());
+        addAll(requests, erm.vmDeathRequests());
+
+        return requests;
+    }
+
+    private static void addAll(Set<EventRequest> requests,
+            Collection<? extends EventRequest> toAdd) {
+        requests.addAll(toAdd);
+    }
+}
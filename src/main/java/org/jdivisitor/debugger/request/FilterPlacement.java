@@ -0,0 +1,146 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import java.util.List;
+
+import com.sun.jdi.request.EventRequest;
+
+/**
+ * A snapshot of where the predicates of a {@link RequestFilter} run for one
+ * event request: pushed down into the target virtual machine as JDWP
+ * filters, tested locally by the filter, or not applied at all because the
+ * request does not support them.
+ *
+ * @author Adrian Herrera
+ */
+public final class FilterPlacement {
+
+    private final EventRequest request;
+
+    private final List<FilterPredicate> pushedDown;
+
+    private final List<FilterPredicate> local;
+
+    private final List<FilterPredicate> unsupported;
+
+    private final long eventsTested;
+
+    private final long eventsDropped;
+
+    /**
+     * Constructor.
+     *
+     * @param request The event request
+     * @param pushedDown Predicates that run in the target virtual machine
+     * @param local Predicates that are tested locally
+     * @param unsupported Predicates that are not applied
+     * @param eventsTested Number of events tested locally
+     * @param eventsDropped Number of events dropped locally
+     */
+    FilterPlacement(EventRequest request, List<FilterPredicate> pushedDown,
+            List<FilterPredicate> local, List<FilterPredicate> unsupported,
+            long eventsTested, long eventsDropped) {
+        this.request = request;
+        this.pushedDown = pushedDown;
+        this.local = local;
+        this.unsupported = unsupported;
+        this.eventsTested = eventsTested;
+        this.eventsDropped = eventsDropped;
+    }
+
+    /**
+     * Get the event request.
+     *
+     * @return The event request
+     */
+    public EventRequest request() {
+        return request;
+    }
+
+    /**
+     * Get the predicates that run in the target virtual machine.
+     *
+     * @return An unmodifiable list of predicates, in the order they were
+     *         added to the request
+     */
+    public List<FilterPredicate> pushedDown() {
+        return pushedDown;
+    }
+
+    /**
+     * Get the predicates that are tested locally, before the events are
+     * visited.
+     *
+     * @return An unmodifiable list of predicates, in the order they are
+     *         tested
+     */
+    public List<FilterPredicate> local() {
+        return local;
+    }
+
+    /**
+     * Get the predicates that are not applied to the events of the request,
+     * because they can neither be pushed down nor tested locally (e.g. an
+     * instance predicate on a request that does not suspend the event's
+     * thread).
+     *
+     * @return An unmodifiable list of predicates, in the order they were
+     *         added
+     */
+    public List<FilterPredicate> unsupported() {
+        return unsupported;
+    }
+
+    /**
+     * Check whether every predicate runs in the target virtual machine.
+     *
+     * @return {@code true} if no predicate is tested locally or unsupported
+     */
+    public boolean isFullyPushedDown() {
+        return local.isEmpty() && unsupported.isEmpty();
+    }
+
+    /**
+     * Get the number of events of the request tested locally.
+     *
+     * @return The number of events tested
+     */
+    public long eventsTested() {
+        return eventsTested;
+    }
+
+    /**
+     * Get the number of events of the request dropped by a local predicate.
+     * Each of them was suspended and shipped by the target virtual machine
+     * for nothing.
+     *
+     * @return The number of events dropped
+     */
+    public long eventsDropped() {
+        return eventsDropped;
+    }
+
+    @Override
+    public String toString() {
+        return request + ": target " + pushedDown + ", local " + local
+                + (unsupported.isEmpty() ? "" : ", unsupported " + unsupported);
+    }
+}
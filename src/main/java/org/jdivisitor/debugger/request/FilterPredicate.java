@@ -0,0 +1,563 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import java.util.List;
+import java.util.Objects;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import com.sun.jdi.ClassType;
+import com.sun.jdi.IncompatibleThreadStateException;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.event.ClassPrepareEvent;
+import com.sun.jdi.event.ClassUnloadEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.ExceptionEvent;
+import com.sun.jdi.event.LocatableEvent;
+import com.sun.jdi.request.BreakpointRequest;
+import com.sun.jdi.request.ClassPrepareRequest;
+import com.sun.jdi.request.ClassUnloadRequest;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.ExceptionRequest;
+import com.sun.jdi.request.MethodEntryRequest;
+import com.sun.jdi.request.MethodExitRequest;
+import com.sun.jdi.request.MonitorContendedEnterRequest;
+import com.sun.jdi.request.MonitorContendedEnteredRequest;
+import com.sun.jdi.request.MonitorWaitRequest;
+import com.sun.jdi.request.MonitorWaitedRequest;
+import com.sun.jdi.request.StepRequest;
+import com.sun.jdi.request.ThreadDeathRequest;
+import com.sun.jdi.request.ThreadStartRequest;
+import com.sun.jdi.request.WatchpointRequest;
+
+/**
+ * A predicate of a {@link RequestFilter}. A predicate is pushed down into a
+ * JDWP filter of the event request when the request type supports it, and is
+ * otherwise tested locally on every event of the request.
+ *
+ * <p>
+ * A predicate that does not apply to an event (e.g. a class predicate and a
+ * {@code ThreadStartEvent}) lets the event through.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public final class FilterPredicate {
+
+    /**
+     * Kinds of predicate.
+     */
+    public enum Kind {
+
+        /**
+         * The event's class matches a class pattern.
+         */
+        CLASS,
+
+        /**
+         * The event's class does not match a class pattern.
+         */
+        CLASS_EXCLUSION,
+
+        /**
+         * The event happened in a given thread.
+         */
+        THREAD,
+
+        /**
+         * The event happened while a given object was {@code this}.
+         */
+        INSTANCE,
+
+        /**
+         * The thrown exception is of a class, or a subclass of a class, that
+         * matches a class pattern. Never pushed down, because the exception
+         * type of an {@code ExceptionRequest} is fixed when it is created.
+         */
+        EXCEPTION_TYPE,
+
+        /**
+         * Only the given occurrence of the event is reported, after which
+         * the request expires.
+         */
+        COUNT
+    }
+
+    private final Kind kind;
+
+    private final String classPattern;
+
+    private final ThreadReference thread;
+
+    private final ObjectReference instance;
+
+    private final int count;
+
+    /**
+     * Constructor.
+     *
+     * @param kind Kind of predicate
+     * @param classPattern Class pattern, for class and exception predicates
+     * @param thread Thread, for thread predicates
+     * @param instance Object, for instance predicates
+     * @param count Occurrence, for count predicates
+     */
+    FilterPredicate(Kind kind, String classPattern, ThreadReference thread,
+            ObjectReference instance, int count) {
+        this.kind = kind;
+        this.classPattern = classPattern;
+        this.thread = thread;
+        this.instance = instance;
+        this.count = count;
+    }
+
+    /**
+     * Get the kind of predicate.
+     *
+     * @return The kind
+     */
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * Get the class pattern of a class or exception predicate.
+     *
+     * @return The class pattern, or {@code null}
+     */
+    public String classPattern() {
+        return classPattern;
+    }
+
+    /**
+     * Get the thread of a thread predicate.
+     *
+     * @return The thread, or {@code null}
+     */
+    public ThreadReference thread() {
+        return thread;
+    }
+
+    /**
+     * Get the object of an instance predicate.
+     *
+     * @return The object, or {@code null}
+     */
+    public ObjectReference instance() {
+        return instance;
+    }
+
+    /**
+     * Get the occurrence of a count predicate.
+     *
+     * @return The occurrence, or {@code 0}
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Add the predicate to an event request as a JDWP filter, if the request
+     * type supports it. The request must be disabled.
+     *
+     * @param request Event request
+     * @return {@code true} if the predicate was pushed down
+     */
+    boolean pushDown(EventRequest request) {
+        switch (kind) {
+        case CLASS:
+        case CLASS_EXCLUSION:
+            return pushDownClass(request);
+        case THREAD:
+            return pushDownThread(request);
+        case INSTANCE:
+            return request.virtualMachine().canUseInstanceFilters()
+                    && pushDownInstance(request);
+        case COUNT:
+            request.addCountFilter(count);
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Test the predicate locally.
+     *
+     * @param event Event
+     * @return {@code true} if the event passes the predicate
+     */
+    boolean test(Event event) {
+        switch (kind) {
+        case CLASS:
+        case CLASS_EXCLUSION:
+            String className = className(event);
+            return className == null
+                    || DeferredRequest.matches(classPattern, className)
+                            == (kind == Kind.CLASS);
+        case THREAD:
+            ThreadReference eventThread = EventType.of(event).thread(event);
+            return eventThread == null || eventThread.equals(thread);
+        case INSTANCE:
+            return !(event instanceof LocatableEvent)
+                    || isThis((LocatableEvent) event);
+        case EXCEPTION_TYPE:
+            return !(event instanceof ExceptionEvent)
+                    || isThrown((ExceptionEvent) event);
+        default:
+            return true;
+        }
+    }
+
+    /**
+     * Check whether the predicate can be tested locally on the events of a
+     * request. An instance predicate needs the frame the event happened in,
+     * which can only be read while the event's thread is suspended.
+     *
+     * @param request Event request
+     * @return {@code true} if the predicate can be tested locally
+     */
+    boolean isTestable(EventRequest request) {
+        return kind != Kind.INSTANCE
+                || request.suspendPolicy() != EventRequest.SUSPEND_NONE;
+    }
+
+    /**
+     * Check whether every event that passes this predicate also passes
+     * another one.
+     *
+     * @param other Predicate
+     * @return {@code true} if this predicate is at least as narrow as
+     *         {@code other}
+     */
+    boolean implies(FilterPredicate other) {
+        if (kind != other.kind) {
+            return false;
+        }
+
+        switch (kind) {
+        case CLASS:
+            return covers(other.classPattern, classPattern);
+        case CLASS_EXCLUSION:
+            return covers(classPattern, other.classPattern);
+        default:
+            return equals(other);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof FilterPredicate)) {
+            return false;
+        }
+
+        FilterPredicate other = (FilterPredicate) obj;
+        return kind == other.kind && count == other.count
+                && Objects.equals(classPattern, other.classPattern)
+                && Objects.equals(thread, other.thread)
+                && Objects.equals(instance, other.instance);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, classPattern, thread, instance, count);
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+        case THREAD:
+            return "thread " + thread.name();
+        case INSTANCE:
+            return "instance " + instance.uniqueID();
+        case COUNT:
+            return "count " + count;
+        default:
+            return kind.name().toLowerCase().replace('_', ' ') + " "
+                    + classPattern;
+        }
+    }
+
+    /**
+     * Add a class inclusion or exclusion filter to a request.
+     *
+     * @param request Disabled event request
+     * @return {@code true} if the request supports class filters
+     */
+    private boolean pushDownClass(EventRequest request) {
+        boolean exclude = kind == Kind.CLASS_EXCLUSION;
+
+        if (request instanceof ClassPrepareRequest) {
+            ClassPrepareRequest r = (ClassPrepareRequest) request;
+            if (exclude) {
+                r.addClassExclusionFilter(classPattern);
+            } else {
+                r.addClassFilter(classPattern);
+            }
+        } else if (request instanceof ClassUnloadRequest) {
+            ClassUnloadRequest r = (ClassUnloadRequest) request;
+            if (exclude) {
+                r.addClassExclusionFilter(classPattern);
+            } else {
+                r.addClassFilter(classPattern);
+            }
+        } else if (request instanceof ExceptionRequest) {
+            ExceptionRequest r = (ExceptionRequest) request;
+            if (exclude) {
+                r.addClassExclusionFilter(classPattern);
+            } else {
+                r.addClassFilter(classPattern);
+            }
+        } else if (request instanceof MethodEntryRequest) {
+            MethodEntryRequest r = (MethodEntryRequest) request;
+            if (exclude) {
+                r.addClassExclusionFilter(classPattern);
+            } else {
+                r.addClassFilter(classPattern);
+            }
+        } else if (request instanceof MethodExitRequest) {
+            MethodExitRequest r = (MethodExitRequest) request;
+            if (exclude) {
+                r.addClassExclusionFilter(classPattern);
+            } else {
+                r.addClassFilter(classPattern);
+            }
+        } else if (request instanceof MonitorContendedEnterRequest) {
+            MonitorContendedEnterRequest r =
+                    (MonitorContendedEnterRequest) request;
+            if (exclude) {
+                r.addClassExclusionFilter(classPattern);
+            } else {
+                r.addClassFilter(classPattern);
+            }
+        } else if (request instanceof MonitorContendedEnteredRequest) {
+            MonitorContendedEnteredRequest r =
+                    (MonitorContendedEnteredRequest) request;
+            if (exclude) {
+                r.addClassExclusionFilter(classPattern);
+            } else {
+                r.addClassFilter(classPattern);
+            }
+        } else if (request instanceof MonitorWaitRequest) {
+            MonitorWaitRequest r = (MonitorWaitRequest) request;
+            if (exclude) {
+                r.addClassExclusionFilter(classPattern);
+            } else {
+                r.addClassFilter(classPattern);
+            }
+        } else if (request instanceof MonitorWaitedRequest) {
+            MonitorWaitedRequest r = (MonitorWaitedRequest) request;
+            if (exclude) {
+                r.addClassExclusionFilter(classPattern);
+            } else {
+                r.addClassFilter(classPattern);
+            }
+        } else if (request instanceof StepRequest) {
+            StepRequest r = (StepRequest) request;
+            if (exclude) {
+                r.addClassExclusionFilter(classPattern);
+            } else {
+                r.addClassFilter(classPattern);
+            }
+        } else if (request instanceof WatchpointRequest) {
+            WatchpointRequest r = (WatchpointRequest) request;
+            if (exclude) {
+                r.addClassExclusionFilter(classPattern);
+            } else {
+                r.addClassFilter(classPattern);
+            }
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Add a thread filter to a request.
+     *
+     * @param request Disabled event request
+     * @return {@code true} if the request supports thread filters
+     */
+    private boolean pushDownThread(EventRequest request) {
+        if (request instanceof BreakpointRequest) {
+            ((BreakpointRequest) request).addThreadFilter(thread);
+        } else if (request instanceof ExceptionRequest) {
+            ((ExceptionRequest) request).addThreadFilter(thread);
+        } else if (request instanceof MethodEntryRequest) {
+            ((MethodEntryRequest) request).addThreadFilter(thread);
+        } else if (request instanceof MethodExitRequest) {
+            ((MethodExitRequest) request).addThreadFilter(thread);
+        } else if (request instanceof MonitorContendedEnterRequest) {
+            ((MonitorContendedEnterRequest) request).addThreadFilter(thread);
+        } else if (request instanceof MonitorContendedEnteredRequest) {
+            ((MonitorContendedEnteredRequest) request)
+                    .addThreadFilter(thread);
+        } else if (request instanceof MonitorWaitRequest) {
+            ((MonitorWaitRequest) request).addThreadFilter(thread);
+        } else if (request instanceof MonitorWaitedRequest) {
+            ((MonitorWaitedRequest) request).addThreadFilter(thread);
+        } else if (request instanceof ThreadDeathRequest) {
+            ((ThreadDeathRequest) request).addThreadFilter(thread);
+        } else if (request instanceof ThreadStartRequest) {
+            ((ThreadStartRequest) request).addThreadFilter(thread);
+        } else if (request instanceof WatchpointRequest) {
+            ((WatchpointRequest) request).addThreadFilter(thread);
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Add an instance filter to a request.
+     *
+     * @param request Disabled event request
+     * @return {@code true} if the request supports instance filters
+     */
+    private boolean pushDownInstance(EventRequest request) {
+        if (request instanceof BreakpointRequest) {
+            ((BreakpointRequest) request).addInstanceFilter(instance);
+        } else if (request instanceof ExceptionRequest) {
+            ((ExceptionRequest) request).addInstanceFilter(instance);
+        } else if (request instanceof MethodEntryRequest) {
+            ((MethodEntryRequest) request).addInstanceFilter(instance);
+        } else if (request instanceof MethodExitRequest) {
+            ((MethodExitRequest) request).addInstanceFilter(instance);
+        } else if (request instanceof MonitorContendedEnterRequest) {
+            ((MonitorContendedEnterRequest) request)
+                    .addInstanceFilter(instance);
+        } else if (request instanceof MonitorContendedEnteredRequest) {
+            ((MonitorContendedEnteredRequest) request)
+                    .addInstanceFilter(instance);
+        } else if (request instanceof MonitorWaitRequest) {
+            ((MonitorWaitRequest) request).addInstanceFilter(instance);
+        } else if (request instanceof MonitorWaitedRequest) {
+            ((MonitorWaitedRequest) request).addInstanceFilter(instance);
+        } else if (request instanceof StepRequest) {
+            ((StepRequest) request).addInstanceFilter(instance);
+        } else if (request instanceof WatchpointRequest) {
+            ((WatchpointRequest) request).addInstanceFilter(instance);
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the name of the class an event happened in.
+     *
+     * @param event Event
+     * @return The class name, or {@code null} if the event has no class
+     */
+    private static String className(Event event) {
+        if (event instanceof LocatableEvent) {
+            return ((LocatableEvent) event).location().declaringType().name();
+        } else if (event instanceof ClassPrepareEvent) {
+            return ((ClassPrepareEvent) event).referenceType().name();
+        } else if (event instanceof ClassUnloadEvent) {
+            return ((ClassUnloadEvent) event).className();
+        }
+
+        return null;
+    }
+
+    /**
+     * Check whether the object of an instance predicate is {@code this} in the
+     * frame an event happened in.
+     *
+     * @param event Event
+     * @return {@code true} if the object is {@code this}, or if the event's
+     *         thread is not suspended, so the frame cannot be read
+     */
+    private boolean isThis(LocatableEvent event) {
+        try {
+            return instance.equals(event.thread().frame(0).thisObject());
+        } catch (IncompatibleThreadStateException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Check whether the exception of an exception event is of a class, or a
+     * subclass of a class, that matches the class pattern.
+     *
+     * @param event Exception event
+     * @return {@code true} if the exception matches
+     */
+    private boolean isThrown(ExceptionEvent event) {
+        ReferenceType type = event.exception().referenceType();
+
+        while (type != null) {
+            if (DeferredRequest.matches(classPattern, type.name())) {
+                return true;
+            }
+            type = type instanceof ClassType ? ((ClassType) type).superclass()
+                    : null;
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether a class pattern matches every class name that another
+     * class pattern matches.
+     *
+     * @param pattern Class pattern
+     * @param other Class pattern
+     * @return {@code true} if {@code pattern} is at least as wide as
+     *         {@code other}
+     */
+    private static boolean covers(String pattern, String other) {
+        if (other.startsWith("*")) {
+            return pattern.startsWith("*")
+                    && DeferredRequest.matches(pattern, other.substring(1));
+        } else if (other.endsWith("*")) {
+            return pattern.endsWith("*") && DeferredRequest.matches(pattern,
+                    other.substring(0, other.length() - 1));
+        } else {
+            return DeferredRequest.matches(pattern, other);
+        }
+    }
+
+    /**
+     * Check whether any of a list of predicates is of a given kind.
+     *
+     * @param predicates Predicates
+     * @param kind Kind of predicate
+     * @return {@code true} if a predicate is of the kind
+     */
+    static boolean contains(List<FilterPredicate> predicates, Kind kind) {
+        for (FilterPredicate predicate : predicates) {
+            if (predicate.kind == kind) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.EventInterceptor;
+import org.jdivisitor.debugger.request.FilterPredicate.Kind;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.VMDisconnectedException;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+import com.sun.jdi.request.InvalidRequestStateException;
+
+/**
+ * Narrows the event requests of another {@code EventRequestor} with a set of
+ * declarative predicates.
+ *
+ * <p>
+ * A filter wraps another {@code EventRequestor} and applies its predicates to
+ * every event request that requestor creates (further requests can be
+ * filtered with {@link #apply(EventRequest)}). Each predicate is pushed down
+ * into a JDWP filter when the request type supports it, so that the target
+ * virtual machine neither suspends nor ships the events it rejects. The
+ * remaining predicates are tested locally: as an {@code EventInterceptor},
+ * the filter drops the events that fail them before any visitor work is
+ * done. Where each predicate runs can be inspected with
+ * {@link #placements()}.
+ * </p>
+ *
+ * <p>
+ * As with JDWP filters, an event must pass every predicate. A count
+ * predicate applies to the events that pass the other predicates, so it is
+ * only pushed down when all of them are. Predicates must be added before the
+ * requests are created.
+ * </p>
+ *
+ * <p>
+ * An instance predicate that cannot be pushed down can only be tested
+ * locally if the request suspends the event's thread, since it reads the
+ * thread's frame. On a request with {@code SUSPEND_NONE}, it is not applied,
+ * and is reported as unsupported by {@link #placements()}.
+ * </p>
+ *
+ * <p>
+ * A filter is added as an interceptor automatically when it is passed to
+ * {@code Debugger.requestEvents}.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public class RequestFilter implements EventRequestor, EventInterceptor {
+
+    /**
+     * Requests events that will be filtered.
+     */
+    private final EventRequestor delegate;
+
+    /**
+     * Predicates, in the order they were added.
+     */
+    private final List<FilterPredicate> predicates =
+            new CopyOnWriteArrayList<FilterPredicate>();
+
+    /**
+     * State of each filtered request.
+     */
+    private final Map<EventRequest, RequestState> states =
+            new ConcurrentHashMap<EventRequest, RequestState>();
+
+    /**
+     * Constructor.
+     *
+     * @param delegate Requests the events that will be filtered (cannot be
+     *        {@code null})
+     */
+    public RequestFilter(EventRequestor delegate) {
+        this.delegate = Validate.notNull(delegate);
+    }
+
+    /**
+     * Only report events in classes that match a class pattern.
+     *
+     * @param classPattern Class name or pattern, following the rules of
+     *        {@code ClassPrepareRequest.addClassFilter(String)} (cannot be
+     *        {@code null})
+     * @return This filter
+     */
+    public RequestFilter addClassFilter(String classPattern) {
+        return add(new FilterPredicate(Kind.CLASS,
+                Validate.notNull(classPattern), null, null, 0));
+    }
+
+    /**
+     * Do not report events in classes that match a class pattern.
+     *
+     * @param classPattern Class name or pattern (cannot be {@code null})
+     * @return This filter
+     */
+    public RequestFilter addClassExclusionFilter(String classPattern) {
+        return add(new FilterPredicate(Kind.CLASS_EXCLUSION,
+                Validate.notNull(classPattern), null, null, 0));
+    }
+
+    /**
+     * Only report events in a thread.
+     *
+     * @param thread Thread (cannot be {@code null})
+     * @return This filter
+     */
+    public RequestFilter addThreadFilter(ThreadReference thread) {
+        return add(new FilterPredicate(Kind.THREAD, null,
+                Validate.notNull(thread), null, 0));
+    }
+
+    /**
+     * Only report events that happen while an object is {@code this}.
+     *
+     * @param instance Object (cannot be {@code null})
+     * @return This filter
+     */
+    public RequestFilter addInstanceFilter(ObjectReference instance) {
+        return add(new FilterPredicate(Kind.INSTANCE, null, null,
+                Validate.notNull(instance), 0));
+    }
+
+    /**
+     * Only report exceptions of a class, or a subclass of a class, that
+     * matches a class pattern. Always tested locally.
+     *
+     * @param classPattern Class name or pattern (cannot be {@code null})
+     * @return This filter
+     */
+    public RequestFilter addExceptionFilter(String classPattern) {
+        return add(new FilterPredicate(Kind.EXCEPTION_TYPE,
+                Validate.notNull(classPattern), null, null, 0));
+    }
+
+    /**
+     * Only report the {@code count}-th event of each request, after which the
+     * request expires. At most one count predicate can be added.
+     *
+     * @param count Occurrence to report (must be positive)
+     * @return This filter
+     */
+    public RequestFilter addCountFilter(int count) {
+        Validate.isTrue(count > 0, "Count must be positive");
+        Validate.validState(!FilterPredicate.contains(predicates, Kind.COUNT),
+                "A count filter has already been added");
+
+        return add(new FilterPredicate(Kind.COUNT, null, null, null, count));
+    }
+
+    /**
+     * Get the predicates.
+     *
+     * @return An unmodifiable list of predicates, in the order they were
+     *         added
+     */
+    public List<FilterPredicate> predicates() {
+        return Collections.unmodifiableList(predicates);
+    }
+
+    /**
+     * Request events with the wrapped event requestor, and filter every event
+     * request it creates.
+     *
+     * @param erm Event request manager
+     */
+    @Override
+    public void requestEvents(EventRequestManager erm) {
+        Set<EventRequest> existing = EventRequests.all(erm);
+
+        delegate.requestEvents(erm);
+        for (EventRequest request : EventRequests.all(erm)) {
+            if (!existing.contains(request)) {
+                apply(request);
+            }
+        }
+    }
+
+    /**
+     * Apply the predicates to an event request. Predicates that the request
+     * type supports are added to it as JDWP filters; if the request is
+     * enabled, it is disabled while they are added.
+     *
+     * @param request Event request (cannot be {@code null})
+     */
+    public void apply(EventRequest request) {
+        Validate.notNull(request);
+
+        if (states.containsKey(request)) {
+            return;
+        }
+
+        List<FilterPredicate> pushedDown = new ArrayList<FilterPredicate>();
+        List<FilterPredicate> local = new ArrayList<FilterPredicate>();
+        List<FilterPredicate> unsupported = new ArrayList<FilterPredicate>();
+        FilterPredicate count = null;
+
+        boolean enabled = request.isEnabled();
+        if (enabled) {
+            request.disable();
+        }
+
+        for (FilterPredicate predicate : predicates) {
+            if (predicate.kind() == Kind.COUNT) {
+                count = predicate;
+            } else if (predicate.pushDown(request)) {
+                pushedDown.add(predicate);
+            } else if (predicate.isTestable(request)) {
+                local.add(predicate);
+            } else {
+                unsupported.add(predicate);
+            }
+        }
+
+        // The target counts the events that pass its own filters only
+        if (count != null) {
+            if (local.isEmpty() && count.pushDown(request)) {
+                pushedDown.add(count);
+            } else {
+                local.add(count);
+            }
+        }
+
+        if (enabled) {
+            request.enable();
+        }
+
+        states.put(request, new RequestState(request, pushedDown, local,
+                unsupported));
+    }
+
+    @Override
+    public boolean intercept(Event event) {
+        EventRequest request = event.request();
+        RequestState state = request != null ? states.get(request) : null;
+
+        return state == null || state.test(event);
+    }
+
+    /**
+     * Report where the predicates run.
+     *
+     * @return A snapshot of the placement of each filtered request's
+     *         predicates
+     */
+    public Map<EventRequest, FilterPlacement> placements() {
+        Map<EventRequest, FilterPlacement> placements =
+                new LinkedHashMap<EventRequest, FilterPlacement>();
+
+        for (RequestState state : states.values()) {
+            placements.put(state.request, state.placement());
+        }
+
+        return Collections.unmodifiableMap(placements);
+    }
+
+    /**
+     * Add a predicate.
+     *
+     * @param predicate Predicate
+     * @return This filter
+     */
+    private RequestFilter add(FilterPredicate predicate) {
+        predicates.add(predicate);
+        return this;
+    }
+
+    /**
+     * Local predicates and counters of one event request.
+     */
+    private static class RequestState {
+
+        private final EventRequest request;
+
+        private final List<FilterPredicate> pushedDown;
+
+        private final List<FilterPredicate> local;
+
+        private final List<FilterPredicate> unsupported;
+
+        /**
+         * Local predicates other than the count predicate.
+         */
+        private final FilterPredicate[] tests;
+
+        /**
+         * Occurrence to report, or {@code 0} if the count predicate is not
+         * tested locally.
+         */
+        private final int count;
+
+        /**
+         * Events that passed every other local predicate.
+         */
+        private final AtomicLong hits = new AtomicLong();
+
+        private final AtomicLong eventsTested = new AtomicLong();
+
+        private final AtomicLong eventsDropped = new AtomicLong();
+
+        RequestState(EventRequest request, List<FilterPredicate> pushedDown,
+                List<FilterPredicate> local,
+                List<FilterPredicate> unsupported) {
+            this.request = request;
+            this.pushedDown = Collections.unmodifiableList(pushedDown);
+            this.local = Collections.unmodifiableList(local);
+            this.unsupported = Collections.unmodifiableList(unsupported);
+
+            List<FilterPredicate> tests = new ArrayList<FilterPredicate>();
+            int count = 0;
+            for (FilterPredicate predicate : local) {
+                if (predicate.kind() == Kind.COUNT) {
+                    count = predicate.count();
+                } else {
+                    tests.add(predicate);
+                }
+            }
+            this.tests = tests.toArray(new FilterPredicate[tests.size()]);
+            this.count = count;
+        }
+
+        /**
+         * Test an event of the request against the local predicates.
+         *
+         * @param event Event
+         * @return {@code true} if the event should be visited
+         */
+        boolean test(Event event) {
+            if (local.isEmpty()) {
+                return true;
+            }
+
+            eventsTested.incrementAndGet();
+            for (FilterPredicate predicate : tests) {
+                if (!predicate.test(event)) {
+                    eventsDropped.incrementAndGet();
+                    return false;
+                }
+            }
+
+            if (count > 0) {
+                long hit = hits.incrementAndGet();
+                if (hit == count) {
+                    expire();
+                } else {
+                    eventsDropped.incrementAndGet();
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Disable the request once its count predicate has been met, as the
+         * target virtual machine does with an expired count filter.
+         */
+        private void expire() {
+            try {
+                request.disable();
+            } catch (InvalidRequestStateException e) {
+                // The request has been deleted
+            } catch (VMDisconnectedException e) {
+                // Nothing left to disable
+            }
+        }
+
+        /**
+         * Get a snapshot of the placement of the predicates.
+         *
+         * @return The placement
+         */
+        FilterPlacement placement() {
+            return new FilterPlacement(request, pushedDown, local,
+                    unsupported, eventsTested.get(), eventsDropped.get());
+        }
+    }
+}
@@ -0,0 +1,983 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.EventInterceptor;
+import org.jdivisitor.debugger.request.FilterPredicate.Kind;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+import com.sun.jdi.request.InvalidRequestStateException;
+
+/**
+ * Collects the event requests of several {@code EventRequestor}s and merges
+ * overlapping ones, so that the target virtual machine evaluates and ships
+ * each event once.
+ *
+ * <p>
+ * Each requestor added to the planner creates its requests through an event
+ * request manager that records what it asks for. A recorded request is
+ * backed by a real, disabled JDI request, so its getters and properties
+ * behave as usual, but enabling it only records the intent. Once every
+ * requestor has run, the planner merges the enabled requests: requests of
+ * the same kind on the same location, field, exception or thread are merged
+ * when one of them is at least as wide as the others (e.g. an unfiltered
+ * {@code MethodEntryRequest} and one filtered to {@code com.acme.*}, or two
+ * identical breakpoints). The widest request is the one enabled in the
+ * target, with the strictest suspend policy and the properties of all of
+ * them. Requests created or enabled later are merged into a matching request
+ * as they are enabled.
+ * </p>
+ *
+ * <p>
+ * Requests whose filters are disjoint are not merged. JDWP filters all have
+ * to pass, so a merged request would have to drop them and would ship events
+ * that none of the requestors asked for. Requests with count filters,
+ * {@code ReferenceType} class filters or source name filters are never
+ * merged, and neither are requests with different instance filters.
+ * </p>
+ *
+ * <p>
+ * As an {@code EventInterceptor}, the planner demultiplexes the events of a
+ * merged request: the filters a narrower request had on top of the merged
+ * one are tested locally, and an event that none of the merged requests
+ * would have reported is dropped. Requestors that are interceptors are
+ * called by the planner rather than by the debugger; each requestor that
+ * shares a merged request sees its events, and the event is visited unless
+ * all of them drop it. Requestors should recognise their events by request
+ * property, as {@code ThreadRegistry} and {@code DeferredRequestRegistry} do;
+ * requestors that track their requests by identity, such as a
+ * {@link RequestThrottler}, should wrap the planner instead.
+ * </p>
+ *
+ * <p>
+ * A planner is added as an interceptor automatically when it is passed to
+ * {@code Debugger.requestEvents}.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public class RequestPlanner implements EventRequestor, EventInterceptor {
+
+    private static final FilterPredicate[] NO_PREDICATES =
+            new FilterPredicate[0];
+
+    /**
+     * Requestors, in the order they were added.
+     */
+    private final List<Consumer> consumers =
+            new CopyOnWriteArrayList<Consumer>();
+
+    /**
+     * Recorded requests that have not been enabled yet.
+     */
+    private final List<RequestIntent> pending = new ArrayList<RequestIntent>();
+
+    /**
+     * Recorded request backed by each real request.
+     */
+    private final Map<EventRequest, RequestIntent> backed =
+            new HashMap<EventRequest, RequestIntent>();
+
+    /**
+     * Real requests and the recorded requests merged into them.
+     */
+    private final Map<EventRequest, Group> groups =
+            new ConcurrentHashMap<EventRequest, Group>();
+
+    /**
+     * The real event request manager. Set when events are requested.
+     */
+    private EventRequestManager erm;
+
+    /**
+     * The requestors have run and the initial plan has been made.
+     */
+    private boolean planned;
+
+    private int intentCount;
+
+    /**
+     * Add a requestor. Requestors must be added before events are requested.
+     *
+     * @param requestor Event requestor (cannot be {@code null})
+     * @return This planner
+     */
+    public synchronized RequestPlanner add(EventRequestor requestor) {
+        Validate.notNull(requestor);
+        Validate.validState(erm == null,
+                "Events have already been requested");
+
+        consumers.add(new Consumer(requestor));
+        return this;
+    }
+
+    /**
+     * Let every requestor create its event requests, then merge the enabled
+     * ones.
+     *
+     * @param erm Event request manager
+     */
+    @Override
+    public void requestEvents(EventRequestManager erm) {
+        synchronized (this) {
+            Validate.validState(this.erm == null,
+                    "Events have already been requested");
+            this.erm = Validate.notNull(erm);
+        }
+
+        for (int i = 0; i < consumers.size(); i++) {
+            EventRequestManager manager = (EventRequestManager) Proxy
+                    .newProxyInstance(
+                            EventRequestManager.class.getClassLoader(),
+                            new Class<?>[] { EventRequestManager.class },
+                            new RecordingManager(i));
+
+            consumers.get(i).requestor.requestEvents(manager);
+        }
+
+        plan();
+    }
+
+    @Override
+    public boolean intercept(Event event) {
+        EventRequest request = event.request();
+        Group group = request != null ? groups.get(request) : null;
+
+        if (group == null) {
+            for (Consumer consumer : consumers) {
+                if (consumer.interceptor != null
+                        && !consumer.interceptor.intercept(event)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Each owner of a matching request would have had its own event
+        boolean survived = false;
+        for (int i = 0; i < consumers.size(); i++) {
+            if (group.accepts(i, event)) {
+                Consumer consumer = consumers.get(i);
+                if (consumer.interceptor == null
+                        || consumer.interceptor.intercept(event)) {
+                    survived = true;
+                }
+            }
+        }
+        if (!survived) {
+            return false;
+        }
+
+        for (int i = 0; i < consumers.size(); i++) {
+            Consumer consumer = consumers.get(i);
+            if (consumer.interceptor != null && !group.owns(i)
+                    && !consumer.interceptor.intercept(event)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the number of event requests the requestors have created.
+     *
+     * @return The number of recorded requests
+     */
+    public synchronized int intentCount() {
+        return intentCount;
+    }
+
+    /**
+     * Get the number of real event requests the enabled recorded requests
+     * have been merged into.
+     *
+     * @return The number of real requests
+     */
+    public int requestCount() {
+        return groups.size();
+    }
+
+    /**
+     * Report which requestors share a real event request.
+     *
+     * @return The requestors of each real request that more than one
+     *         recorded request has been merged into
+     */
+    public synchronized Map<EventRequest, List<EventRequestor>> merged() {
+        Map<EventRequest, List<EventRequestor>> merged =
+                new LinkedHashMap<EventRequest, List<EventRequestor>>();
+
+        for (Group group : groups.values()) {
+            RequestIntent[] members = group.members;
+            if (members.length > 1) {
+                List<EventRequestor> requestors =
+                        new ArrayList<EventRequestor>(members.length);
+                for (RequestIntent member : members) {
+                    requestors.add(consumers.get(member.owner).requestor);
+                }
+                merged.put(group.request,
+                        Collections.unmodifiableList(requestors));
+            }
+        }
+
+        return Collections.unmodifiableMap(merged);
+    }
+
+    /**
+     * Merge the requests that were enabled while the requestors ran, then
+     * enable the real requests.
+     */
+    private synchronized void plan() {
+        List<Group> planned = new ArrayList<Group>();
+
+        for (RequestIntent intent : new ArrayList<RequestIntent>(pending)) {
+            if (intent.enabled) {
+                Group group = place(intent, true);
+                if (!planned.contains(group)) {
+                    planned.add(group);
+                }
+            }
+        }
+
+        for (Group group : planned) {
+            if (groups.containsKey(group.request)) {
+                group.refresh();
+            }
+        }
+        this.planned = true;
+    }
+
+    /**
+     * Merge an enabled recorded request into a real request.
+     *
+     * @param intent Recorded request
+     * @param planning Whether the initial plan is being made, in which case
+     *        existing real requests are not enabled yet and can be merged
+     *        into a wider request
+     * @return The real request's group
+     */
+    private Group place(RequestIntent intent, boolean planning) {
+        pending.remove(intent);
+
+        for (Group group : groups.values()) {
+            if (group.covers(intent)) {
+                group.join(intent);
+                return group;
+            }
+        }
+
+        Group wider = new Group(intent);
+        if (planning) {
+            for (Group group : new ArrayList<Group>(groups.values())) {
+                if (group != wider && wider.covers(group.host)) {
+                    groups.remove(group.request);
+                    for (RequestIntent member : group.members) {
+                        wider.join(member);
+                    }
+                }
+            }
+        }
+
+        return wider;
+    }
+
+    /**
+     * Delete a recorded request.
+     *
+     * @param intent Recorded request
+     */
+    private void delete(RequestIntent intent) {
+        if (intent.deleted) {
+            return;
+        }
+
+        intent.deleted = true;
+        intent.enabled = false;
+        if (intent.group != null) {
+            intent.group.remove(intent);
+        } else {
+            pending.remove(intent);
+            backed.remove(intent.backing);
+            erm.deleteEventRequest(intent.backing);
+        }
+    }
+
+    /**
+     * Get the recorded request behind a request proxy.
+     *
+     * @param request Event request
+     * @return The recorded request, or {@code null} if the request is a real
+     *         one
+     */
+    private static RequestIntent intent(Object request) {
+        if (request != null && Proxy.isProxyClass(request.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(request);
+            if (handler instanceof RequestIntent) {
+                return (RequestIntent) handler;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Call a method on a real JDI object, unwrapping any exception it throws.
+     *
+     * @param target JDI object
+     * @param method Method
+     * @param args Arguments
+     * @return The method's result
+     * @throws Throwable The exception thrown by the method
+     */
+    private static Object forward(Object target, Method method, Object[] args)
+            throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A requestor added to the planner.
+     */
+    private static class Consumer {
+
+        private final EventRequestor requestor;
+
+        /**
+         * The requestor as an interceptor, or {@code null} if it is not one.
+         */
+        private final EventInterceptor interceptor;
+
+        Consumer(EventRequestor requestor) {
+            this.requestor = requestor;
+            this.interceptor = requestor instanceof EventInterceptor
+                    ? (EventInterceptor) requestor : null;
+        }
+    }
+
+    /**
+     * The event request manager a requestor sees. Records the requests it
+     * creates and passes everything else on to the real event request
+     * manager.
+     */
+    private class RecordingManager implements InvocationHandler {
+
+        /**
+         * Index of the requestor.
+         */
+        private final int owner;
+
+        RecordingManager(int owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            String name = method.getName();
+
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("toString")) {
+                return "Planned " + erm;
+            }
+
+            synchronized (RequestPlanner.this) {
+                if (name.startsWith("create") && EventRequest.class
+                        .isAssignableFrom(method.getReturnType())) {
+                    return create(method, args);
+                } else if (name.equals("deleteEventRequest")) {
+                    deleteRequest(args[0], method, args);
+                    return null;
+                } else if (name.equals("deleteEventRequests")) {
+                    for (Object request : new ArrayList<Object>(
+                            (List<?>) args[0])) {
+                        deleteRequest(request, method, null);
+                    }
+                    return null;
+                } else if (name.equals("deleteAllBreakpoints")) {
+                    deleteAllBreakpoints();
+                }
+
+                Object result = forward(erm, method, args);
+                if (result instanceof List) {
+                    return recorded((List<?>) result);
+                }
+                return result;
+            }
+        }
+
+        /**
+         * Create a real, disabled request and record it.
+         *
+         * @param method Create method
+         * @param args Arguments
+         * @return A proxy for the recorded request
+         * @throws Throwable The exception thrown by the create method
+         */
+        private Object create(Method method, Object[] args) throws Throwable {
+            EventRequest backing = (EventRequest) forward(erm, method, args);
+
+            List<Object> key = new ArrayList<Object>();
+            key.add(method.getName());
+            if (args != null) {
+                key.addAll(Arrays.asList(args));
+            }
+
+            RequestIntent intent = new RequestIntent(owner, key, backing);
+            Class<?> type = method.getReturnType();
+            intent.proxy = (EventRequest) Proxy.newProxyInstance(
+                    type.getClassLoader(), new Class<?>[] { type }, intent);
+
+            pending.add(intent);
+            backed.put(backing, intent);
+            intentCount++;
+
+            return intent.proxy;
+        }
+
+        /**
+         * Delete a recorded or real request.
+         *
+         * @param request Event request
+         * @param method Delete method, used for real requests
+         * @param args Arguments of the delete method
+         * @throws Throwable The exception thrown by the delete method
+         */
+        private void deleteRequest(Object request, Method method,
+                Object[] args) throws Throwable {
+            RequestIntent intent = intent(request);
+
+            if (intent != null) {
+                delete(intent);
+            } else if (args != null) {
+                forward(erm, method, args);
+            } else {
+                erm.deleteEventRequest((EventRequest) request);
+            }
+        }
+
+        /**
+         * Forget every recorded breakpoint request. The real event request
+         * manager then deletes the breakpoints of every requestor, as JDI
+         * does.
+         */
+        private void deleteAllBreakpoints() {
+            for (Group group : new ArrayList<Group>(groups.values())) {
+                if (group.host.isBreakpoint()) {
+                    groups.remove(group.request);
+                    backed.remove(group.request);
+                    for (RequestIntent member : group.members) {
+                        member.deleted = true;
+                        member.enabled = false;
+                    }
+                }
+            }
+            for (RequestIntent intent : new ArrayList<RequestIntent>(pending)) {
+                if (intent.isBreakpoint()) {
+                    intent.deleted = true;
+                    pending.remove(intent);
+                    backed.remove(intent.backing);
+                }
+            }
+        }
+
+        /**
+         * Replace the real requests in a list by the recorded requests they
+         * back.
+         *
+         * @param requests Real requests
+         * @return The requests as the requestors see them
+         */
+        private List<Object> recorded(List<?> requests) {
+            List<Object> recorded = new ArrayList<Object>(requests.size());
+
+            for (Object request : requests) {
+                RequestIntent intent = backed.get(request);
+                recorded.add(intent != null ? intent.proxy : request);
+            }
+
+            return Collections.unmodifiableList(recorded);
+        }
+    }
+
+    /**
+     * An event request as a requestor asked for it. Every call on the
+     * request's proxy ends up here. State is guarded by the planner's
+     * monitor.
+     */
+    private class RequestIntent implements InvocationHandler {
+
+        /**
+         * Index of the requestor that created the request.
+         */
+        private final int owner;
+
+        /**
+         * Create method and arguments. Only requests with equal keys can be
+         * merged.
+         */
+        private final List<Object> key;
+
+        /**
+         * Real request created alongside. It carries the request's filters,
+         * and is deleted if the request is merged into another one.
+         */
+        private final EventRequest backing;
+
+        private final List<FilterPredicate> predicates =
+                new ArrayList<FilterPredicate>();
+
+        private final Map<Object, Object> properties =
+                new LinkedHashMap<Object, Object>();
+
+        private EventRequest proxy;
+
+        /**
+         * The request has a filter that the planner cannot reason about.
+         */
+        private boolean opaque;
+
+        private int suspendPolicy;
+
+        private volatile boolean enabled;
+
+        private boolean deleted;
+
+        /**
+         * Group of the real request the request has been merged into.
+         */
+        private Group group;
+
+        /**
+         * Filters tested locally, on top of those of the real request.
+         */
+        private volatile FilterPredicate[] residual = NO_PREDICATES;
+
+        RequestIntent(int owner, List<Object> key, EventRequest backing) {
+            this.owner = owner;
+            this.key = key;
+            this.backing = backing;
+            this.suspendPolicy = backing.suspendPolicy();
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            String name = method.getName();
+
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("isEnabled")) {
+                return enabled;
+            }
+
+            synchronized (RequestPlanner.this) {
+                if (name.equals("enable")) {
+                    setEnabled(true);
+                } else if (name.equals("disable")) {
+                    setEnabled(false);
+                } else if (name.equals("setEnabled")) {
+                    setEnabled((Boolean) args[0]);
+                } else if (name.equals("getProperty")) {
+                    return properties.get(args[0]);
+                } else if (name.equals("putProperty")) {
+                    putProperty(args[0], args[1]);
+                } else if (name.startsWith("add")
+                        || name.equals("setSuspendPolicy")) {
+                    configure(method, args);
+                } else {
+                    return forward(backing, method, args);
+                }
+
+                return null;
+            }
+        }
+
+        /**
+         * Check whether an event of the real request would have been
+         * reported for this request.
+         *
+         * @param event Event
+         * @return {@code true} if the request is enabled and the event passes
+         *         its local filters
+         */
+        boolean matches(Event event) {
+            if (!enabled) {
+                return false;
+            }
+
+            for (FilterPredicate predicate : residual) {
+                if (!predicate.test(event)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        boolean isBreakpoint() {
+            return key.get(0).equals("createBreakpointRequest");
+        }
+
+        /**
+         * Enable or disable the request. The first time a request is enabled
+         * after the initial plan, it is merged into a real request.
+         *
+         * @param enable Whether to enable the request
+         */
+        private void setEnabled(boolean enable) {
+            if (deleted) {
+                throw new InvalidRequestStateException("Request deleted");
+            }
+
+            enabled = enable;
+            if (group != null) {
+                group.refresh();
+            } else if (enable && planned) {
+                place(this, false).refresh();
+            }
+        }
+
+        /**
+         * Set a property on the request, and on the real request it has been
+         * merged into.
+         *
+         * @param key Property key
+         * @param value Property value, or {@code null} to remove it
+         */
+        private void putProperty(Object key, Object value) {
+            if (value == null) {
+                properties.remove(key);
+            } else {
+                properties.put(key, value);
+            }
+
+            backing.putProperty(key, value);
+            if (group != null) {
+                group.refreshProperty(key);
+            }
+        }
+
+        /**
+         * Add a filter to, or set the suspend policy of, a request that has
+         * not been merged with others.
+         *
+         * @param method Method
+         * @param args Arguments
+         * @throws Throwable The exception thrown by the method
+         */
+        private void configure(Method method, Object[] args)
+                throws Throwable {
+            if (group != null && (group.members.length > 1
+                    || group.request != backing)) {
+                throw new InvalidRequestStateException(
+                        "Request merged with other requests");
+            }
+
+            forward(backing, method, args);
+
+            if (method.getName().equals("setSuspendPolicy")) {
+                suspendPolicy = (Integer) args[0];
+                return;
+            }
+
+            FilterPredicate predicate = predicate(method.getName(), args[0]);
+            if (predicate != null) {
+                predicates.add(predicate);
+            } else {
+                opaque = true;
+            }
+        }
+
+        /**
+         * Get the predicate equivalent to a filter.
+         *
+         * @param name Filter method
+         * @param arg Filter argument
+         * @return The predicate, or {@code null} if the filter has none
+         */
+        private FilterPredicate predicate(String name, Object arg) {
+            if (name.equals("addClassFilter") && arg instanceof String) {
+                return new FilterPredicate(Kind.CLASS, (String) arg, null,
+                        null, 0);
+            } else if (name.equals("addClassExclusionFilter")
+                    && arg instanceof String) {
+                return new FilterPredicate(Kind.CLASS_EXCLUSION,
+                        (String) arg, null, null, 0);
+            } else if (name.equals("addThreadFilter")) {
+                return new FilterPredicate(Kind.THREAD, null,
+                        (ThreadReference) arg, null, 0);
+            } else if (name.equals("addInstanceFilter")) {
+                return new FilterPredicate(Kind.INSTANCE, null, null,
+                        (ObjectReference) arg, 0);
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * A real event request and the recorded requests merged into it. Guarded
+     * by the planner's monitor; the members are published for the event
+     * thread through a volatile array.
+     */
+    private class Group {
+
+        /**
+         * The widest request, whose filters the real request carries.
+         */
+        private final RequestIntent host;
+
+        private final EventRequest request;
+
+        private volatile RequestIntent[] members = new RequestIntent[0];
+
+        Group(RequestIntent host) {
+            this.host = host;
+            this.request = host.backing;
+
+            groups.put(request, this);
+            join(host);
+        }
+
+        /**
+         * Check whether a request can be merged into the real request: the
+         * real request must report every event the request would.
+         *
+         * @param intent Recorded request
+         * @return {@code true} if the request can be merged
+         */
+        boolean covers(RequestIntent intent) {
+            if (host.opaque || intent.opaque || !host.key.equals(intent.key)) {
+                return false;
+            }
+
+            for (FilterPredicate filter : host.predicates) {
+                if (!implied(filter, intent.predicates)) {
+                    return false;
+                }
+            }
+
+            // Instance filters cannot be tested locally without a frame
+            for (FilterPredicate filter : intent.predicates) {
+                if (filter.kind() == Kind.INSTANCE
+                        && !host.predicates.contains(filter)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Merge a request into the real request.
+         *
+         * @param intent Recorded request
+         */
+        void join(RequestIntent intent) {
+            List<FilterPredicate> residual = new ArrayList<FilterPredicate>();
+            for (FilterPredicate filter : intent.predicates) {
+                if (!host.predicates.contains(filter)) {
+                    residual.add(filter);
+                }
+            }
+            intent.residual = residual.toArray(NO_PREDICATES);
+            intent.group = this;
+
+            if (intent.backing != request) {
+                backed.remove(intent.backing);
+                erm.deleteEventRequest(intent.backing);
+            }
+
+            for (Map.Entry<Object, Object> property : intent.properties
+                    .entrySet()) {
+                request.putProperty(property.getKey(), property.getValue());
+            }
+
+            if (intent.suspendPolicy > request.suspendPolicy()) {
+                setSuspendPolicy(intent.suspendPolicy);
+            }
+
+            RequestIntent[] joined = Arrays.copyOf(members,
+                    members.length + 1);
+            joined[members.length] = intent;
+            members = joined;
+        }
+
+        /**
+         * Remove a deleted request. The real request is deleted with its
+         * last member, and otherwise takes the widest suspend policy of the
+         * remaining members.
+         *
+         * @param intent Recorded request
+         */
+        void remove(RequestIntent intent) {
+            List<RequestIntent> remaining = new ArrayList<RequestIntent>(
+                    Arrays.asList(members));
+            remaining.remove(intent);
+            members = remaining.toArray(new RequestIntent[0]);
+
+            if (remaining.isEmpty()) {
+                groups.remove(request);
+                backed.remove(request);
+                erm.deleteEventRequest(request);
+                return;
+            }
+
+            int suspendPolicy = EventRequest.SUSPEND_NONE;
+            for (RequestIntent member : remaining) {
+                suspendPolicy = Math.max(suspendPolicy, member.suspendPolicy);
+            }
+            if (suspendPolicy != request.suspendPolicy()) {
+                setSuspendPolicy(suspendPolicy);
+            }
+
+            for (Object key : intent.properties.keySet()) {
+                refreshProperty(key);
+            }
+            refresh();
+        }
+
+        /**
+         * Change the suspend policy of the real request, which must be
+         * disabled while it is changed.
+         *
+         * @param suspendPolicy Suspend policy
+         */
+        private void setSuspendPolicy(int suspendPolicy) {
+            boolean wasEnabled = request.isEnabled();
+            request.disable();
+            request.setSuspendPolicy(suspendPolicy);
+            request.setEnabled(wasEnabled);
+        }
+
+        /**
+         * Enable the real request if any of its members is enabled.
+         */
+        void refresh() {
+            boolean enable = false;
+            for (RequestIntent member : members) {
+                enable |= member.enabled;
+            }
+
+            if (request.isEnabled() != enable) {
+                request.setEnabled(enable);
+            }
+        }
+
+        /**
+         * Set a property of the real request to the value a member has for
+         * it, or remove it if no member has one.
+         *
+         * @param key Property key
+         */
+        void refreshProperty(Object key) {
+            Object value = null;
+            for (RequestIntent member : members) {
+                if (member.properties.containsKey(key)) {
+                    value = member.properties.get(key);
+                }
+            }
+
+            request.putProperty(key, value);
+        }
+
+        /**
+         * Check whether a requestor has a request merged into the real
+         * request.
+         *
+         * @param owner Index of the requestor
+         * @return {@code true} if the requestor shares the real request
+         */
+        boolean owns(int owner) {
+            for (RequestIntent member : members) {
+                if (member.owner == owner) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Check whether an event of the real request would have been
+         * reported for one of a requestor's requests.
+         *
+         * @param owner Index of the requestor
+         * @param event Event
+         * @return {@code true} if the requestor should see the event
+         */
+        boolean accepts(int owner, Event event) {
+            for (RequestIntent member : members) {
+                if (member.owner == owner && member.matches(event)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Check whether any of a list of filters is at least as narrow as a
+         * filter.
+         *
+         * @param filter Filter
+         * @param filters Filters
+         * @return {@code true} if the filters imply {@code filter}
+         */
+        private boolean implied(FilterPredicate filter,
+                List<FilterPredicate> filters) {
+            for (FilterPredicate other : filters) {
+                if (other.implies(filter)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.EventInterceptor;
+import com.sun.jdi.VMDisconnectedException;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.VMDisconnectEvent;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+import com.sun.jdi.request.InvalidRequestStateException;
+
+/**
+ * Throttles event requests whose event rate exceeds a budget.
+ *
+ * <p>
+ * A throttler wraps another {@code EventRequestor} and tracks every event
+ * request that requestor creates (further requests can be tracked with
+ * {@link #track(EventRequest)}). As an {@code EventInterceptor}, it measures
+ * the rate of events of each tracked request over a short window. When a
+ * request exceeds its budget, the throttler applies the
+ * {@link ThrottleAction} of its {@link ThrottlePolicy}, and lifts it again
+ * when the load drops. What has been throttled can be inspected with
+ * {@link #statistics()}.
+ * </p>
+ *
+ * <p>
+ * The throttler is closed when the virtual machine disconnects, or by
+ * calling {@link #close()}. Closing it stops its cool-down thread and enables
+ * the requests it has disabled.
+ * </p>
+ *
+ * <p>
+ * A throttler is added as an interceptor automatically when it is passed to
+ * {@code Debugger.requestEvents}.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public class RequestThrottler implements EventRequestor, EventInterceptor,
+        Closeable {
+
+    /**
+     * Longest cool-down period, as a multiple of the initial one.
+     */
+    private static final int MAX_COOLDOWN_MULTIPLIER = 64;
+
+    /**
+     * Requests events that will be throttled.
+     */
+    private final EventRequestor delegate;
+
+    private final ThrottlePolicy policy;
+
+    /**
+     * State of each tracked request.
+     */
+    private final Map<EventRequest, RequestState> states =
+            new ConcurrentHashMap<EventRequest, RequestState>();
+
+    /**
+     * Enables disabled requests once their cool-down period is over. Created
+     * on first use.
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Cool-down periods are no longer scheduled.
+     */
+    private boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate Requests the events that will be throttled (cannot be
+     *        {@code null})
+     * @param policy Throttle policy (cannot be {@code null})
+     */
+    public RequestThrottler(EventRequestor delegate, ThrottlePolicy policy) {
+        this.delegate = Validate.notNull(delegate);
+        this.policy = Validate.notNull(policy);
+    }
+
+    /**
+     * Request events with the wrapped event requestor, and track every event
+     * request it creates.
+     *
+     * @param erm Event request manager
+     */
+    @Override
+    public void requestEvents(EventRequestManager erm) {
+        Set<EventRequest> existing = EventRequests.all(erm);
+
+        delegate.requestEvents(erm);
+        for (EventRequest request : EventRequests.all(erm)) {
+            if (!existing.contains(request)) {
+                track(request);
+            }
+        }
+    }
+
+    /**
+     * Track (and if necessary, throttle) an event request.
+     *
+     * @param request Event request (cannot be {@code null})
+     */
+    public void track(EventRequest request) {
+        Validate.notNull(request);
+
+        if (!states.containsKey(request)) {
+            states.put(request, new RequestState(request));
+        }
+    }
+
+    @Override
+    public boolean intercept(Event event) {
+        if (event instanceof VMDisconnectEvent) {
+            close();
+            return true;
+        }
+
+        EventRequest request = event.request();
+        RequestState state = request != null ? states.get(request) : null;
+
+        if (state == null) {
+            return true;
+        }
+
+        synchronized (state) {
+            return state.onEvent(System.nanoTime());
+        }
+    }
+
+    /**
+     * Report what has been throttled.
+     *
+     * @return A snapshot of the statistics of each tracked request
+     */
+    public Map<EventRequest, ThrottleStatistics> statistics() {
+        Map<EventRequest, ThrottleStatistics> statistics =
+                new LinkedHashMap<EventRequest, ThrottleStatistics>();
+
+        for (RequestState state : states.values()) {
+            synchronized (state) {
+                statistics.put(state.request, state.statistics());
+            }
+        }
+
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * Stop the cool-down thread and enable every request that is still
+     * disabled.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+
+        for (RequestState state : states.values()) {
+            synchronized (state) {
+                state.restore();
+            }
+        }
+    }
+
+    /**
+     * Schedule a disabled request to be enabled again. Once the throttler
+     * has been closed, the request is enabled straight away.
+     *
+     * @param state The request's state
+     * @param delayNanos Cool-down period in nanoseconds
+     */
+    private synchronized void scheduleEnable(final RequestState state,
+            long delayNanos) {
+        if (closed) {
+            state.restore();
+            return;
+        }
+
+        if (scheduler == null) {
+            ThreadFactory threadFactory = new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable,
+                            "jdi-request-throttler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+            ScheduledThreadPoolExecutor executor =
+                    new ScheduledThreadPoolExecutor(1, threadFactory);
+            executor.setRemoveOnCancelPolicy(true);
+            scheduler = executor;
+        }
+
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (state) {
+                    state.restore();
+                }
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Rate measurement and throttling state of one event request. Guarded by
+     * its own monitor.
+     */
+    private class RequestState {
+
+        private final EventRequest request;
+
+        /**
+         * Number of events allowed per window.
+         */
+        private final long windowBudget;
+
+        private final long windowNanos;
+
+        private long windowStart = System.nanoTime();
+
+        private long windowCount;
+
+        private long cooldownNanos;
+
+        /**
+         * Time at which the request was last restored.
+         */
+        private long restoredAt;
+
+        /**
+         * The request has been restored at least once.
+         */
+        private boolean restored;
+
+        private boolean throttled;
+
+        /**
+         * Events seen since the request was throttled by sampling.
+         */
+        private long sampleCount;
+
+        private long throttleCount;
+
+        private long eventsSeen;
+
+        private long eventsDropped;
+
+        private double lastEventsPerSecond;
+
+        RequestState(EventRequest request) {
+            this.request = request;
+            this.windowNanos = TimeUnit.MILLISECONDS.toNanos(policy
+                    .windowMillis());
+            this.windowBudget = Math.max(1, (long) (policy
+                    .maxEventsPerSecond() * policy.windowMillis() / 1000));
+            this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(policy
+                    .cooldownMillis());
+        }
+
+        /**
+         * Account for an event of the request.
+         *
+         * @param now Current time in nanoseconds
+         * @return {@code true} if the event should be visited
+         */
+        boolean onEvent(long now) {
+            eventsSeen++;
+
+            if (now - windowStart >= windowNanos) {
+                completeWindow(now);
+            }
+            windowCount++;
+
+            if (!throttled && windowCount > windowBudget) {
+                throttle(now);
+            }
+
+            if (!throttled) {
+                return true;
+            }
+
+            if (policy.action() == ThrottleAction.SAMPLE) {
+                if (++sampleCount % policy.sampleInterval() == 0) {
+                    return true;
+                }
+                eventsDropped++;
+                return false;
+            }
+
+            // Reported before the request was disabled
+            return true;
+        }
+
+        /**
+         * Record the event rate of the window that has just ended, and lift
+         * sampling if the rate was within budget.
+         *
+         * @param now Current time in nanoseconds
+         */
+        private void completeWindow(long now) {
+            boolean withinBudget = windowCount <= windowBudget;
+
+            lastEventsPerSecond = windowCount * 1e9 / (now - windowStart);
+            windowStart = now;
+            windowCount = 0;
+
+            if (withinBudget) {
+                cooldownNanos = TimeUnit.MILLISECONDS.toNanos(policy
+                        .cooldownMillis());
+                if (throttled && policy.action() == ThrottleAction.SAMPLE) {
+                    throttled = false;
+                }
+            }
+        }
+
+        /**
+         * Apply the throttle action.
+         *
+         * @param now Current time in nanoseconds
+         */
+        private void throttle(long now) {
+            throttled = true;
+            throttleCount++;
+            sampleCount = 0;
+
+            if (policy.action() != ThrottleAction.DISABLE) {
+                return;
+            }
+
+            try {
+                if (restored && now - restoredAt < windowNanos) {
+                    // Still over budget straight after the cool-down
+                    cooldownNanos = Math.min(cooldownNanos * 2,
+                            TimeUnit.MILLISECONDS.toNanos(policy
+                                    .cooldownMillis())
+                                    * MAX_COOLDOWN_MULTIPLIER);
+                }
+                request.disable();
+                scheduleEnable(this, cooldownNanos);
+            } catch (InvalidRequestStateException e) {
+                // The request has been deleted
+                states.remove(request);
+            } catch (VMDisconnectedException e) {
+                // Nothing left to throttle
+            }
+        }
+
+        /**
+         * Enable a request that was disabled by the throttler.
+         */
+        void restore() {
+            if (!throttled) {
+                return;
+            }
+
+            throttled = false;
+            restored = true;
+            restoredAt = System.nanoTime();
+            windowStart = restoredAt;
+            windowCount = 0;
+
+            try {
+                request.enable();
+            } catch (InvalidRequestStateException e) {
+                states.remove(request);
+            } catch (VMDisconnectedException e) {
+                // Nothing left to enable
+            }
+        }
+
+        /**
+         * Get a snapshot of the request's statistics.
+         *
+         * @return The statistics
+         */
+        ThrottleStatistics statistics() {
+            return new ThrottleStatistics(request, policy.action(), throttled,
+                    throttleCount, eventsSeen, eventsDropped,
+                    lastEventsPerSecond);
+        }
+    }
+}
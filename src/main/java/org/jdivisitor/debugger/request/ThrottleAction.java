@@ -0,0 +1,44 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+/**
+ * What a {@link RequestThrottler} does to an event request whose event rate
+ * exceeds its budget.
+ *
+ * @author Adrian Herrera
+ */
+public enum ThrottleAction {
+
+    /**
+     * Disable the request for a cool-down period, then enable it again. The
+     * cool-down period doubles every time the request is throttled again
+     * straight after being enabled.
+     */
+    DISABLE,
+
+    /**
+     * Keep the request enabled but only pass one in every
+     * {@code sampleInterval} events on to the visitor, until the event rate
+     * falls back within its budget. The target virtual machine still reports
+     * every event.
+     */
+    SAMPLE
+}
@@ -0,0 +1,148 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Configures a {@link RequestThrottler}.
+ *
+ * @author Adrian Herrera
+ */
+public final class ThrottlePolicy {
+
+    /**
+     * Default length of the window over which event rates are measured.
+     */
+    public static final long DEFAULT_WINDOW_MILLIS = 100;
+
+    /**
+     * Default cool-down period for disabled requests.
+     */
+    public static final long DEFAULT_COOLDOWN_MILLIS = 1000;
+
+    /**
+     * Default number of events represented by each sampled event.
+     */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 100;
+
+    /**
+     * Budget of events per second for each request.
+     */
+    private final double maxEventsPerSecond;
+
+    private final ThrottleAction action;
+
+    private final long windowMillis;
+
+    private final long cooldownMillis;
+
+    private final int sampleInterval;
+
+    /**
+     * Constructor. <br>
+     * <br>
+     * Use the default window, cool-down period and sample interval.
+     *
+     * @param maxEventsPerSecond Budget of events per second for each request
+     *        (must be positive)
+     * @param action What to do to a request that exceeds its budget (cannot be
+     *        {@code null})
+     */
+    public ThrottlePolicy(double maxEventsPerSecond, ThrottleAction action) {
+        this(maxEventsPerSecond, action, DEFAULT_WINDOW_MILLIS,
+                DEFAULT_COOLDOWN_MILLIS, DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxEventsPerSecond Budget of events per second for each request
+     *        (must be positive)
+     * @param action What to do to a request that exceeds its budget (cannot be
+     *        {@code null})
+     * @param windowMillis Length of the window over which event rates are
+     *        measured (must be positive)
+     * @param cooldownMillis Initial cool-down period for disabled requests
+     *        (must be positive)
+     * @param sampleInterval Number of events represented by each sampled event
+     *        (must be greater than one)
+     */
+    public ThrottlePolicy(double maxEventsPerSecond, ThrottleAction action,
+            long windowMillis, long cooldownMillis, int sampleInterval) {
+        Validate.isTrue(maxEventsPerSecond > 0,
+                "Event budget must be positive");
+        Validate.isTrue(windowMillis > 0, "Window must be positive");
+        Validate.isTrue(cooldownMillis > 0, "Cool-down must be positive");
+        Validate.isTrue(sampleInterval > 1,
+                "Sample interval must be greater than one");
+
+        this.maxEventsPerSecond = maxEventsPerSecond;
+        this.action = Validate.notNull(action);
+        this.windowMillis = windowMillis;
+        this.cooldownMillis = cooldownMillis;
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+     * Get the budget of events per second for each request.
+     *
+     * @return The event budget
+     */
+    public double maxEventsPerSecond() {
+        return maxEventsPerSecond;
+    }
+
+    /**
+     * Get what to do to a request that exceeds its budget.
+     *
+     * @return The throttle action
+     */
+    public ThrottleAction action() {
+        return action;
+    }
+
+    /**
+     * Get the length of the window over which event rates are measured.
+     *
+     * @return The window length in milliseconds
+     */
+    public long windowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Get the initial cool-down period for disabled requests.
+     *
+     * @return The cool-down period in milliseconds
+     */
+    public long cooldownMillis() {
+        return cooldownMillis;
+    }
+
+    /**
+     * Get the number of events represented by each sampled event.
+     *
+     * @return The sample interval
+     */
+    public int sampleInterval() {
+        return sampleInterval;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import com.sun.jdi.request.EventRequest;
+
+/**
+ * A snapshot of what a {@link RequestThrottler} has done to one event
+ * request.
+ *
+ * @author Adrian Herrera
+ */
+public final class ThrottleStatistics {
+
+    private final EventRequest request;
+
+    private final ThrottleAction action;
+
+    private final boolean throttled;
+
+    private final long throttleCount;
+
+    private final long eventsSeen;
+
+    private final long eventsDropped;
+
+    private final double lastEventsPerSecond;
+
+    /**
+     * Constructor.
+     *
+     * @param request The event request
+     * @param action The action taken when the request is throttled
+     * @param throttled Whether the request is currently throttled
+     * @param throttleCount Number of times the request has been throttled
+     * @param eventsSeen Number of events of the request seen by the throttler
+     * @param eventsDropped Number of events dropped by sampling
+     * @param lastEventsPerSecond Event rate over the last complete window
+     */
+    ThrottleStatistics(EventRequest request, ThrottleAction action,
+            boolean throttled, long throttleCount, long eventsSeen,
+            long eventsDropped, double lastEventsPerSecond) {
+        this.request = request;
+        this.action = action;
+        this.throttled = throttled;
+        this.throttleCount = throttleCount;
+        this.eventsSeen = eventsSeen;
+        this.eventsDropped = eventsDropped;
+        this.lastEventsPerSecond = lastEventsPerSecond;
+    }
+
+    /**
+     * Get the event request.
+     *
+     * @return The event request
+     */
+    public EventRequest request() {
+        return request;
+    }
+
+    /**
+     * Get the action taken when the request is throttled.
+     *
+     * @return The throttle action
+     */
+    public ThrottleAction action() {
+        return action;
+    }
+
+    /**
+     * Check if the request is currently throttled.
+     *
+     * @return {@code true} if the request is throttled
+     */
+    public boolean isThrottled() {
+        return throttled;
+    }
+
+    /**
+     * Get the number of times the request has been throttled.
+     *
+     * @return The throttle count
+     */
+    public long throttleCount() {
+        return throttleCount;
+    }
+
+    /**
+     * Get the number of events of the request seen by the throttler.
+     *
+     * @return The number of events seen
+     */
+    public long eventsSeen() {
+        return eventsSeen;
+    }
+
+    /**
+     * Get the number of events that were dropped by sampling, and never
+     * reached the event visitor.
+     *
+     * @return The number of events dropped
+     */
+    public long eventsDropped() {
+        return eventsDropped;
+    }
+
+    /**
+     * Get the event rate over the last complete measurement window.
+     *
+     * @return The event rate in events per second
+     */
+    public double lastEventsPerSecond() {
+        return lastEventsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s: %s, throttled %d times (%s), %d events seen, %d dropped, "
+                        + "%.1f events/s", request, action, throttleCount,
+                throttled ? "active" : "inactive", eventsSeen, eventsDropped,
+                lastEventsPerSecond);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.stack;
+
+/**
+ * A compact, immutable record of a stack frame's location. Frame records are
+ * interned by the {@link StackCapture} that creates them, and their hash
+ * codes are computed once, so stacks made of them can be hashed and compared
+ * cheaply.
+ *
+ * @author Adrian Herrera
+ */
+public final class FrameRecord {
+
+    private final String className;
+    private final String methodName;
+    private final String methodSignature;
+    private final int lineNumber;
+    private final long codeIndex;
+    private final int hash;
+
+    /**
+     * Create a new frame record.
+     *
+     * @param className Name of the method's declaring type
+     * @param methodName Method name
+     * @param methodSignature JNI-style method signature
+     * @param lineNumber Line number, or -1 if it is not known
+     * @param codeIndex Code index, or -1 for native methods
+     */
+    FrameRecord(String className, String methodName, String methodSignature,
+            int lineNumber, long codeIndex) {
+        this.className = className;
+        this.methodName = methodName;
+        this.methodSignature = methodSignature;
+        this.lineNumber = lineNumber;
+        this.codeIndex = codeIndex;
+
+        int h = className.hashCode();
+        h = 31 * h + methodName.hashCode();
+        h = 31 * h + methodSignature.hashCode();
+        h = 31 * h + (int) (codeIndex ^ (codeIndex >>> 32));
+        this.hash = h;
+    }
+
+    /**
+     * Get the name of the method's declaring type.
+     *
+     * @return The class name
+     */
+    public String className() {
+        return className;
+    }
+
+    /**
+     * Get the method name.
+     *
+     * @return The method name
+     */
+    public String methodName() {
+        return methodName;
+    }
+
+    /**
+     * Get the JNI-style method signature.
+     *
+     * @return The method signature
+     */
+    public String methodSignature() {
+        return methodSignature;
+    }
+
+    /**
+     * Get the line number.
+     *
+     * @return The line number, or -1 if it is not known
+     */
+    public int lineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Get the code index.
+     *
+     * @return The code index, or -1 for native methods
+     */
+    public long codeIndex() {
+        return codeIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof FrameRecord)) {
+            return false;
+        }
+
+        FrameRecord other = (FrameRecord) obj;
+        return hash == other.hash && codeIndex == other.codeIndex
+                && methodName.equals(other.methodName)
+                && methodSignature.equals(other.methodSignature)
+                && className.equals(other.className);
+    }
+
+    @Override
+    public String toString() {
+        return className + "." + methodName + "(" + lineNumber + ")";
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.stack;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.cache.LocationInfo;
+import org.jdivisitor.debugger.cache.MirrorCache;
+import org.jdivisitor.debugger.event.ResumeListener;
+import org.jdivisitor.debugger.event.transform.EventType;
+import com.sun.jdi.IncompatibleThreadStateException;
+import com.sun.jdi.Location;
+import com.sun.jdi.StackFrame;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.EventIterator;
+import com.sun.jdi.event.EventSet;
+import com.sun.jdi.request.EventRequest;
+
+/**
+ * Captures the stacks of suspended threads as {@link StackTrace}s of interned
+ * {@link FrameRecord}s, down to a maximum depth.
+ *
+ * <p>
+ * Frames are fetched in ranges with {@code frames(start, length)}, a chunk at
+ * a time, so a shallow capture never materializes the rest of a deep stack
+ * and a deeper capture of the same thread only fetches the missing frames.
+ * The frames captured for a thread are cached until the event set that
+ * suspended it is resumed; the service is a {@link ResumeListener} for that
+ * purpose. Threads resumed by other means (e.g. by a visitor calling
+ * {@code ThreadReference.resume()}) must be invalidated explicitly.
+ * </p>
+ *
+ * <p>
+ * Type and method names and line numbers are looked up through a
+ * {@link MirrorCache}. The service is thread-safe.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public class StackCapture implements ResumeListener {
+
+    /**
+     * Default maximum number of frames captured per thread.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 64;
+
+    /**
+     * Default number of frames fetched per round trip.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16;
+
+    /**
+     * Number of interned frame records above which the interned records are
+     * discarded.
+     */
+    private static final int INTERN_CAPACITY = 65536;
+
+    private final MirrorCache mirrorCache;
+    private final int maxDepth;
+    private final int chunkSize;
+
+    /**
+     * Captured frames of the suspended threads, indexed by unique ID.
+     */
+    private final ConcurrentMap<Long, Stack> stacks =
+            new ConcurrentHashMap<Long, Stack>();
+
+    /**
+     * Interned frame records, indexed by location.
+     */
+    private final ConcurrentMap<Location, FrameRecord> records =
+            new ConcurrentHashMap<Location, FrameRecord>();
+
+    /**
+     * Create a new stack capture service with the default maximum depth and
+     * chunk size.
+     *
+     * @param mirrorCache Mirror metadata cache
+     */
+    public StackCapture(MirrorCache mirrorCache) {
+        this(mirrorCache, DEFAULT_MAX_DEPTH, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a new stack capture service.
+     *
+     * @param mirrorCache Mirror metadata cache
+     * @param maxDepth Maximum number of frames captured per thread (must be
+     *        positive)
+     * @param chunkSize Number of frames fetched per round trip (must be
+     *        positive)
+     */
+    public StackCapture(MirrorCache mirrorCache, int maxDepth, int chunkSize) {
+        Validate.isTrue(maxDepth > 0, "Maximum depth must be positive");
+        Validate.isTrue(chunkSize > 0, "Chunk size must be positive");
+
+        this.mirrorCache = Validate.notNull(mirrorCache);
+        this.maxDepth = maxDepth;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Get the maximum number of frames captured per thread.
+     *
+     * @return The maximum depth
+     */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Capture the stack of a suspended thread, down to the maximum depth.
+     *
+     * @param thread Suspended thread (cannot be {@code null})
+     * @return The thread's stack
+     * @throws IncompatibleThreadStateException The thread is not suspended
+     */
+    public StackTrace capture(ThreadReference thread)
+            throws IncompatibleThreadStateException {
+        return capture(thread, maxDepth);
+    }
+
+    /**
+     * Capture the innermost frames of a suspended thread.
+     *
+     * @param thread Suspended thread (cannot be {@code null})
+     * @param depth Number of frames to capture (must be positive). Capped at
+     *        the maximum depth
+     * @return The thread's stack
+     * @throws IncompatibleThreadStateException The thread is not suspended
+     */
+    public StackTrace capture(ThreadReference thread, int depth)
+            throws IncompatibleThreadStateException {
+        Validate.notNull(thread);
+        Validate.isTrue(depth > 0, "Depth must be positive");
+
+        long id = thread.uniqueID();
+        Stack stack = stacks.get(id);
+        if (stack == null) {
+            stack = new Stack(thread.frameCount());
+
+            Stack existing = stacks.putIfAbsent(id, stack);
+            if (existing != null) {
+                stack = existing;
+            }
+        }
+
+        return stack.trace(thread, Math.min(depth, maxDepth));
+    }
+
+    /**
+     * Drop the captured frames of a thread.
+     *
+     * @param thread Thread
+     */
+    public void invalidate(ThreadReference thread) {
+        stacks.remove(thread.uniqueID());
+    }
+
+    /**
+     * Drop the captured frames of every thread.
+     */
+    public void clear() {
+        stacks.clear();
+    }
+
+    /**
+     * Drop the captured frames of the threads that an event set is about to
+     * resume.
+     *
+     * @param eventSet The event set about to be resumed
+     */
+    @Override
+    public void resuming(EventSet eventSet) {
+        switch (eventSet.suspendPolicy()) {
+        case EventRequest.SUSPEND_ALL:
+            clear();
+            break;
+        case EventRequest.SUSPEND_EVENT_THREAD:
+            EventIterator eventIterator = eventSet.eventIterator();
+            while (eventIterator.hasNext()) {
+                Event event = eventIterator.nextEvent();
+                ThreadReference thread = EventType.of(event).thread(event);
+
+                if (thread != null) {
+                    invalidate(thread);
+                }
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Get the interned frame record for a location.
+     *
+     * @param location Frame location
+     * @return The frame record
+     */
+    private FrameRecord record(Location location) {
+        FrameRecord record = records.get(location);
+
+        if (record == null) {
+            LocationInfo info = mirrorCache.location(location);
+            record = new FrameRecord(info.method().declaringType().name(),
+                    info.method().name(), info.method().signature(),
+                    info.lineNumber(), info.codeIndex());
+
+            if (records.size() >= INTERN_CAPACITY) {
+                records.clear();
+            }
+            FrameRecord existing = records.putIfAbsent(location, record);
+            if (existing != null) {
+                record = existing;
+            }
+        }
+
+        return record;
+    }
+
+    /**
+     * The frames captured so far for a suspended thread.
+     */
+    private class Stack {
+
+        private final int frameCount;
+        private final FrameRecord[] frames;
+        private int size;
+        private StackTrace trace;
+
+        Stack(int frameCount) {
+            this.frameCount = frameCount;
+            this.frames = new FrameRecord[Math.min(frameCount, maxDepth)];
+        }
+
+        /**
+         * Get the innermost frames, fetching any that are missing.
+         *
+         * @param thread The suspended thread
+         * @param depth Number of frames
+         * @return The thread's stack
+         * @throws IncompatibleThreadStateException The thread is not
+         *         suspended
+         */
+        synchronized StackTrace trace(ThreadReference thread, int depth)
+                throws IncompatibleThreadStateException {
+            int wanted = Math.min(depth, frames.length);
+
+            if (size < wanted) {
+                int end = Math.min((wanted + chunkSize - 1) / chunkSize
+                        * chunkSize, frames.length);
+                List<StackFrame> fetched = thread.frames(size, end - size);
+
+                for (StackFrame frame : fetched) {
+                    frames[size++] = record(frame.location());
+                }
+            }
+
+            if (trace == null || trace.depth() != wanted) {
+                trace = new StackTrace(Arrays.copyOf(frames, wanted),
+                        frameCount);
+            }
+
+            return trace;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.stack;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable, possibly truncated, stack of {@link FrameRecord}s, innermost
+ * frame first. The hash code is computed once, and since frame records are
+ * interned, comparing two stacks mostly compares references.
+ *
+ * @author Adrian Herrera
+ */
+public final class StackTrace {
+
+    private final FrameRecord[] frames;
+    private final int frameCount;
+    private final int hash;
+
+    /**
+     * Create a new stack trace.
+     *
+     * @param frames Captured frames, innermost first
+     * @param frameCount Total number of frames on the thread's stack
+     */
+    StackTrace(FrameRecord[] frames, int frameCount) {
+        this.frames = frames;
+        this.frameCount = frameCount;
+        this.hash = Arrays.hashCode(frames);
+    }
+
+    /**
+     * Get the captured frames.
+     *
+     * @return The captured frames, innermost first
+     */
+    public List<FrameRecord> frames() {
+        return Collections.unmodifiableList(Arrays.asList(frames));
+    }
+
+    /**
+     * Get a captured frame.
+     *
+     * @param index Frame index (0 is the innermost frame)
+     * @return The frame record
+     */
+    public FrameRecord frame(int index) {
+        return frames[index];
+    }
+
+    /**
+     * Get the number of captured frames.
+     *
+     * @return The number of captured frames
+     */
+    public int depth() {
+        return frames.length;
+    }
+
+    /**
+     * Get the total number of frames on the thread's stack when it was
+     * captured.
+     *
+     * @return The total number of frames
+     */
+    public int frameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Determine whether frames were left out of this stack trace.
+     *
+     * @return {@code true} if the thread had more frames than were captured
+     */
+    public boolean isTruncated() {
+        return frames.length < frameCount;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof StackTrace)) {
+            return false;
+        }
+
+        StackTrace other = (StackTrace) obj;
+        return hash == other.hash && frameCount == other.frameCount
+                && Arrays.equals(frames, other.frames);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        for (FrameRecord frame : frames) {
+            sb.append("\tat ").append(frame).append('\n');
+        }
+        if (isTruncated()) {
+            sb.append("\t... ").append(frameCount - frames.length)
+                    .append(" more\n");
+        }
+
+        return sb.toString();
+    }
+}
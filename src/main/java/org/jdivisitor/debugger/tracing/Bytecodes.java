@@ -0,0 +1,245 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the return instructions and branch targets in a method's bytecode.
+ *
+ * @author Adrian Herrera
+ */
+final class Bytecodes {
+
+    private static final int IINC = 0x84;
+
+    private static final int TABLESWITCH = 0xaa;
+
+    private static final int LOOKUPSWITCH = 0xab;
+
+    private static final int IFEQ = 0x99;
+
+    private static final int JSR = 0xa8;
+
+    private static final int IRETURN = 0xac;
+
+    private static final int RETURN = 0xb1;
+
+    private static final int WIDE = 0xc4;
+
+    private static final int IFNULL = 0xc6;
+
+    private static final int IFNONNULL = 0xc7;
+
+    private static final int GOTO_W = 0xc8;
+
+    private static final int JSR_W = 0xc9;
+
+    /**
+     * Length (including the opcode) of each fixed-length instruction, indexed
+     * by opcode. Variable-length and undefined opcodes have length zero.
+     */
+    private static final byte[] LENGTHS = new byte[256];
+
+    // Initialise the instruction lengths
+    static {
+        setLength(1, 0x00, 0x0f); // nop .. dconst_1
+        setLength(2, 0x10, 0x10); // bipush
+        setLength(3, 0x11, 0x11); // sipush
+        setLength(2, 0x12, 0x12); // ldc
+        setLength(3, 0x13, 0x14); // ldc_w, ldc2_w
+        setLength(2, 0x15, 0x19); // iload .. aload
+        setLength(1, 0x1a, 0x35); // iload_0 .. saload
+        setLength(2, 0x36, 0x3a); // istore .. astore
+        setLength(1, 0x3b, 0x83); // istore_0 .. lxor
+        setLength(3, 0x84, 0x84); // iinc
+        setLength(1, 0x85, 0x98); // i2l .. dcmpg
+        setLength(3, 0x99, 0xa8); // ifeq .. jsr
+        setLength(2, 0xa9, 0xa9); // ret
+        setLength(1, 0xac, 0xb1); // ireturn .. return
+        setLength(3, 0xb2, 0xb8); // getstatic .. invokestatic
+        setLength(5, 0xb9, 0xba); // invokeinterface, invokedynamic
+        setLength(3, 0xbb, 0xbb); // new
+        setLength(2, 0xbc, 0xbc); // newarray
+        setLength(3, 0xbd, 0xbd); // anewarray
+        setLength(1, 0xbe, 0xbf); // arraylength, athrow
+        setLength(3, 0xc0, 0xc1); // checkcast, instanceof
+        setLength(1, 0xc2, 0xc3); // monitorenter, monitorexit
+        setLength(4, 0xc5, 0xc5); // multianewarray
+        setLength(3, 0xc6, 0xc7); // ifnull, ifnonnull
+        setLength(5, 0xc8, 0xc9); // goto_w, jsr_w
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Bytecodes() {
+    }
+
+    private static void setLength(int length, int firstOpcode, int lastOpcode) {
+        for (int opcode = firstOpcode; opcode <= lastOpcode; opcode++) {
+            LENGTHS[opcode] = (byte) length;
+        }
+    }
+
+    /**
+     * Find the code indices of the return instructions ({@code ireturn} to
+     * {@code return}) in a method's bytecode.
+     *
+     * @param code Method bytecode
+     * @return Code indices of the return instructions
+     * @throws IllegalArgumentException The bytecode is malformed
+     */
+    static List<Long> returnIndices(byte[] code) {
+        List<Long> indices = new ArrayList<Long>();
+        int pc = 0;
+
+        while (pc < code.length) {
+            int opcode = code[pc] & 0xff;
+
+            if (opcode >= IRETURN && opcode <= RETURN) {
+                indices.add(Long.valueOf(pc));
+            }
+            pc += length(code, pc, opcode);
+        }
+
+        return indices;
+    }
+
+    /**
+     * Check whether any branch or switch instruction in a method's bytecode
+     * jumps to a code index. Exception handlers are not considered.
+     *
+     * @param code Method bytecode
+     * @param target Code index
+     * @return {@code true} if the code index is a branch target
+     * @throws IllegalArgumentException The bytecode is malformed
+     */
+    static boolean isBranchTarget(byte[] code, int target) {
+        int pc = 0;
+
+        while (pc < code.length) {
+            int opcode = code[pc] & 0xff;
+
+            if ((opcode >= IFEQ && opcode <= JSR) || opcode == IFNULL
+                    || opcode == IFNONNULL) {
+                if (pc + (short) readShort(code, pc + 1) == target) {
+                    return true;
+                }
+            } else if (opcode == GOTO_W || opcode == JSR_W) {
+                if (pc + readInt(code, pc + 1) == target) {
+                    return true;
+                }
+            } else if (opcode == TABLESWITCH || opcode == LOOKUPSWITCH) {
+                if (switchesTo(code, pc, opcode, target)) {
+                    return true;
+                }
+            }
+            pc += length(code, pc, opcode);
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether a switch instruction jumps to a code index.
+     *
+     * @param code Method bytecode
+     * @param pc Code index of the instruction
+     * @param opcode {@code tableswitch} or {@code lookupswitch}
+     * @param target Code index
+     * @return {@code true} if the default or any case jumps to the target
+     */
+    private static boolean switchesTo(byte[] code, int pc, int opcode,
+            int target) {
+        int operands = (pc + 4) & ~3;
+        if (pc + readInt(code, operands) == target) {
+            return true;
+        }
+
+        int first;
+        int count;
+        int stride;
+        if (opcode == TABLESWITCH) {
+            first = operands + 12;
+            count = readInt(code, operands + 8) - readInt(code, operands + 4)
+                    + 1;
+            stride = 4;
+        } else {
+            first = operands + 12;
+            count = readInt(code, operands + 4);
+            stride = 8;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (pc + readInt(code, first + i * stride) == target) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the length of the instruction at a code index.
+     *
+     * @param code Method bytecode
+     * @param pc Code index of the instruction
+     * @param opcode The instruction's opcode
+     * @return The instruction's length
+     */
+    private static int length(byte[] code, int pc, int opcode) {
+        switch (opcode) {
+        case TABLESWITCH: {
+            int operands = (pc + 4) & ~3;
+            int low = readInt(code, operands + 4);
+            int high = readInt(code, operands + 8);
+
+            return operands + 12 + (high - low + 1) * 4 - pc;
+        }
+        case LOOKUPSWITCH: {
+            int operands = (pc + 4) & ~3;
+            int pairs = readInt(code, operands + 4);
+
+            return operands + 8 + pairs * 8 - pc;
+        }
+        case WIDE:
+            return (code[pc + 1] & 0xff) == IINC ? 6 : 4;
+        default:
+            int length = LENGTHS[opcode];
+            if (length == 0) {
+                String exceptionMsg = String.format(
+                        "Unknown opcode 0x%02x at index %d", opcode, pc);
+                throw new IllegalArgumentException(exceptionMsg);
+            }
+            return length;
+        }
+    }
+
+    private static int readShort(byte[] code, int index) {
+        return (code[index] & 0xff) << 8 | (code[index + 1] & 0xff);
+    }
+
+    private static int readInt(byte[] code, int index) {
+        return (code[index] & 0xff) << 24 | (code[index + 1] & 0xff) << 16
+                | (code[index + 2] & 0xff) << 8 | (code[index + 3] & 0xff);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.tracing;
+
+import com.sun.jdi.Method;
+import com.sun.jdi.event.BreakpointEvent;
+
+/**
+ * Interface for classes that handle the method entries and exits reported by
+ * a {@link MethodTracer}.
+ *
+ * <p>
+ * The callbacks are made on the event thread while the breakpoint's event set
+ * is suspended, so the thread's stack frames can be inspected.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public interface MethodTraceVisitor {
+
+    /**
+     * A traced method has been entered.
+     *
+     * @param method The method
+     * @param event The breakpoint event at the method's first location
+     */
+    void methodEntered(Method method, BreakpointEvent event);
+
+    /**
+     * A traced method is about to return normally.
+     *
+     * @param method The method
+     * @param event The breakpoint event at the return instruction
+     */
+    void methodExited(Method method, BreakpointEvent event);
+}
@@ -0,0 +1,619 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.tracing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.lang3.Validate;
+
+import org.jdivisitor.debugger.event.EventInterceptor;
+import org.jdivisitor.debugger.request.DeferredRequest;
+import org.jdivisitor.debugger.request.DeferredRequestRegistry;
+import org.jdivisitor.debugger.request.EventRequestor;
+import com.sun.jdi.IncompatibleThreadStateException;
+import com.sun.jdi.Location;
+import com.sun.jdi.Method;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.StackFrame;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.VMDisconnectedException;
+import com.sun.jdi.event.BreakpointEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.ExceptionEvent;
+import com.sun.jdi.event.ThreadDeathEvent;
+import com.sun.jdi.request.BreakpointRequest;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+import com.sun.jdi.request.ExceptionRequest;
+import com.sun.jdi.request.InvalidRequestStateException;
+import com.sun.jdi.request.ThreadDeathRequest;
+
+/**
+ * Traces method entries and exits with breakpoints instead of
+ * {@code MethodEntryRequest}s and {@code MethodExitRequest}s.
+ *
+ * <p>
+ * Method entry and exit requests make the target virtual machine check every
+ * method call in every thread, which keeps it out of compiled code. A method
+ * tracer takes the same class selection a {@code MethodEntryRequest} would
+ * ({@link #addClassFilter(String)}, {@link #addClassExclusionFilter(String)}
+ * and {@link #addThreadFilter(ThreadReference)}), optionally narrowed to
+ * methods with given names, and sets breakpoints only in the selected
+ * methods: one at each method's first location and one at each of its
+ * return instructions. The breakpoint events are turned into
+ * {@link MethodTraceVisitor} callbacks and are not passed on to the event
+ * visitor.
+ * </p>
+ *
+ * <p>
+ * Breakpoints are installed with a {@link DeferredRequestRegistry}, so
+ * classes loaded after the tracer's events were requested are traced too.
+ * Exits are only reported for normal returns, and only if the target virtual
+ * machine can provide bytecode that the tracer can parse; other methods are
+ * traced on entry only. In one-shot mode each breakpoint is deleted
+ * after its first hit, which is enough for coverage and costs nothing once
+ * a method has been seen.
+ * </p>
+ *
+ * <p>
+ * A method whose first instruction is also a branch target (e.g. one that
+ * starts with a {@code while (true)} loop) hits its entry breakpoint on every
+ * iteration. For such methods the tracer records the frame depth and calling
+ * location of each entry, and ignores hits from the same activation. An
+ * activation ends when the method returns, when an exception leaves it or
+ * when its thread dies, so once a loop-head method is traced, the tracer also
+ * requests exception and thread death events in the traced threads. This
+ * needs the thread to be suspended, so with {@code SUSPEND_NONE} every
+ * iteration is still reported as an entry.
+ * </p>
+ *
+ * <p>
+ * A method tracer is added as an interceptor automatically when it is passed
+ * to {@code Debugger.requestEvents}.
+ * </p>
+ *
+ * @author Adrian Herrera
+ */
+public class MethodTracer implements EventRequestor, EventInterceptor {
+
+    /**
+     * Breakpoint at a method's first location.
+     */
+    private static final int ENTRY = 1;
+
+    /**
+     * Breakpoint at a return instruction.
+     */
+    private static final int EXIT = 2;
+
+    /**
+     * Breakpoint in a method whose first location is a branch target.
+     */
+    private static final int LOOP_HEAD = 4;
+
+    /**
+     * Exception or thread death request that ends loop-head activations.
+     */
+    private static final int UNWIND = 8;
+
+    /**
+     * Key of the entry/exit property of the tracer's breakpoints.
+     */
+    private final Object traceKey = new Object();
+
+    private final MethodTraceVisitor visitor;
+
+    /**
+     * Suspend policy of the breakpoints.
+     */
+    private final int suspendPolicy;
+
+    /**
+     * Delete each breakpoint after its first hit.
+     */
+    private final boolean oneShot;
+
+    private final DeferredRequestRegistry registry =
+            new DeferredRequestRegistry();
+
+    private final List<String> classExclusions =
+            new CopyOnWriteArrayList<String>();
+
+    private final Set<String> methodNames = Collections
+            .synchronizedSet(new HashSet<String>());
+
+    private final List<ThreadReference> threads =
+            new CopyOnWriteArrayList<ThreadReference>();
+
+    /**
+     * Active entries into loop-head methods, by thread ID.
+     */
+    private final Map<Long, Deque<Activation>> activations =
+            new ConcurrentHashMap<Long, Deque<Activation>>();
+
+    /**
+     * The requests that end loop-head activations have been created.
+     */
+    private boolean unwinding;
+
+    /**
+     * Event request manager, once the tracer's events have been requested.
+     */
+    private volatile EventRequestManager erm;
+
+    /**
+     * Constructor. <br>
+     * <br>
+     * Breakpoints suspend the event thread and stay installed.
+     *
+     * @param visitor Handles method entries and exits (cannot be {@code null})
+     */
+    public MethodTracer(MethodTraceVisitor visitor) {
+        this(visitor, EventRequest.SUSPEND_EVENT_THREAD, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param visitor Handles method entries and exits (cannot be {@code null})
+     * @param suspendPolicy Suspend policy of the breakpoints (one of the
+     *        {@code EventRequest.SUSPEND_*} constants)
+     * @param oneShot Delete each breakpoint after its first hit
+     */
+    public MethodTracer(MethodTraceVisitor visitor, int suspendPolicy,
+            boolean oneShot) {
+        this.visitor = Validate.notNull(visitor);
+        this.suspendPolicy = suspendPolicy;
+        this.oneShot = oneShot;
+    }
+
+    /**
+     * Trace the methods of classes matching a class name or pattern. At least
+     * one class filter must be added.
+     *
+     * @param classPattern Class name or pattern (cannot be {@code null})
+     * @see com.sun.jdi.request.MethodEntryRequest#addClassFilter(String)
+     */
+    public void addClassFilter(String classPattern) {
+        registry.add(new TracePoints(classPattern));
+    }
+
+    /**
+     * Do not trace the methods of classes matching a class name or pattern.
+     * Exclusions must be added before the tracer's events are requested.
+     *
+     * @param classPattern Class name or pattern (cannot be {@code null})
+     * @see com.sun.jdi.request.MethodEntryRequest#addClassExclusionFilter(String)
+     */
+    public void addClassExclusionFilter(String classPattern) {
+        classExclusions.add(Validate.notNull(classPattern));
+    }
+
+    /**
+     * Only trace methods with the given name. If no method filter is added,
+     * all methods (except static initialisers) of the selected classes are
+     * traced. Method filters must be added before the tracer's events are
+     * requested.
+     *
+     * @param methodName Method name (cannot be {@code null})
+     */
+    public void addMethodFilter(String methodName) {
+        methodNames.add(Validate.notNull(methodName));
+    }
+
+    /**
+     * Only trace methods called in the given thread. Thread filters must be
+     * added before the tracer's events are requested.
+     *
+     * @param thread Thread (cannot be {@code null})
+     * @see com.sun.jdi.request.MethodEntryRequest#addThreadFilter(ThreadReference)
+     */
+    public void addThreadFilter(ThreadReference thread) {
+        threads.add(Validate.notNull(thread));
+    }
+
+    /**
+     * Get the breakpoints that have been created so far.
+     *
+     * @return The breakpoint requests
+     */
+    public List<EventRequest> breakpoints() {
+        return registry.installedRequests();
+    }
+
+    @Override
+    public void requestEvents(EventRequestManager erm) {
+        this.erm = erm;
+        registry.requestEvents(erm);
+    }
+
+    @Override
+    public boolean intercept(Event event) {
+        if (event instanceof ThreadDeathEvent) {
+            activations.remove(((ThreadDeathEvent) event).thread().uniqueID());
+        }
+
+        boolean breakpoint = event instanceof BreakpointEvent;
+        if (!breakpoint && !(event instanceof ExceptionEvent)
+                && !(event instanceof ThreadDeathEvent)) {
+            return registry.intercept(event);
+        }
+
+        EventRequest request = event.request();
+        Object kind = request != null ? request.getProperty(traceKey) : null;
+        if (kind == null) {
+            return breakpoint || registry.intercept(event);
+        } else if (!breakpoint) {
+            if (event instanceof ExceptionEvent) {
+                unwind((ExceptionEvent) event);
+            }
+            return false;
+        }
+
+        BreakpointEvent breakpointEvent = (BreakpointEvent) event;
+        Method method = breakpointEvent.location().method();
+        int mask = (Integer) kind;
+
+        if ((mask & LOOP_HEAD) != 0 && (mask & ENTRY) != 0
+                && !enter(method, breakpointEvent.thread())) {
+            // Another iteration of a loop at the method's first location
+            mask &= ~ENTRY;
+        }
+
+        if ((mask & ENTRY) != 0) {
+            visitor.methodEntered(method, breakpointEvent);
+        }
+        if ((mask & EXIT) != 0) {
+            if ((mask & LOOP_HEAD) != 0) {
+                exit(method, breakpointEvent.thread());
+            }
+            visitor.methodExited(method, breakpointEvent);
+        }
+
+        if (oneShot) {
+            delete(request);
+        }
+
+        return false;
+    }
+
+    /**
+     * Record a hit of a loop-head method's entry breakpoint.
+     *
+     * @param method Method
+     * @param thread Thread that hit the breakpoint
+     * @return {@code true} if the hit is a new entry, {@code false} if it is
+     *         another iteration of an active entry
+     */
+    private boolean enter(Method method, ThreadReference thread) {
+        Activation activation;
+        try {
+            int depth = thread.frameCount();
+            Location caller = depth > 1 ? thread.frame(1).location() : null;
+            activation = new Activation(method, depth, caller);
+        } catch (IncompatibleThreadStateException e) {
+            // The thread is not suspended
+            return true;
+        }
+
+        Deque<Activation> stack = activations.get(thread.uniqueID());
+        if (stack == null) {
+            stack = new ArrayDeque<Activation>();
+            activations.put(thread.uniqueID(), stack);
+        }
+
+        // Activations deeper than this one have ended abruptly
+        while (!stack.isEmpty() && stack.peek().depth > activation.depth) {
+            stack.pop();
+        }
+        if (!stack.isEmpty() && stack.peek().depth == activation.depth) {
+            if (stack.peek().equals(activation)) {
+                return false;
+            }
+            stack.pop();
+        }
+        stack.push(activation);
+
+        return true;
+    }
+
+    /**
+     * End the loop-head activations an exception is about to leave: those
+     * deeper than the frame that catches it, or all of them if it is not
+     * caught.
+     *
+     * @param event Exception event
+     */
+    private void unwind(ExceptionEvent event) {
+        ThreadReference thread = event.thread();
+        Deque<Activation> stack = activations.get(thread.uniqueID());
+        if (stack == null) {
+            return;
+        }
+
+        Location catchLocation = event.catchLocation();
+        int depth = 0;
+        if (catchLocation != null) {
+            try {
+                // Only frames down to the oldest activation can catch it
+                // without ending every activation
+                int frameCount = thread.frameCount();
+                int length = Math.max(0, Math.min(frameCount,
+                        frameCount - stack.peekLast().depth + 1));
+                List<StackFrame> frames = thread.frames(0, length);
+
+                for (int i = 0; i < frames.size(); i++) {
+                    if (frames.get(i).location().method()
+                            .equals(catchLocation.method())) {
+                        depth = frameCount - i;
+                        break;
+                    }
+                }
+            } catch (IncompatibleThreadStateException e) {
+                // The thread is not suspended
+                return;
+            }
+        }
+
+        while (!stack.isEmpty() && stack.peek().depth > depth) {
+            stack.pop();
+        }
+        if (stack.isEmpty()) {
+            activations.remove(thread.uniqueID());
+        }
+    }
+
+    /**
+     * Request the exception and thread death events that end loop-head
+     * activations, the first time a loop-head method is traced.
+     *
+     * @param erm Event request manager
+     */
+    private synchronized void watchActivations(EventRequestManager erm) {
+        if (unwinding || suspendPolicy == EventRequest.SUSPEND_NONE) {
+            return;
+        }
+        unwinding = true;
+
+        // Frames are read when an exception is thrown, so its thread must
+        // be suspended
+        ExceptionRequest exceptionRequest = erm.createExceptionRequest(null,
+                true, true);
+        ThreadDeathRequest threadDeathRequest = erm.createThreadDeathRequest();
+        for (ThreadReference thread : threads) {
+            exceptionRequest.addThreadFilter(thread);
+            threadDeathRequest.addThreadFilter(thread);
+        }
+
+        exceptionRequest.putProperty(traceKey, UNWIND);
+        exceptionRequest.setSuspendPolicy(suspendPolicy);
+        exceptionRequest.enable();
+
+        threadDeathRequest.putProperty(traceKey, UNWIND);
+        threadDeathRequest.setSuspendPolicy(EventRequest.SUSPEND_NONE);
+        threadDeathRequest.enable();
+    }
+
+    /**
+     * Record a normal return from a loop-head method.
+     *
+     * @param method Method
+     * @param thread Thread that hit the breakpoint
+     */
+    private void exit(Method method, ThreadReference thread) {
+        Deque<Activation> stack = activations.get(thread.uniqueID());
+        if (stack == null) {
+            return;
+        }
+
+        int depth;
+        try {
+            depth = thread.frameCount();
+        } catch (IncompatibleThreadStateException e) {
+            return;
+        }
+
+        while (!stack.isEmpty() && stack.peek().depth >= depth) {
+            stack.pop();
+        }
+        if (stack.isEmpty()) {
+            activations.remove(thread.uniqueID());
+        }
+    }
+
+    /**
+     * Delete a breakpoint after its first hit.
+     *
+     * @param request Breakpoint request
+     */
+    private void delete(EventRequest request) {
+        try {
+            erm.deleteEventRequest(request);
+        } catch (InvalidRequestStateException e) {
+            // Already deleted
+        } catch (VMDisconnectedException e) {
+            // Nothing left to delete
+        }
+    }
+
+    /**
+     * Check whether a class is excluded from tracing.
+     *
+     * @param className Class name
+     * @return {@code true} if the class is excluded
+     */
+    private boolean isExcluded(String className) {
+        for (String exclusion : classExclusions) {
+            if (DeferredRequest.matches(exclusion, className)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether a method is selected for tracing.
+     *
+     * @param method Method
+     * @return {@code true} if the method is selected
+     */
+    private boolean isSelected(Method method) {
+        if (method.isAbstract() || method.isNative()) {
+            return false;
+        } else if (methodNames.isEmpty()) {
+            return !method.isStaticInitializer();
+        } else {
+            return methodNames.contains(method.name());
+        }
+    }
+
+    /**
+     * The entry and exit breakpoints of the selected methods of the classes
+     * matching one class filter.
+     */
+    private class TracePoints extends DeferredRequest {
+
+        TracePoints(String classPattern) {
+            super(classPattern, suspendPolicy);
+        }
+
+        @Override
+        protected List<EventRequest> install(ReferenceType type,
+                EventRequestManager erm) {
+            if (isExcluded(type.name())) {
+                return Collections.emptyList();
+            }
+
+            boolean canGetBytecodes = erm.virtualMachine().canGetBytecodes();
+            List<EventRequest> requests = new ArrayList<EventRequest>();
+
+            for (Method method : type.methods()) {
+                Location entry = method.location();
+                if (!isSelected(method) || entry == null) {
+                    continue;
+                }
+
+                List<Long> exits = Collections.<Long> emptyList();
+                int loopHead = 0;
+                if (canGetBytecodes) {
+                    byte[] code = method.bytecodes();
+                    try {
+                        exits = Bytecodes.returnIndices(code);
+                        if (Bytecodes.isBranchTarget(code,
+                                (int) entry.codeIndex())) {
+                            loopHead = LOOP_HEAD;
+                            watchActivations(erm);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // Unknown instructions: trace the entries only
+                        exits = Collections.<Long> emptyList();
+                    }
+                }
+
+                if (exits.remove(Long.valueOf(entry.codeIndex()))) {
+                    requests.add(create(erm, entry, ENTRY | EXIT | loopHead));
+                } else {
+                    requests.add(create(erm, entry, ENTRY | loopHead));
+                }
+                for (Long exit : exits) {
+                    Location location = method.locationOfCodeIndex(exit);
+                    if (location != null) {
+                        requests.add(create(erm, location, EXIT | loopHead));
+                    }
+                }
+            }
+
+            return requests;
+        }
+
+        /**
+         * Create a tagged breakpoint.
+         *
+         * @param erm Event request manager
+         * @param location Breakpoint location
+         * @param kind {@code ENTRY}, {@code EXIT} or both
+         * @return The breakpoint request
+         */
+        private BreakpointRequest create(EventRequestManager erm,
+                Location location, int kind) {
+            BreakpointRequest request = erm.createBreakpointRequest(location);
+
+            request.putProperty(traceKey, kind);
+            for (ThreadReference thread : threads) {
+                request.addThreadFilter(thread);
+            }
+            configure(request);
+
+            return request;
+        }
+    }
+
+    /**
+     * An entry into a loop-head method by one thread.
+     */
+    private static class Activation {
+
+        private final Method method;
+
+        /**
+         * Number of frames on the thread's stack, including the method's.
+         */
+        private final int depth;
+
+        /**
+         * Location the method was called from, or {@code null} for the
+         * bottom frame.
+         */
+        private final Location caller;
+
+        Activation(Method method, int depth, Location caller) {
+            this.method = method;
+            this.depth = depth;
+            this.caller = caller;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Activation)) {
+                return false;
+            }
+
+            Activation other = (Activation) obj;
+            return depth == other.depth && method.equals(other.method)
+                    && Objects.equals(caller, other.caller);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(method, depth, caller);
+        }
+    }
+}
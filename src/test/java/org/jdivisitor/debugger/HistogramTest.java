@@ -0,0 +1,125 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link Histogram} and {@link HistogramSnapshot}.
+ *
+ * @author Adrian Herrera
+ */
+public class HistogramTest {
+
+    @Test
+    public void bucketsSmallValuesExactly() {
+        for (int value = 0; value < 8; value++) {
+            assertEquals(value, Histogram.bucket(value));
+            assertEquals(value, Histogram.upperBound(value));
+        }
+        assertEquals(8, Histogram.bucket(8));
+        assertEquals(8, Histogram.bucket(9));
+        assertEquals(9, Histogram.upperBound(8));
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (int bucket = 0; bucket < Histogram.BUCKETS - 1; bucket++) {
+            long upper = Histogram.upperBound(bucket);
+
+            assertEquals(bucket, Histogram.bucket(upper));
+            assertEquals(bucket + 1, Histogram.bucket(upper + 1));
+        }
+        assertEquals(Histogram.BUCKETS - 1,
+                Histogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void boundsRelativeError() {
+        for (long value = 4; value > 0 && value < Long.MAX_VALUE / 2;
+                value = value * 3 + 1) {
+            long upper = Histogram.upperBound(Histogram.bucket(value));
+
+            assertTrue(upper >= value);
+            assertTrue(upper - value <= value / 4);
+        }
+    }
+
+    @Test
+    public void reportsZeroWhenEmpty() {
+        HistogramSnapshot snapshot = new Histogram().snapshot();
+
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.percentile(50));
+        assertEquals(0, snapshot.percentile(100));
+    }
+
+    @Test
+    public void reportsPercentiles() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.count());
+        assertEquals(5050, snapshot.sum());
+        assertEquals(100, snapshot.max());
+        assertEquals(50.5, snapshot.mean(), 0);
+
+        assertEquals(1, snapshot.percentile(0));
+        assertEquals(1, snapshot.percentile(1));
+        assertEquals(Histogram.upperBound(Histogram.bucket(50)),
+                snapshot.percentile(50));
+        assertEquals(Histogram.upperBound(Histogram.bucket(90)),
+                snapshot.percentile(90));
+        assertEquals(100, snapshot.percentile(100));
+    }
+
+    @Test
+    public void clampsPercentilesToMax() {
+        Histogram histogram = new Histogram();
+        histogram.record(1000);
+        histogram.record(-5);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.percentile(50));
+        assertEquals(1000, snapshot.percentile(100));
+        assertEquals(1000, snapshot.max());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidPercentile() {
+        new Histogram().snapshot().percentile(101);
+    }
+
+    @Test
+    public void resetsCounts() {
+        Histogram histogram = new Histogram();
+        histogram.record(42);
+        histogram.reset();
+
+        assertEquals(0, histogram.snapshot().count());
+        assertEquals(0, histogram.snapshot().max());
+    }
+}
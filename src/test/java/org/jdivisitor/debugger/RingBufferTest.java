@@ -0,0 +1,129 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link RingBuffer}.
+ *
+ * @author Adrian Herrera
+ */
+public class RingBufferTest {
+
+    @Test
+    public void roundsCapacityUpToPowerOfTwo() {
+        assertEquals(2, new RingBuffer<String>(1).capacity());
+        assertEquals(8, new RingBuffer<String>(5).capacity());
+        assertEquals(8, new RingBuffer<String>(8).capacity());
+        assertEquals(1024, new RingBuffer<String>(1000).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveCapacity() {
+        new RingBuffer<String>(0);
+    }
+
+    @Test
+    public void pollsInOfferOrder() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(4);
+
+        // Wrap around the buffer several times
+        for (int i = 0; i < 10; i++) {
+            assertTrue(buffer.offer(2 * i));
+            assertTrue(buffer.offer(2 * i + 1));
+            assertEquals(2, buffer.size());
+            assertEquals(Integer.valueOf(2 * i), buffer.poll());
+            assertEquals(Integer.valueOf(2 * i + 1), buffer.poll());
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void rejectsOffersWhenFull() {
+        RingBuffer<String> buffer = new RingBuffer<String>(2);
+
+        assertTrue(buffer.offer("a"));
+        assertTrue(buffer.offer("b"));
+        assertFalse(buffer.offer("c"));
+        assertEquals(2, buffer.size());
+
+        assertEquals("a", buffer.poll());
+        assertTrue(buffer.offer("c"));
+        assertEquals("b", buffer.poll());
+        assertEquals("c", buffer.poll());
+    }
+
+    @Test
+    public void keepsElementsOfSmallestBuffer() {
+        RingBuffer<String> buffer = new RingBuffer<String>(1);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(buffer.offer("a"));
+            assertTrue(buffer.offer("b"));
+            assertFalse(buffer.offer("c"));
+            assertEquals("a", buffer.poll());
+            assertEquals("b", buffer.poll());
+            assertNull(buffer.poll());
+        }
+    }
+
+    @Test
+    public void pollsNullWhenEmpty() throws InterruptedException {
+        RingBuffer<String> buffer = new RingBuffer<String>(2);
+
+        assertNull(buffer.poll());
+        assertNull(buffer.poll(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void handsElementsBetweenThreads() throws InterruptedException {
+        final RingBuffer<Integer> buffer = new RingBuffer<Integer>(16);
+        final int count = 100000;
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        buffer.put(i);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        producer.start();
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(Integer.valueOf(i),
+                    buffer.poll(10, TimeUnit.SECONDS));
+        }
+        producer.join();
+        assertTrue(buffer.isEmpty());
+    }
+}
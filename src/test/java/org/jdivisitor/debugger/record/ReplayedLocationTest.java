@@ -0,0 +1,65 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.sun.jdi.Location;
+import com.sun.jdi.Method;
+import com.sun.jdi.ReferenceType;
+
+/**
+ * Tests for {@link ReplayedLocation}.
+ *
+ * @author Adrian Herrera
+ */
+public class ReplayedLocationTest {
+
+    private final ReferenceType type =
+            new ReplayedType(1, "com.acme.Foo", "Lcom/acme/Foo;");
+
+    private final Method method = new ReplayedMethod(type, "run", "(I)I");
+
+    @Test
+    public void ordersByMethodThenCodeIndex() {
+        Method other = new ReplayedMethod(type, "stop", "()V");
+
+        Location first = new ReplayedLocation(method, 3, 1);
+        Location second = new ReplayedLocation(method, 8, 1);
+        Location third = new ReplayedLocation(other, 0, 1);
+
+        assertTrue(first.compareTo(second) < 0);
+        assertTrue(second.compareTo(third) < 0);
+        assertTrue(third.compareTo(first) > 0);
+    }
+
+    @Test
+    public void equalsByMethodAndCodeIndex() {
+        Location location = new ReplayedLocation(method, 3, 1);
+
+        assertEquals(0, location.compareTo(new ReplayedLocation(method, 3, 2)));
+        assertEquals(location, new ReplayedLocation(method, 3, 2));
+        assertEquals(location.hashCode(),
+                new ReplayedLocation(method, 3, 2).hashCode());
+    }
+}
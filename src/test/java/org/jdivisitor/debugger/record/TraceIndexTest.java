@@ -0,0 +1,145 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import org.jdivisitor.debugger.event.visitor.EmptyEventVisitor;
+import com.sun.jdi.Location;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.event.BreakpointEvent;
+import com.sun.jdi.event.Event;
+
+/**
+ * Tests for {@link TraceIndex} queries over a recorded trace.
+ *
+ * @author Adrian Herrera
+ */
+public class TraceIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    private final List<BreakpointEvent> breakpoints =
+            new ArrayList<BreakpointEvent>();
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.newFile("session.trace");
+
+        ThreadReference main = new ReplayedThread(1, "main");
+        ThreadReference worker = new ReplayedThread(2, "worker");
+        ReferenceType foo = new ReplayedType(1, "com.acme.Foo",
+                "Lcom/acme/Foo;");
+        ReferenceType bar = new ReplayedType(2, "org.other.Bar",
+                "Lorg/other/Bar;");
+        Location inFoo = new ReplayedLocation(
+                new ReplayedMethod(foo, "run", "()V"), 4, 11);
+        Location inBar = new ReplayedLocation(
+                new ReplayedMethod(bar, "run", "()V"), 0, 20);
+
+        EventRecorder recorder = new EventRecorder(file);
+        try {
+            record(recorder, new ReplayedEvents.ThreadStart(100, main),
+                    new ReplayedEvents.Breakpoint(200, main, inFoo),
+                    new ReplayedEvents.Breakpoint(300, worker, inBar),
+                    new ReplayedEvents.MethodEntry(400, main, inBar),
+                    new ReplayedEvents.Breakpoint(500, worker, inFoo),
+                    new ReplayedEvents.ThreadDeath(600, main));
+        } finally {
+            recorder.close();
+        }
+    }
+
+    @Test
+    public void countsEvents() throws IOException {
+        assertEquals(6, new TraceIndex(file).eventCount());
+    }
+
+    @Test
+    public void queriesByType() throws IOException {
+        TraceQuery query = new TraceQuery();
+        query.addTypeFilter(EventType.BREAKPOINT);
+
+        assertEquals(3, query(query));
+        assertEquals(3, breakpoints.size());
+    }
+
+    @Test
+    public void queriesByClass() throws IOException {
+        TraceQuery query = new TraceQuery();
+        query.addTypeFilter(EventType.BREAKPOINT);
+        query.addClassFilter("com.acme.*");
+
+        assertEquals(2, query(query));
+        for (BreakpointEvent event : breakpoints) {
+            assertEquals("com.acme.Foo",
+                    event.location().declaringType().name());
+        }
+    }
+
+    @Test
+    public void queriesByThread() throws IOException {
+        TraceQuery query = new TraceQuery();
+        query.addTypeFilter(EventType.BREAKPOINT);
+        query.addThreadFilter("worker");
+
+        assertEquals(2, query(query));
+        for (BreakpointEvent event : breakpoints) {
+            assertEquals(2, event.thread().uniqueID());
+        }
+    }
+
+    private static void record(EventRecorder recorder, Event... events) {
+        for (Event event : events) {
+            EventType.of(event).dispatch(event, recorder);
+        }
+    }
+
+    /**
+     * Run a query, collecting the breakpoint events it visits.
+     *
+     * @param query Query
+     * @return The number of events visited
+     * @throws IOException The trace could not be read
+     */
+    private long query(TraceQuery query) throws IOException {
+        return new TraceIndex(file).query(query, new EmptyEventVisitor() {
+            @Override
+            public void visit(BreakpointEvent event) {
+                breakpoints.add(event);
+            }
+        });
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.record;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.jdivisitor.debugger.event.transform.EventType;
+import com.sun.jdi.DoubleValue;
+import com.sun.jdi.IntegerValue;
+import com.sun.jdi.Location;
+import com.sun.jdi.Method;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.ThreadReference;
+import com.sun.jdi.event.ClassUnloadEvent;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.event.ExceptionEvent;
+import com.sun.jdi.event.MethodExitEvent;
+import com.sun.jdi.event.ModificationWatchpointEvent;
+import com.sun.jdi.event.MonitorWaitEvent;
+import com.sun.jdi.event.ThreadStartEvent;
+
+/**
+ * Records events with an {@link EventRecorder} and reads them back from the
+ * trace. The recorded events are replayed mirrors, which stand in for the
+ * events of a target virtual machine.
+ *
+ * @author Adrian Herrera
+ */
+public class TraceRoundTripTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    private ThreadReference main;
+    private ReferenceType type;
+    private Method method;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.newFile("session.trace");
+
+        main = new ReplayedThread(1, "main");
+        type = new ReplayedType(1, "com.acme.Foo", "Lcom/acme/Foo;");
+        method = new ReplayedMethod(type, "run", "(I)I");
+    }
+
+    @Test
+    public void replaysRecordedEvents() throws IOException {
+        Location location = new ReplayedLocation(method, 12, 40);
+        Location handler = new ReplayedLocation(method, 30, 45);
+        ObjectReference exception = new ReplayedObject(type, 77);
+
+        record(new ReplayedEvents.ThreadStart(100, main),
+                new ReplayedEvents.MethodExit(200, main, location,
+                        ReplayedValues.of(-5)),
+                new ReplayedEvents.ExceptionThrown(300, main, location,
+                        exception, handler),
+                new ReplayedEvents.ModificationWatchpoint(400, main,
+                        location, new ReplayedField(type, "total", "D"),
+                        null, ReplayedValues.of(2.5)),
+                new ReplayedEvents.MonitorWait(500, main, location,
+                        exception, 1000),
+                new ReplayedEvents.ClassUnload(600, "Lcom/acme/Foo;"));
+
+        List<Event> events = read();
+        assertEquals(6, events.size());
+
+        ThreadStartEvent start = (ThreadStartEvent) events.get(0);
+        assertEquals("main", start.thread().name());
+        assertEquals(1, start.thread().uniqueID());
+
+        MethodExitEvent exit = (MethodExitEvent) events.get(1);
+        assertEquals("com.acme.Foo", exit.location().declaringType().name());
+        assertEquals("run", exit.method().name());
+        assertEquals("(I)I", exit.method().signature());
+        assertEquals(12, exit.location().codeIndex());
+        assertEquals(40, exit.location().lineNumber());
+        assertEquals(-5, ((IntegerValue) exit.returnValue()).value());
+        assertSame(start.thread(), exit.thread());
+
+        ExceptionEvent thrown = (ExceptionEvent) events.get(2);
+        assertEquals(77, thrown.exception().uniqueID());
+        assertEquals(30, thrown.catchLocation().codeIndex());
+        assertEquals(45, thrown.catchLocation().lineNumber());
+        assertEquals(thrown.location(), exit.location());
+
+        ModificationWatchpointEvent modified =
+                (ModificationWatchpointEvent) events.get(3);
+        assertEquals("total", modified.field().name());
+        assertEquals("double", modified.field().typeName());
+        assertNull(modified.object());
+        assertEquals(2.5, ((DoubleValue) modified.valueToBe()).value(), 0);
+
+        MonitorWaitEvent wait = (MonitorWaitEvent) events.get(4);
+        assertEquals(thrown.exception(), wait.monitor());
+        assertEquals(1000, wait.timeout());
+
+        ClassUnloadEvent unload = (ClassUnloadEvent) events.get(5);
+        assertEquals("com.acme.Foo", unload.className());
+
+        // Events are stamped with the recorder's clock
+        long nanos = Long.MIN_VALUE;
+        for (Event event : events) {
+            assertTrue(((ReplayedEvent) event).nanoTime() >= nanos);
+            nanos = ((ReplayedEvent) event).nanoTime();
+        }
+    }
+
+    @Test
+    public void redefinesUnloadedClasses() throws IOException {
+        Location location = new ReplayedLocation(method, 0, 10);
+
+        record(new ReplayedEvents.MethodEntry(100, main, location),
+                new ReplayedEvents.ClassUnload(200, "Lcom/acme/Foo;"),
+                new ReplayedEvents.MethodEntry(300, main, location));
+
+        List<Event> events = read();
+        Location before = ((ReplayedEvents.MethodEntry) events.get(0))
+                .location();
+        Location after = ((ReplayedEvents.MethodEntry) events.get(2))
+                .location();
+
+        assertEquals("run", after.method().name());
+        assertEquals("com.acme.Foo", after.declaringType().name());
+        assertFalse(before.method() == after.method());
+    }
+
+    @Test
+    public void crossesBlocksOnNewDefinitions() throws IOException {
+        // Each event defines a new method, so blocks fill up with
+        // definitions and some of them start a new block
+        int count = 100000;
+        Event[] events = new Event[count];
+        for (int i = 0; i < count; i++) {
+            Method entered = new ReplayedMethod(type, "m" + i, "()V");
+            events[i] = new ReplayedEvents.MethodEntry(i, main,
+                    new ReplayedLocation(entered, i % 7, i));
+        }
+
+        record(events);
+        assertTrue(new TraceIndex(file).blockCount() > 1);
+
+        List<Event> replayed = read();
+        assertEquals(count, replayed.size());
+        for (int i = 0; i < count; i++) {
+            Location location = ((ReplayedEvents.MethodEntry) replayed.get(i))
+                    .location();
+
+            assertEquals("m" + i, location.method().name());
+            assertEquals(i % 7, location.codeIndex());
+            assertEquals(i, location.lineNumber());
+        }
+    }
+
+    /**
+     * Record events to the trace file.
+     *
+     * @param events Events
+     * @throws IOException The trace could not be written
+     */
+    private void record(Event... events) throws IOException {
+        EventRecorder recorder = new EventRecorder(file, 1 << 20);
+        try {
+            for (Event event : events) {
+                EventType.of(event).dispatch(event, recorder);
+            }
+        } finally {
+            recorder.close();
+        }
+
+        assertEquals(events.length, recorder.recordedEvents());
+    }
+
+    /**
+     * Read every event of the trace file.
+     *
+     * @return The events, in the order they were recorded
+     * @throws IOException The trace could not be read
+     */
+    private List<Event> read() throws IOException {
+        List<Event> events = new ArrayList<Event>();
+
+        TraceReader reader = new TraceReader(file);
+        try {
+            Event event;
+            while ((event = reader.next()) != null) {
+                events.add(event);
+            }
+        } finally {
+            reader.close();
+        }
+
+        return events;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeferredRequest#matches(String, String)}.
+ *
+ * @author Adrian Herrera
+ */
+public class DeferredRequestTest {
+
+    @Test
+    public void matchesExactNames() {
+        assertTrue(DeferredRequest.matches("com.acme.Foo", "com.acme.Foo"));
+        assertFalse(DeferredRequest.matches("com.acme.Foo", "com.acme.Foo2"));
+        assertFalse(DeferredRequest.matches("com.acme.Foo", "com.acme.Fo"));
+    }
+
+    @Test
+    public void matchesPrefixPatterns() {
+        assertTrue(DeferredRequest.matches("com.acme.*", "com.acme.Foo"));
+        assertTrue(DeferredRequest.matches("com.acme.*", "com.acme.util.Bar"));
+        assertFalse(DeferredRequest.matches("com.acme.*", "com.acmex.Foo"));
+        assertFalse(DeferredRequest.matches("com.acme.*", "com.acm"));
+        assertTrue(DeferredRequest.matches("*", "Foo"));
+    }
+
+    @Test
+    public void matchesSuffixPatterns() {
+        assertTrue(DeferredRequest.matches("*.Foo", "com.acme.Foo"));
+        assertTrue(DeferredRequest.matches("*Foo", "Foo"));
+        assertFalse(DeferredRequest.matches("*.Foo", "com.acme.Bar"));
+        assertFalse(DeferredRequest.matches("*.Foo", "Foo"));
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.jdi.Location;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.event.MethodEntryEvent;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+import com.sun.jdi.request.InvalidRequestStateException;
+
+/**
+ * An event request manager that stands in for the one of a target virtual
+ * machine. The requests it creates keep their state and record their
+ * filters, and, as in JDI, cannot be reconfigured while they are enabled.
+ *
+ * @author Adrian Herrera
+ */
+class FakeRequestManager implements InvocationHandler {
+
+    /**
+     * Requests that have been created and not deleted, in creation order.
+     */
+    private final List<EventRequest> requests = new ArrayList<EventRequest>();
+
+    private final EventRequestManager proxy = (EventRequestManager) Proxy
+            .newProxyInstance(EventRequestManager.class.getClassLoader(),
+                    new Class<?>[] { EventRequestManager.class }, this);
+
+    /**
+     * Get the event request manager.
+     *
+     * @return The event request manager
+     */
+    EventRequestManager manager() {
+        return proxy;
+    }
+
+    /**
+     * Get the requests that have been created and not deleted.
+     *
+     * @return The requests, in creation order
+     */
+    List<EventRequest> requests() {
+        return Collections.unmodifiableList(requests);
+    }
+
+    /**
+     * Get the filters added to a request.
+     *
+     * @param request Event request
+     * @return The names and arguments of the filter methods called
+     */
+    static List<List<Object>> filters(EventRequest request) {
+        return ((FakeRequest) Proxy.getInvocationHandler(request)).filters;
+    }
+
+    /**
+     * Create a method entry event in a class.
+     *
+     * @param request Event request the event is reported for
+     * @param className Name of the class of the method entered
+     * @return The event
+     */
+    static MethodEntryEvent methodEntry(EventRequest request,
+            String className) {
+        Map<String, Object> type = new HashMap<String, Object>();
+        type.put("name", className);
+
+        Map<String, Object> location = new HashMap<String, Object>();
+        location.put("declaringType", mirror(ReferenceType.class, type));
+
+        Map<String, Object> event = new HashMap<String, Object>();
+        event.put("request", request);
+        event.put("location", mirror(Location.class, location));
+
+        return mirror(MethodEntryEvent.class, event);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        Class<?> type = method.getReturnType();
+
+        if (name.startsWith("create")) {
+            EventRequest request = (EventRequest) Proxy.newProxyInstance(
+                    type.getClassLoader(), new Class<?>[] { type },
+                    new FakeRequest());
+            requests.add(request);
+            return request;
+        } else if (name.equals("deleteEventRequest")) {
+            delete(args[0]);
+            return null;
+        } else if (name.equals("deleteEventRequests")) {
+            for (Object request : new ArrayList<Object>((List<?>) args[0])) {
+                delete(request);
+            }
+            return null;
+        } else if (name.endsWith("Requests") && type == List.class) {
+            return new ArrayList<EventRequest>(requests);
+        }
+
+        throw new UnsupportedOperationException(name);
+    }
+
+    private void delete(Object request) {
+        if (!requests.remove(request)) {
+            throw new IllegalArgumentException("Unknown request " + request);
+        }
+    }
+
+    /**
+     * Create a mirror that only answers the given methods.
+     *
+     * @param type Mirror interface
+     * @param answers Result of each method, by name
+     * @return The mirror
+     */
+    private static <T> T mirror(Class<T> type,
+            final Map<String, Object> answers) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(),
+                new Class<?>[] { type }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        String name = method.getName();
+
+                        if (name.equals("equals")) {
+                            return proxy == args[0];
+                        } else if (name.equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        } else if (answers.containsKey(name)) {
+                            return answers.get(name);
+                        }
+
+                        throw new UnsupportedOperationException(name);
+                    }
+                }));
+    }
+
+    /**
+     * State of a created request.
+     */
+    private static class FakeRequest implements InvocationHandler {
+
+        private final List<List<Object>> filters =
+                new ArrayList<List<Object>>();
+
+        private final Map<Object, Object> properties =
+                new HashMap<Object, Object>();
+
+        private boolean enabled;
+
+        private int suspendPolicy = EventRequest.SUSPEND_ALL;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("toString")) {
+                return "FakeRequest" + filters;
+            } else if (name.equals("isEnabled")) {
+                return enabled;
+            } else if (name.equals("enable")) {
+                enabled = true;
+            } else if (name.equals("disable")) {
+                enabled = false;
+            } else if (name.equals("setEnabled")) {
+                enabled = (Boolean) args[0];
+            } else if (name.equals("suspendPolicy")) {
+                return suspendPolicy;
+            } else if (name.equals("getProperty")) {
+                return properties.get(args[0]);
+            } else if (name.equals("putProperty")) {
+                if (args[1] == null) {
+                    properties.remove(args[0]);
+                } else {
+                    properties.put(args[0], args[1]);
+                }
+            } else if (name.equals("setSuspendPolicy")
+                    || name.startsWith("add")) {
+                if (enabled) {
+                    throw new InvalidRequestStateException(
+                            "Request is enabled");
+                }
+
+                if (name.equals("setSuspendPolicy")) {
+                    suspendPolicy = (Integer) args[0];
+                } else {
+                    List<Object> filter = new ArrayList<Object>();
+                    filter.add(name);
+                    filter.addAll(Arrays.asList(args));
+                    filters.add(filter);
+                }
+            } else {
+                throw new UnsupportedOperationException(name);
+            }
+
+            return null;
+        }
+    }
+}
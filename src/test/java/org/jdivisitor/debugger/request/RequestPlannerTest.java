@@ -0,0 +1,246 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.jdivisitor.debugger.event.EventInterceptor;
+import com.sun.jdi.event.Event;
+import com.sun.jdi.request.EventRequest;
+import com.sun.jdi.request.EventRequestManager;
+import com.sun.jdi.request.MethodEntryRequest;
+
+/**
+ * Tests for {@link RequestPlanner}.
+ *
+ * @author Adrian Herrera
+ */
+public class RequestPlannerTest {
+
+    private FakeRequestManager fake;
+
+    private RequestPlanner planner;
+
+    @Before
+    public void setUp() {
+        fake = new FakeRequestManager();
+        planner = new RequestPlanner();
+    }
+
+    @Test
+    public void mergesNarrowerRequests() {
+        Requestor all = new Requestor(EventRequest.SUSPEND_ALL);
+        Requestor acme = new Requestor(EventRequest.SUSPEND_ALL, "com.acme.*");
+        planner.add(all).add(acme).requestEvents(fake.manager());
+
+        assertEquals(2, planner.intentCount());
+        assertEquals(1, planner.requestCount());
+
+        EventRequest request = real();
+        assertTrue(request.isEnabled());
+        assertEquals(Collections.emptyList(),
+                FakeRequestManager.filters(request));
+        assertEquals(Arrays.asList(all, acme),
+                planner.merged().get(request));
+    }
+
+    @Test
+    public void mergesIntoLaterWiderRequest() {
+        Requestor acme = new Requestor(EventRequest.SUSPEND_ALL, "com.acme.*");
+        Requestor all = new Requestor(EventRequest.SUSPEND_ALL);
+        planner.add(acme).add(all).requestEvents(fake.manager());
+
+        assertEquals(1, planner.requestCount());
+        assertEquals(Collections.emptyList(),
+                FakeRequestManager.filters(real()));
+    }
+
+    @Test
+    public void keepsDisjointRequestsApart() {
+        planner.add(new Requestor(EventRequest.SUSPEND_ALL, "com.acme.*"))
+                .add(new Requestor(EventRequest.SUSPEND_ALL, "org.other.*"))
+                .requestEvents(fake.manager());
+
+        assertEquals(2, planner.requestCount());
+        assertEquals(2, fake.requests().size());
+        assertTrue(planner.merged().isEmpty());
+    }
+
+    @Test
+    public void neverMergesCountFilters() {
+        Requestor counted = new Requestor(EventRequest.SUSPEND_ALL) {
+            @Override
+            void configure(MethodEntryRequest request) {
+                request.addCountFilter(2);
+            }
+        };
+        planner.add(new Requestor(EventRequest.SUSPEND_ALL)).add(counted)
+                .requestEvents(fake.manager());
+
+        assertEquals(2, planner.requestCount());
+        assertTrue(planner.merged().isEmpty());
+    }
+
+    @Test
+    public void takesStrictestSuspendPolicy() {
+        Requestor all = new Requestor(EventRequest.SUSPEND_NONE);
+        Requestor acme = new Requestor(EventRequest.SUSPEND_ALL, "com.acme.*");
+        planner.add(all).add(acme).requestEvents(fake.manager());
+
+        EventRequest request = real();
+        assertEquals(EventRequest.SUSPEND_ALL, request.suspendPolicy());
+
+        acme.erm.deleteEventRequest(acme.request);
+        assertEquals(1, planner.requestCount());
+        assertEquals(EventRequest.SUSPEND_NONE, request.suspendPolicy());
+        assertTrue(request.isEnabled());
+
+        all.erm.deleteEventRequest(all.request);
+        assertEquals(0, planner.requestCount());
+        assertTrue(fake.requests().isEmpty());
+    }
+
+    @Test
+    public void demultiplexesMergedEvents() {
+        Requestor all = new Requestor(EventRequest.SUSPEND_ALL);
+        Requestor acme = new Requestor(EventRequest.SUSPEND_ALL, "com.acme.*");
+        planner.add(all).add(acme).requestEvents(fake.manager());
+
+        Event other = FakeRequestManager.methodEntry(real(), "org.other.Foo");
+        assertTrue(planner.intercept(other));
+        assertEquals(Collections.singletonList(other), all.seen);
+        assertTrue(acme.seen.isEmpty());
+
+        Event foo = FakeRequestManager.methodEntry(real(), "com.acme.Foo");
+        assertTrue(planner.intercept(foo));
+        assertEquals(Arrays.asList(other, foo), all.seen);
+        assertEquals(Collections.singletonList(foo), acme.seen);
+    }
+
+    @Test
+    public void dropsEventsOfDisabledRequests() {
+        Requestor all = new Requestor(EventRequest.SUSPEND_ALL);
+        Requestor acme = new Requestor(EventRequest.SUSPEND_ALL, "com.acme.*");
+        planner.add(all).add(acme).requestEvents(fake.manager());
+
+        all.request.disable();
+        assertTrue(real().isEnabled());
+
+        Event other = FakeRequestManager.methodEntry(real(), "org.other.Foo");
+        assertFalse(planner.intercept(other));
+        assertTrue(all.seen.isEmpty());
+        assertTrue(acme.seen.isEmpty());
+
+        Event foo = FakeRequestManager.methodEntry(real(), "com.acme.Foo");
+        assertTrue(planner.intercept(foo));
+        assertTrue(all.seen.isEmpty());
+        assertEquals(Collections.singletonList(foo), acme.seen);
+
+        acme.request.disable();
+        assertFalse(real().isEnabled());
+    }
+
+    @Test
+    public void passesOtherEventsToEveryInterceptor() {
+        Requestor all = new Requestor(EventRequest.SUSPEND_ALL);
+        Requestor acme = new Requestor(EventRequest.SUSPEND_ALL, "com.acme.*");
+        planner.add(all).add(acme).requestEvents(fake.manager());
+
+        Event event = FakeRequestManager.methodEntry(null, "org.other.Foo");
+        assertTrue(planner.intercept(event));
+        assertEquals(Collections.singletonList(event), all.seen);
+        assertEquals(Collections.singletonList(event), acme.seen);
+    }
+
+    /**
+     * Get the only real request.
+     *
+     * @return The real request
+     */
+    private EventRequest real() {
+        List<EventRequest> requests = fake.requests();
+        assertEquals(1, requests.size());
+
+        return requests.get(0);
+    }
+
+    /**
+     * Requests method entry events, and records the events it is shown.
+     */
+    private static class Requestor implements EventRequestor,
+            EventInterceptor {
+
+        private final int suspendPolicy;
+
+        private final String classFilter;
+
+        private final List<Event> seen = new ArrayList<Event>();
+
+        private EventRequestManager erm;
+
+        private MethodEntryRequest request;
+
+        Requestor(int suspendPolicy) {
+            this(suspendPolicy, null);
+        }
+
+        Requestor(int suspendPolicy, String classFilter) {
+            this.suspendPolicy = suspendPolicy;
+            this.classFilter = classFilter;
+        }
+
+        @Override
+        public void requestEvents(EventRequestManager erm) {
+            this.erm = erm;
+
+            request = erm.createMethodEntryRequest();
+            request.setSuspendPolicy(suspendPolicy);
+            if (classFilter != null) {
+                request.addClassFilter(classFilter);
+            }
+            configure(request);
+            request.enable();
+        }
+
+        /**
+         * Configure the request further before it is enabled.
+         *
+         * @param request Method entry request
+         */
+        void configure(MethodEntryRequest request) {
+        }
+
+        @Override
+        public boolean intercept(Event event) {
+            seen.add(event);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * JDIVisitor
+ * Copyright (C) 2014  Adrian Herrera
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package org.jdivisitor.debugger.tracing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link Bytecodes}.
+ *
+ * @author Adrian Herrera
+ */
+public class BytecodesTest {
+
+    /**
+     * <pre>
+     *  0: iload_0
+     *  1: tableswitch 0..1 (default 40, 0: 28, 1: 29)
+     * 24: wide iinc 1 0xac00
+     * 30: lookupswitch (default 39, 7: 40)
+     * 48: ireturn
+     * 49: return
+     * </pre>
+     *
+     * Code index 28 holds {@code 0xac} ({@code ireturn}) as an operand of
+     * the {@code wide} instruction, so it is only reported as a return if
+     * instruction lengths are wrong. Branch targets need not be valid here.
+     */
+    private static final byte[] SWITCH = {
+        0x1a,                                                   //  0
+        (byte) 0xaa, 0, 0,                                      //  1
+        0, 0, 0, 39,                                            //  4
+        0, 0, 0, 0,                                             //  8
+        0, 0, 0, 1,                                             // 12
+        0, 0, 0, 27,                                            // 16
+        0, 0, 0, 28,                                            // 20
+        (byte) 0xc4, (byte) 0x84, 0, 1, (byte) 0xac, 0x00,      // 24
+        (byte) 0xab, 0,                                         // 30
+        0, 0, 0, 9,                                             // 32
+        0, 0, 0, 1,                                             // 36
+        0, 0, 0, 7,                                             // 40
+        0, 0, 0, 10,                                            // 44
+        (byte) 0xac,                                            // 48
+        (byte) 0xb1                                             // 49
+    };
+
+    @Test
+    public void skipsVariableLengthInstructions() {
+        assertEquals(Arrays.asList(48L, 49L),
+                Bytecodes.returnIndices(SWITCH));
+    }
+
+    @Test
+    public void findsSwitchTargets() {
+        // tableswitch at 1: default 40, cases 28 and 29
+        assertTrue(Bytecodes.isBranchTarget(SWITCH, 28));
+        assertTrue(Bytecodes.isBranchTarget(SWITCH, 29));
+        assertTrue(Bytecodes.isBranchTarget(SWITCH, 40));
+        // lookupswitch at 30: default 39, case 7 -> 40
+        assertTrue(Bytecodes.isBranchTarget(SWITCH, 39));
+        assertFalse(Bytecodes.isBranchTarget(SWITCH, 24));
+        assertFalse(Bytecodes.isBranchTarget(SWITCH, 48));
+    }
+
+    @Test
+    public void findsBackwardBranches() {
+        // 0: iinc 0 1; 3: goto 0; 6: return
+        byte[] code = {
+            (byte) 0x84, 0, 1, (byte) 0xa7, (byte) 0xff, (byte) 0xfd,
+            (byte) 0xb1
+        };
+
+        assertTrue(Bytecodes.isBranchTarget(code, 0));
+        assertFalse(Bytecodes.isBranchTarget(code, 3));
+        assertEquals(Collections.singletonList(6L),
+                Bytecodes.returnIndices(code));
+    }
+
+    @Test
+    public void findsWideBranches() {
+        // 0: nop; 1: goto_w 0; 6: ireturn
+        byte[] code = {
+            0x00, (byte) 0xc8, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+            (byte) 0xff, (byte) 0xac
+        };
+
+        assertTrue(Bytecodes.isBranchTarget(code, 0));
+        assertEquals(Collections.singletonList(6L),
+                Bytecodes.returnIndices(code));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownOpcodes() {
+        Bytecodes.returnIndices(new byte[] { (byte) 0xcb });
+    }
+}